@@ -17,17 +17,23 @@ import com.reactivecascade.i.IActionOneR;
 import com.reactivecascade.i.IActionR;
 import com.reactivecascade.i.IAltFuture;
 import com.reactivecascade.i.IBindingContext;
+import com.reactivecascade.i.ILog;
 import com.reactivecascade.i.IRunnableAltFuture;
 import com.reactivecascade.i.ISettableAltFuture;
 import com.reactivecascade.i.IThreadType;
+import com.reactivecascade.i.ITracer;
+import com.reactivecascade.util.AbstractThreadType;
 import com.reactivecascade.util.BindingContextUtil;
 import com.reactivecascade.util.DefaultThreadType;
+import com.reactivecascade.util.RCLog;
 import com.reactivecascade.util.TypedThread;
 
 import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.Executors;
 import java.util.concurrent.Future;
 import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 /**
  * "Any sufficiently advanced technology is indistinguishable from magic" -Arthur C Clarke
@@ -332,6 +338,8 @@ public final class Async {
      * The from of {@link AsyncBuilder#isShowErrorStackTraces()} locked in for performance reasons by the <em>first</em> <code>AsyncBuilder</code>
      */
     public static final boolean TRACE_ASYNC_ORIGIN = (ASYNC_BUILDER == null) || ASYNC_BUILDER.isShowErrorStackTraces(); // This makes finding where in you code a given log line was directly or indirectly called, but slows running
+    public static final int ORIGIN_SAMPLE_RATE = (ASYNC_BUILDER == null) ? 1 : ASYNC_BUILDER.getOriginSampleRate(); // When TRACE_ASYNC_ORIGIN, capture 1 in N origins
+    public static final boolean LAZY_ORIGIN = (ASYNC_BUILDER != null) && ASYNC_BUILDER.isLazyOrigin(); // When TRACE_ASYNC_ORIGIN, resolve origins only when they are needed for display
     // Some of the following logic lines are funky to support the Android visual editor. If you never initialized Async, you will want to see something in the visual editor. This matters for UI classes which receive services from Async
     public static final Thread UI_THREAD = (ASYNC_BUILDER == null) ? null : ASYNC_BUILDER.uiThread; // The main system thread for this Context
     /**
@@ -379,9 +387,14 @@ public final class Async {
      * coherent.
      */
     public static final IThreadType NET_WRITE = (ASYNC_BUILDER == null) ? null : ASYNC_BUILDER.getNetWriteThreadType();
+    public static final int LOG_LEVEL = (ASYNC_BUILDER == null) ? Log.VERBOSE : ASYNC_BUILDER.getLogLevel(); // The lowest android.util.Log priority output by RCLog. Lower levels cost only one branch
+    public static final ILog LOG = (ASYNC_BUILDER == null) ? null : ASYNC_BUILDER.getLog(); // The destination for RCLog output. null only while bootstrapping
+    public static final ITracer TRACER = (ASYNC_BUILDER == null) ? null : ASYNC_BUILDER.getTracer(); // Chain execution tracing, usually null
     public static volatile boolean SHOW_ERROR_STACK_TRACES = (ASYNC_BUILDER == null) || ASYNC_BUILDER.isShowErrorStackTraces(); // For clean unit testing. This can be temporarily turned off for a single threaded system or unit test code block to keep _intentional_ unit test errors from cluttering the stack trace.
     private static final int FAIL_FAST_SLEEP_BEFORE_SYSTEM_EXIT = 1000; // The idea is this helps the user and debugger see the issue and logs can catch up before bombing the app too fast to see what was happening
     private static volatile boolean sExitWithErrorCodeStarted = false;
+    private static final List<Runnable> SHUTDOWN_ACTIONS = new CopyOnWriteArrayList<>();
+    private static final AtomicBoolean sShutdownActionsStarted = new AtomicBoolean(false);
     public static final IBindingContext<Context> DEFAULT_BINDING_CONTEXT = new BindingContextUtil.DefaultBindingContext<>();
 
     static {
@@ -390,6 +403,7 @@ public final class Async {
                     AsyncBuilder.NOT_INITIALIZED,
                     new IllegalStateException(AsyncBuilder.NOT_INITIALIZED));
         }
+        Runtime.getRuntime().addShutdownHook(new Thread(Async::runShutdownActions, "AsyncShutdownHook"));
     }
 
     @UiThread
@@ -413,6 +427,57 @@ public final class Async {
         return result;
     }
 
+    /**
+     * Add an action to run before the application exits, either through {@link #exitWithErrorCode(String, String, Throwable)}
+     * or {@link System#exit(int)}. This is for example where unsaved state is written.
+     * <p>
+     * Shutdown actions run only once, in the order they were added, on the exiting thread. They should complete quickly.
+     *
+     * @param action to run
+     */
+    public static void addShutdownAction(@NonNull Runnable action) {
+        SHUTDOWN_ACTIONS.add(action);
+    }
+
+    private static void runShutdownActions() {
+        if (!sShutdownActionsStarted.compareAndSet(false, true)) {
+            return;
+        }
+        for (Runnable action : SHUTDOWN_ACTIONS) {
+            try {
+                action.run();
+            } catch (Exception e) {
+                Log.e(Async.class.getSimpleName(), "Problem in shutdown action " + action, e);
+            }
+        }
+    }
+
+    /**
+     * Create the executors and start the core threads of some thread types in the background
+     * <p>
+     * Thread pools are otherwise created when the first task is run on them. Call this after
+     * {@link AsyncBuilder#build()} for the thread types the first screen needs, so that their threads are
+     * ready without delaying startup.
+     * <code><pre>
+     *     Async.prestart(WORKER, FILE);
+     * </pre></code>
+     *
+     * @param threadTypes to start. Thread types which are not based on {@link com.reactivecascade.util.AbstractThreadType} are skipped.
+     */
+    public static void prestart(@NonNull IThreadType... threadTypes) {
+        final Thread thread = new Thread(() -> {
+            for (IThreadType threadType : threadTypes) {
+                if (threadType instanceof AbstractThreadType) {
+                    final int started = ((AbstractThreadType) threadType).prestart();
+                    RCLog.v(threadType, "Prestarted " + started + " threads");
+                }
+            }
+        }, "AsyncPrestart");
+
+        thread.setDaemon(true);
+        thread.start();
+    }
+
     public static void exitWithErrorCode(@NonNull String tag,
                                          @NonNull String message,
                                          @Nullable Throwable t) {
@@ -434,6 +499,7 @@ public final class Async {
             } else {
                 Log.i(tag, "Exit, no error code : " + message);
             }
+            runShutdownActions();
             WORKER.shutdownNow("exitWithErrorCode: " + message, null, null, 0);
             NET_READ.shutdownNow("exitWithErrorCode: " + message, null, null, 0);
             NET_WRITE.shutdownNow("exitWithErrorCode: " + message, null, null, 0);
@@ -8,6 +8,7 @@ package com.reactivecascade;
 import android.content.Context;
 import android.os.Handler;
 import android.os.StrictMode;
+import android.support.annotation.IntRange;
 import android.support.annotation.NonNull;
 import android.support.annotation.Nullable;
 import android.support.annotation.UiThread;
@@ -17,20 +18,27 @@ import android.util.Log;
 import com.reactivecascade.functional.ImmutableValue;
 import com.reactivecascade.i.CallOrigin;
 import com.reactivecascade.i.IAltFuture;
+import com.reactivecascade.i.ILog;
 import com.reactivecascade.i.IThreadType;
+import com.reactivecascade.i.ITracer;
 import com.reactivecascade.i.NotCallOrigin;
+import com.reactivecascade.util.AndroidLog;
 import com.reactivecascade.util.AssertUtil;
 import com.reactivecascade.util.DefaultThreadType;
 import com.reactivecascade.util.DoubleQueue;
+import com.reactivecascade.util.LazyExecutorService;
 import com.reactivecascade.util.TypedThread;
 import com.reactivecascade.util.UIExecutorService;
+import com.reactivecascade.util.Watchdog;
+import com.reactivecascade.util.WatchedThreadPoolExecutor;
 
 import java.util.concurrent.BlockingDeque;
 import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.LinkedBlockingDeque;
-import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicInteger;
@@ -88,6 +96,14 @@ public class AsyncBuilder {
     private boolean strictModeEnabled = BuildConfig.DEBUG;
     private boolean failFast = BuildConfig.DEBUG;
     private boolean showErrorStackTraces = BuildConfig.DEBUG;
+    private int logLevel = Log.VERBOSE;
+    private int originSampleRate = 1;
+    private boolean lazyOrigin = false;
+    private long watchdogThresholdMillis = BuildConfig.DEBUG ? 2000 : 0;
+    private boolean watchdogCompensate = false;
+    private Watchdog watchdog;
+    private ILog log;
+    private ITracer tracer;
     private IThreadType workerThreadType;
     private IThreadType serialWorkerThreadType;
     private IThreadType uiThreadType;
@@ -262,6 +278,211 @@ public class AsyncBuilder {
         return this;
     }
 
+    /**
+     * Get the lowest {@link Log} priority which {@link com.reactivecascade.util.RCLog} will output
+     *
+     * @return the log level, for example {@link Log#VERBOSE}
+     */
+    @UiThread
+    public int getLogLevel() {
+        return logLevel;
+    }
+
+    /**
+     * Set the lowest {@link Log} priority which {@link com.reactivecascade.util.RCLog} will output.
+     * Messages below this level are discarded after a single branch, before any message string is
+     * built if you use the lazy message overloads such as {@link com.reactivecascade.util.RCLog#v(Object, com.reactivecascade.i.IActionR)}
+     * <p>
+     * Production builds with <code>{@link BuildConfig#DEBUG}=false</code> log only errors, regardless of this setting.
+     * <p>
+     * The default from is {@link Log#VERBOSE}
+     *
+     * @param logLevel one of {@link Log#VERBOSE}, {@link Log#DEBUG}, {@link Log#INFO}, {@link Log#WARN}, {@link Log#ERROR} or {@link Log#ASSERT}
+     * @return the builder, for chaining
+     */
+    @NonNull
+    @UiThread
+    public AsyncBuilder setLogLevel(@IntRange(from = Log.VERBOSE, to = Log.ASSERT) int logLevel) {
+        Log.v(TAG, "setLogLevel(" + logLevel + ")");
+        this.logLevel = logLevel;
+
+        return this;
+    }
+
+    /**
+     * Get how often origin tracing captures the creation point of an object
+     *
+     * @return 1 to capture every origin, N to capture 1 in N
+     */
+    @UiThread
+    public int getOriginSampleRate() {
+        return originSampleRate;
+    }
+
+    /**
+     * When origin tracing is enabled, capture the origin of only 1 in N objects. The others
+     * report {@link com.reactivecascade.util.RCLog#DEFAULT_ORIGIN}. This reduces the performance
+     * impact of origin tracing in for example beta builds at the cost of less complete error reports.
+     * <p>
+     * The default from is 1, capture every origin
+     *
+     * @param originSampleRate 1 or more
+     * @return the builder, for chaining
+     */
+    @NonNull
+    @UiThread
+    public AsyncBuilder setOriginSampleRate(@IntRange(from = 1) int originSampleRate) {
+        Log.v(TAG, "setOriginSampleRate(" + originSampleRate + ")");
+        if (originSampleRate < 1) {
+            throw new IllegalArgumentException("Origin sample rate must be 1 or more: " + originSampleRate);
+        }
+        this.originSampleRate = originSampleRate;
+
+        return this;
+    }
+
+    @UiThread
+    public boolean isLazyOrigin() {
+        return lazyOrigin;
+    }
+
+    /**
+     * When origin tracing is enabled, record only the raw stack at the point an object is created
+     * and resolve it to a readable origin only if an error or log line actually needs it.
+     * <p>
+     * The default from is <code>false</code>, resolve each origin in the background on {@link Async#WORKER}
+     *
+     * @param lazyOrigin <code>true</code> to defer origin resolution
+     * @return the builder, for chaining
+     */
+    @NonNull
+    @UiThread
+    public AsyncBuilder setLazyOrigin(boolean lazyOrigin) {
+        Log.v(TAG, "setLazyOrigin(" + lazyOrigin + ")");
+        this.lazyOrigin = lazyOrigin;
+
+        return this;
+    }
+
+    /**
+     * Report tasks on the default thread pools which run longer than a threshold. Each is reported
+     * once with its origin or the stack of its blocked thread. See {@link Watchdog}.
+     * <p>
+     * With <code>compensate</code>, {@link Async#WORKER} and {@link Async#NET_READ} also get an extra
+     * thread while a task is blocked, so tasks queued behind it keep running. The serial pools
+     * ({@link Async#SERIAL_WORKER}, {@link Async#FILE} and {@link Async#NET_WRITE}) are only reported, since
+     * a second thread would break their in-order execution.
+     * <p>
+     * The default is a 2000ms threshold without compensation in {@link BuildConfig#DEBUG} builds, and no
+     * watchdog in production builds. Executor services you set yourself are not watched.
+     *
+     * @param thresholdMillis how long a task may run, or 0 for no watchdog
+     * @param compensate      <code>true</code> to add a thread to concurrent pools while a task is blocked
+     * @return the builder, for chaining
+     */
+    @NonNull
+    @UiThread
+    public AsyncBuilder setWatchdog(@IntRange(from = 0) long thresholdMillis,
+                                    boolean compensate) {
+        Log.v(TAG, "setWatchdog(" + thresholdMillis + ", " + compensate + ")");
+        if (thresholdMillis < 0) {
+            throw new IllegalArgumentException("Watchdog threshold must be 0 or more: " + thresholdMillis);
+        }
+        this.watchdogThresholdMillis = thresholdMillis;
+        this.watchdogCompensate = compensate;
+
+        return this;
+    }
+
+    /**
+     * Create a default thread pool, watched if {@link #setWatchdog(long, boolean)} is enabled. This is
+     * called when the pool's {@link LazyExecutorService} receives its first task.
+     */
+    @NonNull
+    private synchronized WatchedThreadPoolExecutor createThreadPool(@NonNull String name,
+                                                                    int corePoolSize,
+                                                                    int maximumPoolSize,
+                                                                    long keepAliveMillis,
+                                                                    @NonNull BlockingQueue<Runnable> queue,
+                                                                    @NonNull ThreadFactory threadFactory,
+                                                                    boolean mayCompensate) {
+        final WatchedThreadPoolExecutor executor = new WatchedThreadPoolExecutor(corePoolSize, maximumPoolSize,
+                keepAliveMillis, TimeUnit.MILLISECONDS, queue, threadFactory);
+
+        if (watchdogThresholdMillis > 0) {
+            if (watchdog == null) {
+                watchdog = new Watchdog(watchdogThresholdMillis, Math.max(10, watchdogThresholdMillis / 4));
+            }
+            watchdog.watch(name, executor, mayCompensate && watchdogCompensate);
+        }
+
+        return executor;
+    }
+
+    /**
+     * Get the destination for {@link com.reactivecascade.util.RCLog} output
+     *
+     * @return the log
+     */
+    @NonNull
+    @UiThread
+    public ILog getLog() {
+        if (log == null) {
+            setLog(new AndroidLog());
+        }
+
+        return log;
+    }
+
+    /**
+     * Set the destination for {@link com.reactivecascade.util.RCLog} output. Use for example a
+     * {@link com.reactivecascade.util.RingBufferLog} to move logging off the calling thread and
+     * collect logs to a file. In production builds only errors are logged.
+     * <p>
+     * The default is {@link AndroidLog}, synchronous output to {@link Log}
+     *
+     * @param log the log
+     * @return the builder, for chaining
+     */
+    @NonNull
+    @UiThread
+    public AsyncBuilder setLog(@NonNull ILog log) {
+        Log.v(TAG, "setLog(" + log + ")");
+        this.log = log;
+
+        return this;
+    }
+
+    /**
+     * Get the chain execution tracer
+     *
+     * @return the tracer, or <code>null</code> if tracing is off
+     */
+    @Nullable
+    @UiThread
+    public ITracer getTracer() {
+        return tracer;
+    }
+
+    /**
+     * Record fork, enqueue, start and end events for each {@link com.reactivecascade.functional.RunnableAltFuture}
+     * and {@link com.reactivecascade.reactive.Subscription} fire. Use for example a
+     * {@link com.reactivecascade.util.ChromeTraceExporter} to see where the time goes in a chain.
+     * <p>
+     * The default is <code>null</code>, no tracing
+     *
+     * @param tracer the tracer
+     * @return the builder, for chaining
+     */
+    @NonNull
+    @UiThread
+    public AsyncBuilder setTracer(@Nullable ITracer tracer) {
+        Log.v(TAG, "setTracer(" + tracer + ")");
+        this.tracer = tracer;
+
+        return this;
+    }
+
     /**
      * Get the group of threads which execute CPU-bound tasks
      *
@@ -498,14 +719,15 @@ public class AsyncBuilder {
             final BlockingQueue<Runnable> q = getWorkerQueue();
             final int numberOfThreads = q instanceof BlockingDeque ? NUMBER_OF_CORES : 1;
 
-            setWorkerExecutorService(new ThreadPoolExecutor(
+            setWorkerExecutorService(new LazyExecutorService("WorkerExecutorService", () -> createThreadPool(
+                    "WorkerExecutorService",
                     numberOfThreads,
                     numberOfThreads,
                     1000,
-                    TimeUnit.MILLISECONDS,
                     q,
-                    runnable -> getWorkerThread(threadTypeImmutableValue.get(), runnable)
-            ));
+                    runnable -> getWorkerThread(threadTypeImmutableValue.get(), runnable),
+                    numberOfThreads > 1
+            )));
         }
 
         return workerExecutorService;
@@ -535,14 +757,17 @@ public class AsyncBuilder {
         if (serialWorkerExecutorService == null) {
             Log.v(TAG, "Creating default serial worker executor service");
 
-            setSerialWorkerExecutorService(new ThreadPoolExecutor(
+            final BlockingQueue<Runnable> q = getSerialWorkerQueue();
+
+            setSerialWorkerExecutorService(new LazyExecutorService("SerialWorkerExecutorService", () -> createThreadPool(
+                    "SerialWorkerExecutorService",
                     1,
                     1,
                     1000,
-                    TimeUnit.MILLISECONDS,
-                    getSerialWorkerQueue(),
-                    runnable -> getSerialWorkerThread(threadTypeImmutableValue.get(), runnable))
-            );
+                    q,
+                    runnable -> getSerialWorkerThread(threadTypeImmutableValue.get(), runnable),
+                    false)
+            ));
         }
 
         return serialWorkerExecutorService;
@@ -713,11 +938,14 @@ public class AsyncBuilder {
 
         if (fileExecutorService == null) {
             Log.d(TAG, "Creating default file read executor service");
-            setFileExecutorService(new ThreadPoolExecutor(1, 1,
-                    0L, TimeUnit.MILLISECONDS,
-                    getFileQueue(),
-                    runnable -> new TypedThread(threadTypeImmutableValue.get(), runnable, createThreadId("FileThread")))
-            );
+            final BlockingQueue<Runnable> q = getFileQueue();
+
+            setFileExecutorService(new LazyExecutorService("FileExecutorService", () -> createThreadPool("FileExecutorService", 1, 1,
+                    0L,
+                    q,
+                    runnable -> new TypedThread(threadTypeImmutableValue.get(), runnable, createThreadId("FileThread")),
+                    false)
+            ));
         }
 
         return fileExecutorService;
@@ -735,10 +963,13 @@ public class AsyncBuilder {
 
         if (netReadExecutorService == null) {
             Log.d(TAG, "Creating default net read executor service");
-            setNetReadExecutorService(new ThreadPoolExecutor(1, NUMBER_OF_CONCURRENT_NET_READS,
-                    1000, TimeUnit.MILLISECONDS, getNetReadQueue(),
-                    runnable -> new TypedThread(threadTypeImmutableValue.get(), runnable, createThreadId("NetReadThread")))
-            );
+            final BlockingQueue<Runnable> q = getNetReadQueue();
+
+            setNetReadExecutorService(new LazyExecutorService("NetReadExecutorService", () -> createThreadPool("NetReadExecutorService", 1, NUMBER_OF_CONCURRENT_NET_READS,
+                    1000, q,
+                    runnable -> new TypedThread(threadTypeImmutableValue.get(), runnable, createThreadId("NetReadThread")),
+                    true)
+            ));
         }
 
         return netReadExecutorService;
@@ -756,9 +987,12 @@ public class AsyncBuilder {
 
         if (netWriteExecutorService == null) {
             Log.d(TAG, "Creating default net write executor service");
-            setNetWriteExecutorService(Executors.newSingleThreadExecutor(
-                    runnable -> new TypedThread(threadTypeImmutableValue.get(), runnable, createThreadId("NetWriteThread")))
-            );
+            setNetWriteExecutorService(new LazyExecutorService("NetWriteExecutorService", () -> createThreadPool("NetWriteExecutorService", 1, 1,
+                    0L,
+                    new LinkedBlockingQueue<>(),
+                    runnable -> new TypedThread(threadTypeImmutableValue.get(), runnable, createThreadId("NetWriteThread")),
+                    false)
+            ));
         }
 
         return netWriteExecutorService;
@@ -18,18 +18,25 @@ import com.reactivecascade.i.IActionOne;
 import com.reactivecascade.i.IActionOneR;
 import com.reactivecascade.i.IActionR;
 import com.reactivecascade.i.IAltFuture;
+import com.reactivecascade.i.ICancellationToken;
 import com.reactivecascade.i.IReactiveTarget;
 import com.reactivecascade.i.ISettableAltFuture;
 import com.reactivecascade.i.IThreadType;
+import com.reactivecascade.i.ITracer;
 import com.reactivecascade.i.NotCallOrigin;
 import com.reactivecascade.util.AssertUtil;
+import com.reactivecascade.util.BindingContextUtil;
+import com.reactivecascade.util.CancellationUtil;
+import com.reactivecascade.util.FanOut;
 import com.reactivecascade.util.Origin;
 import com.reactivecascade.util.RCLog;
+import com.reactivecascade.util.TraceUtil;
 
-import java.util.concurrent.CopyOnWriteArraySet;
+import java.util.ArrayList;
+import java.util.concurrent.CancellationException;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicInteger;
-import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.AtomicReferenceFieldUpdater;
 
 /**
  * The common base class for default implementations such as {@link SettableAltFuture} and {@link RunnableAltFuture}.
@@ -46,7 +53,7 @@ import java.util.concurrent.atomic.AtomicReference;
  * TODO Would it be helpful for debugging to store and pass forward a reference to the object which originally detected the problem? It might help with filtering what mOnFireAction you want to do mOnError
  */
 @NotCallOrigin
-public abstract class AbstractAltFuture<IN, OUT> extends Origin implements IAltFuture<IN, OUT> {
+public abstract class AbstractAltFuture<IN, OUT> extends Origin implements IAltFuture<IN, OUT>, ICancellationToken {
     /**
      * The state returned by a function which has no value, but is finished running.
      * <p>
@@ -61,15 +68,12 @@ public abstract class AbstractAltFuture<IN, OUT> extends Origin implements IAltF
         }
     };
 
-    /*
-     * TODO It should be possible to refactor and eliminate the FORKED state in production builds for performance, using only ZEN plus a single state change
-     * This would however result in more debugging difficulty and the loss of certain broken logic tests so
-     * it should be configurable for production builds. Library users debugging their logic would not know at they time
-     * of .fork() if the operation has already been forked due to an error in their code. They
-     * would only find out much later. Perhaps this is acceptable in production since the final state
-     * change can occur only once, but impure functions would exert their side effect multiple times if
-     * forked multiple times. If the debug pattern remains clear and side effects are idempotent this
-     * might be worth the performance gained.
+    /**
+     * The state after {@link #fork()} and before the value is determined. This is only used when
+     * {@link Async#USE_FORKED_STATE}, which is the default for debug builds so that a duplicate fork() is
+     * reported when it happens. Production builds can turn it off so that each alt future changes state
+     * only once, with a single compare-and-set, but impure functions would then exert their side effect
+     * multiple times if forked multiple times.
      */
     protected static final State FORKED = new AbstractState() {
         @NonNull
@@ -79,14 +83,24 @@ public abstract class AbstractAltFuture<IN, OUT> extends Origin implements IAltF
         }
     };
 
-    protected final AtomicReference<Object> stateAR = new AtomicReference<>(VALUE_NOT_AVAILABLE);
+    @SuppressWarnings("rawtypes")
+    private static final AtomicReferenceFieldUpdater<AbstractAltFuture, Object> STATE = AtomicReferenceFieldUpdater.newUpdater(AbstractAltFuture.class, Object.class, "state");
+    @SuppressWarnings("rawtypes")
+    private static final AtomicReferenceFieldUpdater<AbstractAltFuture, IAltFuture> UPCHAIN = AtomicReferenceFieldUpdater.newUpdater(AbstractAltFuture.class, IAltFuture.class, "upchain");
+
+    @NonNull
+    private volatile Object state = VALUE_NOT_AVAILABLE; // Field updaters rather than AtomicReference objects, since many alt futures are created
 
     @NonNull
     protected final IThreadType threadType;
 
-    protected final CopyOnWriteArraySet<IAltFuture<OUT, ?>> downchainAltFutures = new CopyOnWriteArraySet<>(); // Callable split IThreadType actions to start after this mOnFireAction completes
+    protected final FanOut<IAltFuture<OUT, ?>> downchainAltFutures = new FanOut<>(); // Callable split IThreadType actions to start after this mOnFireAction completes
 
-    private final AtomicReference<IAltFuture<?, ? extends IN>> upchainAltFutureAR = new AtomicReference<>();
+    @Nullable
+    private volatile IAltFuture<?, ? extends IN> upchain;
+
+    @Nullable
+    private volatile Extras extras; // null unless tracing, in a binding context or with cancel actions, so most alt futures pay for one reference
 
     /**
      * Create, from is not yet determined
@@ -95,6 +109,12 @@ public abstract class AbstractAltFuture<IN, OUT> extends Origin implements IAltF
      */
     public AbstractAltFuture(@NonNull final IThreadType threadType) {
         this.threadType = threadType;
+        final long chainId = TraceUtil.newChainId();
+        final BindingContextUtil.AltFutureBindingContext<?> bindingContext = BindingContextUtil.AltFutureBindingContext.onAltFutureCreated(this);
+
+        if (chainId != 0 || bindingContext != null) {
+            this.extras = new Extras(chainId, bindingContext);
+        }
     }
 
     @Override // IAltFuture
@@ -103,12 +123,13 @@ public abstract class AbstractAltFuture<IN, OUT> extends Origin implements IAltF
     public boolean cancel(@NonNull String reason) {
         AltFutureStateCancelled state = new AltFutureStateCancelled(reason);
 
-        if (stateAR.compareAndSet(VALUE_NOT_AVAILABLE, state) || stateAR.compareAndSet(FORKED, state)) {
+        if (setFinalState(state)) {
             RCLog.d(this, "Cancelled: reason=" + reason);
+            runOnCancelActions();
             return true;
         }
 
-        Object s = stateAR.get();
+        Object s = getState();
 
         if (s instanceof StateCancelled) {
             RCLog.d(this, "Ignoring duplicate cancel(\"" + reason + "\"). state=" + s);
@@ -121,7 +142,7 @@ public abstract class AbstractAltFuture<IN, OUT> extends Origin implements IAltF
 
     @Override // IAltFuture
     public boolean cancel(@NonNull StateError stateError) {
-        Object state = this.stateAR.get();
+        Object state = getState();
         StateCancelled stateCancelled = new StateCancelled() {
             private final ImmutableValue<String> mOrigin = RCLog.originAsync();
 
@@ -144,8 +165,9 @@ public abstract class AbstractAltFuture<IN, OUT> extends Origin implements IAltF
             }
         };
 
-        if (stateAR.compareAndSet(VALUE_NOT_AVAILABLE, stateCancelled) || stateAR.compareAndSet(FORKED, stateCancelled)) {
+        if (setFinalState(stateCancelled)) {
             RCLog.d(this, "Cancelled from state " + state);
+            runOnCancelActions();
             final Exception e = forEachThen(ignore ->
                     onCancelled(stateCancelled));
             if (e != null) {
@@ -155,23 +177,198 @@ public abstract class AbstractAltFuture<IN, OUT> extends Origin implements IAltF
             return true;
         }
 
-        RCLog.d(this, "Ignoring cancel(" + stateError + "). state=" + stateAR.get());
+        RCLog.d(this, "Ignoring cancel(" + stateError + "). state=" + getState());
 
         return false;
     }
 
     @Override // IAltFuture
     public boolean isCancelled() {
-        return isCancelled(stateAR.get());
+        return isCancelled(getState());
     }
 
     private boolean isCancelled(@NonNull Object objectThatMayBeAState) {
         return objectThatMayBeAState instanceof StateCancelled;
     }
 
+    @Override // ICancellationToken
+    public void throwIfCancelled() throws CancellationException {
+        final Object state = getState();
+
+        if (isCancelled(state)) {
+            throw new CancellationException(state.toString());
+        }
+    }
+
+    @Override // ICancellationToken
+    @SuppressWarnings("unchecked")
+    public boolean addOnCancel(@NonNull IAction<?> onCancel) {
+        synchronized (this) {
+            if (!isCancelled()) {
+                Extras e = extras;
+
+                if (e == null) {
+                    e = new Extras(0, null);
+                    extras = e;
+                }
+                if (e.onCancelActions == null) {
+                    e.onCancelActions = onCancel;
+                } else if (e.onCancelActions instanceof ArrayList) {
+                    ((ArrayList<IAction<?>>) e.onCancelActions).add(onCancel);
+                } else {
+                    final ArrayList<IAction<?>> actions = new ArrayList<>(4);
+
+                    actions.add((IAction<?>) e.onCancelActions);
+                    actions.add(onCancel);
+                    e.onCancelActions = actions;
+                }
+                return true;
+            }
+        }
+        callOnCancel(onCancel);
+
+        return false;
+    }
+
+    @Override // ICancellationToken
+    @SuppressWarnings("unchecked")
+    public void removeOnCancel(@NonNull IAction<?> onCancel) {
+        synchronized (this) {
+            final Extras e = extras;
+
+            if (e == null) {
+                return;
+            }
+            if (e.onCancelActions == onCancel) {
+                e.onCancelActions = null;
+            } else if (e.onCancelActions instanceof ArrayList) {
+                ((ArrayList<IAction<?>>) e.onCancelActions).remove(onCancel);
+            }
+        }
+    }
+
+    /**
+     * Call the work of this chain step with this alt future as the current {@link ICancellationToken} and,
+     * if it was created in a binding context, with that context current so that alt futures created by the
+     * work are tracked. Call {@link #exitContext()} when the step is done.
+     *
+     * @param action the work of this step
+     * @param <T>    the result type
+     * @return the result of the action
+     * @throws Exception from the action
+     */
+    @NotCallOrigin
+    protected final <T> T callInContext(@NonNull IActionR<T> action) throws Exception {
+        final ICancellationToken previousToken = CancellationUtil.enter(this);
+        final Extras e = extras;
+        final BindingContextUtil.AltFutureBindingContext<?> bindingContext = e != null ? e.bindingContext : null;
+
+        try {
+            if (bindingContext == null) {
+                return action.call();
+            }
+            final BindingContextUtil.AltFutureBindingContext<?> previous = BindingContextUtil.AltFutureBindingContext.enter(bindingContext);
+            try {
+                return action.call();
+            } finally {
+                BindingContextUtil.AltFutureBindingContext.exit(previous);
+            }
+        } finally {
+            CancellationUtil.exit(previousToken);
+        }
+    }
+
+    /**
+     * Stop tracking this chain step in its binding context and release its cancel actions. Called once
+     * when the work started by {@link #callInContext(IActionR)} has finished.
+     */
+    protected final void exitContext() {
+        final Extras e = extras;
+
+        if (e == null) {
+            return;
+        }
+        if (e.bindingContext != null) {
+            e.bindingContext.untrack(this);
+        }
+        clearOnCancel();
+    }
+
+    /**
+     * Release all actions added with {@link #addOnCancel(IAction)}. Called when the work they abort has finished.
+     */
+    protected final void clearOnCancel() {
+        synchronized (this) {
+            final Extras e = extras;
+
+            if (e != null) {
+                e.onCancelActions = null;
+            }
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private void runOnCancelActions() {
+        final Object actions;
+
+        synchronized (this) {
+            final Extras e = extras;
+
+            if (e == null) {
+                return;
+            }
+            actions = e.onCancelActions;
+            e.onCancelActions = null;
+        }
+        if (actions instanceof ArrayList) {
+            for (IAction<?> action : (ArrayList<IAction<?>>) actions) {
+                callOnCancel(action);
+            }
+        } else if (actions != null) {
+            callOnCancel((IAction<?>) actions);
+        }
+    }
+
+    private void callOnCancel(@NonNull IAction<?> onCancel) {
+        try {
+            onCancel.call();
+        } catch (Exception e) {
+            RCLog.e(this, "Problem in onCancel action " + onCancel, e);
+        }
+    }
+
+    /**
+     * @return the current state: {@link #VALUE_NOT_AVAILABLE}, {@link #FORKED}, the value, or a {@link StateError} or {@link StateCancelled}
+     */
+    @NonNull
+    protected final Object getState() {
+        return state;
+    }
+
+    /**
+     * Change to the final state, if the value is not already determined
+     * <p>
+     * This is one compare-and-set. It is repeated only if a concurrent {@link #fork()} changes to {@link #FORKED} in between.
+     *
+     * @param finalState the value, or a {@link StateError} or {@link StateCancelled}
+     * @return <code>true</code> if changed, <code>false</code> if the state was already final
+     */
+    protected final boolean setFinalState(@NonNull Object finalState) {
+        Object current = state;
+
+        while (current == VALUE_NOT_AVAILABLE || current == FORKED) {
+            if (STATE.compareAndSet(this, current, finalState)) {
+                return true;
+            }
+            current = state;
+        }
+
+        return false;
+    }
+
     @Override // IAltFuture
     public final boolean isDone() {
-        return isDone(stateAR.get());
+        return isDone(getState());
     }
 
     protected boolean isDone(@NonNull Object state) {
@@ -180,7 +377,7 @@ public abstract class AbstractAltFuture<IN, OUT> extends Origin implements IAltF
 
     @Override // IAltFuture
     public final boolean isForked() {
-        return isForked(stateAR.get());
+        return isForked(getState());
     }
 
     protected boolean isForked(@NonNull Object state) {
@@ -198,11 +395,9 @@ public abstract class AbstractAltFuture<IN, OUT> extends Origin implements IAltF
             return this;
         }
 
-        Object s = null;
-        if (Async.USE_FORKED_STATE ? !stateAR.compareAndSet(VALUE_NOT_AVAILABLE, FORKED) : (s = stateAR.get()) != VALUE_NOT_AVAILABLE) {
-            if (s == null) {
-                s = stateAR.get();
-            }
+        if (state != VALUE_NOT_AVAILABLE || (Async.USE_FORKED_STATE && !STATE.compareAndSet(this, VALUE_NOT_AVAILABLE, FORKED))) {
+            final Object s = state;
+
             if (s instanceof StateCancelled || s instanceof StateError) {
                 RCLog.v(getOrigin(), "Can not fork(), RunnableAltFuture was cancelled: " + s);
                 return this;
@@ -210,6 +405,7 @@ public abstract class AbstractAltFuture<IN, OUT> extends Origin implements IAltF
             RCLog.i(getOrigin(), "Possibly a legitimate race condition. Ignoring duplicate fork(), already fork()ed or set(): " + s);
             return this;
         }
+        TraceUtil.trace(ITracer.FORK, this, threadType, getChainId()); // Only forks which happen are traced
         doFork();
 
         return this;
@@ -227,29 +423,44 @@ public abstract class AbstractAltFuture<IN, OUT> extends Origin implements IAltF
      */
     protected final void clearPreviousAltFuture() {
         AssertUtil.assertTrue(isDone());
-        this.upchainAltFutureAR.lazySet(null);
+        UPCHAIN.lazySet(this, null);
     }
 
     @Override // IAltFuture
     @Nullable
     public final IAltFuture<?, ? extends IN> getUpchain() {
-        return this.upchainAltFutureAR.get();
+        return upchain;
     }
 
     @Override // IAltFuture
     public void setUpchain(@NonNull IAltFuture<?, ? extends IN> altFuture) {
-        boolean set = this.upchainAltFutureAR.compareAndSet(null, altFuture);
+        boolean set = UPCHAIN.compareAndSet(this, null, altFuture);
 
         if (!set) {
             RCLog.v(this, "Second setUpchain(), merging two chains. Neither can proceed past this point until both burn to this point.");
+        } else if (altFuture instanceof AbstractAltFuture) {
+            final Extras e = extras;
+
+            if (e != null) {
+                e.chainId = ((AbstractAltFuture) altFuture).getChainId(); // Zero unless tracing
+            }
         }
     }
 
+    /**
+     * @return the id shared by all links in this chain for {@link ITracer}, or 0 if tracing is off
+     */
+    protected final long getChainId() {
+        final Extras e = extras;
+
+        return e != null ? e.chainId : 0;
+    }
+
     @Override // IAltFuture
     @NonNull
     @SuppressWarnings("unchecked")
     public OUT get() {
-        Object state = stateAR.get();
+        Object state = getState();
 
         if (!isDone(state)) {
             RCLog.throwIllegalStateException(this, getOrigin(), "Attempt to get() RunnableAltFuture that is not yet finished. state=" + state);
@@ -265,7 +476,7 @@ public abstract class AbstractAltFuture<IN, OUT> extends Origin implements IAltF
     @NonNull
     @SuppressWarnings("unchecked")
     public OUT safeGet() {
-        Object state = stateAR.get();
+        Object state = getState();
 
         if (!isDone(state) || isCancelled(state)) {
             return (OUT) VALUE_NOT_AVAILABLE;
@@ -325,8 +536,8 @@ public abstract class AbstractAltFuture<IN, OUT> extends Origin implements IAltF
     public void onError(@NonNull StateError stateError) throws Exception {
         RCLog.d(this, "Handling onError(): " + stateError);
 
-        if (!this.stateAR.compareAndSet(VALUE_NOT_AVAILABLE, stateError) || (Async.USE_FORKED_STATE && !this.stateAR.compareAndSet(FORKED, stateError))) {
-            RCLog.i(this, "Will not repeat onError() because IAltFuture state is already determined: " + stateAR.get());
+        if (!setFinalState(stateError)) {
+            RCLog.i(this, "Will not repeat onError() because IAltFuture state is already determined: " + getState());
             return;
         }
 
@@ -342,8 +553,8 @@ public abstract class AbstractAltFuture<IN, OUT> extends Origin implements IAltF
     @Override // IAltFuture
     public void onCancelled(@NonNull StateCancelled stateCancelled) throws Exception {
         RCLog.v(this, "Handling onCancelled for reason=" + stateCancelled);
-        if (!this.stateAR.compareAndSet(VALUE_NOT_AVAILABLE, stateCancelled) && !this.stateAR.compareAndSet(FORKED, stateCancelled)) {
-            RCLog.i(this, "Can not onCancelled because IAltFuture state is already determined: " + stateAR.get());
+        if (!setFinalState(stateCancelled)) {
+            RCLog.i(this, "Can not onCancelled because IAltFuture state is already determined: " + getState());
             return;
         }
 
@@ -358,7 +569,7 @@ public abstract class AbstractAltFuture<IN, OUT> extends Origin implements IAltF
 
     //----------------------------------- .then() actions ---------------------------------------------
     protected void doThen() {
-        AssertUtil.assertTrue("doThen(): state=" + stateAR.get(), isDone());
+        AssertUtil.assertTrue("doThen(): state=" + getState(), isDone());
 
         Exception e = forEachThen(IAltFuture::fork);
         if (e != null) {
@@ -430,9 +641,6 @@ public abstract class AbstractAltFuture<IN, OUT> extends Origin implements IAltF
 
         this.downchainAltFutures.add(altFuture);
         if (isDone()) {
-//            altFuture.map((IActionOne) v -> {
-//                visualize(mOrigin.getName(), v.toString(), "RunnableAltFuture");
-//            });
             altFuture.fork();
         }
 
@@ -464,6 +672,15 @@ public abstract class AbstractAltFuture<IN, OUT> extends Origin implements IAltF
         return then(new RunnableAltFuture<>(threadType, action));
     }
 
+    @Override // IAltFuture
+    @NonNull
+    @CheckResult(suggest = IAltFuture.CHECK_RESULT_SUGGESTION)
+    public <K, DOWNCHAIN_OUT> IAltFuture<OUT, DOWNCHAIN_OUT> memoize(@NonNull IActionOneR<OUT, K> keyFn,
+                                                                    @NonNull Memoizer<K, DOWNCHAIN_OUT> memoizer,
+                                                                    @NonNull IActionOneR<OUT, DOWNCHAIN_OUT> action) {
+        return then(new MemoizeAltFuture<>(threadType, keyFn, memoizer, action));
+    }
+
     @NonNull
     @Override
     @SuppressWarnings("unchecked")
@@ -591,6 +808,23 @@ public abstract class AbstractAltFuture<IN, OUT> extends Origin implements IAltF
     protected static abstract class AbstractState extends Origin implements IAltFuture.State {
     }
 
+    /**
+     * State which most alt futures do not need, kept out of line so that those pay for one null reference
+     */
+    private static final class Extras {
+        long chainId; // Shared by all links in one chain when Async.TRACER is set
+        @Nullable
+        final BindingContextUtil.AltFutureBindingContext<?> bindingContext; // Cancels this when closed, and tracks alt futures created while this runs
+        @Nullable
+        Object onCancelActions; // null, one IAction, or an ArrayList of them. Guarded by the alt future
+
+        Extras(long chainId,
+               @Nullable BindingContextUtil.AltFutureBindingContext<?> bindingContext) {
+            this.chainId = chainId;
+            this.bindingContext = bindingContext;
+        }
+    }
+
 //=============================== End .then() actions ========================================
 
     @NotCallOrigin
@@ -698,8 +932,8 @@ public abstract class AbstractAltFuture<IN, OUT> extends Origin implements IAltF
         public void onCancelled(@NonNull StateCancelled stateCancelled) throws Exception {
             RCLog.d(this, "Handling onCancelled(): " + stateCancelled);
 
-            if (!this.stateAR.compareAndSet(VALUE_NOT_AVAILABLE, stateCancelled) || (Async.USE_FORKED_STATE && !this.stateAR.compareAndSet(FORKED, stateCancelled))) {
-                RCLog.i(this, "Will not onCancelled() because IAltFuture state is already determined: " + stateAR.get());
+            if (!setFinalState(stateCancelled)) {
+                RCLog.i(this, "Will not onCancelled() because IAltFuture state is already determined: " + getState());
                 return;
             }
 
@@ -191,6 +191,15 @@ public class CompoundAltFuture<IN, OUT> extends Origin implements IAltFuture<IN,
         return tail.map(action);
     }
 
+    @NonNull
+    @Override // IAltFuture
+    @CheckResult(suggest = IAltFuture.CHECK_RESULT_SUGGESTION)
+    public <K, DOWNCHAIN_OUT> IAltFuture<OUT, DOWNCHAIN_OUT> memoize(@NonNull IActionOneR<OUT, K> keyFn,
+                                                                    @NonNull Memoizer<K, DOWNCHAIN_OUT> memoizer,
+                                                                    @NonNull IActionOneR<OUT, DOWNCHAIN_OUT> action) {
+        return tail.memoize(keyFn, memoizer, action);
+    }
+
     @NonNull
     @Override // IAltFuture
     @CheckResult(suggest = IAltFuture.CHECK_RESULT_SUGGESTION)
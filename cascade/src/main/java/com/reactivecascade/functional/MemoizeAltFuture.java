@@ -0,0 +1,108 @@
+/*
+This file is part of Reactive Cascade which is released under The MIT License.
+See license.md , https://github.com/futurice/cascade and http://reactivecascade.com for details.
+This is open source for the common good. Please contribute improvements by pull request or contact paulirotta@gmail.com
+*/
+package com.reactivecascade.functional;
+
+import android.support.annotation.NonNull;
+
+import com.reactivecascade.i.IActionOneR;
+import com.reactivecascade.i.IAltFuture;
+import com.reactivecascade.i.IThreadType;
+import com.reactivecascade.i.ITracer;
+import com.reactivecascade.i.NotCallOrigin;
+import com.reactivecascade.util.AssertUtil;
+import com.reactivecascade.util.RCLog;
+import com.reactivecascade.util.TraceUtil;
+
+/**
+ * The chain link of {@link IAltFuture#memoize(IActionOneR, Memoizer, IActionOneR)}
+ * <p>
+ * If another chain is computing the same key, this link does not wait on a thread. It is completed by the
+ * thread which computes the result, and then continues downchain on its own {@link IThreadType}.
+ * <p>
+ * Like a {@link RunnableAltFuture}, the computation runs with this link as the current cancellation token
+ * and in the binding context where the link was created.
+ *
+ * @param <IN>  the upchain value
+ * @param <K>   the key type
+ * @param <OUT> the result type
+ */
+@NotCallOrigin
+final class MemoizeAltFuture<IN, K, OUT> extends AbstractAltFuture<IN, OUT> implements Runnable {
+    @NonNull
+    private final IActionOneR<IN, K> keyFn;
+    @NonNull
+    private final Memoizer<K, OUT> memoizer;
+    @NonNull
+    private final IActionOneR<IN, OUT> action;
+
+    MemoizeAltFuture(@NonNull IThreadType threadType,
+                     @NonNull IActionOneR<IN, K> keyFn,
+                     @NonNull Memoizer<K, OUT> memoizer,
+                     @NonNull IActionOneR<IN, OUT> action) {
+        super(threadType);
+
+        this.keyFn = keyFn;
+        this.memoizer = memoizer;
+        this.action = action;
+    }
+
+    @Override // AbstractAltFuture
+    protected void doFork() {
+        TraceUtil.trace(ITracer.ENQUEUE, this, threadType, getChainId());
+        threadType.run(this);
+    }
+
+    @Override // Runnable
+    public void run() {
+        TraceUtil.trace(ITracer.START, this, threadType, getChainId());
+        if (isDone()) {
+            RCLog.d(this, "MemoizeAltFuture was cancelled before execution. state=" + getState());
+            TraceUtil.trace(ITracer.END, this, threadType, getChainId());
+            finish();
+            return;
+        }
+        try {
+            final IAltFuture<?, ? extends IN> previousAltFuture = getUpchain();
+
+            AssertUtil.assertNotNull(previousAltFuture);
+            //noinspection ConstantConditions
+            final IN in = previousAltFuture.get();
+
+            callInContext(() -> {
+                memoizer.get(keyFn.call(in), () -> action.call(in), this::complete, this::fail);
+                return null;
+            });
+        } catch (Exception e) {
+            fail(e);
+        } finally {
+            TraceUtil.trace(ITracer.END, this, threadType, getChainId());
+        }
+    }
+
+    private void complete(@NonNull OUT out) {
+        if (!setFinalState(out)) {
+            RCLog.d(this, "MemoizeAltFuture was cancelled() during execution. The memoized result is ignored. state=" + getState());
+        }
+        finish();
+    }
+
+    private void fail(@NonNull Exception e) {
+        if (!setFinalState(new AltFutureStateError("MemoizeAltFuture problem", e))) {
+            RCLog.i(this, "MemoizeAltFuture had a problem, but the state has already changed: " + e);
+        }
+        finish();
+    }
+
+    private void finish() {
+        try {
+            doThen();
+        } catch (Exception e) {
+            RCLog.e(this, "MemoizeAltFuture state=" + getState() + "\nProblem in resulting .doThen()", e);
+        }
+        clearPreviousAltFuture(); // Allow garbage collect of past values as the chain burns
+        exitContext();
+    }
+}
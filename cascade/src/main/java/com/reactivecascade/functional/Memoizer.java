@@ -0,0 +1,377 @@
+/*
+This file is part of Reactive Cascade which is released under The MIT License.
+See license.md , https://github.com/futurice/cascade and http://reactivecascade.com for details.
+This is open source for the common good. Please contribute improvements by pull request or contact paulirotta@gmail.com
+*/
+package com.reactivecascade.functional;
+
+import android.content.ComponentCallbacks2;
+import android.content.res.Configuration;
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+
+import com.reactivecascade.i.IAction;
+import com.reactivecascade.i.IActionOne;
+import com.reactivecascade.i.IActionR;
+import com.reactivecascade.i.ICancellationToken;
+import com.reactivecascade.i.INamed;
+import com.reactivecascade.util.CancellationUtil;
+import com.reactivecascade.util.RCLog;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Results of an expensive pure function, kept by key for {@link com.reactivecascade.i.IAltFuture#memoize(com.reactivecascade.i.IActionOneR, Memoizer, com.reactivecascade.i.IActionOneR)}
+ * <p>
+ * At most <code>maxEntries</code> results are kept. The least recently used is removed first. Each result
+ * expires <code>ttlMillis</code> after it was computed.
+ * <p>
+ * When several threads ask for the same key at the same time, only the first computes it. The others
+ * wait for that result instead of doing the same work. If the computation fails, all waiting threads
+ * receive the same exception and nothing is kept, so the next request computes again.
+ * <p>
+ * {@link #get(Object, IActionR)} blocks while another thread computes. Chains use
+ * {@link #get(Object, IActionR, IActionOne, IActionOne)}, which does not block a pool thread.
+ * <p>
+ * Register with {@link android.content.Context#registerComponentCallbacks(android.content.ComponentCallbacks)}
+ * so that results are released when the system is low on memory.
+ *
+ * @param <K> key type. Keys must implement {@link Object#equals(Object)} and {@link Object#hashCode()}
+ * @param <V> result type
+ */
+public class Memoizer<K, V> implements ComponentCallbacks2, INamed {
+    /**
+     * Keep results until they are removed as least recently used or for memory
+     */
+    public static final long NO_EXPIRY = Long.MAX_VALUE;
+
+    @NonNull
+    private final String name;
+    private final int maxEntries;
+    private final long ttlNanos;
+    @NonNull
+    private final LinkedHashMap<K, Cell<V>> cells = new LinkedHashMap<>(16, 0.75f, true); // Access order for LRU. Guarded by this
+
+    /**
+     * Create a memoizer
+     *
+     * @param name       the descriptive debug name
+     * @param maxEntries the maximum number of results to keep
+     * @param ttlMillis  how long a result is valid after it is computed, or {@link #NO_EXPIRY}
+     */
+    public Memoizer(@NonNull String name,
+                    int maxEntries,
+                    long ttlMillis) {
+        if (maxEntries < 1) {
+            throw new IllegalArgumentException("maxEntries must be at least 1: " + maxEntries);
+        }
+        if (ttlMillis <= 0) {
+            throw new IllegalArgumentException("ttlMillis must be positive: " + ttlMillis);
+        }
+        this.name = name;
+        this.maxEntries = maxEntries;
+        this.ttlNanos = ttlMillis >= TimeUnit.NANOSECONDS.toMillis(Long.MAX_VALUE / 2) ? NO_EXPIRY : TimeUnit.MILLISECONDS.toNanos(ttlMillis); // Very long TTLs never expire, rather than overflow
+    }
+
+    @NonNull
+    @Override // INamed
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * Get the result for a key, computing it on this thread if it is not known and not being computed
+     * <p>
+     * This blocks while another thread computes the same key.
+     *
+     * @param key     of the result
+     * @param compute the function which produces the result for this key
+     * @return the result
+     * @throws Exception from <code>compute</code>, on this thread or on the thread which computed it
+     */
+    @NonNull
+    public V get(@NonNull K key,
+                 @NonNull IActionR<V> compute) throws Exception {
+        final Cell<V> cell = getCell(key);
+
+        if (cell.claim()) {
+            return compute(key, cell, compute);
+        }
+
+        return cell.await();
+    }
+
+    /**
+     * Get the result for a key without blocking, computing it on this thread if it is not known and not being computed
+     * <p>
+     * If another thread is computing the same key, this returns at once. That thread calls <code>onValue</code>
+     * or <code>onError</code> when it is done.
+     *
+     * @param key     of the result
+     * @param compute the function which produces the result for this key
+     * @param onValue called with the result
+     * @param onError called with the exception from <code>compute</code>
+     */
+    public void get(@NonNull K key,
+                    @NonNull IActionR<V> compute,
+                    @NonNull IActionOne<V> onValue,
+                    @NonNull IActionOne<Exception> onError) {
+        final Cell<V> cell = getCell(key);
+
+        if (!cell.claim()) {
+            cell.then(onValue, onError);
+            return;
+        }
+
+        final V value;
+        try {
+            value = compute(key, cell, compute);
+        } catch (Exception e) {
+            Cell.call(onError, e);
+            return;
+        }
+        Cell.call(onValue, value);
+    }
+
+    @NonNull
+    private synchronized Cell<V> getCell(@NonNull K key) {
+        Cell<V> cell = cells.get(key);
+
+        if (cell != null && cell.isExpired(System.nanoTime())) {
+            cells.remove(key);
+            cell = null;
+        }
+        if (cell == null) {
+            cell = new Cell<>();
+            cells.put(key, cell);
+            trimTo(maxEntries);
+        }
+
+        return cell;
+    }
+
+    @NonNull
+    private V compute(@NonNull K key,
+                      @NonNull Cell<V> cell,
+                      @NonNull IActionR<V> compute) throws Exception {
+        final V value;
+
+        try {
+            value = compute.call();
+        } catch (Exception e) {
+            synchronized (this) {
+                if (cells.get(key) == cell) {
+                    cells.remove(key);
+                }
+            }
+            cell.fail(e);
+            throw e;
+        }
+        cell.set(value, ttlNanos == NO_EXPIRY ? NO_EXPIRY : System.nanoTime() + ttlNanos);
+
+        return value;
+    }
+
+    /**
+     * Forget the result for one key
+     *
+     * @param key of the result
+     */
+    public synchronized void invalidate(@NonNull K key) {
+        cells.remove(key);
+    }
+
+    /**
+     * Forget all results
+     */
+    public synchronized void clear() {
+        cells.clear();
+    }
+
+    /**
+     * @return the number of results kept or being computed
+     */
+    public synchronized int size() {
+        return cells.size();
+    }
+
+    private void trimTo(int size) {
+        final Iterator<Cell<V>> iterator = cells.values().iterator();
+
+        while (cells.size() > size && iterator.hasNext()) {
+            iterator.next();
+            iterator.remove();
+        }
+    }
+
+    @Override // ComponentCallbacks2
+    public void onTrimMemory(int level) {
+        if (level >= TRIM_MEMORY_MODERATE || level == TRIM_MEMORY_RUNNING_CRITICAL) {
+            clear();
+        } else if (level >= TRIM_MEMORY_BACKGROUND || level == TRIM_MEMORY_RUNNING_LOW) {
+            synchronized (this) {
+                trimTo(cells.size() / 2);
+            }
+        }
+        RCLog.v(this, "onTrimMemory(" + level + "), " + size() + " results kept");
+    }
+
+    @Override // ComponentCallbacks
+    public void onLowMemory() {
+        clear();
+    }
+
+    @Override // ComponentCallbacks
+    public void onConfigurationChanged(@NonNull Configuration newConfig) {
+    }
+
+    @NonNull
+    @Override // Object
+    public String toString() {
+        return "Memoizer(" + name + ", size=" + size() + ")";
+    }
+
+    /**
+     * A result which is set once, by the thread which claims it
+     */
+    private static final class Cell<V> {
+        @Nullable
+        private Thread owner; // Computing thread, until done
+        @Nullable
+        private V value;
+        @Nullable
+        private Exception error;
+        private long expiresAtNanos;
+        private volatile boolean done;
+        @Nullable
+        private ArrayList<Object> listeners; // onValue, onError pairs of non-blocking waiters. Guarded by this
+
+        boolean isExpired(long nowNanos) {
+            return done && expiresAtNanos != NO_EXPIRY && nowNanos - expiresAtNanos >= 0;
+        }
+
+        /**
+         * @return <code>true</code> if the calling thread should compute the result
+         */
+        synchronized boolean claim() {
+            if (owner != null || done) {
+                return false;
+            }
+            owner = Thread.currentThread();
+
+            return true;
+        }
+
+        void set(@NonNull V value,
+                 long expiresAtNanos) {
+            final ArrayList<Object> l;
+
+            synchronized (this) {
+                this.value = value;
+                this.expiresAtNanos = expiresAtNanos;
+                l = complete();
+            }
+            if (l != null) {
+                for (int i = 0; i < l.size(); i += 2) {
+                    //noinspection unchecked
+                    call((IActionOne<V>) l.get(i), value);
+                }
+            }
+        }
+
+        void fail(@NonNull Exception error) {
+            final ArrayList<Object> l;
+
+            synchronized (this) {
+                this.error = error;
+                l = complete();
+            }
+            if (l != null) {
+                for (int i = 1; i < l.size(); i += 2) {
+                    //noinspection unchecked
+                    call((IActionOne<Exception>) l.get(i), error);
+                }
+            }
+        }
+
+        @Nullable
+        private ArrayList<Object> complete() {
+            final ArrayList<Object> l = listeners;
+
+            owner = null;
+            listeners = null;
+            done = true;
+            notifyAll();
+
+            return l;
+        }
+
+        /**
+         * Call one of the actions when the result is known, on this thread if it is already known
+         */
+        void then(@NonNull IActionOne<V> onValue,
+                  @NonNull IActionOne<Exception> onError) {
+            synchronized (this) {
+                if (!done) {
+                    if (listeners == null) {
+                        listeners = new ArrayList<>(2);
+                    }
+                    listeners.add(onValue);
+                    listeners.add(onError);
+                    return;
+                }
+            }
+            if (error != null) {
+                call(onError, error);
+            } else {
+                //noinspection ConstantConditions
+                call(onValue, value);
+            }
+        }
+
+        static <T> void call(@NonNull IActionOne<T> action,
+                             @NonNull T t) {
+            try {
+                action.call(t);
+            } catch (Exception e) {
+                RCLog.e("Memoizer", "Problem delivering a memoized result: " + t, e);
+            }
+        }
+
+        @NonNull
+        V await() throws Exception {
+            if (!done) {
+                final ICancellationToken cancellationToken = CancellationUtil.current();
+                final IAction<?> wake = () -> {
+                    synchronized (this) {
+                        notifyAll();
+                    }
+                };
+
+                cancellationToken.addOnCancel(wake);
+                try {
+                    synchronized (this) {
+                        if (owner == Thread.currentThread()) {
+                            throw new IllegalStateException("Recursive memoize() of the same key on one thread");
+                        }
+                        while (!done) {
+                            cancellationToken.throwIfCancelled();
+                            wait();
+                        }
+                    }
+                } finally {
+                    cancellationToken.removeOnCancel(wake);
+                }
+            }
+            if (error != null) {
+                throw error;
+            }
+
+            //noinspection ConstantConditions
+            return value;
+        }
+    }
+}
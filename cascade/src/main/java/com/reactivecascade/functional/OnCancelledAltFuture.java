@@ -7,7 +7,6 @@ package com.reactivecascade.functional;
 
 import android.support.annotation.NonNull;
 
-import com.reactivecascade.Async;
 import com.reactivecascade.i.IActionOne;
 import com.reactivecascade.i.IThreadType;
 import com.reactivecascade.i.NotCallOrigin;
@@ -45,8 +44,8 @@ public class OnCancelledAltFuture<T> extends SettableAltFuture<T> {
     public void onCancelled(@NonNull StateCancelled stateCancelled) throws Exception {
         RCLog.d(this, "Handling onCancelled(): " + stateCancelled);
 
-        if (!this.stateAR.compareAndSet(VALUE_NOT_AVAILABLE, stateCancelled) || (Async.USE_FORKED_STATE && !this.stateAR.compareAndSet(FORKED, stateCancelled))) {
-            RCLog.i(this, "Will not onCancelled() because IAltFuture state is already determined: " + stateAR.get());
+        if (!setFinalState(stateCancelled)) {
+            RCLog.i(this, "Will not onCancelled() because IAltFuture state is already determined: " + getState());
             return;
         }
 
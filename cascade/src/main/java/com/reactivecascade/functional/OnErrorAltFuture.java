@@ -8,7 +8,6 @@ package com.reactivecascade.functional;
 import android.support.annotation.NonNull;
 import android.support.annotation.Nullable;
 
-import com.reactivecascade.Async;
 import com.reactivecascade.i.IActionOne;
 import com.reactivecascade.i.IThreadType;
 import com.reactivecascade.i.NotCallOrigin;
@@ -43,8 +42,8 @@ public class OnErrorAltFuture<T> extends SettableAltFuture<T> {
     public void onError(@NonNull StateError stateError) throws Exception {
         RCLog.d(this, "Handling onError(): " + stateError);
 
-        if (!this.stateAR.compareAndSet(VALUE_NOT_AVAILABLE, stateError) || (Async.USE_FORKED_STATE && !this.stateAR.compareAndSet(FORKED, stateError))) {
-            RCLog.i(this, "Will not onError() because IAltFuture state is already determined: " + stateAR.get());
+        if (!setFinalState(stateError)) {
+            RCLog.i(this, "Will not onError() because IAltFuture state is already determined: " + getState());
             return;
         }
 
@@ -0,0 +1,259 @@
+/*
+This file is part of Reactive Cascade which is released under The MIT License.
+See license.md , https://github.com/futurice/cascade and http://reactivecascade.com for details.
+This is open source for the common good. Please contribute improvements by pull request or contact paulirotta@gmail.com
+*/
+package com.reactivecascade.functional;
+
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+
+import com.reactivecascade.i.IActionOne;
+import com.reactivecascade.i.IActionOneR;
+import com.reactivecascade.i.INamed;
+import com.reactivecascade.i.IThreadType;
+import com.reactivecascade.util.RCLog;
+
+import java.util.ArrayList;
+
+/**
+ * A chain of steps which is defined once and then run many times with different inputs
+ * <p>
+ * A chain of {@link IAltFuture}s is built again for each value, with several objects per step. A pipeline
+ * holds the steps and their {@link IThreadType}s once. Each run uses a small context object which is
+ * returned to a pool when the run completes, so running the same pipeline at a high rate allocates
+ * almost nothing for the chain structure. The context itself is queued with {@link IThreadType#run(Runnable)},
+ * so each hop costs only the node of the executor's queue.
+ * <p>
+ * Consecutive steps on the same {@link IThreadType} run one after the other without returning to the queue.
+ * <code><pre>
+ *     Pipeline&lt;String, Bitmap&gt; thumbnail = new Pipeline.Builder&lt;String, String&gt;("thumbnail")
+ *             .map(NET_READ, url -&gt; netUtil.get(url).body().bytes())
+ *             .map(WORKER, bytes -&gt; decode(bytes))
+ *             .build();
+ *
+ *     thumbnail.run(url, bitmap -&gt; ..., e -&gt; ...);
+ * </pre></code>
+ * <p>
+ * Use an {@link IAltFuture} chain instead when you need cancellation, merging, or the other
+ * chain operations. A pipeline only maps a value through its steps.
+ *
+ * @param <IN>  the input of the first step
+ * @param <OUT> the output of the last step
+ */
+public final class Pipeline<IN, OUT> implements INamed {
+    /**
+     * The default maximum number of idle run contexts kept for reuse
+     */
+    public static final int DEFAULT_POOL_SIZE = 16;
+
+    @NonNull
+    private final String name;
+    @NonNull
+    private final IThreadType[] threadTypes;
+    @NonNull
+    private final IActionOneR<Object, Object>[] steps;
+    @NonNull
+    private final Object[] pool; // Idle run contexts. Guarded by this
+    private int pooled = 0;
+
+    private Pipeline(@NonNull Builder<IN, OUT> builder) {
+        this.name = builder.name;
+        this.threadTypes = builder.threadTypes.toArray(new IThreadType[builder.threadTypes.size()]);
+        //noinspection unchecked
+        this.steps = builder.steps.toArray(new IActionOneR[builder.steps.size()]);
+        this.pool = new Object[builder.poolSize];
+    }
+
+    @NonNull
+    @Override // INamed
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * Run the pipeline once
+     * <p>
+     * The first step starts on its {@link IThreadType}. This method does not block.
+     *
+     * @param in       the input of the first step
+     * @param onResult called with the output of the last step, on the thread of the last step
+     * @param onError  called if a step throws, on the thread of that step. If <code>null</code>, the problem is logged.
+     */
+    public void run(@NonNull IN in,
+                    @NonNull IActionOne<OUT> onResult,
+                    @Nullable IActionOne<Exception> onError) {
+        final Run run = obtain();
+
+        run.value = in;
+        run.step = 0;
+        run.onResult = onResult;
+        run.onError = onError;
+        threadTypes[0].run(run);
+    }
+
+    @NonNull
+    @SuppressWarnings("unchecked")
+    private Run obtain() {
+        synchronized (this) {
+            if (pooled > 0) {
+                final Run run = (Run) pool[--pooled];
+
+                pool[pooled] = null;
+                return run;
+            }
+        }
+
+        return new Run();
+    }
+
+    private void recycle(@NonNull Run run) {
+        run.value = null;
+        run.onResult = null;
+        run.onError = null;
+        synchronized (this) {
+            if (pooled < pool.length) {
+                pool[pooled++] = run;
+            }
+        }
+    }
+
+    @NonNull
+    @Override // Object
+    public String toString() {
+        return "Pipeline(" + name + ", " + steps.length + " steps)";
+    }
+
+    /**
+     * The reusable state of one run: the current value and the index of the next step
+     */
+    private final class Run implements Runnable {
+        @Nullable
+        Object value;
+        int step;
+        @Nullable
+        IActionOne<OUT> onResult;
+        @Nullable
+        IActionOne<Exception> onError;
+
+        @Override // Runnable
+        @SuppressWarnings("unchecked")
+        public void run() {
+            final IActionOne<OUT> result = onResult;
+            final IActionOne<Exception> error = onError;
+            Object v = value;
+            int i = step;
+
+            try {
+                do {
+                    v = steps[i].call(v);
+                    i++;
+                }
+                while (i < steps.length && threadTypes[i] == threadTypes[i - 1]); // Same thread type, continue without a queue hop
+            } catch (Exception e) {
+                recycle(this);
+                fail(error, e);
+                return;
+            }
+
+            if (i < steps.length) {
+                value = v;
+                step = i;
+                threadTypes[i].run(this);
+                return;
+            }
+
+            recycle(this);
+            try {
+                result.call((OUT) v);
+            } catch (Exception e) {
+                fail(error, e);
+            }
+        }
+
+        private void fail(@Nullable IActionOne<Exception> error,
+                          @NonNull Exception e) {
+            if (error == null) {
+                RCLog.e(Pipeline.this, "Problem in pipeline " + name, e);
+                return;
+            }
+            try {
+                error.call(e);
+            } catch (Exception e2) {
+                RCLog.e(Pipeline.this, "Problem in pipeline " + name + " lead to another problem in onError", e2);
+            }
+        }
+    }
+
+    /**
+     * Define the steps of a {@link Pipeline}
+     *
+     * @param <IN>  the input of the first step
+     * @param <OUT> the output of the last step added so far
+     */
+    public static final class Builder<IN, OUT> {
+        @NonNull
+        private final String name;
+        @NonNull
+        private final ArrayList<IThreadType> threadTypes = new ArrayList<>();
+        @NonNull
+        private final ArrayList<IActionOneR<?, ?>> steps = new ArrayList<>();
+        private int poolSize = DEFAULT_POOL_SIZE;
+
+        /**
+         * Start defining a pipeline
+         *
+         * @param name the descriptive debug name of the pipeline
+         */
+        public Builder(@NonNull String name) {
+            this.name = name;
+        }
+
+        /**
+         * Add a step
+         *
+         * @param threadType on which the step runs
+         * @param action     the step, which receives the output of the previous step
+         * @param <NEXT>     the output of the step
+         * @return this builder, now producing the output of this step
+         */
+        @NonNull
+        @SuppressWarnings("unchecked")
+        public <NEXT> Builder<IN, NEXT> map(@NonNull IThreadType threadType,
+                                            @NonNull IActionOneR<OUT, NEXT> action) {
+            threadTypes.add(threadType);
+            steps.add(action);
+
+            return (Builder<IN, NEXT>) this;
+        }
+
+        /**
+         * Set the maximum number of idle run contexts kept for reuse. Set this to about the number of
+         * runs you expect to be active at the same time.
+         *
+         * @param poolSize the maximum, or 0 for no reuse
+         * @return this builder
+         */
+        @NonNull
+        public Builder<IN, OUT> setPoolSize(int poolSize) {
+            if (poolSize < 0) {
+                throw new IllegalArgumentException("Pool size can not be negative: " + poolSize);
+            }
+            this.poolSize = poolSize;
+
+            return this;
+        }
+
+        /**
+         * @return the pipeline. The builder should not be used after this.
+         */
+        @NonNull
+        public Pipeline<IN, OUT> build() {
+            if (steps.isEmpty()) {
+                throw new IllegalStateException("A pipeline needs at least one step: " + name);
+            }
+
+            return new Pipeline<>(this);
+        }
+    }
+}
@@ -16,9 +16,11 @@ import com.reactivecascade.i.IAltFuture;
 import com.reactivecascade.i.IBaseAction;
 import com.reactivecascade.i.IRunnableAltFuture;
 import com.reactivecascade.i.IThreadType;
+import com.reactivecascade.i.ITracer;
 import com.reactivecascade.i.NotCallOrigin;
 import com.reactivecascade.util.AssertUtil;
 import com.reactivecascade.util.RCLog;
+import com.reactivecascade.util.TraceUtil;
 
 import java.util.concurrent.CancellationException;
 
@@ -172,7 +174,7 @@ public class RunnableAltFuture<IN, OUT> extends AbstractAltFuture<IN, OUT> imple
 //    @Override // IAltFuture
 //    public boolean cancel(@NonNull  final String reason) {
 //        assertNotDone();
-//        final Object state = stateAR.get();
+//        final Object state = getState();
 //
 //        if (state instanceof AltFutureStateCancelled) {
 //            RCLog.d(this, mOrigin, "Ignoring cancel (reason=" + reason + ") since already in StateError\nstate=" + state);
@@ -200,16 +202,17 @@ public class RunnableAltFuture<IN, OUT> extends AbstractAltFuture<IN, OUT> imple
     public final void run() {
         boolean stateChanged = false;
 
+        TraceUtil.trace(ITracer.START, this, threadType, getChainId());
         try {
             if (isCancelled()) {
-                RCLog.d(this, "RunnableAltFuture was cancelled before execution. state=" + stateAR.get());
-                throw new CancellationException("Cancelled before execution started: " + stateAR.get().toString());
+                RCLog.d(this, "RunnableAltFuture was cancelled before execution. state=" + getState());
+                throw new CancellationException("Cancelled before execution started: " + getState().toString());
             }
-            final OUT out = mAction.call();
+            final OUT out = callAction();
 
-            if (!(stateAR.compareAndSet(VALUE_NOT_AVAILABLE, out) || stateAR.compareAndSet(FORKED, out))) {
-                RCLog.d(this, "RunnableAltFuture was cancelled() or otherwise changed during execution. Returned from of function is ignored, but any direct side-effects not cooperatively stopped or rolled back in mOnError()/onCatch() are still in effect. state=" + stateAR.get());
-                throw new CancellationException(stateAR.get().toString());
+            if (!setFinalState(out)) {
+                RCLog.d(this, "RunnableAltFuture was cancelled() or otherwise changed during execution. Returned from of function is ignored, but any direct side-effects not cooperatively stopped or rolled back in mOnError()/onCatch() are still in effect. state=" + getState());
+                throw new CancellationException(getState().toString());
             }
             stateChanged = true;
         } catch (CancellationException e) {
@@ -220,11 +223,12 @@ public class RunnableAltFuture<IN, OUT> extends AbstractAltFuture<IN, OUT> imple
         } catch (Exception e) {
             AltFutureStateError stateError = new AltFutureStateError("RunnableAltFuture run problem", e);
 
-            if (!(stateAR.compareAndSet(VALUE_NOT_AVAILABLE, stateError) && !(stateAR.compareAndSet(FORKED, stateError)))) {
+            if (!setFinalState(stateError)) {
                 RCLog.i(this, "RunnableAltFuture had a problem, but can not transition to stateError as the state has already changed. This is either a logic error or a possible but rare legitimate cancel() race condition: " + e);
                 stateChanged = true;
             }
         } finally {
+            TraceUtil.trace(ITracer.END, this, threadType, getChainId());
             if (stateChanged) {
                 if (!isDone()) {
                     RCLog.e(this, "Not done");
@@ -232,18 +236,27 @@ public class RunnableAltFuture<IN, OUT> extends AbstractAltFuture<IN, OUT> imple
                 try {
                     doThen();
                 } catch (Exception e) {
-                    RCLog.e(this, "RunnableAltFuture.run() state=" + stateAR.get() + "\nProblem in resulting .doThen()", e);
+                    RCLog.e(this, "RunnableAltFuture.run() state=" + getState() + "\nProblem in resulting .doThen()", e);
                 }
 
                 try {
                     clearPreviousAltFuture(); // Allow garbage collect of past values as the chain burns
                 } catch (Exception e) {
-                    RCLog.e(this, "RunnableAltFuture.run() state=\" + stateAR.get() + \"\nCan not clearPreviousAltFuture()", e);
+                    RCLog.e(this, "RunnableAltFuture.run() state=\" + getState() + \"\nCan not clearPreviousAltFuture()", e);
                 }
             }
         }
     }
 
+    @NotCallOrigin
+    private OUT callAction() throws Exception {
+        try {
+            return callInContext(mAction);
+        } finally {
+            exitContext();
+        }
+    }
+
     /**
      * Called from {@link AbstractAltFuture#fork()} if preconditions for forking are met.
      * <p>
@@ -252,6 +265,7 @@ public class RunnableAltFuture<IN, OUT> extends AbstractAltFuture<IN, OUT> imple
     @CallSuper
     @NotCallOrigin
     protected void doFork() {
+        TraceUtil.trace(ITracer.ENQUEUE, this, threadType, getChainId());
         this.threadType.fork(this);
     }
 }
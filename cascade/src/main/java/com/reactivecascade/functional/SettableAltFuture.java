@@ -6,6 +6,7 @@ This is open source for the common good. Please contribute improvements by pull
 package com.reactivecascade.functional;
 
 import android.support.annotation.NonNull;
+import android.util.Log;
 
 import com.reactivecascade.i.IAltFuture;
 import com.reactivecascade.i.ISettableAltFuture;
@@ -56,10 +57,13 @@ public class SettableAltFuture<T> extends AbstractAltFuture<T, T> implements ISe
 
     @Override // ISettable
     public void set(@NonNull T value) {
-        if (stateAR.compareAndSet(VALUE_NOT_AVAILABLE, value) || stateAR.compareAndSet(FORKED, value)) {
+        if (setFinalState(value)) {
             // Previous state was FORKED, so set completes the mOnFireAction and continues the chain
-            RCLog.v(this, "SettableAltFuture set, from= " + value);
+            if (RCLog.isLoggable(Log.VERBOSE)) {
+                RCLog.v(this, "SettableAltFuture set, from= " + value);
+            }
             doFork();
+            doThen(); // Downchain actions added before the value was set
             clearPreviousAltFuture();
             return;
         }
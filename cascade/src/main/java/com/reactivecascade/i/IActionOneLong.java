@@ -0,0 +1,19 @@
+/*
+This file is part of Reactive Cascade which is released under The MIT License.
+See license.md , https://github.com/futurice/cascade and http://reactivecascade.com for details.
+This is open source for the common good. Please contribute improvements by pull request or contact paulirotta@gmail.com
+*/
+package com.reactivecascade.i;
+
+/**
+ * An {@link IActionOne} which receives a primitive <code>long</code> without boxing
+ */
+public interface IActionOneLong extends IBaseAction<Long> {
+    /**
+     * Execute the action
+     *
+     * @param in input
+     * @throws Exception to report an error
+     */
+    void call(long in) throws Exception;
+}
@@ -9,6 +9,7 @@ import android.support.annotation.CheckResult;
 import android.support.annotation.NonNull;
 import android.support.annotation.Nullable;
 
+import com.reactivecascade.functional.Memoizer;
 import com.reactivecascade.functional.RunnableAltFuture;
 
 import java.util.concurrent.Future;
@@ -243,6 +244,25 @@ public interface IAltFuture<IN, OUT> extends ICancellable, ISafeGettable<OUT>, I
     @SuppressWarnings("unchecked")
     <DOWNCHAIN_OUT> IAltFuture<OUT, DOWNCHAIN_OUT>[] map(@NonNull IActionOneR<OUT, DOWNCHAIN_OUT>... actions);
 
+    /**
+     * Map with an expensive pure function, reusing the result from an earlier chain with the same key
+     * <p>
+     * If another chain is computing the same key at the same time, this continues with that result rather than
+     * computing it again. No thread is blocked while waiting. The {@link com.reactivecascade.functional.Memoizer} decides how long results are kept.
+     *
+     * @param keyFn           the key of the input value, for example a URL or file name
+     * @param memoizer        the results, shared by all chains which memoize the same function
+     * @param action          the pure function
+     * @param <K>             the key type
+     * @param <DOWNCHAIN_OUT> the type that the OUT value will be mapped to
+     * @return an alt future value representing the eventual output from the mapping function
+     */
+    @NonNull
+    @CheckResult(suggest = IAltFuture.CHECK_RESULT_SUGGESTION)
+    <K, DOWNCHAIN_OUT> IAltFuture<OUT, DOWNCHAIN_OUT> memoize(@NonNull IActionOneR<OUT, K> keyFn,
+                                                             @NonNull Memoizer<K, DOWNCHAIN_OUT> memoizer,
+                                                             @NonNull IActionOneR<OUT, DOWNCHAIN_OUT> action);
+
     /**
      * Pause execution of this chain for a fixed time interval. Other chains will be able to execute
      * in the meanwhile- no threads are blocked.
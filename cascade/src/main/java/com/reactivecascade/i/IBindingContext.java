@@ -12,6 +12,10 @@ import android.support.annotation.NonNull;
  * <p>
  * The lifecycle starts as connected and may disconnect atomically after which point more results
  * will not start. Within any single thread, no new results will be returned after unbinding
+ * <p>
+ * While open, the context may also be paused and resumed, for example when a screen is temporarily
+ * hidden. Reactive chains bound with {@link IReactiveSource#bind(IBindingContext)} suspend while the
+ * context is paused and detach when it closes.
  *
  * @param <T> the type of object which will control the opening and closing of this binding context
  */
@@ -23,6 +27,20 @@ public interface IBindingContext<T> {
      */
     boolean isOpen();
 
+    /**
+     * Check if temporarily paused
+     *
+     * @return <code>true</code> if {@link #pauseBindingContext(Object)} has been called and the context has not since resumed or closed
+     */
+    boolean isPaused();
+
+    /**
+     * Check if the context has ended
+     *
+     * @return <code>true</code> if {@link #closeBindingContext(Object)} has been called and the context has not since opened again
+     */
+    boolean isClosed();
+
     /**
      * Trigger start of all binding context actions
      *
@@ -36,6 +54,20 @@ public interface IBindingContext<T> {
      */
     void closeBindingContext(T t);
 
+    /**
+     * Temporarily suspend binding context actions. This has no effect if the context is not open.
+     *
+     * @param t the type of object controlling this binding's lifecycle
+     */
+    void pauseBindingContext(T t);
+
+    /**
+     * Continue binding context actions after {@link #pauseBindingContext(Object)}
+     *
+     * @param t the type of object controlling this binding's lifecycle
+     */
+    void resumeBindingContext(T t);
+
     /**
      * Add an action to be performed synchronously before the binding context open finishes
      *
@@ -49,4 +81,26 @@ public interface IBindingContext<T> {
      * @param action performed when binding ends
      */
     void onClose(@NonNull IActionOne<T> action);
+
+    /**
+     * Add an action to be performed synchronously before the binding context pause finishes
+     *
+     * @param action performed when binding pauses
+     */
+    void onPause(@NonNull IActionOne<T> action);
+
+    /**
+     * Add an action to be performed synchronously before the binding context resume finishes
+     *
+     * @param action performed when binding resumes
+     */
+    void onResume(@NonNull IActionOne<T> action);
+
+    /**
+     * Stop performing an action added with {@link #onOpen(IActionOne)}, {@link #onClose(IActionOne)},
+     * {@link #onPause(IActionOne)} or {@link #onResume(IActionOne)}
+     *
+     * @param action to remove
+     */
+    void removeAction(@NonNull IActionOne<T> action);
 }
@@ -0,0 +1,81 @@
+/*
+This file is part of Reactive Cascade which is released under The MIT License.
+See license.md , https://github.com/futurice/cascade and http://reactivecascade.com for details.
+This is open source for the common good. Please contribute improvements by pull request or contact paulirotta@gmail.com
+*/
+package com.reactivecascade.i;
+
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+import android.support.annotation.WorkerThread;
+
+/**
+ * One level of a {@link com.reactivecascade.util.TieredCache}, such as memory or disk
+ * <p>
+ * If {@link #getThreadType()} is not <code>null</code>, all other methods except {@link #getName()},
+ * {@link #setOnEvictListener(IActionTwo)} and {@link #getEvictionCount()} must be called only from that thread type.
+ *
+ * @param <K> key type
+ * @param <V> value type
+ */
+public interface ICacheTier<K, V> extends INamed {
+    /**
+     * @return the thread type on which this tier is read and written, or <code>null</code> if this tier
+     * is fast and thread safe and may be used from any thread
+     */
+    @Nullable
+    IThreadType getThreadType();
+
+    /**
+     * Read a cached value
+     *
+     * @param key of the value
+     * @return the value, or <code>null</code> if it is not in this tier
+     * @throws Exception if the tier can not be read. This is treated as a miss.
+     */
+    @WorkerThread
+    @Nullable
+    V read(@NonNull K key) throws Exception;
+
+    /**
+     * Add or replace a cached value. Other values may be evicted to make space.
+     *
+     * @param key   of the value
+     * @param value to cache
+     * @throws Exception if the tier can not be written
+     */
+    @WorkerThread
+    void write(@NonNull K key,
+               @NonNull V value) throws Exception;
+
+    /**
+     * Remove a cached value. This is not an eviction.
+     *
+     * @param key of the value
+     * @throws Exception if the tier can not be written
+     */
+    @WorkerThread
+    void remove(@NonNull K key) throws Exception;
+
+    /**
+     * Remove all cached values. These are not evictions.
+     *
+     * @throws Exception if the tier can not be written
+     */
+    @WorkerThread
+    void clear() throws Exception;
+
+    /**
+     * Set the action to call when a value is evicted to make space
+     * <p>
+     * A tier may need to read an evicted value back to pass it on, so set this only if the value is used.
+     *
+     * @param onEvict called with the key and value, on the thread which caused the eviction, or <code>null</code> to stop notification
+     */
+    void setOnEvictListener(@Nullable IActionTwo<K, V> onEvict);
+
+    /**
+     * @return the number of values evicted to make space, whether or not a listener is set
+     */
+    long getEvictionCount();
+}
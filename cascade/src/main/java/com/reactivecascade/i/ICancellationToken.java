@@ -0,0 +1,50 @@
+/*
+This file is part of Reactive Cascade which is released under The MIT License.
+See license.md , https://github.com/futurice/cascade and http://reactivecascade.com for details.
+This is open source for the common good. Please contribute improvements by pull request or contact paulirotta@gmail.com
+*/
+package com.reactivecascade.i;
+
+import android.support.annotation.NonNull;
+
+import java.util.concurrent.CancellationException;
+
+/**
+ * The view of an {@link ICancellable} which is given to the code doing the work, so that running work
+ * can stop early when cancelled
+ * <p>
+ * Get the token of the running chain step with {@link com.reactivecascade.util.CancellationUtil#current()}.
+ * CPU-bound loops can poll {@link #isCancelled()}, which is a single volatile read. Blocking operations
+ * such as network calls and file streams can {@link #addOnCancel(IAction)} an action which aborts them.
+ */
+public interface ICancellationToken {
+    /**
+     * @return <code>true</code> if the work has been cancelled and should stop
+     */
+    boolean isCancelled();
+
+    /**
+     * Stop the current work if it has been cancelled
+     *
+     * @throws CancellationException if {@link #isCancelled()}
+     */
+    void throwIfCancelled() throws CancellationException;
+
+    /**
+     * Add an action to perform when cancelled, for example to abort a network call or close a stream
+     * <p>
+     * The action is called on the thread which cancels. If already cancelled, the action is called now.
+     * Actions are released when the work completes, or earlier with {@link #removeOnCancel(IAction)}.
+     *
+     * @param onCancel the action
+     * @return <code>false</code> if already cancelled and the action has been called
+     */
+    boolean addOnCancel(@NonNull IAction<?> onCancel);
+
+    /**
+     * Remove an action added with {@link #addOnCancel(IAction)}, for example because the operation it aborts has finished
+     *
+     * @param onCancel the action
+     */
+    void removeOnCancel(@NonNull IAction<?> onCancel);
+}
@@ -0,0 +1,42 @@
+/*
+This file is part of Reactive Cascade which is released under The MIT License.
+See license.md , https://github.com/futurice/cascade and http://reactivecascade.com for details.
+This is open source for the common good. Please contribute improvements by pull request or contact paulirotta@gmail.com
+*/
+package com.reactivecascade.i;
+
+import android.support.annotation.NonNull;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+/**
+ * Convert values of one type to and from a compact binary form, for example for
+ * {@link com.reactivecascade.reactive.PersistentValue}
+ * <p>
+ * Register custom codecs with {@link com.reactivecascade.util.CodecUtil#register(Class, ICodec)}
+ *
+ * @param <T> value type
+ */
+public interface ICodec<T> {
+    /**
+     * Write a value
+     *
+     * @param value to write
+     * @param out   destination
+     * @throws IOException if the value can not be written
+     */
+    void encode(@NonNull T value,
+                @NonNull DataOutput out) throws IOException;
+
+    /**
+     * Read a value written by {@link #encode(Object, DataOutput)}
+     *
+     * @param in source
+     * @return the value
+     * @throws IOException if the value can not be read
+     */
+    @NonNull
+    T decode(@NonNull DataInput in) throws IOException;
+}
@@ -0,0 +1,32 @@
+/*
+This file is part of Reactive Cascade which is released under The MIT License.
+See license.md , https://github.com/futurice/cascade and http://reactivecascade.com for details.
+This is open source for the common good. Please contribute improvements by pull request or contact paulirotta@gmail.com
+*/
+package com.reactivecascade.i;
+
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+
+/**
+ * A destination for the log lines produced by {@link com.reactivecascade.util.RCLog}
+ * <p>
+ * Implementations may be called concurrently from any thread, including hot paths. They should return
+ * quickly and must not call back into {@link com.reactivecascade.util.RCLog}.
+ * <p>
+ * In production builds only errors are sent, see {@link com.reactivecascade.util.RCLog#e(Object, String, Throwable)}
+ */
+public interface ILog {
+    /**
+     * Output one log line
+     *
+     * @param priority an {@link android.util.Log} priority such as {@link android.util.Log#VERBOSE}
+     * @param tag      the tag, already formatted for display
+     * @param message  the message, already formatted for display
+     * @param t        an optional error related to this message
+     */
+    void log(int priority,
+             @NonNull String tag,
+             @NonNull String message,
+             @Nullable Throwable t);
+}
@@ -0,0 +1,61 @@
+/*
+This file is part of Reactive Cascade which is released under The MIT License.
+See license.md , https://github.com/futurice/cascade and http://reactivecascade.com for details.
+This is open source for the common good. Please contribute improvements by pull request or contact paulirotta@gmail.com
+*/
+package com.reactivecascade.i;
+
+import android.support.annotation.NonNull;
+import android.support.annotation.WorkerThread;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A replica which is kept up to date by a {@link com.reactivecascade.util.MirrorService}
+ * <p>
+ * The mirror remembers the sequence number of the last change it applied. A sync sends only the changes
+ * after that sequence number. All methods except {@link #getName()} and {@link #getWriteThreadType()} are
+ * called only from {@link #getWriteThreadType()}.
+ *
+ * @param <K> key type
+ * @param <V> value type
+ */
+public interface IMirror<K, V> extends INamed {
+    /**
+     * @return the thread type on which changes are written to this mirror. This is usually single threaded.
+     */
+    @NonNull
+    IThreadType getWriteThreadType();
+
+    /**
+     * @return the sequence number of the last change applied, or 0 if the mirror is empty or new.
+     * A durable mirror should keep this with its values, so that after a restart only newer changes are sent.
+     * @throws Exception if the mirror can not be read
+     */
+    @WorkerThread
+    long getSequence() throws Exception;
+
+    /**
+     * Apply one batch of changes. Afterwards {@link #getSequence()} must return <code>sequence</code>.
+     * A durable mirror should store the values and the sequence number together.
+     *
+     * @param puts     values added or changed, in sequence order
+     * @param deletes  keys removed. A key may be removed which the mirror does not have.
+     * @param sequence the sequence number of the last change in this batch
+     * @throws Exception if the mirror can not be written. The same changes will be sent again on the next sync.
+     */
+    @WorkerThread
+    void write(@NonNull Map<K, V> puts,
+               @NonNull List<K> deletes,
+               long sequence) throws Exception;
+
+    /**
+     * Remove all values and set {@link #getSequence()} to 0. This is called before a full copy when
+     * the mirror is too far behind for a delta.
+     *
+     * @throws Exception if the mirror can not be written
+     */
+    @WorkerThread
+    void clear() throws Exception;
+}
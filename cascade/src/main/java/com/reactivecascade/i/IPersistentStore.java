@@ -0,0 +1,78 @@
+/*
+This file is part of Reactive Cascade which is released under The MIT License.
+See license.md , https://github.com/futurice/cascade and http://reactivecascade.com for details.
+This is open source for the common good. Please contribute improvements by pull request or contact paulirotta@gmail.com
+*/
+package com.reactivecascade.i;
+
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+import android.support.annotation.WorkerThread;
+
+import java.util.Map;
+
+/**
+ * A key-value storage backend for {@link com.reactivecascade.reactive.PersistentValue}
+ * <p>
+ * Implementations are not required to be thread safe. All methods except {@link #getThreadType()} must
+ * be called only from {@link #getThreadType()}
+ */
+public interface IPersistentStore {
+    /**
+     * @return the single-threaded {@link IThreadType} on which all reads and writes are done
+     */
+    @NonNull
+    IThreadType getThreadType();
+
+    /**
+     * Load the storage into memory, if the implementation caches, so that following reads are fast
+     *
+     * @throws Exception if the storage can not be read
+     */
+    @WorkerThread
+    void preload() throws Exception;
+
+    /**
+     * Read a stored value
+     *
+     * @param key          unique key
+     * @param defaultValue returned if nothing has been stored for this key. The class of this object is also the class of the value returned
+     * @param <T>          value type
+     * @return the stored value, or the default value
+     * @throws Exception if the storage can not be read
+     */
+    @WorkerThread
+    @NonNull
+    <T> T read(@NonNull String key,
+               @NonNull T defaultValue) throws Exception;
+
+    /**
+     * Store a value. It is durable when this method returns.
+     *
+     * @param key   unique key
+     * @param value to store
+     * @throws Exception if the storage can not be written
+     */
+    @WorkerThread
+    void write(@NonNull String key,
+               @NonNull Object value) throws Exception;
+
+    /**
+     * Store several values in one commit. They are durable when this method returns.
+     *
+     * @param values key-value pairs to store
+     * @throws Exception if the storage can not be written. Some of the values may have been stored.
+     */
+    @WorkerThread
+    void write(@NonNull Map<String, ?> values) throws Exception;
+
+    /**
+     * Set the action to notify when a stored value is changed by means other than {@link #write(String, Object)},
+     * for example by another component sharing the same storage. Some implementations also notify after
+     * their own writes.
+     *
+     * @param onChangeListener called with the changed key on {@link #getThreadType()}, or <code>null</code> to stop notification
+     */
+    @WorkerThread
+    void setOnChangeListener(@Nullable IActionOne<String> onChangeListener);
+}
@@ -6,6 +6,7 @@ This is open source for the common good. Please contribute improvements by pull
 package com.reactivecascade.i;
 
 import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
 
 /**
  * An object you can bind _from_ to receive updates each time this object decides to emit them.
@@ -200,4 +201,115 @@ public interface IReactiveSource<OUT> extends INamed {
      */
     @NonNull
     IReactiveSource<OUT> subscribe(@NonNull IReactiveTarget<OUT> reactiveTarget);
+
+    /**
+     * Add a down-chain branch which passes the first value and then drops values until the window has passed
+     * <p>
+     * Use this to ignore repeated clicks or other bursts where the first value matters.
+     *
+     * @param windowMillis how long to drop values after one is passed
+     * @return the new down-chain node
+     */
+    @NonNull
+    IReactiveSource<OUT> throttleFirst(long windowMillis);
+
+    /**
+     * Add a down-chain branch which passes the most recent value at the end of each period in which there were values
+     *
+     * @param periodMillis how often to pass a value while values are arriving
+     * @return the new down-chain node
+     */
+    @NonNull
+    IReactiveSource<OUT> throttleLast(long periodMillis);
+
+    /**
+     * The same as {@link #throttleLast(long)}
+     *
+     * @param periodMillis how often to pass a value while values are arriving
+     * @return the new down-chain node
+     */
+    @NonNull
+    IReactiveSource<OUT> sample(long periodMillis);
+
+    /**
+     * Add a down-chain branch which passes the most recent value once no values have arrived for the quiet period
+     * <p>
+     * Use this for example with type-ahead search so that a network request is made only when the user pauses typing.
+     *
+     * @param quietMillis how long values must stop arriving before the most recent one is passed
+     * @return the new down-chain node
+     */
+    @NonNull
+    IReactiveSource<OUT> debounce(long quietMillis);
+
+    /**
+     * Do not fire down-chain when the output of this node is equal to its previous output
+     *
+     * @return this node
+     */
+    @NonNull
+    IReactiveSource<OUT> distinctUntilChanged();
+
+    /**
+     * Do not fire down-chain when the output of this node is the same as its previous output
+     *
+     * @param equality returns <code>true</code> if the new output (second parameter) is the same as the previous output (first parameter), or
+     *                 <code>null</code> to fire every output
+     * @return this node
+     */
+    @NonNull
+    IReactiveSource<OUT> distinctUntilChanged(@Nullable IActionTwoR<OUT, OUT, Boolean> equality);
+
+    /**
+     * Bind this node to a lifecycle
+     * <p>
+     * While the binding context is not open or is paused, values are not processed. The most recent value
+     * is kept, or all values in {@link com.reactivecascade.reactive.Subscription#setFireEveryValue(int)} mode,
+     * and processed when the context opens or resumes. When the context closes this node detaches from the
+     * up-chain nodes so that this branch of the reactive chain stops and can be garbage collected.
+     *
+     * @param bindingContext the lifecycle, for example {@link com.reactivecascade.util.BindingContextUtil.AsyncFragment#getStartStopBindingContext()}
+     * @return this node
+     * @throws IllegalStateException if this node is already bound
+     */
+    @NonNull
+    IReactiveSource<OUT> bind(@NonNull IBindingContext<?> bindingContext);
+
+    /**
+     * Add an action as a new branch down-chain from this node, bound to a lifecycle with {@link #bind(IBindingContext)}
+     *
+     * @param bindingContext the lifecycle of the new branch
+     * @param action
+     * @return the new down-chain node
+     */
+    @NonNull
+    IReactiveSource<OUT> subscribe(@NonNull IBindingContext<?> bindingContext,
+                                   @NonNull IActionOne<OUT> action);
+
+    /**
+     * Add an action as a new branch down-chain from this node, bound to a lifecycle with {@link #bind(IBindingContext)}
+     *
+     * @param bindingContext the lifecycle of the new branch
+     * @param threadType     where the action runs
+     * @param action
+     * @return the new down-chain node
+     */
+    @NonNull
+    IReactiveSource<OUT> subscribe(@NonNull IBindingContext<?> bindingContext,
+                                   @NonNull IThreadType threadType,
+                                   @NonNull IActionOne<OUT> action);
+
+    /**
+     * Add a mapping as a new branch down-chain from this node, bound to a lifecycle with {@link #bind(IBindingContext)}
+     *
+     * @param bindingContext  the lifecycle of the new branch
+     * @param threadType      where the action runs
+     * @param action
+     * @param <DOWNCHAIN_OUT>
+     * @return the new down-chain node
+     */
+    @NonNull
+    <DOWNCHAIN_OUT> IReactiveSource<DOWNCHAIN_OUT> subscribeMap(@NonNull IBindingContext<?> bindingContext,
+                                                                @NonNull IThreadType threadType,
+                                                                @NonNull IActionOneR<OUT, DOWNCHAIN_OUT> action);
 }
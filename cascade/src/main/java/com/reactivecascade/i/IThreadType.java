@@ -52,6 +52,10 @@ public interface IThreadType extends INamed {
     /**
      * Execute a runnable. Generally this is an action that has already been error-catch wrapped using for example
      * {@link #wrapActionWithErrorProtection(IAction)}
+     * <p>
+     * The runnable is queued as is, without allocating a wrapper. An exception it throws is not caught
+     * and reaches the thread's uncaught exception handler, so the runnable must catch its own errors.
+     * Use {@link #execute(IAction)} for an action which is not already protected.
      *
      * @param runnable
      */
@@ -0,0 +1,51 @@
+/*
+This file is part of Reactive Cascade which is released under The MIT License.
+See license.md , https://github.com/futurice/cascade and http://reactivecascade.com for details.
+This is open source for the common good. Please contribute improvements by pull request or contact paulirotta@gmail.com
+*/
+package com.reactivecascade.i;
+
+import android.support.annotation.NonNull;
+
+/**
+ * Receive chain execution events to find where the time goes in asynchronous chains
+ * <p>
+ * Set with {@link com.reactivecascade.AsyncBuilder#setTracer(ITracer)}. When no tracer is set each
+ * trace point costs a single branch.
+ * <p>
+ * Implementations are called concurrently from any thread and must return quickly.
+ */
+public interface ITracer {
+    /**
+     * {@link IAltFuture#fork()} or {@link IReactiveTarget#fire(Object)} was called
+     */
+    int FORK = 0;
+
+    /**
+     * The work was placed in the {@link IThreadType} queue
+     */
+    int ENQUEUE = 1;
+
+    /**
+     * The work started on the current thread
+     */
+    int START = 2;
+
+    /**
+     * The work ended on the current thread
+     */
+    int END = 3;
+
+    /**
+     * Record one event on the current thread
+     *
+     * @param event      {@link #FORK}, {@link #ENQUEUE}, {@link #START} or {@link #END}
+     * @param source     the {@link IAltFuture} or {@link IReactiveTarget} which this event is about
+     * @param threadType where the source executes
+     * @param chainId    shared by all links in one chain
+     */
+    void trace(int event,
+               @NonNull Object source,
+               @NonNull IThreadType threadType,
+               long chainId);
+}
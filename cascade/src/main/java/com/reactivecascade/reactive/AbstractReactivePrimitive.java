@@ -0,0 +1,170 @@
+/*
+This file is part of Reactive Cascade which is released under The MIT License.
+See license.md , https://github.com/futurice/cascade and http://reactivecascade.com for details.
+This is open source for the common good. Please contribute improvements by pull request or contact paulirotta@gmail.com
+*/
+package com.reactivecascade.reactive;
+
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+
+import com.reactivecascade.i.IAction;
+import com.reactivecascade.i.IActionOne;
+import com.reactivecascade.i.IActionR;
+import com.reactivecascade.i.IBaseAction;
+import com.reactivecascade.i.INamed;
+import com.reactivecascade.i.IReactiveSource;
+import com.reactivecascade.i.IThreadType;
+import com.reactivecascade.util.RCLog;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static com.reactivecascade.Async.UI;
+
+/**
+ * Shared subscriber management for reactive values which hold a primitive, such as {@link ReactiveIntValue}
+ * <p>
+ * Updates do not allocate. Each subscriber is queued at most once at a time on its {@link IThreadType}
+ * and receives the latest value when it runs, so intermediate values are skipped when they arrive
+ * faster than the subscriber can process them. This is the same merge behaviour as {@link Subscription}.
+ */
+public abstract class AbstractReactivePrimitive implements INamed {
+    private static final PrimitiveSubscription[] NO_SUBSCRIPTIONS = new PrimitiveSubscription[0];
+
+    @NonNull
+    protected final IThreadType mThreadType;
+    @NonNull
+    protected final IActionOne<Exception> mOnError;
+    @NonNull
+    private final String name;
+    @NonNull
+    private volatile PrimitiveSubscription[] subscriptions = NO_SUBSCRIPTIONS; // Copy on write so that fire() does not allocate an iterator
+    @Nullable
+    private ReactiveValue<?> reactiveSource; // Created by the first getReactiveSource(). Guarded by this
+
+    /**
+     * Create a new value
+     *
+     * @param name       the descriptive debug name of this value
+     * @param threadType the default thread group on which subscribers are notified. If <code>null</code>, {@link com.reactivecascade.Async#UI}
+     * @param onError    optional action to perform if a subscriber throws an exception
+     */
+    protected AbstractReactivePrimitive(@NonNull String name,
+                                        @Nullable IThreadType threadType,
+                                        @Nullable IActionOne<Exception> onError) {
+        this.name = name;
+        this.mThreadType = threadType != null ? threadType : UI;
+        this.mOnError = onError != null ? onError : e ->
+                RCLog.e(this, "Problem notifying subscriber, name=" + getName(), e);
+    }
+
+    @NonNull
+    @Override // INamed
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * Notify all subscribers of the current value
+     */
+    public void fire() {
+        final PrimitiveSubscription[] current = subscriptions;
+
+        for (PrimitiveSubscription subscription : current) {
+            subscription.schedule();
+        }
+    }
+
+    /**
+     * Stop notifying a subscriber
+     *
+     * @param action previously subscribed
+     * @return <code>true</code> if the action was subscribed
+     */
+    public synchronized boolean unsubscribe(@NonNull IBaseAction<?> action) {
+        final PrimitiveSubscription[] current = subscriptions;
+
+        for (int i = 0; i < current.length; i++) {
+            if (current[i].action == action) {
+                final PrimitiveSubscription[] updated = new PrimitiveSubscription[current.length - 1];
+
+                System.arraycopy(current, 0, updated, 0, i);
+                System.arraycopy(current, i + 1, updated, i, current.length - i - 1);
+                subscriptions = updated;
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    /**
+     * Add a subscriber and notify it of the current value
+     *
+     * @param threadType where to notify, or <code>null</code> for the default thread type of this value
+     * @param action     the subscriber, used to {@link #unsubscribe(IBaseAction)}
+     * @param notify     calls the subscriber with the current value. This is created once so that notification does not allocate
+     */
+    protected synchronized void addSubscription(@Nullable IThreadType threadType,
+                                                @NonNull IBaseAction<?> action,
+                                                @NonNull IAction<?> notify) {
+        final PrimitiveSubscription subscription = new PrimitiveSubscription(threadType != null ? threadType : mThreadType, action, notify, mOnError);
+        final PrimitiveSubscription[] current = subscriptions;
+        final PrimitiveSubscription[] updated = new PrimitiveSubscription[current.length + 1];
+
+        System.arraycopy(current, 0, updated, 0, current.length);
+        updated[current.length] = subscription;
+        subscriptions = updated;
+        subscription.schedule();
+    }
+
+    /**
+     * Adapt this value for use in {@link Subscription} chains. Each change is boxed, so use the primitive
+     * subscribers where updates are frequent.
+     *
+     * @param boxedValue reads the current value
+     * @param <T>        the boxed type
+     * @return a source which follows this value. The same source is returned each time.
+     */
+    @NonNull
+    @SuppressWarnings("unchecked")
+    protected synchronized <T> IReactiveSource<T> getReactiveSource(@NonNull IActionR<T> boxedValue) {
+        if (reactiveSource == null) {
+            final ReactiveValue<T> source = new ReactiveValue<>(getName(), mThreadType, null, mOnError);
+
+            addSubscription(mThreadType, boxedValue, () -> source.set(boxedValue.call()));
+            reactiveSource = source;
+        }
+
+        return (IReactiveSource<T>) reactiveSource;
+    }
+
+    private static final class PrimitiveSubscription {
+        @NonNull
+        final IBaseAction<?> action;
+        @NonNull
+        private final IThreadType threadType;
+        @NonNull
+        private final AtomicBoolean queued = new AtomicBoolean(false);
+        @NonNull
+        private final Runnable runnable;
+
+        PrimitiveSubscription(@NonNull IThreadType threadType,
+                              @NonNull IBaseAction<?> action,
+                              @NonNull IAction<?> notify,
+                              @NonNull IActionOne<Exception> onError) {
+            this.threadType = threadType;
+            this.action = action;
+            this.runnable = threadType.wrapActionWithErrorProtection(() -> {
+                queued.set(false); // Before reading the value, so a concurrent update queues again
+                notify.call();
+            }, onError);
+        }
+
+        void schedule() {
+            if (queued.compareAndSet(false, true)) {
+                threadType.run(runnable);
+            }
+        }
+    }
+}
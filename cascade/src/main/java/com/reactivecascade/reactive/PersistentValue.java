@@ -5,27 +5,42 @@ This is open source for the common good. Please contribute improvements by pull
 */
 package com.reactivecascade.reactive;
 
+import android.content.ComponentCallbacks2;
 import android.content.Context;
-import android.content.SharedPreferences;
-import android.preference.PreferenceManager;
+import android.content.res.Configuration;
 import android.support.annotation.CallSuper;
+import android.support.annotation.IntDef;
 import android.support.annotation.NonNull;
 import android.support.annotation.Nullable;
+import android.util.Log;
 
+import com.reactivecascade.Async;
 import com.reactivecascade.i.IActionOne;
 import com.reactivecascade.i.IActionOneR;
 import com.reactivecascade.i.IAltFuture;
+import com.reactivecascade.i.IPersistentStore;
 import com.reactivecascade.i.IThreadType;
 import com.reactivecascade.i.NotCallOrigin;
 import com.reactivecascade.util.AltFutureFuture;
 import com.reactivecascade.util.AssertUtil;
-import com.reactivecascade.util.DefaultThreadType;
+import com.reactivecascade.util.BindingContextUtil;
+import com.reactivecascade.util.CodecUtil;
 import com.reactivecascade.util.RCLog;
-
+import com.reactivecascade.util.SharedPreferencesStore;
+
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.Executors;
-import java.util.concurrent.LinkedBlockingQueue;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 /**
  * A {@link com.reactivecascade.reactive.ReactiveValue} which retains state between stops and
@@ -36,42 +51,233 @@ import java.util.concurrent.TimeUnit;
  * intentional dependency state injection in a flat name space, so pick a naming convention that will
  * make your app debuggable and maintainable.
  * <p>
- * TODO Support JSON and/or Serializable and Lists of such arbitrary types
+ * Values are stored in an {@link IPersistentStore}. By default this is the application
+ * {@link android.content.SharedPreferences}, see {@link SharedPreferencesStore}. For values which change
+ * often, a {@link com.reactivecascade.util.LogStructuredStore} is much less disk I/O.
+ * <p>
+ * Native types, their arrays and {@link java.io.Serializable} types can be persisted. Register an
+ * {@link com.reactivecascade.i.ICodec} with {@link com.reactivecascade.util.CodecUtil} for a compact
+ * encoding of other types.
+ * <p>
+ * When a value is persisted is set by {@link #setPersistPolicy(int, long)}. Values waiting to be persisted
+ * to the same store are written together in one commit. All waiting values are persisted when the
+ * application is hidden, see {@link android.content.ComponentCallbacks2#TRIM_MEMORY_UI_HIDDEN}, when a
+ * {@link com.reactivecascade.util.BindingContextUtil.AsyncFragment} or
+ * {@link com.reactivecascade.util.BindingContextUtil.AsyncFragmentActivity} pauses, and when the
+ * application exits through {@link Async#exitWithErrorCode(String, String, Throwable)}. An Android
+ * process in the background is usually killed without running JVM shutdown hooks.
+ * <p>
  * TODO Support null as a persisted from by storing a special marker to indicate NOT_ASSERTED and using that to trigger accepting the default passed in. Or something simpler
  * <p>
  * TODO Eliminate this class, replace with a new @Persist annotation to any IReactiveSource that would like persistent state
  * TODO Create IReactiveBindingContext to allow values to start and stop with fragment and activity resume/pause or other custom cases. null context means forever
- * TODO Persist triggered only in onPause() transition of the IReactiveBindingContext
  */
 @NotCallOrigin
 public class PersistentValue<T> extends ReactiveValue<T> {
     private static final String TAG = PersistentValue.class.getSimpleName();
     private static final int INIT_READ_TIMEOUT_SECONDS = 3;
+    private static final long SHUTDOWN_FLUSH_TIMEOUT_MILLIS = 2000;
+
+    /**
+     * Persist as soon as the store is free. Values set while the store is busy are persisted together.
+     */
+    public static final int PERSIST_IMMEDIATE = 0;
+    /**
+     * Persist when the value has not changed for a time. This is good for values changed by continuous
+     * user input such as a slider.
+     */
+    public static final int PERSIST_DEBOUNCED = 1;
+    /**
+     * Persist only on {@link #flush()}, which is also called when the application is hidden or exits
+     */
+    public static final int PERSIST_ON_FLUSH = 2;
 
     private static final ConcurrentHashMap<String, PersistentValue<?>> PERSISTENT_VALUES = new ConcurrentHashMap<>();
-    // The SharedPreferences type is not thread safe, so all operations are done from this thread. Note also that we want an uncluttered queue so we can read and write things as quickly as possible.
-    private static final IThreadType persistentValueThreadType = new DefaultThreadType("PersistentValueThreadType", Executors.newSingleThreadExecutor(), new LinkedBlockingQueue<>());
     private static final IActionOne<Exception> defaultOnErrorAction = e ->
             RCLog.e(PersistentValue.class.getSimpleName(), "Internal error", e);
+    private static final IActionOne<String> storeChangeListener = key -> {
+        PersistentValue<?> persistentValue = PERSISTENT_VALUES.get(key);
+
+        if (persistentValue == null) {
+            RCLog.d(TAG, "Stored value " + key + " has changed, but there is no PersistentValue for it. Ignoring this change");
+            return;
+        }
+        persistentValue.onStoredValueChanged();
+    };
+    private static final Set<PersistentValue<?>> DIRTY_VALUES = Collections.newSetFromMap(new ConcurrentHashMap<>()); // Set, but not yet persisted
+    private static final Set<IPersistentStore> STORES_WITH_FLUSH_PENDING = Collections.newSetFromMap(new ConcurrentHashMap<>());
+    private static final Set<PersistentValue<?>> UNLOADED_VALUES = Collections.newSetFromMap(new ConcurrentHashMap<>()); // Created, but the stored value has not yet been read
+    private static final Set<IPersistentStore> STORES_WITH_LOAD_PENDING = Collections.newSetFromMap(new ConcurrentHashMap<>());
+    private static final AtomicBoolean sFlushOnHiddenRegistered = new AtomicBoolean(false);
+    @Nullable
+    private static IPersistentStore sDefaultStore;
+
+    static {
+        Async.addShutdownAction(() -> flush(SHUTDOWN_FLUSH_TIMEOUT_MILLIS));
+        BindingContextUtil.addPauseAction(PersistentValue::flush);
+    }
+
     @NonNull
-    protected final Context context; // Once changes from an Editor are committed, they are guaranteed to be written even if the parent Context starts to go down
+    protected final Context context;
+    @NonNull
+    protected final IPersistentStore store;
     @NonNull
-//    protected final SharedPreferences sharedPreferences; // Once changes from an Editor are committed, they are guaranteed to be written even if the parent Context starts to go down
     protected final String key;
     protected final Class classOfPersistentValue;
     protected final T defaultValue;
-    private static final SharedPreferences.OnSharedPreferenceChangeListener sharedPreferencesListener = (sharedPreference, key) -> {
-        if (key == null) {
-            return;
+    @PersistPolicy
+    private volatile int persistPolicy = PERSIST_IMMEDIATE;
+    private volatile long debounceMillis = 0;
+    private volatile long lastSetMillis = 0;
+    private volatile boolean flushDue = false; // The persist policy wants this value written on the next flush of its store
+    private final AtomicBoolean debounceScheduled = new AtomicBoolean(false);
+
+    /**
+     * Persist all values which have been set but not yet persisted, whatever their persist policy. This
+     * does not wait for the writes to complete.
+     * <p>
+     * This is called when the application is hidden and when an
+     * {@link com.reactivecascade.util.BindingContextUtil.AsyncFragmentActivity} or
+     * {@link com.reactivecascade.util.BindingContextUtil.AsyncFragment} pauses. Call it yourself from
+     * {@link android.app.Activity#onPause()} of other activities which use {@link #PERSIST_ON_FLUSH}.
+     */
+    public static void flush() {
+        for (IPersistentStore store : getStoresWithDirtyValues()) {
+            store.getThreadType().then(() -> flushStore(store, true))
+                    .onError(defaultOnErrorAction);
         }
+    }
 
-        PersistentValue<?> persistentValue = PERSISTENT_VALUES.get(key);
-        if (persistentValue == null) {
-            RCLog.d(TAG, "SharedPreference " + key + " has changed, but the PersistentValue is an expired WeakReference. Probably this is PersistentValue which has gone out of scope before the from persisted. Ignoring this change");
+    /**
+     * Persist all values which have been set but not yet persisted and wait for the writes to complete.
+     * Do not call this from the thread of a store, it would wait for itself until the timeout.
+     *
+     * @param timeoutMillis the maximum time to wait for each store
+     * @return <code>true</code> if all writes completed successfully within the timeout
+     */
+    public static boolean flush(long timeoutMillis) {
+        boolean success = true;
+
+        for (IPersistentStore store : getStoresWithDirtyValues()) {
+            try {
+                new AltFutureFuture<>(store.getThreadType().then(() -> flushStore(store, true)))
+                        .get(timeoutMillis, TimeUnit.MILLISECONDS);
+            } catch (Exception e) {
+                RCLog.e(TAG, "Can not flush " + store, e);
+                success = false;
+            }
+        }
+
+        return success;
+    }
+
+    @NonNull
+    private static Set<IPersistentStore> getStoresWithDirtyValues() {
+        final Set<IPersistentStore> stores = new HashSet<>();
+
+        for (PersistentValue<?> persistentValue : DIRTY_VALUES) {
+            stores.add(persistentValue.store);
+        }
+
+        return stores;
+    }
+
+    private static void scheduleFlush(@NonNull IPersistentStore store) {
+        if (STORES_WITH_FLUSH_PENDING.add(store)) {
+            store.getThreadType().then(() -> {
+                STORES_WITH_FLUSH_PENDING.remove(store);
+                flushStore(store, false);
+            })
+                    .onError(defaultOnErrorAction);
+        }
+    }
+
+    /**
+     * Write the current value of dirty values in the store as one commit
+     *
+     * @param store to write. This is called on the store's thread
+     * @param all   <code>true</code> to write all dirty values, <code>false</code> to write only those which
+     *              their persist policy says are due, so that {@link #PERSIST_DEBOUNCED} and
+     *              {@link #PERSIST_ON_FLUSH} values are not written early with a {@link #PERSIST_IMMEDIATE} value
+     * @throws Exception if the store can not be written. The values remain dirty and will be retried on the next flush,
+     *                   except values which can not be encoded. Those are reported and dropped so they do not fail every later flush.
+     */
+    private static void flushStore(@NonNull IPersistentStore store,
+                                   boolean all) throws Exception {
+        final Map<String, Object> batch = new HashMap<>();
+        final List<PersistentValue<?>> batchValues = new ArrayList<>();
+
+        for (Iterator<PersistentValue<?>> iterator = DIRTY_VALUES.iterator(); iterator.hasNext(); ) {
+            final PersistentValue<?> persistentValue = iterator.next();
+
+            if (persistentValue.store == store && (all || persistentValue.flushDue)) {
+                iterator.remove(); // Before reading the value, so a concurrent set() marks it dirty again
+                persistentValue.flushDue = false;
+                batch.put(persistentValue.key, persistentValue.safeGet());
+                batchValues.add(persistentValue);
+            }
+        }
+        if (batch.isEmpty()) {
             return;
         }
-        persistentValue.onSharedPreferenceChanged();
-    };
+        try {
+            writeBatch(store, batch);
+        } catch (Exception e) {
+            if (!dropUnencodable(batch, batchValues) || batch.isEmpty()) {
+                requeue(batchValues);
+                throw e;
+            }
+            try {
+                writeBatch(store, batch); // The rest of the batch
+            } catch (Exception e2) {
+                requeue(batchValues);
+                throw e2;
+            }
+        }
+    }
+
+    private static void writeBatch(@NonNull IPersistentStore store,
+                                   @NonNull Map<String, Object> batch) throws Exception {
+        store.write(batch);
+        if (RCLog.isLoggable(Log.VERBOSE)) {
+            RCLog.v(TAG, "Persisted " + batch.size() + " values in one commit");
+        }
+    }
+
+    /**
+     * After a batch write fails, find the values which can not be encoded. This is only done on
+     * failure, so a successful write encodes each value once.
+     *
+     * @param batch       the values by key. Values which can not be encoded are removed.
+     * @param batchValues the persistent values in the batch. Those which can not be encoded are removed and reported.
+     * @return <code>true</code> if any value was removed
+     */
+    private static boolean dropUnencodable(@NonNull Map<String, Object> batch,
+                                           @NonNull List<PersistentValue<?>> batchValues) {
+        boolean dropped = false;
+
+        for (Iterator<PersistentValue<?>> iterator = batchValues.iterator(); iterator.hasNext(); ) {
+            final PersistentValue<?> persistentValue = iterator.next();
+
+            try {
+                CodecUtil.encode(batch.get(persistentValue.key));
+            } catch (Exception e) {
+                iterator.remove();
+                batch.remove(persistentValue.key);
+                persistentValue.onError("Can not encode value, it is not persisted", e);
+                dropped = true;
+            }
+        }
+
+        return dropped;
+    }
+
+    private static void requeue(@NonNull List<PersistentValue<?>> batchValues) {
+        for (PersistentValue<?> persistentValue : batchValues) {
+            persistentValue.flushDue = persistentValue.persistPolicy == PERSIST_IMMEDIATE;
+        }
+        DIRTY_VALUES.addAll(batchValues);
+    }
 
     private static String getKey(@NonNull Class claz,
                                  @NonNull String name) {
@@ -121,236 +327,368 @@ public class PersistentValue<T> extends ReactiveValue<T> {
             @Nullable IActionOneR<TT, TT> inputMapping,
             @Nullable IActionOne<Exception> onError,
             @NonNull Context context) {
-        IActionOne<Exception> errorAction = onError != null ? onError : defaultOnErrorAction;
-
-        PersistentValue<TT> persistentValue = getAlreadyInitializedPersistentValue(name, context, errorAction);
-
-        if (persistentValue == null) {
-            persistentValue = new PersistentValue<>(name, defaultValueIfNoPersistedValue, threadType, inputMapping, onError, context);
-        } else {
-            final TT tt = persistentValue.get();
-            RCLog.v(persistentValue, "Found existing PersistentValue name=" + name + " with existing from: " + tt);
-        }
-
-        return persistentValue;
+        return getPersistentValue(name, defaultValueIfNoPersistedValue, threadType, inputMapping, onError, context, getDefaultStore(context));
     }
 
-    private static String toStringSet(@NonNull long[] value) {
-        StringBuilder sb = new StringBuilder();
-
-        for (int i = 0; i < value.length; i++) {
-            sb.append(value[i]);
-            if (i < value.length - 1) {
-                sb.append("\n");
-            }
-        }
-
-        return sb.toString();
-    }
-
-    private static long[] toLongArray(@NonNull String value) {
-        if (value.trim().length() == 0) {
-            return new long[0];
-        }
-
-        String[] vals = value.split("\n");
-        long[] longs = new long[vals.length];
-        int i = 0;
-
-        for (String v : vals) {
-            longs[i++] = Long.parseLong(v);
-        }
-
-        return longs;
+    /**
+     * Initialize a from, loading it from the specified store if it has been previously saved
+     *
+     * @param name                           unique within the package of the context
+     * @param defaultValueIfNoPersistedValue the initial value if nothing has been stored
+     * @param threadType                     where reactive chains of this value run
+     * @param inputMapping                   optional mapping applied to each new value
+     * @param onError                        optional action to perform on errors, including storage errors
+     * @param context                        used to make the key of the value unique
+     * @param store                          where the value is persisted. All values with the same store share one persistence thread.
+     * @param <TT>                           value type
+     * @return the value
+     */
+    public static synchronized <TT> PersistentValue<TT> getPersistentValue(
+            @NonNull String name,
+            @NonNull TT defaultValueIfNoPersistedValue,
+            @NonNull IThreadType threadType,
+            @Nullable IActionOneR<TT, TT> inputMapping,
+            @Nullable IActionOne<Exception> onError,
+            @NonNull Context context,
+            @NonNull IPersistentStore store) {
+        return getPersistentValue(name, defaultValueIfNoPersistedValue, threadType, inputMapping, onError, context, store, true);
     }
 
-    private static String toStringSet(@NonNull int[] value) {
-        StringBuilder sb = new StringBuilder();
-
-        for (int i = 0; i < value.length; i++) {
-            sb.append(value[i]);
-            if (i < value.length - 1) {
-                sb.append("\n");
-            }
-        }
-
-        return sb.toString();
+    /**
+     * Get a value without waiting for it to load. This is safe to call from the UI thread.
+     * <p>
+     * The value is not asserted until the stored value has been read, then it fires. If the value
+     * is {@link #set(Object)} before that, the stored value is ignored.
+     * <p>
+     * Values requested together are loaded together in one task on the store thread.
+     * See also {@link #preload(IPersistentStore)}
+     *
+     * @param name                           unique within the package of the context
+     * @param defaultValueIfNoPersistedValue the initial value if nothing has been stored
+     * @param threadType                     where reactive chains of this value run
+     * @param inputMapping                   optional mapping applied to each new value
+     * @param onError                        optional action to perform on errors, including storage errors
+     * @param context                        used to make the key of the value unique
+     * @param <TT>                           value type
+     * @return the value, possibly not yet loaded
+     */
+    public static synchronized <TT> PersistentValue<TT> getPersistentValueAsync(
+            @NonNull String name,
+            @NonNull TT defaultValueIfNoPersistedValue,
+            @NonNull IThreadType threadType,
+            @Nullable IActionOneR<TT, TT> inputMapping,
+            @Nullable IActionOne<Exception> onError,
+            @NonNull Context context) {
+        return getPersistentValueAsync(name, defaultValueIfNoPersistedValue, threadType, inputMapping, onError, context, getDefaultStore(context));
     }
 
-    private static String[] toStringArray(@NonNull String value) {
-        if (value.trim().length() == 0) {
-            return new String[0];
-        }
-
-        return value.split("\n");
+    /**
+     * Get a value without waiting for it to load from the specified store. This is safe to call from the UI thread.
+     * See {@link #getPersistentValueAsync(String, Object, IThreadType, IActionOneR, IActionOne, Context)}
+     *
+     * @param name                           unique within the package of the context
+     * @param defaultValueIfNoPersistedValue the initial value if nothing has been stored
+     * @param threadType                     where reactive chains of this value run
+     * @param inputMapping                   optional mapping applied to each new value
+     * @param onError                        optional action to perform on errors, including storage errors
+     * @param context                        used to make the key of the value unique
+     * @param store                          where the value is persisted
+     * @param <TT>                           value type
+     * @return the value, possibly not yet loaded
+     */
+    public static synchronized <TT> PersistentValue<TT> getPersistentValueAsync(
+            @NonNull String name,
+            @NonNull TT defaultValueIfNoPersistedValue,
+            @NonNull IThreadType threadType,
+            @Nullable IActionOneR<TT, TT> inputMapping,
+            @Nullable IActionOne<Exception> onError,
+            @NonNull Context context,
+            @NonNull IPersistentStore store) {
+        return getPersistentValue(name, defaultValueIfNoPersistedValue, threadType, inputMapping, onError, context, store, false);
     }
 
-    private static int[] toIntegerArray(@NonNull String value) {
-        if (value.trim().length() == 0) {
-            return new int[0];
-        }
+    private static synchronized <TT> PersistentValue<TT> getPersistentValue(
+            @NonNull String name,
+            @NonNull TT defaultValueIfNoPersistedValue,
+            @NonNull IThreadType threadType,
+            @Nullable IActionOneR<TT, TT> inputMapping,
+            @Nullable IActionOne<Exception> onError,
+            @NonNull Context context,
+            @NonNull IPersistentStore store,
+            boolean waitForLoad) {
+        IActionOne<Exception> errorAction = onError != null ? onError : defaultOnErrorAction;
 
-        String[] vals = value.split("\n");
-        int[] ints = new int[vals.length];
-        int i = 0;
+        PersistentValue<TT> persistentValue = getAlreadyInitializedPersistentValue(name, context, errorAction);
 
-        for (String v : vals) {
-            ints[i++] = Integer.parseInt(v);
+        if (persistentValue == null) {
+            persistentValue = new PersistentValue<>(name, defaultValueIfNoPersistedValue, threadType, inputMapping, onError, context, store, waitForLoad);
+            PERSISTENT_VALUES.put(persistentValue.key, persistentValue);
+        } else {
+            if (waitForLoad && persistentValue.safeGet() == IAltFuture.VALUE_NOT_AVAILABLE) {
+                persistentValue.awaitLoad(); // Created by getPersistentValueAsync() and not yet loaded
+            }
+            if (RCLog.isLoggable(Log.VERBOSE)) {
+                RCLog.v(persistentValue, "Found existing PersistentValue name=" + name + " with existing from: " + persistentValue.safeGet());
+            }
         }
 
-        return ints;
+        return persistentValue;
     }
 
-    private static String toStringSet(@NonNull boolean[] value) {
-        StringBuilder sb = new StringBuilder();
-
-        for (int i = 0; i < value.length; i++) {
-            sb.append(value[i]);
-            if (i < value.length - 1) {
-                sb.append("\n");
-            }
+    @NonNull
+    private static synchronized IPersistentStore getDefaultStore(@NonNull Context context) {
+        if (sDefaultStore == null) {
+            sDefaultStore = new SharedPreferencesStore(context.getApplicationContext());
         }
 
-        return sb.toString();
+        return sDefaultStore;
     }
 
-    private static boolean[] toBooleanArray(@NonNull String value) {
-        if (value.trim().length() == 0) {
-            return new boolean[0];
-        }
-
-        String[] vals = value.split(",");
-        boolean[] bools = new boolean[vals.length];
-        int i = 0;
+    /**
+     * Read the store into memory and load all values from it which are waiting to load, in one task on
+     * the store thread. Call this early during application startup, before the values are needed.
+     *
+     * @param store to load
+     * @param <IN>  phantom type
+     * @return completes when the store is loaded
+     */
+    @NonNull
+    public static <IN> IAltFuture<IN, IN> preload(@NonNull IPersistentStore store) {
+        return store.getThreadType().then(() -> {
+            store.preload();
+            loadStore(store);
+        });
+    }
 
-        for (String v : vals) {
-            bools[i++] = Boolean.parseBoolean(v);
+    /**
+     * Declare the values of a store and load them all in one task on the store thread. Call this early
+     * during application startup. Later calls to {@link #getPersistentValue(String, Object, IThreadType, IActionOneR, IActionOne, Context, IPersistentStore)}
+     * or {@link #getPersistentValueAsync(String, Object, IThreadType, IActionOneR, IActionOne, Context, IPersistentStore)}
+     * with these names return the same values.
+     *
+     * @param store         to load
+     * @param threadType    where reactive chains of the values run
+     * @param context       used to make the keys of the values unique
+     * @param defaultValues the name and default value of each value
+     * @param <IN>          phantom type
+     * @return completes when the values are loaded
+     */
+    @NonNull
+    public static <IN> IAltFuture<IN, IN> preload(@NonNull IPersistentStore store,
+                                                  @NonNull IThreadType threadType,
+                                                  @NonNull Context context,
+                                                  @NonNull Map<String, ?> defaultValues) {
+        for (Map.Entry<String, ?> entry : defaultValues.entrySet()) {
+            getPersistentValueAsync(entry.getKey(), entry.getValue(), threadType, null, null, context, store);
         }
 
-        return bools;
+        return preload(store);
     }
 
-    private static String toStringSet(@NonNull float[] value) {
-        StringBuilder sb = new StringBuilder();
-
-        for (int i = 0; i < value.length; i++) {
-            sb.append(value[i]);
-            if (i < value.length - 1) {
-                sb.append(",");
-            }
+    private static void scheduleLoad(@NonNull IPersistentStore store) {
+        if (STORES_WITH_LOAD_PENDING.add(store)) {
+            store.getThreadType().then(() -> {
+                STORES_WITH_LOAD_PENDING.remove(store);
+                loadStore(store);
+            })
+                    .onError(defaultOnErrorAction);
         }
-
-        return sb.toString();
     }
 
-    private static String toStringSet(@NonNull String[] value) {
-        StringBuilder sb = new StringBuilder();
-
-        for (int i = 0; i < value.length; i++) {
-            sb.append(value[i]);
-            if (i < value.length - 1) {
-                sb.append(",");
+    /**
+     * Load all values of this store which are waiting to load. This is called on the store's thread.
+     *
+     * @param store to read
+     */
+    private static void loadStore(@NonNull IPersistentStore store) {
+        boolean listening = false;
+
+        for (Iterator<PersistentValue<?>> iterator = UNLOADED_VALUES.iterator(); iterator.hasNext(); ) {
+            final PersistentValue<?> persistentValue = iterator.next();
+
+            if (persistentValue.store == store) {
+                iterator.remove();
+                if (!listening) {
+                    store.setOnChangeListener(storeChangeListener);
+                    listening = true;
+                }
+                persistentValue.load();
             }
         }
-
-        return sb.toString();
     }
 
-    private static float[] toFloatArray(@NonNull String value) {
-        if (value.trim().length() == 0) {
-            return new float[0];
-        }
-
-        String[] vals = value.split(",");
-        float[] floats = new float[vals.length];
-        int i = 0;
-
-        for (final String v : vals) {
-            floats[i++] = Float.parseFloat(v);
-        }
-
-        return floats;
+    protected PersistentValue(
+            @NonNull String name,
+            @NonNull T defaultValueIfNoPersistedValue,
+            @NonNull IThreadType threadType,
+            @Nullable IActionOneR<T, T> inputMapping,
+            @Nullable IActionOne<Exception> onError,
+            @NonNull Context context,
+            @NonNull IPersistentStore store) {
+        this(name, defaultValueIfNoPersistedValue, threadType, inputMapping, onError, context, store, true);
     }
 
+    /**
+     * Create a value
+     *
+     * @param name                           unique within the package of the context
+     * @param defaultValueIfNoPersistedValue the initial value if nothing has been stored
+     * @param threadType                     where reactive chains of this value run
+     * @param inputMapping                   optional mapping applied to each new value
+     * @param onError                        optional action to perform on errors, including storage errors
+     * @param context                        used to make the key of the value unique
+     * @param store                          where the value is persisted
+     * @param waitForLoad                    <code>true</code> to block until the stored value is read. Otherwise the value is not asserted until it has loaded.
+     * @throws IllegalArgumentException if there is no {@link com.reactivecascade.i.ICodec} for the class of the default value
+     */
+    @SuppressWarnings("unchecked")
     protected PersistentValue(
             @NonNull String name,
             @NonNull T defaultValueIfNoPersistedValue,
             @NonNull IThreadType threadType,
             @Nullable IActionOneR<T, T> inputMapping,
             @Nullable IActionOne<Exception> onError,
-            @NonNull Context context) {
+            @NonNull Context context,
+            @NonNull IPersistentStore store,
+            boolean waitForLoad) {
         super(name, threadType, inputMapping, onError);
 
         this.defaultValue = defaultValueIfNoPersistedValue;
         this.classOfPersistentValue = defaultValueIfNoPersistedValue.getClass();
+        try {
+            CodecUtil.getCodec(classOfPersistentValue); // Fail now, not on every later flush
+        } catch (UnsupportedOperationException e) {
+            throw new IllegalArgumentException("Can not persist " + name + ": " + e.getMessage(), e);
+        }
         this.context = AssertUtil.assertNotNull(context, "Context can not be null");
-//        this.sharedPreferences = AssertUtil.assertNotNull(PreferenceManager.getDefaultSharedPreferences(context), "Shared preferences can not be null");
+        this.store = AssertUtil.assertNotNull(store, "Store can not be null");
         this.key = getKey(context, name);
+        registerFlushOnHidden(context);
+
+        UNLOADED_VALUES.add(this);
+        if (waitForLoad) {
+            awaitLoad();
+        } else {
+            scheduleLoad(store);
+        }
+    }
 
+    /**
+     * Block until the stored value has been read. A load already started on the store thread finishes
+     * before this task runs.
+     */
+    @SuppressWarnings("unchecked")
+    private void awaitLoad() {
         try {
-            final T initialValue = init(context)
+            // Always access the store from the same thread
+            // Convert async operation into blocking synchronous so that the ReactiveValue will be initialized before this returns
+            new AltFutureFuture<>(store.getThreadType().then(() -> loadStore(store)))
                     .get(INIT_READ_TIMEOUT_SECONDS, TimeUnit.SECONDS);
-
-            if (initialValue == IAltFuture.VALUE_NOT_AVAILABLE) {
-                fire(defaultValueIfNoPersistedValue);
-            }
         } catch (Exception e) {
             RCLog.e(this, "Can not initialize", e);
         }
+        if (UNLOADED_VALUES.remove(this)) {
+            compareAndSet((T) IAltFuture.VALUE_NOT_AVAILABLE, defaultValue);
+        }
+    }
+
+    /**
+     * Flush all values when the application is no longer visible. After this the process may be killed
+     * at any time without warning.
+     */
+    private static void registerFlushOnHidden(@NonNull Context context) {
+        if (sFlushOnHiddenRegistered.compareAndSet(false, true)) {
+            final Context applicationContext = context.getApplicationContext();
+
+            (applicationContext != null ? applicationContext : context).registerComponentCallbacks(new ComponentCallbacks2() {
+                @Override // ComponentCallbacks2
+                public void onTrimMemory(int level) {
+                    if (level >= TRIM_MEMORY_UI_HIDDEN) {
+                        flush();
+                    }
+                }
+
+                @Override // ComponentCallbacks
+                public void onConfigurationChanged(@NonNull Configuration newConfig) {
+                }
+
+                @Override // ComponentCallbacks
+                public void onLowMemory() {
+                    flush();
+                }
+            });
+        }
+    }
+
+    private void onError(@NonNull String message,
+                         @NonNull Exception e) {
+        RCLog.e(this, message, e);
+        try {
+            mOnError.call(e);
+        } catch (Exception e2) {
+            RCLog.e(this, "Problem in onError", e2);
+        }
     }
 
+    /**
+     * Read the stored value. This is called on the store's thread.
+     */
     @SuppressWarnings("unchecked")
-    private AltFutureFuture<T, T> init(Context context) {
-        // Always access SharedPreferences from the same thread
-        // Convert async operation into blocking synchronous so that the ReactiveValue will be initialized before the constructor returns
-        return new AltFutureFuture<T, T>((IAltFuture<T, T>) persistentValueThreadType.then(() -> {
-            PersistentValue<T> previouslyInitializedPersistentValue = (PersistentValue<T>) PERSISTENT_VALUES.putIfAbsent(getKey(context, getName()), this);
-            SharedPreferences sharedPreferences = AssertUtil.assertNotNull(PreferenceManager.getDefaultSharedPreferences(context), "Shared preferences can not be null");
-
-            if (previouslyInitializedPersistentValue != null) {
-                return previouslyInitializedPersistentValue.safeGet();
-            }
-            sharedPreferences.registerOnSharedPreferenceChangeListener(sharedPreferencesListener);
+    private void load() {
+        T value = defaultValue;
 
-            return (T) IAltFuture.VALUE_NOT_AVAILABLE;
-//            if (sharedPreferences.contains(key)) {
-//                RCLog.v(this, "PersistentValue from loadeded from flash memory");
-//                onSharedPreferenceChanged();
-//            }
-        })
-                .fork());
+        try {
+            value = store.read(key, defaultValue);
+        } catch (Exception e) {
+            onError("Can not read stored value, using the default value", e);
+        }
+        if (!compareAndSet((T) IAltFuture.VALUE_NOT_AVAILABLE, value)) {
+            RCLog.v(this, "Value was set before it was loaded, ignoring the stored value");
+        }
     }
 
+    /**
+     * The stored value has been changed by some other means than {@link #set(Object)}. This is called
+     * on the {@link IPersistentStore#getThreadType()}.
+     *
+     * @throws Exception if the store can not be read
+     */
     @CallSuper
-    @SuppressWarnings("unchecked")
-    protected void onSharedPreferenceChanged() {
-        RCLog.v(this, "PersistentValue is about to change because the underlying SharedPreferences notify that it has changed");
-
-        SharedPreferences sharedPreferences = AssertUtil.assertNotNull(PreferenceManager.getDefaultSharedPreferences(context), "Shared preferences can not be null");
-
-        if (classOfPersistentValue == String.class) {
-            super.set((T) sharedPreferences.getString(key, (String) defaultValue));
-        } else if (classOfPersistentValue == String[].class) {
-            super.set((T) toStringArray(sharedPreferences.getString(key, toStringSet((String[]) defaultValue))));
-        } else if (classOfPersistentValue == Integer.class) {
-            super.set((T) Integer.valueOf(sharedPreferences.getInt(key, (Integer) defaultValue)));
-        } else if (classOfPersistentValue == int[].class) {
-            super.set((T) toIntegerArray(sharedPreferences.getString(key, toStringSet((int[]) defaultValue))));
-        } else if (classOfPersistentValue == Long.class) {
-            super.set((T) Long.valueOf(sharedPreferences.getLong(key, (Long) defaultValue)));
-        } else if (classOfPersistentValue == long[].class) {
-            super.set((T) toLongArray(sharedPreferences.getString(key, toStringSet((long[]) defaultValue))));
-        } else if (classOfPersistentValue == Boolean.class) {
-            super.set((T) Boolean.valueOf(sharedPreferences.getBoolean(key, (Boolean) defaultValue)));
-        } else if (classOfPersistentValue == boolean[].class) {
-            super.set((T) toBooleanArray(sharedPreferences.getString(key, toStringSet((boolean[]) defaultValue))));
-        } else if (classOfPersistentValue == Float.class) {
-            super.set((T) Float.valueOf(sharedPreferences.getFloat(key, (Float) defaultValue)));
-        } else if (classOfPersistentValue == float[].class) {
-            super.set((T) toFloatArray(sharedPreferences.getString(key, toStringSet((float[]) defaultValue))));
-        } else {
-            throw new UnsupportedOperationException(classOfPersistentValue + " is not supported. Only native types and arrays like String and int[] are supported in PersistentValue. You could override set(), compareAndSet() and get()...");
+    protected void onStoredValueChanged() throws Exception {
+        if (DIRTY_VALUES.contains(this)) {
+            RCLog.v(this, "Ignoring store change notification, a newer value is waiting to be persisted");
+            return;
         }
+        RCLog.v(this, "PersistentValue is about to change because the underlying store notifies that it has changed");
+
+        super.set(store.read(key, defaultValue));
+    }
+
+    /**
+     * Set when values are persisted. The default is {@link #PERSIST_IMMEDIATE}.
+     *
+     * @param persistPolicy  {@link #PERSIST_IMMEDIATE}, {@link #PERSIST_DEBOUNCED} or {@link #PERSIST_ON_FLUSH}
+     * @param debounceMillis with {@link #PERSIST_DEBOUNCED}, persist after the value has not been set for this long
+     * @return this value, for chaining
+     */
+    @NonNull
+    public PersistentValue<T> setPersistPolicy(@PersistPolicy int persistPolicy,
+                                               long debounceMillis) {
+        if (persistPolicy < PERSIST_IMMEDIATE || persistPolicy > PERSIST_ON_FLUSH) {
+            throw new IllegalArgumentException("Unknown persist policy: " + persistPolicy);
+        }
+        if (debounceMillis < 0) {
+            throw new IllegalArgumentException("debounceMillis must be >= 0: " + debounceMillis);
+        }
+        this.debounceMillis = debounceMillis;
+        this.persistPolicy = persistPolicy;
+
+        return this;
+    }
+
+    @PersistPolicy
+    public int getPersistPolicy() {
+        return persistPolicy;
     }
 
     @NotCallOrigin
@@ -359,39 +697,43 @@ public class PersistentValue<T> extends ReactiveValue<T> {
     public void set(@NonNull T value) {
         super.set(value);
 
-        RCLog.v(this, "PersistentValue \"" + getName() + "\" persist soon, from=" + value);
-        persistentValueThreadType.then(() -> {
-            SharedPreferences sharedPreferences = AssertUtil.assertNotNull(PreferenceManager.getDefaultSharedPreferences(context), "Shared preferences can not be null");
-            SharedPreferences.Editor editor = AssertUtil.assertNotNull(sharedPreferences, "Shared preferences are null").edit();
-
-            if (value instanceof String) {
-                editor.putString(key, (String) value);
-            } else if (value instanceof Integer) {
-                editor.putInt(key, (Integer) value);
-            } else if (value instanceof Boolean) {
-                editor.putBoolean(key, (Boolean) value);
-            } else if (value instanceof Float) {
-                editor.putFloat(key, (Float) value);
-            } else if (value instanceof Long) {
-                editor.putLong(key, (Long) value);
-            } else if (value instanceof long[]) {
-                editor.putString(key, toStringSet((long[]) value));
-            } else if (value instanceof int[]) {
-                editor.putString(key, toStringSet((int[]) value));
-            } else if (value instanceof boolean[]) {
-                editor.putString(key, toStringSet((boolean[]) value));
-            } else if (value instanceof float[]) {
-                editor.putString(key, toStringSet((float[]) value));
-            } else if (value instanceof String[]) {
-                editor.putString(key, toStringSet((String[]) value));
-            } else {
-                throw new UnsupportedOperationException("Only native types like String are supported in PersistentValue. You could override set(), compareAndSet() and get()...");
-            }
-            if (!editor.commit()) {
-                throw new RuntimeException("Failed to commit PersistentValue from=" + value + ". Probably some other thread besides Async.Net.NET_WRITE is concurrently updating SharedPreferences for this Context");
-            }
-            RCLog.v(this, "Successful PersistentValue persist, from=" + value);
-        })
-                .onError(mOnError);
+        if (RCLog.isLoggable(Log.VERBOSE)) {
+            RCLog.v(this, "PersistentValue \"" + getName() + "\" persist soon, from=" + value);
+        }
+        switch (persistPolicy) {
+            case PERSIST_IMMEDIATE:
+                flushDue = true;
+                DIRTY_VALUES.add(this);
+                scheduleFlush(store);
+                break;
+            case PERSIST_DEBOUNCED:
+                flushDue = false; // Until the value stops changing
+                DIRTY_VALUES.add(this);
+                lastSetMillis = System.currentTimeMillis();
+                if (debounceScheduled.compareAndSet(false, true)) {
+                    Async.TIMER.schedule(this::persistAfterDebounce, debounceMillis, TimeUnit.MILLISECONDS);
+                }
+                break;
+            default:
+                flushDue = false;
+                DIRTY_VALUES.add(this); // Wait for flush()
+        }
+    }
+
+    private void persistAfterDebounce() {
+        final long remainingMillis = lastSetMillis + debounceMillis - System.currentTimeMillis();
+
+        if (remainingMillis > 0) {
+            Async.TIMER.schedule(this::persistAfterDebounce, remainingMillis, TimeUnit.MILLISECONDS);
+            return;
+        }
+        debounceScheduled.set(false);
+        flushDue = true;
+        scheduleFlush(store);
+    }
+
+    @IntDef({PERSIST_IMMEDIATE, PERSIST_DEBOUNCED, PERSIST_ON_FLUSH})
+    @Retention(RetentionPolicy.SOURCE)
+    public @interface PersistPolicy {
     }
 }
@@ -0,0 +1,179 @@
+/*
+This file is part of Reactive Cascade which is released under The MIT License.
+See license.md , https://github.com/futurice/cascade and http://reactivecascade.com for details.
+This is open source for the common good. Please contribute improvements by pull request or contact paulirotta@gmail.com
+*/
+package com.reactivecascade.reactive;
+
+import android.support.annotation.IntDef;
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+import android.util.Log;
+
+import com.reactivecascade.Async;
+import com.reactivecascade.i.IActionOne;
+import com.reactivecascade.i.IAltFuture;
+import com.reactivecascade.i.IReactiveSource;
+import com.reactivecascade.i.IThreadType;
+import com.reactivecascade.i.NotCallOrigin;
+import com.reactivecascade.util.RCLog;
+
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * A reactive chain link which limits how often values pass down-chain
+ * <p>
+ * Delays are driven by the shared {@link Async#TIMER}. The timer only hands the value to this link, which
+ * then fires on its {@link IThreadType} with the usual latest-value merge of {@link Subscription}.
+ * <p>
+ * Create these with {@link IReactiveSource#throttleFirst(long)}, {@link IReactiveSource#throttleLast(long)},
+ * {@link IReactiveSource#sample(long)} and {@link IReactiveSource#debounce(long)}
+ *
+ * @param <T> the value type, which is unchanged by this link
+ */
+@NotCallOrigin
+public class RateLimitedSubscription<T> extends Subscription<T, T> {
+    /**
+     * Pass the first value, then drop values until the window has passed
+     */
+    public static final int THROTTLE_FIRST = 0;
+
+    /**
+     * Pass the most recent value at the end of each period in which there were values
+     */
+    public static final int THROTTLE_LAST = 1;
+
+    /**
+     * Pass the most recent value after no values have arrived for the period
+     */
+    public static final int DEBOUNCE = 2;
+
+    @RateLimit
+    private final int rateLimit;
+    private final long periodMillis;
+    @NonNull
+    private final AtomicLong windowEndMillis = new AtomicLong(Long.MIN_VALUE); // THROTTLE_FIRST
+    @NonNull
+    private final AtomicReference<T> pendingValue = new AtomicReference<>(); // THROTTLE_LAST and DEBOUNCE
+    @NonNull
+    private final AtomicBoolean timerScheduled = new AtomicBoolean(false);
+    private volatile long lastFireMillis; // DEBOUNCE
+
+    /**
+     * Create a new rate limited reactive chain link
+     *
+     * @param name                  the descriptive debug name of this subscription
+     * @param upchainReactiveSource
+     * @param threadType            the thread group on which down-chain targets are fired
+     * @param rateLimit             {@link #THROTTLE_FIRST}, {@link #THROTTLE_LAST} or {@link #DEBOUNCE}
+     * @param periodMillis          the length of the window or quiet period
+     * @param onError
+     */
+    public RateLimitedSubscription(@NonNull String name,
+                                   @Nullable IReactiveSource<T> upchainReactiveSource,
+                                   @Nullable IThreadType threadType,
+                                   @RateLimit int rateLimit,
+                                   long periodMillis,
+                                   @Nullable IActionOne<Exception> onError) {
+        super(name, upchainReactiveSource, threadType, out -> out, onError);
+
+        if (rateLimit < THROTTLE_FIRST || rateLimit > DEBOUNCE) {
+            throw new IllegalArgumentException("Unknown rate limit: " + rateLimit);
+        }
+        if (periodMillis <= 0) {
+            throw new IllegalArgumentException("periodMillis must be positive: " + periodMillis);
+        }
+        this.rateLimit = rateLimit;
+        this.periodMillis = periodMillis;
+    }
+
+    /**
+     * @return {@link #THROTTLE_FIRST}, {@link #THROTTLE_LAST} or {@link #DEBOUNCE}
+     */
+    @RateLimit
+    public int getRateLimit() {
+        return rateLimit;
+    }
+
+    /**
+     * @return the length of the window or quiet period
+     */
+    public long getPeriodMillis() {
+        return periodMillis;
+    }
+
+    @NotCallOrigin
+    @Override // IReactiveTarget
+    public void fire(@NonNull T in) {
+        if (in == IAltFuture.VALUE_NOT_AVAILABLE) {
+            return;
+        }
+        if (rateLimit == THROTTLE_FIRST) {
+            if (openWindow()) {
+                super.fire(in);
+            }
+        } else {
+            hold(in);
+        }
+    }
+
+    @NotCallOrigin
+    @Override // IReactiveTarget
+    public void fireNext(@NonNull T in) {
+        if (in == IAltFuture.VALUE_NOT_AVAILABLE) {
+            return;
+        }
+        if (rateLimit == THROTTLE_FIRST) {
+            if (openWindow()) {
+                super.fireNext(in);
+            }
+        } else {
+            hold(in);
+        }
+    }
+
+    private boolean openWindow() {
+        final long now = System.currentTimeMillis();
+        final long windowEnd = windowEndMillis.get();
+
+        return now >= windowEnd && windowEndMillis.compareAndSet(windowEnd, now + periodMillis);
+    }
+
+    private void hold(@NonNull T in) {
+        pendingValue.set(in);
+        lastFireMillis = System.currentTimeMillis();
+        if (timerScheduled.compareAndSet(false, true)) {
+            Async.TIMER.schedule(this::onTimer, periodMillis, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    private void onTimer() {
+        if (rateLimit == DEBOUNCE) {
+            final long remainingMillis = lastFireMillis + periodMillis - System.currentTimeMillis();
+
+            if (remainingMillis > 0) {
+                Async.TIMER.schedule(this::onTimer, remainingMillis, TimeUnit.MILLISECONDS);
+                return;
+            }
+        }
+        timerScheduled.set(false); // Before taking the value, so a concurrent fire schedules again
+        final T value = pendingValue.getAndSet(null);
+
+        if (value != null) {
+            if (RCLog.isLoggable(Log.VERBOSE)) {
+                RCLog.v(this, "Rate limit period ended, fire " + value);
+            }
+            super.fire(value);
+        }
+    }
+
+    @IntDef({THROTTLE_FIRST, THROTTLE_LAST, DEBOUNCE})
+    @Retention(RetentionPolicy.SOURCE)
+    public @interface RateLimit {
+    }
+}
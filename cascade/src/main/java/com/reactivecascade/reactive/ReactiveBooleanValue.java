@@ -0,0 +1,139 @@
+/*
+This file is part of Reactive Cascade which is released under The MIT License.
+See license.md , https://github.com/futurice/cascade and http://reactivecascade.com for details.
+This is open source for the common good. Please contribute improvements by pull request or contact paulirotta@gmail.com
+*/
+package com.reactivecascade.reactive;
+
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+
+import com.reactivecascade.i.IActionOne;
+import com.reactivecascade.i.IActionOneBoolean;
+import com.reactivecascade.i.IReactiveSource;
+import com.reactivecascade.i.IThreadType;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * A <code>boolean</code> which can be updated in an atomic, thread-safe manner and observed without boxing
+ * <p>
+ * Updates do not allocate.
+ * Subscribers receive the latest value, see {@link AbstractReactivePrimitive}.
+ */
+public class ReactiveBooleanValue extends AbstractReactivePrimitive {
+    @NonNull
+    private final AtomicBoolean value;
+
+    /**
+     * Create a new value which notifies subscribers on {@link com.reactivecascade.Async#UI} by default
+     *
+     * @param name         the descriptive debug name
+     * @param initialValue initial value
+     */
+    public ReactiveBooleanValue(@NonNull String name,
+                                boolean initialValue) {
+        this(name, initialValue, null, null);
+    }
+
+    /**
+     * Create a new value
+     *
+     * @param name         the descriptive debug name
+     * @param initialValue initial value
+     * @param threadType   the default thread group on which subscribers are notified
+     * @param onError      optional action to perform if a subscriber throws an exception
+     */
+    public ReactiveBooleanValue(@NonNull String name,
+                                boolean initialValue,
+                                @Nullable IThreadType threadType,
+                                @Nullable IActionOne<Exception> onError) {
+        super(name, threadType, onError);
+
+        value = new AtomicBoolean(initialValue);
+    }
+
+    public boolean get() {
+        return value.get();
+    }
+
+    /**
+     * Set the value. Subscribers are notified if it changed.
+     *
+     * @param update the new value
+     */
+    public void set(boolean update) {
+        if (value.getAndSet(update) != update) {
+            fire();
+        }
+    }
+
+    /**
+     * Set the value if it is currently the expected value
+     *
+     * @param expected the value assumed to be current
+     * @param update   the new value
+     * @return <code>true</code> if the value was set
+     */
+    public boolean compareAndSet(boolean expected,
+                                 boolean update) {
+        if (!value.compareAndSet(expected, update)) {
+            return false;
+        }
+        if (expected != update) {
+            fire();
+        }
+
+        return true;
+    }
+
+    /**
+     * Invert the value in a thread-safe manner
+     *
+     * @return the value after inversion
+     */
+    public boolean toggle() {
+        while (true) {
+            final boolean current = value.get();
+
+            if (value.compareAndSet(current, !current)) {
+                fire();
+                return !current;
+            }
+        }
+    }
+
+    /**
+     * Notify the action of the current value and each change on the default thread type
+     *
+     * @param action to notify
+     */
+    public void subscribe(@NonNull IActionOneBoolean action) {
+        subscribe(null, action);
+    }
+
+    /**
+     * Notify the action of the current value and each change
+     *
+     * @param threadType where to notify, or <code>null</code> for the default thread type of this value
+     * @param action     to notify
+     */
+    public void subscribe(@Nullable IThreadType threadType,
+                          @NonNull IActionOneBoolean action) {
+        addSubscription(threadType, action, () -> action.call(value.get()));
+    }
+
+    /**
+     * @return this value as a source for {@link Subscription} chains. Each change is boxed.
+     */
+    @NonNull
+    public IReactiveSource<Boolean> asReactiveSource() {
+        return getReactiveSource(this::get);
+    }
+
+    @NonNull
+    @Override // Object
+    public String toString() {
+        return Boolean.toString(get());
+    }
+}
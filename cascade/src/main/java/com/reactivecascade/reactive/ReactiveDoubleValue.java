@@ -0,0 +1,150 @@
+/*
+This file is part of Reactive Cascade which is released under The MIT License.
+See license.md , https://github.com/futurice/cascade and http://reactivecascade.com for details.
+This is open source for the common good. Please contribute improvements by pull request or contact paulirotta@gmail.com
+*/
+package com.reactivecascade.reactive;
+
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+
+import com.reactivecascade.i.IActionOne;
+import com.reactivecascade.i.IActionOneDouble;
+import com.reactivecascade.i.IReactiveSource;
+import com.reactivecascade.i.IThreadType;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A <code>double</code> which can be updated in an atomic, thread-safe manner and observed without boxing
+ * <p>
+ * Updates do not allocate. Use this for high frequency values such as sensor readings. Values are
+ * compared by their bits, so setting <code>NaN</code> again is not a change.
+ * Subscribers receive the latest value, see {@link AbstractReactivePrimitive}.
+ */
+public class ReactiveDoubleValue extends AbstractReactivePrimitive {
+    @NonNull
+    private final AtomicLong bits; // Double.doubleToLongBits()
+
+    /**
+     * Create a new value which notifies subscribers on {@link com.reactivecascade.Async#UI} by default
+     *
+     * @param name         the descriptive debug name
+     * @param initialValue initial value
+     */
+    public ReactiveDoubleValue(@NonNull String name,
+                               double initialValue) {
+        this(name, initialValue, null, null);
+    }
+
+    /**
+     * Create a new value
+     *
+     * @param name         the descriptive debug name
+     * @param initialValue initial value
+     * @param threadType   the default thread group on which subscribers are notified
+     * @param onError      optional action to perform if a subscriber throws an exception
+     */
+    public ReactiveDoubleValue(@NonNull String name,
+                               double initialValue,
+                               @Nullable IThreadType threadType,
+                               @Nullable IActionOne<Exception> onError) {
+        super(name, threadType, onError);
+
+        bits = new AtomicLong(Double.doubleToLongBits(initialValue));
+    }
+
+    public double get() {
+        return Double.longBitsToDouble(bits.get());
+    }
+
+    /**
+     * Set the value. Subscribers are notified if it changed.
+     *
+     * @param update the new value
+     */
+    public void set(double update) {
+        final long updateBits = Double.doubleToLongBits(update);
+
+        if (bits.getAndSet(updateBits) != updateBits) {
+            fire();
+        }
+    }
+
+    /**
+     * Set the value if it is currently the expected value
+     *
+     * @param expected the value assumed to be current
+     * @param update   the new value
+     * @return <code>true</code> if the value was set
+     */
+    public boolean compareAndSet(double expected,
+                                 double update) {
+        final long expectedBits = Double.doubleToLongBits(expected);
+        final long updateBits = Double.doubleToLongBits(update);
+
+        if (!bits.compareAndSet(expectedBits, updateBits)) {
+            return false;
+        }
+        if (expectedBits != updateBits) {
+            fire();
+        }
+
+        return true;
+    }
+
+    /**
+     * Add to the value in a thread-safe manner
+     *
+     * @param delta the amount to add
+     * @return the value after the addition
+     */
+    public double addAndGet(double delta) {
+        while (true) {
+            final long currentBits = bits.get();
+            final double result = Double.longBitsToDouble(currentBits) + delta;
+            final long resultBits = Double.doubleToLongBits(result);
+
+            if (bits.compareAndSet(currentBits, resultBits)) {
+                if (currentBits != resultBits) {
+                    fire();
+                }
+                return result;
+            }
+        }
+    }
+
+    /**
+     * Notify the action of the current value and each change on the default thread type
+     *
+     * @param action to notify
+     */
+    public void subscribe(@NonNull IActionOneDouble action) {
+        subscribe(null, action);
+    }
+
+    /**
+     * Notify the action of the current value and each change
+     *
+     * @param threadType where to notify, or <code>null</code> for the default thread type of this value
+     * @param action     to notify
+     */
+    public void subscribe(@Nullable IThreadType threadType,
+                          @NonNull IActionOneDouble action) {
+        addSubscription(threadType, action, () -> action.call(get()));
+    }
+
+    /**
+     * @return this value as a source for {@link Subscription} chains. Each change is boxed.
+     */
+    @NonNull
+    public IReactiveSource<Double> asReactiveSource() {
+        return getReactiveSource(this::get);
+    }
+
+    @NonNull
+    @Override // Object
+    public String toString() {
+        return Double.toString(get());
+    }
+}
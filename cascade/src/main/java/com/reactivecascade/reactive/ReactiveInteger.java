@@ -20,6 +20,8 @@ import com.reactivecascade.util.RCLog;
  * This is similar to an {@link java.util.concurrent.atomic.AtomicInteger} with reactive bindings to
  * get and set the from in reactive chains (function sequences that can fire multiple times).
  * <p>
+ * Each update boxes a new value. For high frequency updates see {@link ReactiveIntValue}
+ * <p>
  * Created by phou on 30-04-2015.
  */
 public class ReactiveInteger extends ReactiveValue<Integer> {
@@ -19,6 +19,8 @@ import com.reactivecascade.util.RCLog;
  * <p>
  * This is similar to an {@link java.util.concurrent.atomic.AtomicLong} with reactive bindings to
  * get and set the from in reactive chains (function sequences that can fire multiple times).
+ * <p>
+ * Each update boxes a new value. For high frequency updates see {@link ReactiveLongValue}
  * <p>*
  * Created by phou on 30-05-2015.
  */
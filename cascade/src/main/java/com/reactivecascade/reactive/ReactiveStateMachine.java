@@ -0,0 +1,362 @@
+/*
+This file is part of Reactive Cascade which is released under The MIT License.
+See license.md , https://github.com/futurice/cascade and http://reactivecascade.com for details.
+This is open source for the common good. Please contribute improvements by pull request or contact paulirotta@gmail.com
+*/
+package com.reactivecascade.reactive;
+
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+
+import com.reactivecascade.i.IActionOne;
+import com.reactivecascade.i.IActionOneInt;
+import com.reactivecascade.i.IReactiveSource;
+import com.reactivecascade.i.IThreadType;
+import com.reactivecascade.util.RCLog;
+
+import java.util.Arrays;
+
+/**
+ * A finite state machine with <code>int</code> states and events, driven by a precomputed transition table
+ * <p>
+ * Events may be sent from any thread with {@link #send(int)}. They are queued and processed one at a time,
+ * in order, on the {@link IThreadType} of the machine. For each event the next state is read from a table
+ * indexed by the current state and the event. An event with no transition from the current state is ignored.
+ * On a transition the exit action of the old state runs, then the entry action of the new state, and
+ * then subscribers are notified of the new state as with {@link ReactiveIntValue}. {@link #asReactiveSource()}
+ * connects the state to {@link Subscription} chains.
+ * <p>
+ * A transition does not allocate. The event queue allocates only when it grows past its largest size so far.
+ * Starting to process events after the machine was idle queues one reused task, without a wrapper.
+ * <code><pre>
+ *     ReactiveStateMachine player = new ReactiveStateMachine.Builder("player", 3, 2)
+ *             .transition(STOPPED, PLAY, PLAYING)
+ *             .transition(PLAYING, PAUSE, PAUSED)
+ *             .transition(PAUSED, PLAY, PLAYING)
+ *             .onEnter(PLAYING, from -&gt; audio.start())
+ *             .onExit(PLAYING, to -&gt; audio.stop())
+ *             .build();
+ *
+ *     player.subscribe(state -&gt; updateButtons(state));
+ *     player.send(PLAY);
+ * </pre></code>
+ */
+public class ReactiveStateMachine extends AbstractReactivePrimitive {
+    /**
+     * The table entry for an event which is ignored in a state
+     */
+    public static final int NO_TRANSITION = -1;
+
+    private static final int INITIAL_QUEUE_SIZE = 16;
+
+    private final int eventCount;
+    @NonNull
+    private final int[] transitions; // [state * eventCount + event] is the next state
+    @NonNull
+    private final IActionOneInt[] onEnter; // Called with the previous state
+    @NonNull
+    private final IActionOneInt[] onExit; // Called with the next state
+    @NonNull
+    private final Runnable drain = this::drain;
+    @NonNull
+    private final Object lock = new Object();
+    @NonNull
+    private int[] events = new int[INITIAL_QUEUE_SIZE]; // Ring buffer of events not yet processed. Guarded by lock
+    private int head = 0; // Guarded by lock
+    private int count = 0; // Guarded by lock
+    private boolean draining = false; // Guarded by lock
+    private volatile int state;
+
+    private ReactiveStateMachine(@NonNull Builder builder) {
+        super(builder.name, builder.threadType, builder.onError);
+
+        this.eventCount = builder.eventCount;
+        this.transitions = builder.transitions.clone();
+        this.onEnter = builder.onEnter.clone();
+        this.onExit = builder.onExit.clone();
+        this.state = builder.initialState;
+    }
+
+    /**
+     * @return the current state. This changes on the thread type of the machine, after the exit and entry actions.
+     */
+    public int getState() {
+        return state;
+    }
+
+    /**
+     * Queue an event. This does not block, and may be called from any thread.
+     *
+     * @param event the event, from 0 to the event count of the machine
+     */
+    public void send(int event) {
+        if (event < 0 || event >= eventCount) {
+            throw new IllegalArgumentException("Event " + event + " is not in the range 0.." + (eventCount - 1) + " of " + getName());
+        }
+
+        synchronized (lock) {
+            if (count == events.length) {
+                final int[] larger = new int[events.length * 2];
+
+                for (int i = 0; i < count; i++) {
+                    larger[i] = events[(head + i) & (events.length - 1)];
+                }
+                events = larger;
+                head = 0;
+            }
+            events[(head + count) & (events.length - 1)] = event;
+            count++;
+            if (draining) {
+                return;
+            }
+            draining = true;
+        }
+        mThreadType.run(drain);
+    }
+
+    /**
+     * Send each value of a reactive source to this machine as an event
+     *
+     * @param eventSource the source of events, for example a {@link ReactiveValue} or a {@link Subscription} chain
+     * @return the subscription, which may be unsubscribed to stop
+     */
+    @NonNull
+    public IReactiveSource<Integer> subscribeEvents(@NonNull IReactiveSource<Integer> eventSource) {
+        return eventSource.subscribe((IActionOne<Integer>) this::send);
+    }
+
+    /**
+     * Notify the action of the current state and each change on the default thread type
+     *
+     * @param action to notify
+     */
+    public void subscribe(@NonNull IActionOneInt action) {
+        subscribe(null, action);
+    }
+
+    /**
+     * Notify the action of the current state and each change. States may be skipped if they change faster than the action runs.
+     *
+     * @param threadType where to notify, or <code>null</code> for the default thread type of this machine
+     * @param action     to notify
+     */
+    public void subscribe(@Nullable IThreadType threadType,
+                          @NonNull IActionOneInt action) {
+        addSubscription(threadType, action, () -> action.call(state));
+    }
+
+    /**
+     * @return the state as a source for {@link Subscription} chains. Each change is boxed.
+     */
+    @NonNull
+    public IReactiveSource<Integer> asReactiveSource() {
+        return getReactiveSource(this::getState);
+    }
+
+    /**
+     * Process queued events. Only one drain runs at a time, so events are processed in order even on a thread type with several threads.
+     */
+    private void drain() {
+        while (true) {
+            final int event;
+
+            synchronized (lock) {
+                if (count == 0) {
+                    draining = false;
+                    return;
+                }
+                event = events[head];
+                head = (head + 1) & (events.length - 1);
+                count--;
+            }
+
+            final int from = state;
+            final int to = transitions[from * eventCount + event];
+            if (to == NO_TRANSITION) {
+                continue;
+            }
+            try {
+                call(onExit[from], to);
+                state = to;
+                call(onEnter[to], from);
+                fire();
+            } catch (RuntimeException e) {
+                RCLog.e(this, "Problem in transition " + from + "->" + to + " of state machine " + getName(), e); // Keep draining, or no later event is processed
+            }
+        }
+    }
+
+    private void call(@Nullable IActionOneInt action,
+                      int value) {
+        if (action == null) {
+            return;
+        }
+        try {
+            action.call(value);
+        } catch (Exception e) {
+            try {
+                mOnError.call(e);
+            } catch (Exception e2) {
+                RCLog.e(this, "Problem in onError of state machine " + getName(), e2);
+            }
+        }
+    }
+
+    @NonNull
+    @Override // Object
+    public String toString() {
+        return getName() + "(state=" + state + ")";
+    }
+
+    /**
+     * Define the states, events and transitions of a {@link ReactiveStateMachine}
+     */
+    public static final class Builder {
+        @NonNull
+        private final String name;
+        private final int stateCount;
+        private final int eventCount;
+        @NonNull
+        private final int[] transitions;
+        @NonNull
+        private final IActionOneInt[] onEnter;
+        @NonNull
+        private final IActionOneInt[] onExit;
+        private int initialState = 0;
+        @Nullable
+        private IThreadType threadType;
+        @Nullable
+        private IActionOne<Exception> onError;
+
+        /**
+         * Start defining a state machine. States are <code>0..stateCount-1</code> and events are
+         * <code>0..eventCount-1</code>. The initial state is 0.
+         *
+         * @param name       the descriptive debug name
+         * @param stateCount the number of states
+         * @param eventCount the number of events
+         */
+        public Builder(@NonNull String name,
+                       int stateCount,
+                       int eventCount) {
+            if (stateCount < 1 || eventCount < 1) {
+                throw new IllegalArgumentException("A state machine needs at least one state and one event: stateCount=" + stateCount + ", eventCount=" + eventCount);
+            }
+            this.name = name;
+            this.stateCount = stateCount;
+            this.eventCount = eventCount;
+            this.transitions = new int[stateCount * eventCount];
+            this.onEnter = new IActionOneInt[stateCount];
+            this.onExit = new IActionOneInt[stateCount];
+            Arrays.fill(transitions, NO_TRANSITION);
+        }
+
+        /**
+         * Add a transition
+         *
+         * @param from  the current state
+         * @param event the event
+         * @param to    the next state. This may be the same state, in which case its exit and entry actions run again.
+         * @return this builder
+         */
+        @NonNull
+        public Builder transition(int from,
+                                  int event,
+                                  int to) {
+            checkState(from);
+            checkState(to);
+            if (event < 0 || event >= eventCount) {
+                throw new IllegalArgumentException("Event " + event + " is not in the range 0.." + (eventCount - 1));
+            }
+            transitions[from * eventCount + event] = to;
+
+            return this;
+        }
+
+        /**
+         * Set the action to run when a state is entered
+         *
+         * @param state  the state
+         * @param action called with the previous state
+         * @return this builder
+         */
+        @NonNull
+        public Builder onEnter(int state,
+                               @NonNull IActionOneInt action) {
+            checkState(state);
+            onEnter[state] = action;
+
+            return this;
+        }
+
+        /**
+         * Set the action to run when a state is left
+         *
+         * @param state  the state
+         * @param action called with the next state
+         * @return this builder
+         */
+        @NonNull
+        public Builder onExit(int state,
+                              @NonNull IActionOneInt action) {
+            checkState(state);
+            onExit[state] = action;
+
+            return this;
+        }
+
+        /**
+         * Set the state before the first event. The entry action of this state is not run.
+         *
+         * @param state the initial state, 0 by default
+         * @return this builder
+         */
+        @NonNull
+        public Builder setInitialState(int state) {
+            checkState(state);
+            initialState = state;
+
+            return this;
+        }
+
+        /**
+         * Set the thread type on which events are processed, entry and exit actions run and subscribers are notified by default
+         *
+         * @param threadType the thread type. The default is {@link com.reactivecascade.Async#UI}
+         * @return this builder
+         */
+        @NonNull
+        public Builder setThreadType(@NonNull IThreadType threadType) {
+            this.threadType = threadType;
+
+            return this;
+        }
+
+        /**
+         * Set the action to perform if an entry action, exit action or subscriber throws
+         *
+         * @param onError the action. By default the problem is logged.
+         * @return this builder
+         */
+        @NonNull
+        public Builder setOnError(@NonNull IActionOne<Exception> onError) {
+            this.onError = onError;
+
+            return this;
+        }
+
+        /**
+         * @return the state machine. The builder may be used again to build another machine.
+         */
+        @NonNull
+        public ReactiveStateMachine build() {
+            return new ReactiveStateMachine(this);
+        }
+
+        private void checkState(int state) {
+            if (state < 0 || state >= stateCount) {
+                throw new IllegalArgumentException("State " + state + " is not in the range 0.." + (stateCount - 1));
+            }
+        }
+    }
+}
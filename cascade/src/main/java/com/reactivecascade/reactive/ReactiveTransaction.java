@@ -0,0 +1,254 @@
+/*
+This file is part of Reactive Cascade which is released under The MIT License.
+See license.md , https://github.com/futurice/cascade and http://reactivecascade.com for details.
+This is open source for the common good. Please contribute improvements by pull request or contact paulirotta@gmail.com
+*/
+package com.reactivecascade.reactive;
+
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+
+import com.reactivecascade.i.IAction;
+import com.reactivecascade.i.IReactiveTarget;
+import com.reactivecascade.util.RCLog;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * The staged writes of one {@link ReactiveValue#transaction(IAction)} on the current thread
+ * <p>
+ * Committing is done in two phases. First all staged values are set, so any reactive function which reads
+ * one of them sees the values of the whole transaction. Then each changed value fires once on its own
+ * {@link com.reactivecascade.i.IThreadType}, one after the other, upstream values before any value which is
+ * down-chain from them. Fires from these values to their down-chain nodes are held until the last value has
+ * fired, so a node subscribed to several of the values fires only once with the latest input. Fires from
+ * other threads are not held.
+ */
+final class ReactiveTransaction {
+    static final Object NOT_STAGED = new Object();
+    private static final ThreadLocal<ReactiveTransaction> CURRENT = new ThreadLocal<>();
+    private static final ThreadLocal<ReactiveTransaction> CURRENT_COMMIT = new ThreadLocal<>();
+    private static final ThreadLocal<ReactiveTransaction> CURRENT_FIRE = new ThreadLocal<>();
+    private static final AtomicInteger sActiveCount = new AtomicInteger(); // Skip the ThreadLocal lookup when no thread has a transaction
+    private static final AtomicInteger sFiringCount = new AtomicInteger(); // Skip the ThreadLocal lookup when no thread is firing a commit
+
+    private final Map<ReactiveValue<?>, Object> stagedValues = new LinkedHashMap<>();
+    private final Map<ReactiveValue<?>, Object> changedValues = new LinkedHashMap<>();
+    private final Map<Subscription<?, ?>, Object> heldFires = new LinkedHashMap<>(); // Guarded by this, the values fire one after the other on different threads
+    private int depth = 0;
+
+    private ReactiveTransaction() {
+    }
+
+    /**
+     * Run the action in a transaction on the current thread. A nested transaction joins the outer one.
+     *
+     * @param action in which {@link ReactiveValue#set(Object)} is staged until the action returns
+     * @throws Exception from the action, in which case the staged values are discarded
+     */
+    static void run(@NonNull IAction<?> action) throws Exception {
+        ReactiveTransaction transaction = CURRENT.get();
+
+        if (transaction == null) {
+            transaction = new ReactiveTransaction();
+            CURRENT.set(transaction);
+            sActiveCount.incrementAndGet();
+        }
+        transaction.depth++;
+        boolean success = false;
+        try {
+            action.call();
+            success = true;
+        } finally {
+            if (--transaction.depth == 0) {
+                CURRENT.remove();
+                sActiveCount.decrementAndGet();
+                if (success) {
+                    transaction.commit();
+                } else {
+                    RCLog.d(transaction, "Transaction failed, discarding " + transaction.stagedValues.size() + " staged values");
+                }
+            }
+        }
+    }
+
+    @Nullable
+    private static ReactiveTransaction current() {
+        if (sActiveCount.get() == 0) {
+            return null;
+        }
+
+        return CURRENT.get();
+    }
+
+    /**
+     * @return <code>true</code> if the value was staged to the transaction of the current thread
+     */
+    static boolean stage(@NonNull ReactiveValue<?> reactiveValue,
+                         @NonNull Object value) {
+        final ReactiveTransaction transaction = current();
+
+        if (transaction == null) {
+            return false;
+        }
+        transaction.stagedValues.put(reactiveValue, value);
+
+        return true;
+    }
+
+    /**
+     * @return the value staged by the current thread, or {@link #NOT_STAGED}
+     */
+    @NonNull
+    static Object getStaged(@NonNull ReactiveValue<?> reactiveValue) {
+        final ReactiveTransaction transaction = current();
+
+        if (transaction == null || !transaction.stagedValues.containsKey(reactiveValue)) {
+            return NOT_STAGED;
+        }
+
+        return transaction.stagedValues.get(reactiveValue);
+    }
+
+    /**
+     * @return <code>true</code> if the current thread is committing and will fire the value later in topological order
+     */
+    static boolean deferFire(@NonNull ReactiveValue<?> reactiveValue,
+                             @NonNull Object value) {
+        final ReactiveTransaction transaction = CURRENT_COMMIT.get();
+
+        if (transaction == null) {
+            return false;
+        }
+        transaction.changedValues.put(reactiveValue, value);
+
+        return true;
+    }
+
+    /**
+     * @return <code>true</code> if the current thread is firing a changed value of a transaction, in which case the
+     * fire is held until all changed values have fired
+     */
+    static boolean holdFire(@NonNull Subscription<?, ?> subscription,
+                            @NonNull Object value) {
+        if (sFiringCount.get() == 0) {
+            return false;
+        }
+        final ReactiveTransaction transaction = CURRENT_FIRE.get();
+
+        if (transaction == null) {
+            return false;
+        }
+        synchronized (transaction) {
+            transaction.heldFires.put(subscription, value);
+        }
+
+        return true;
+    }
+
+    @SuppressWarnings("unchecked")
+    private void commit() throws Exception {
+        CURRENT_COMMIT.set(this);
+        try {
+            for (Map.Entry<ReactiveValue<?>, Object> entry : stagedValues.entrySet()) {
+                ((ReactiveValue<Object>) entry.getKey()).set(entry.getValue());
+            }
+        } finally {
+            CURRENT_COMMIT.remove();
+        }
+
+        fireChanged(topologicalOrder(new ArrayList<>(changedValues.keySet())), 0);
+    }
+
+    /**
+     * Fire one changed value on its thread type, then continue with the next
+     */
+    @SuppressWarnings("unchecked")
+    private void fireChanged(@NonNull List<ReactiveValue<?>> order,
+                             int i) {
+        if (i == order.size()) {
+            fireHeld();
+            return;
+        }
+        final ReactiveValue<Object> reactiveValue = (ReactiveValue<Object>) order.get(i);
+
+        reactiveValue.mThreadType.execute(() -> {
+            CURRENT_FIRE.set(this);
+            sFiringCount.incrementAndGet();
+            try {
+                reactiveValue.fireNow(changedValues.get(reactiveValue));
+            } finally {
+                sFiringCount.decrementAndGet();
+                CURRENT_FIRE.remove();
+            }
+            fireChanged(order, i + 1);
+        });
+    }
+
+    @SuppressWarnings("unchecked")
+    private void fireHeld() {
+        final List<Map.Entry<Subscription<?, ?>, Object>> fires;
+
+        synchronized (this) {
+            fires = new ArrayList<>(heldFires.entrySet());
+        }
+        for (Map.Entry<Subscription<?, ?>, Object> entry : fires) {
+            ((Subscription<Object, ?>) entry.getKey()).fireNext(entry.getValue());
+        }
+    }
+
+    /**
+     * Order values so that any value which is down-chain from another comes after it
+     */
+    @NonNull
+    private static List<ReactiveValue<?>> topologicalOrder(@NonNull List<ReactiveValue<?>> values) {
+        final Map<ReactiveValue<?>, Set<Subscription<?, ?>>> reachable = new IdentityHashMap<>();
+        for (ReactiveValue<?> value : values) {
+            final Set<Subscription<?, ?>> downchain = new HashSet<>();
+            addDownchain(value, downchain);
+            reachable.put(value, downchain);
+        }
+
+        final List<ReactiveValue<?>> ordered = new ArrayList<>(values.size());
+        final List<ReactiveValue<?>> remaining = new ArrayList<>(values);
+        while (!remaining.isEmpty()) {
+            ReactiveValue<?> next = null;
+            for (ReactiveValue<?> candidate : remaining) {
+                boolean hasUpchain = false;
+                for (ReactiveValue<?> other : remaining) {
+                    if (other != candidate && reachable.get(other).contains(candidate)) {
+                        hasUpchain = true;
+                        break;
+                    }
+                }
+                if (!hasUpchain) {
+                    next = candidate;
+                    break;
+                }
+            }
+            if (next == null) {
+                next = remaining.get(0); // A cycle, keep the order in which values were set
+            }
+            remaining.remove(next);
+            ordered.add(next);
+        }
+
+        return ordered;
+    }
+
+    private static void addDownchain(@NonNull Subscription<?, ?> subscription,
+                                     @NonNull Set<Subscription<?, ?>> downchain) {
+        for (IReactiveTarget<?> target : subscription.reactiveTargets) {
+            if (target instanceof Subscription && downchain.add((Subscription<?, ?>) target)) {
+                addDownchain((Subscription<?, ?>) target, downchain);
+            }
+        }
+    }
+}
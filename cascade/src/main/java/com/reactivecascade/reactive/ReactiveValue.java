@@ -8,7 +8,9 @@ package com.reactivecascade.reactive;
 import android.support.annotation.CallSuper;
 import android.support.annotation.NonNull;
 import android.support.annotation.Nullable;
+import android.util.Log;
 
+import com.reactivecascade.i.IAction;
 import com.reactivecascade.i.IActionOne;
 import com.reactivecascade.i.IActionOneR;
 import com.reactivecascade.i.IAltFuture;
@@ -134,14 +136,43 @@ public class ReactiveValue<T> extends Subscription<T, T> implements IReactiveVal
     @CallSuper
     @NonNull
     @Override // ISafeGettable
+    @SuppressWarnings("unchecked")
     public T safeGet() {
+        final Object staged = ReactiveTransaction.getStaged(this);
+
+        if (staged != ReactiveTransaction.NOT_STAGED) {
+            return (T) staged;
+        }
+
         return mValueAR.get();
     }
 
+    /**
+     * Update several values together
+     * <p>
+     * Within the action, {@link #set(Object)} on the current thread is staged. {@link #get()} on the current
+     * thread returns the staged value, other threads see the previous value. When the action returns, all
+     * staged values are set before any of them fire, so reactive functions which read several values see a
+     * consistent state. Each changed value then fires once, upstream values first. A down-chain node subscribed
+     * to several of the changed values fires once with the latest input.
+     * <p>
+     * Transactions on the same thread nest and commit when the outermost one returns. {@link #compareAndSet(Object, Object)}
+     * and {@link #getAndSet(Object)} are not staged.
+     *
+     * @param action the updates to make
+     * @throws Exception from the action, in which case none of the staged values are set
+     */
+    public static void transaction(@NonNull IAction<?> action) throws Exception {
+        ReactiveTransaction.run(action);
+    }
+
     /**
      * Set the from in a thread-safe manner.
      * <p>
      * If set to <code>null</code>, the variable goes 'cold' and will not fire until set to a non-null from
+     * <p>
+     * Nothing fires if the value is equal to the previous value. Use {@link #distinctUntilChanged(com.reactivecascade.i.IActionTwoR)}
+     * to change how values are compared.
      *
      * @param value the new from asserted
      * @return <code>true</code> if the asserted from is different from the previous from
@@ -149,17 +180,35 @@ public class ReactiveValue<T> extends Subscription<T, T> implements IReactiveVal
     @CallSuper
     @Override // ISettable
     public void set(@NonNull T value) {
+        if (ReactiveTransaction.stage(this, value)) {
+            if (RCLog.isLoggable(Log.VERBOSE)) {
+                RCLog.v(this, "set(" + value + ") staged until the transaction commits");
+            }
+            return;
+        }
         T previousValue = AssertUtil.assertNotNull(mValueAR.getAndSet(value));
-        boolean valueChanged = !(value == previousValue
-                || (value.equals(previousValue))
-                || previousValue.equals(value));
+        boolean valueChanged;
+
+        if (isDistinctUntilChanged()) {
+            valueChanged = isDistinct(previousValue, value);
+        } else {
+            valueChanged = !(value == previousValue
+                    || (value.equals(previousValue))
+                    || previousValue.equals(value));
+        }
 
         if (valueChanged) {
-            RCLog.v(this, "Successful set(" + value + "), about to fire()");
-            fire(value);
+            if (RCLog.isLoggable(Log.VERBOSE)) {
+                RCLog.v(this, "Successful set(" + value + "), about to fire()");
+            }
+            if (!ReactiveTransaction.deferFire(this, value)) {
+                fire(value);
+            }
         } else {
             // The from has not changed
-            RCLog.v(this, "set() from=" + value + " was already the from, so no change");
+            if (RCLog.isLoggable(Log.VERBOSE)) {
+                RCLog.v(this, "set() from=" + value + " was already the from, so no change");
+            }
         }
     }
 
@@ -170,15 +219,21 @@ public class ReactiveValue<T> extends Subscription<T, T> implements IReactiveVal
         final boolean success = this.mValueAR.compareAndSet(expected, update);
 
         if (success) {
-            if (update != null) {
-                RCLog.v(this, "Successful compareAndSet(" + expected + ", " + update + "), will fire");
+            if (update != null && expected != null && !isDistinct(expected, update)) {
+                if (RCLog.isLoggable(Log.VERBOSE)) {
+                    RCLog.v(this, "Successful compareAndSet(" + expected + ", " + update + "), but the value is unchanged so no fire");
+                }
+            } else if (update != null) {
+                if (RCLog.isLoggable(Log.VERBOSE)) {
+                    RCLog.v(this, "Successful compareAndSet(" + expected + ", " + update + "), will fire");
+                }
                 fire(update);
-            } else {
+            } else if (RCLog.isLoggable(Log.VERBOSE)) {
                 RCLog.v(this, "Successful compareAndSet(" + expected + ", null). "
                         + Class.class.getSimpleName()
                         + " is now 'cold' and will not fire until set to a non-null from");
             }
-        } else {
+        } else if (RCLog.isLoggable(Log.DEBUG)) {
             RCLog.d(this, "compareAndSet(" + expected + ", " + update + ") FAILED. The current from is " + get());
         }
 
@@ -7,20 +7,26 @@ package com.reactivecascade.reactive;
 
 import android.support.annotation.NonNull;
 import android.support.annotation.Nullable;
+import android.util.Log;
 
 import com.reactivecascade.i.IAction;
 import com.reactivecascade.i.IActionOne;
 import com.reactivecascade.i.IActionOneR;
 import com.reactivecascade.i.IActionR;
+import com.reactivecascade.i.IActionTwoR;
 import com.reactivecascade.i.IAltFuture;
+import com.reactivecascade.i.IBindingContext;
 import com.reactivecascade.i.IReactiveSource;
 import com.reactivecascade.i.IReactiveTarget;
 import com.reactivecascade.i.IThreadType;
+import com.reactivecascade.i.ITracer;
 import com.reactivecascade.i.NotCallOrigin;
+import com.reactivecascade.util.FanOut;
+import com.reactivecascade.util.MpscQueue;
 import com.reactivecascade.util.Origin;
 import com.reactivecascade.util.RCLog;
+import com.reactivecascade.util.TraceUtil;
 
-import java.util.concurrent.CopyOnWriteArraySet;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicReference;
 
@@ -35,8 +41,12 @@ import static com.reactivecascade.Async.UI;
  * <code>Subscription</code>s are both an {@link IReactiveTarget} and
  * {@link IReactiveSource}.
  * <p>
+ * By default only the most recent value is processed when values arrive faster than they can be
+ * processed. Use {@link #setFireEveryValue(int)} for event streams where every value matters.
  * <p>
- * TODO Add setFireEveryValue(true) option to queue up and fire all states one by one. If inOrderExecutor, this fire will be FIFO sequential, otherwise concurrent
+ * Use {@link #distinctUntilChanged()} to not fire down-chain when the output is the same as the previous output.
+ * <p>
+ * Use {@link #bind(IBindingContext)} to suspend the subscription while a screen is paused and detach it when the screen closes.
  *
  * @param <OUT>
  * @param <IN>  the type of the second link in the active chain
@@ -51,23 +61,45 @@ public class Subscription<IN, OUT> extends Origin implements IReactiveTarget<IN>
     @NonNull
     protected final IActionOne<Exception> mOnError;
     @NonNull
-    protected final CopyOnWriteArraySet<IReactiveTarget<OUT>> reactiveTargets = new CopyOnWriteArraySet<>(); // Holding a strong reference is optional, depending on the binding type
+    protected final FanOut<IReactiveTarget<OUT>> reactiveTargets = new FanOut<>(); // Holding a strong reference is optional, depending on the binding type
     @NonNull
     protected final IActionOneR<IN, OUT> mOnFireAction;
     @NonNull
     private final String name;
     @NonNull
-    private final CopyOnWriteArraySet<IReactiveSource<IN>> reactiveSources = new CopyOnWriteArraySet<>();
+    private final FanOut<IReactiveSource<IN>> reactiveSources = new FanOut<>();
     @NonNull
     private final AtomicReference<Object> latestFireInAR = new AtomicReference<>(FIRE_ACTION_NOT_QUEUED); // If is FIRE_ACTION_NOT_QUEUED, re-queue fireAction on next fire()
     @NonNull
     private final AtomicBoolean mLatestFireInIsFireNext = new AtomicBoolean(false); // Signals high priority re-execution if still processing the previous from
     @NonNull
     private final Runnable mFireRunnable;
+    private final long mChainId; // Shared by all links in one chain when Async.TRACER is set
+    @NonNull
+    private final AtomicBoolean mFireQueueScheduled = new AtomicBoolean(false);
+    @Nullable
+    private volatile MpscQueue<IN> mFireQueue; // Not null in fire every value mode
+    @Nullable
+    private volatile MpscQueue<IN> mRetiredFireQueue; // Values queued when fire every value mode ended, for the scheduled drain to pass on
+    @Nullable
+    private Runnable mFireQueueRunnable;
+    private int mMaxBatchSize;
+    @Nullable
+    private volatile IActionTwoR<OUT, OUT, Boolean> mDistinctEquality; // Not null when down-chain fires are skipped for unchanged output
+    @NonNull
+    private final AtomicReference<Object> mHeldFireInAR = new AtomicReference<>(FIRE_ACTION_NOT_QUEUED);
+    @NonNull
+    private final AtomicReference<Object> mLastOutAR = new AtomicReference<>(IAltFuture.VALUE_NOT_AVAILABLE);
 
-    //TODO Use to unsubcribe from tail when IBindingContext is implemented
     @Nullable
-    private final IReactiveSource<IN> upchainReactiveSource; // This is held to keep the chain from being garbage collected until the tail of the chain is de-referenced
+    private volatile IReactiveSource<IN> upchainReactiveSource; // This is held to keep the chain from being garbage collected until the tail of the chain is de-referenced or the binding context closes
+    @Nullable
+    private volatile IBindingContext<?> mBindingContext; // Not null if bound, see bind()
+    @Nullable
+    private IActionOne<?> mOnBindingContextResumed; // Guarded by this
+    @Nullable
+    private IActionOne<?> mOnBindingContextClosed; // Guarded by this
+    private volatile boolean mDetached = false; // The binding context closed
 
     /**
      * Create a new default implementation of a reactive active chain link
@@ -90,6 +122,7 @@ public class Subscription<IN, OUT> extends Origin implements IReactiveTarget<IN>
                         @Nullable IActionOne<Exception> onError) {
         this.name = name;
         this.upchainReactiveSource = upchainReactiveSource;
+        this.mChainId = upchainReactiveSource instanceof Subscription ? ((Subscription) upchainReactiveSource).mChainId : TraceUtil.newChainId();
         if (upchainReactiveSource != null) {
             upchainReactiveSource.subscribe(this);
         }
@@ -112,7 +145,12 @@ public class Subscription<IN, OUT> extends Origin implements IReactiveTarget<IN>
             public void call() throws Exception {
                 Object latestValueFired = latestFireInAR.get();
 
-                doReceiveFire((IN) latestValueFired); // This step may take some time
+                TraceUtil.trace(ITracer.START, Subscription.this, mThreadType, mChainId);
+                try {
+                    doReceiveFire((IN) latestValueFired); // This step may take some time
+                } finally {
+                    TraceUtil.trace(ITracer.END, Subscription.this, mThreadType, mChainId);
+                }
                 if (!latestFireInAR.compareAndSet(latestValueFired, FIRE_ACTION_NOT_QUEUED)) {
                     if (mLatestFireInIsFireNext.getAndSet(true)) {
                         mThreadType.runNext(getFireRunnable()); // Input was set again while processing this from- re-queue to fire again after other pending work
@@ -128,6 +166,183 @@ public class Subscription<IN, OUT> extends Origin implements IReactiveTarget<IN>
         return mFireRunnable;
     }
 
+    /**
+     * Process every value fired, not only the most recent
+     * <p>
+     * Values are queued and processed one by one in the order they were fired from each thread. One task
+     * at a time processes up to <code>maxBatchSize</code> values before yielding to other work on the
+     * {@link IThreadType}, so the values are processed sequentially even if the thread type is not an
+     * in-order executor.
+     * <p>
+     * Down-chain subscriptions created after this call inherit the mode. Call this before the first value is fired.
+     * If values are still queued when the mode returns to processing only the most recent value, only the latest
+     * of them is processed.
+     *
+     * @param maxBatchSize the number of values to process per task, or <code>0</code> to return to the default mode of processing only the most recent value
+     * @return this
+     */
+    @NonNull
+    public synchronized Subscription<IN, OUT> setFireEveryValue(int maxBatchSize) {
+        if (maxBatchSize < 0) {
+            throw new IllegalArgumentException("maxBatchSize must not be negative: " + maxBatchSize);
+        }
+        mMaxBatchSize = maxBatchSize;
+        if (maxBatchSize == 0) {
+            final MpscQueue<IN> fireQueue = mFireQueue;
+
+            if (fireQueue != null) {
+                mRetiredFireQueue = fireQueue;
+                mFireQueue = null;
+                if (mFireQueueScheduled.compareAndSet(false, true)) {
+                    // No drain is scheduled, so this thread is the only consumer of the queue
+                    mRetiredFireQueue = null;
+                    fireLatest(fireQueue);
+                    mFireQueueScheduled.set(false);
+                }
+            }
+        } else if (mFireQueue == null) {
+            mFireQueueRunnable = mThreadType.wrapActionWithErrorProtection(this::drainFireQueue);
+            mFireQueue = new MpscQueue<>();
+        }
+
+        return this;
+    }
+
+    /**
+     * @return the number of values processed per task in fire every value mode, or <code>0</code> if only the most recent value is processed
+     * @see #setFireEveryValue(int)
+     */
+    public synchronized int getMaxBatchSize() {
+        return mMaxBatchSize;
+    }
+
+    /**
+     * Do not fire down-chain when the output is equal to the previous output
+     * <p>
+     * Values are compared with {@link Object#equals(Object)}. Unchanged values are dropped before they
+     * are queued to any down-chain target.
+     *
+     * @return this
+     */
+    @Override // IReactiveSource
+    @NonNull
+    public Subscription<IN, OUT> distinctUntilChanged() {
+        return distinctUntilChanged((previous, value) -> previous == value || previous.equals(value));
+    }
+
+    /**
+     * Do not fire down-chain when the output is the same as the previous output
+     * <p>
+     * Unchanged values are dropped before they are queued to any down-chain target.
+     *
+     * @param equality returns <code>true</code> if the new output (second parameter) is the same as the previous output (first parameter), or
+     *                 <code>null</code> to fire every output
+     * @return this
+     */
+    @Override // IReactiveSource
+    @NonNull
+    public Subscription<IN, OUT> distinctUntilChanged(@Nullable IActionTwoR<OUT, OUT, Boolean> equality) {
+        mDistinctEquality = equality;
+        mLastOutAR.set(IAltFuture.VALUE_NOT_AVAILABLE);
+
+        return this;
+    }
+
+    /**
+     * @return <code>true</code> if {@link #distinctUntilChanged(IActionTwoR)} is active
+     */
+    protected boolean isDistinctUntilChanged() {
+        return mDistinctEquality != null;
+    }
+
+    /**
+     * Check if a value differs from the previous one according to {@link #distinctUntilChanged(IActionTwoR)}
+     *
+     * @param previous the earlier value, or {@link IAltFuture#VALUE_NOT_AVAILABLE}
+     * @param value    the new value
+     * @return <code>true</code> if there is no equality test, there is no previous value, or the equality test says they differ
+     */
+    @SuppressWarnings("unchecked")
+    protected boolean isDistinct(@NonNull Object previous,
+                                 @NonNull OUT value) {
+        final IActionTwoR<OUT, OUT, Boolean> equality = mDistinctEquality;
+
+        if (equality == null || previous == IAltFuture.VALUE_NOT_AVAILABLE) {
+            return true;
+        }
+        try {
+            return !equality.call((OUT) previous, value);
+        } catch (Exception e) {
+            RCLog.e(this, "distinctUntilChanged equality test failed, the value will fire: " + value, e);
+            return true;
+        }
+    }
+
+    /**
+     * Pass the latest value of a queue which is no longer used to the most recent value mode. Call this only as the consumer of the queue.
+     */
+    private void fireLatest(@NonNull MpscQueue<IN> fireQueue) {
+        IN latest = null;
+        IN in;
+
+        while ((in = fireQueue.poll()) != null) {
+            latest = in;
+        }
+        if (latest != null) {
+            if (RCLog.isLoggable(Log.DEBUG)) {
+                RCLog.d(this, "Fire every value mode ended with values queued, only the latest will fire: " + latest);
+            }
+            fire(latest);
+        }
+    }
+
+    @NotCallOrigin
+    private void drainFireQueue() throws Exception {
+        final MpscQueue<IN> retiredFireQueue = mRetiredFireQueue;
+
+        if (retiredFireQueue != null) {
+            mRetiredFireQueue = null;
+            fireLatest(retiredFireQueue);
+        }
+        final MpscQueue<IN> fireQueue = mFireQueue;
+
+        if (fireQueue == null) {
+            mFireQueueScheduled.set(false);
+            return;
+        }
+        final int maxBatchSize = isSuspended() || mDetached ? 0 : getMaxBatchSize();
+        IN in;
+        int n = 0;
+
+        TraceUtil.trace(ITracer.START, this, mThreadType, mChainId);
+        try {
+            while (n++ < maxBatchSize && (in = fireQueue.poll()) != null) {
+                try {
+                    doReceiveFire(in);
+                } catch (Exception e) {
+                    mOnError.call(e); // One failed value does not stop the values after it
+                }
+            }
+        } finally {
+            TraceUtil.trace(ITracer.END, this, mThreadType, mChainId);
+            mFireQueueScheduled.set(false);
+            if (!isSuspended() && !mDetached && !fireQueue.isEmpty()) {
+                scheduleFireQueue(false);
+            }
+        }
+    }
+
+    private void scheduleFireQueue(boolean next) {
+        if (mFireQueueScheduled.compareAndSet(false, true)) {
+            TraceUtil.trace(ITracer.ENQUEUE, this, mThreadType, mChainId);
+            if (next) {
+                mThreadType.runNext(mFireQueueRunnable);
+            } else {
+                mThreadType.run(mFireQueueRunnable);
+            }
+        }
+    }
+
 //================================= Public Utility Methods =======================================
 
     @Override // INamed
@@ -204,7 +419,26 @@ public class Subscription<IN, OUT> extends Origin implements IReactiveTarget<IN>
     @NotCallOrigin
     @Override // IReactiveTarget
     public void fire(@NonNull IN in) {
-        RCLog.v(this, "fire latestFireInAR=" + in);
+        if (RCLog.isLoggable(Log.VERBOSE)) {
+            RCLog.v(this, "fire latestFireInAR=" + in);
+        }
+        TraceUtil.trace(ITracer.FORK, this, mThreadType, mChainId);
+        if (mDetached || holdFire(in)) {
+            return;
+        }
+        final MpscQueue<IN> fireQueue = mFireQueue;
+        if (fireQueue != null) {
+            if (in != IAltFuture.VALUE_NOT_AVAILABLE) {
+                fireQueue.offer(in);
+                if (!isSuspended()) {
+                    scheduleFireQueue(false);
+                }
+            }
+            return;
+        }
+        if (in == IAltFuture.VALUE_NOT_AVAILABLE) {
+            return; // Storing it would look like a queued fire, and the next value would never be queued
+        }
         mLatestFireInIsFireNext.set(false);
         /*
          There is a race at this point between latestFireInAR and mLatestFireInIsFireNext.
@@ -214,8 +448,9 @@ public class Subscription<IN, OUT> extends Origin implements IReactiveTarget<IN>
          This design is more efficient than the memory thrash at every reactive evaluation step that
          would explicitly atomically couple the signals into a new Pair(in, boolean) structure.
          */
-        if (latestFireInAR.getAndSet(in) == FIRE_ACTION_NOT_QUEUED && in != IAltFuture.VALUE_NOT_AVAILABLE) {
+        if (latestFireInAR.getAndSet(in) == FIRE_ACTION_NOT_QUEUED) {
             // Only queue for execution if not already queued
+            TraceUtil.trace(ITracer.ENQUEUE, this, mThreadType, mChainId);
             mThreadType.run(getFireRunnable());
         }
     }
@@ -224,9 +459,29 @@ public class Subscription<IN, OUT> extends Origin implements IReactiveTarget<IN>
     @Override // IReactiveTarget
     //TODO This looks a mess- can we clean up to eliminate this method entirely?
     public void fireNext(@NonNull IN in) {
-        RCLog.v(this, "fireNext latestFireInAR=" + in);
+        if (RCLog.isLoggable(Log.VERBOSE)) {
+            RCLog.v(this, "fireNext latestFireInAR=" + in);
+        }
+        TraceUtil.trace(ITracer.FORK, this, mThreadType, mChainId);
+        if (mDetached || holdFire(in)) {
+            return;
+        }
+        final MpscQueue<IN> fireQueue = mFireQueue;
+        if (fireQueue != null) {
+            if (in != IAltFuture.VALUE_NOT_AVAILABLE) {
+                fireQueue.offer(in);
+                if (!isSuspended()) {
+                    scheduleFireQueue(true);
+                }
+            }
+            return;
+        }
+        if (in == IAltFuture.VALUE_NOT_AVAILABLE) {
+            return;
+        }
         if (latestFireInAR.getAndSet(in) == FIRE_ACTION_NOT_QUEUED) {
             // Only queue for execution if not already queued
+            TraceUtil.trace(ITracer.ENQUEUE, this, mThreadType, mChainId);
             mThreadType.runNext(mFireRunnable);
         } else {
             // Already queued for execution, but possibly not soon- push it to the top of the stack
@@ -234,6 +489,67 @@ public class Subscription<IN, OUT> extends Origin implements IReactiveTarget<IN>
         }
     }
 
+    /**
+     * Process a value synchronously on the current thread instead of queueing it. Call this only from the
+     * thread type of this subscription.
+     *
+     * @param in the value
+     */
+    @NotCallOrigin
+    void fireNow(@NonNull IN in) {
+        TraceUtil.trace(ITracer.START, this, mThreadType, mChainId);
+        try {
+            doReceiveFire(in);
+        } catch (Exception e) {
+            try {
+                mOnError.call(e);
+            } catch (Exception e2) {
+                RCLog.e(this, "Problem in onError, name=" + getName(), e2);
+            }
+        } finally {
+            TraceUtil.trace(ITracer.END, this, mThreadType, mChainId);
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private void fireHeld() {
+        final Object held = mHeldFireInAR.getAndSet(FIRE_ACTION_NOT_QUEUED);
+
+        if (held != FIRE_ACTION_NOT_QUEUED) {
+            fireNext((IN) held);
+        }
+    }
+
+    /**
+     * @return <code>true</code> if the value was kept for the end of the transaction firing it, or until the binding context resumes
+     */
+    private boolean holdFire(@NonNull IN in) {
+        if (mFireQueue != null || in == IAltFuture.VALUE_NOT_AVAILABLE) {
+            return false;
+        }
+        if (ReactiveTransaction.holdFire(this, in)) {
+            return true;
+        }
+        if (!isSuspended()) {
+            return false;
+        }
+        mHeldFireInAR.set(in);
+        if (!isSuspended()) {
+            fireHeld(); // Resumed concurrently
+        }
+
+        return true;
+    }
+
+    /**
+     * @return <code>true</code> if the binding context is not open or is paused
+     */
+    private boolean isSuspended() {
+        final IBindingContext<?> bindingContext = mBindingContext;
+
+        return bindingContext != null && (!bindingContext.isOpen() || bindingContext.isPaused());
+    }
+
     @NotCallOrigin
     private void doReceiveFire(@NonNull IN in) throws Exception {
         final OUT out = doAction(in);
@@ -251,8 +567,9 @@ public class Subscription<IN, OUT> extends Origin implements IReactiveTarget<IN>
     @NotCallOrigin
     @NonNull
     private OUT doAction(@NonNull final IN in) throws Exception {
-        RCLog.v(this, "doReceiveFire \"" + getName() + " from=" + in);
-//        visualize(getName(), latestFireInAR.toString(), "AbstractBinding");
+        if (RCLog.isLoggable(Log.VERBOSE)) {
+            RCLog.v(this, "doReceiveFire \"" + getName() + " from=" + in);
+        }
 
         return mOnFireAction.call(in);
     }
@@ -263,13 +580,23 @@ public class Subscription<IN, OUT> extends Origin implements IReactiveTarget<IN>
     @NotCallOrigin
     private void doDownchainActions(@NonNull IN in,
                                     @NonNull OUT out) throws Exception {
+        if (isDistinctUntilChanged() && !isDistinct(mLastOutAR.getAndSet(out), out)) {
+            if (RCLog.isLoggable(Log.VERBOSE)) {
+                RCLog.v(this, "Output unchanged, down-chain reactive targets not fired, from=" + out);
+            }
+            return;
+        }
         forEachReactiveTarget(reactiveTarget -> {
-            RCLog.v(this, "Fire down-chain reactive target " + reactiveTarget.getName() + ", from=" + out);
+            if (RCLog.isLoggable(Log.VERBOSE)) {
+                RCLog.v(this, "Fire down-chain reactive target " + reactiveTarget.getName() + ", from=" + out);
+            }
             reactiveTarget.fireNext(out);
             return false;
         });
-        if (reactiveTargets.size() == 0) {
-            RCLog.v(this, "Fire down-chain reactive targets, but there are zero targets for " + getName() + ", from=" + out);
+        if (reactiveTargets.isEmpty()) {
+            if (RCLog.isLoggable(Log.VERBOSE)) {
+                RCLog.v(this, "Fire down-chain reactive targets, but there are zero targets for " + getName() + ", from=" + out);
+            }
         }
     }
 
@@ -374,7 +701,8 @@ public class Subscription<IN, OUT> extends Origin implements IReactiveTarget<IN>
     public <DOWNCHAIN_OUT> IReactiveSource<DOWNCHAIN_OUT> subscribeMap(
             @NonNull IThreadType threadType,
             @NonNull IActionOneR<OUT, DOWNCHAIN_OUT> action) {
-        final IReactiveSource<DOWNCHAIN_OUT> subscription = new Subscription<>(getName(), this, threadType, action, mOnError);
+        final Subscription<OUT, DOWNCHAIN_OUT> subscription = new Subscription<>(getName(), this, threadType, action, mOnError);
+        inheritFireMode(subscription);
         subscribe((IReactiveTarget<OUT>) subscription); //TODO Suspicious cast here
 
         return subscription;
@@ -403,14 +731,141 @@ public class Subscription<IN, OUT> extends Origin implements IReactiveTarget<IN>
     @NonNull
     public <DOWNCHAIN_OUT> IReactiveSource<DOWNCHAIN_OUT> subscribe(@NonNull IThreadType threadType,
                                                                     @NonNull IActionR<DOWNCHAIN_OUT> action) {
-        final IReactiveSource<DOWNCHAIN_OUT> subscription = new Subscription<>(
+        final Subscription<OUT, DOWNCHAIN_OUT> subscription = new Subscription<>(
                 getName(), this, threadType,
                 t -> {
                     return action.call();
                 },
                 mOnError);
+        inheritFireMode(subscription);
         subscribe((IReactiveTarget<OUT>) subscription);
 
         return subscription;
     }
+
+    @Override // IReactiveSource
+    @NonNull
+    public IReactiveSource<OUT> throttleFirst(long windowMillis) {
+        return subscribeRateLimited(RateLimitedSubscription.THROTTLE_FIRST, windowMillis);
+    }
+
+    @Override // IReactiveSource
+    @NonNull
+    public IReactiveSource<OUT> throttleLast(long periodMillis) {
+        return subscribeRateLimited(RateLimitedSubscription.THROTTLE_LAST, periodMillis);
+    }
+
+    @Override // IReactiveSource
+    @NonNull
+    public IReactiveSource<OUT> sample(long periodMillis) {
+        return throttleLast(periodMillis);
+    }
+
+    @Override // IReactiveSource
+    @NonNull
+    public IReactiveSource<OUT> debounce(long quietMillis) {
+        return subscribeRateLimited(RateLimitedSubscription.DEBOUNCE, quietMillis);
+    }
+
+    @NonNull
+    private IReactiveSource<OUT> subscribeRateLimited(@RateLimitedSubscription.RateLimit int rateLimit,
+                                                      long periodMillis) {
+        final RateLimitedSubscription<OUT> subscription = new RateLimitedSubscription<>(getName(), this, mThreadType, rateLimit, periodMillis, mOnError);
+        subscribe(subscription);
+
+        return subscription;
+    }
+
+    @Override // IReactiveSource
+    @NonNull
+    public Subscription<IN, OUT> bind(@NonNull IBindingContext<?> bindingContext) {
+        bindTo(bindingContext);
+
+        return this;
+    }
+
+    private synchronized <T> void bindTo(@NonNull IBindingContext<T> bindingContext) {
+        if (mBindingContext != null) {
+            throw new IllegalStateException(getName() + " is already bound to " + mBindingContext);
+        }
+        if (bindingContext.isClosed()) {
+            detach("Bound to a binding context which is already closed"); // It would stay suspended forever
+            return;
+        }
+        final IActionOne<T> onResumed = t -> onBindingContextResumed();
+        final IActionOne<T> onClosed = t -> detach("Binding context closed");
+
+        mBindingContext = bindingContext;
+        mOnBindingContextResumed = onResumed;
+        mOnBindingContextClosed = onClosed;
+        bindingContext.onOpen(onResumed);
+        bindingContext.onResume(onResumed);
+        bindingContext.onClose(onClosed);
+        RCLog.v(this, "Bound to " + bindingContext);
+    }
+
+    private void onBindingContextResumed() {
+        fireHeld();
+        if (mFireQueue != null) {
+            scheduleFireQueue(false);
+        }
+    }
+
+    /**
+     * Stop receiving values and release the up-chain nodes so that this branch of the reactive chain can be garbage collected
+     *
+     * @param reason for the log
+     */
+    @SuppressWarnings("unchecked")
+    private void detach(@NonNull String reason) {
+        mDetached = true;
+        synchronized (this) {
+            final IBindingContext<Object> bindingContext = (IBindingContext<Object>) mBindingContext;
+
+            if (bindingContext != null && mOnBindingContextResumed != null) {
+                bindingContext.removeAction((IActionOne<Object>) mOnBindingContextResumed);
+                bindingContext.removeAction((IActionOne<Object>) mOnBindingContextClosed);
+                mOnBindingContextResumed = null;
+                mOnBindingContextClosed = null;
+            }
+        }
+        mHeldFireInAR.set(FIRE_ACTION_NOT_QUEUED);
+        for (IReactiveSource<IN> reactiveSource : reactiveSources) {
+            reactiveSource.unsubscribe(reason, this);
+        }
+        reactiveSources.clear();
+        upchainReactiveSource = null;
+        RCLog.v(this, "Detached, reason=" + reason);
+    }
+
+    @Override // IReactiveSource
+    @NonNull
+    public IReactiveSource<OUT> subscribe(@NonNull IBindingContext<?> bindingContext,
+                                          @NonNull IActionOne<OUT> action) {
+        return subscribe(bindingContext, mThreadType, action);
+    }
+
+    @Override // IReactiveSource
+    @NonNull
+    public IReactiveSource<OUT> subscribe(@NonNull IBindingContext<?> bindingContext,
+                                          @NonNull IThreadType threadType,
+                                          @NonNull IActionOne<OUT> action) {
+        return subscribe(threadType, action).bind(bindingContext);
+    }
+
+    @Override // IReactiveSource
+    @NonNull
+    public <DOWNCHAIN_OUT> IReactiveSource<DOWNCHAIN_OUT> subscribeMap(@NonNull IBindingContext<?> bindingContext,
+                                                                       @NonNull IThreadType threadType,
+                                                                       @NonNull IActionOneR<OUT, DOWNCHAIN_OUT> action) {
+        return subscribeMap(threadType, action).bind(bindingContext);
+    }
+
+    private void inheritFireMode(@NonNull Subscription<?, ?> downchainSubscription) {
+        final int maxBatchSize = getMaxBatchSize();
+
+        if (maxBatchSize > 0) {
+            downchainSubscription.setFireEveryValue(maxBatchSize);
+        }
+    }
 }
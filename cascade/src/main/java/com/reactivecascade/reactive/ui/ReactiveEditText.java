@@ -126,7 +126,7 @@ public class ReactiveEditText extends EditText implements INamed, IAsyncOrigin {
     @NonNull
     public ReactiveValue<String> setReactiveValue(@NonNull ReactiveValue<String> reactiveValue,
                                                   final boolean fire) {
-        UI.run(() -> {
+        UI.execute(() -> {
             this.mReactiveValue = reactiveValue;
             if (fire) {
                 reactiveValue.fire();
@@ -28,10 +28,12 @@ import com.reactivecascade.i.NotCallOrigin;
 import java.util.ArrayList;
 import java.util.Deque;
 import java.util.List;
+import java.util.Locale;
 import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Future;
 import java.util.concurrent.FutureTask;
+import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
 
 /**
@@ -74,7 +76,7 @@ public abstract class AbstractThreadType extends Origin implements IThreadType {
     private static boolean isMistakenlyCalledDirectlyFromOutsideTheCascadeLibrary() {
         //TODO This check doesn't really allow 3rd party implementations. Not testing would mean unsafe/less obvious problems can come later. Package hiding would disallow replacement implementations that follow the interface contracts. What we have here is a half measure to guide people since currently there are no alternate implementations.
         StackTraceElement[] ste = Thread.currentThread().getStackTrace();
-        AssertUtil.assertTrue("Stack trace[3] is AbstractThreadType.fork(IRunnableAltFuture)", ste[3].getMethodName().contains("fork"));
+        AssertUtil.assertTrue("Stack trace[3] is AbstractThreadType.fork(IRunnableAltFuture)", ste[3].getMethodName().toLowerCase(Locale.US).contains("fork"));
         return !ste[4].getClassName().startsWith("com.reactivecascade");
     }
 
@@ -159,7 +161,9 @@ public abstract class AbstractThreadType extends Origin implements IThreadType {
             if (moved) {
                 ((Deque<Runnable>) queue).addFirst(runnable);
             }
-            RCLog.v(this, "moveToHeadOfQueue() moved=" + moved);
+            if (RCLog.isLoggable(Log.VERBOSE)) {
+                RCLog.v(this, "moveToHeadOfQueue() moved=" + moved);
+            }
 
             return moved;
         }
@@ -224,7 +228,9 @@ public abstract class AbstractThreadType extends Origin implements IThreadType {
     public final <IN> List<IAltFuture<IN, IN>> then(@NonNull IAction<IN>... actions) {
         List<IAltFuture<IN, IN>> altFutures = new ArrayList<>(actions.length);
 
-        RCLog.v(this, "map(List[" + actions.length + "])");
+        if (RCLog.isLoggable(Log.VERBOSE)) {
+            RCLog.v(this, "map(List[" + actions.length + "])");
+        }
         for (final IAction<IN> action : actions) {
             altFutures.add(then(action));
         }
@@ -239,7 +245,9 @@ public abstract class AbstractThreadType extends Origin implements IThreadType {
     public final <IN, OUT> List<IAltFuture<IN, OUT>> then(@NonNull IActionR<OUT>... actions) {
         List<IAltFuture<IN, OUT>> altFutures = new ArrayList<>(actions.length);
 
-        RCLog.v(this, "map(List[" + actions.length + "])");
+        if (RCLog.isLoggable(Log.VERBOSE)) {
+            RCLog.v(this, "map(List[" + actions.length + "])");
+        }
         for (final IActionR<OUT> action : actions) {
             altFutures.add(then(action));
         }
@@ -284,6 +292,24 @@ public abstract class AbstractThreadType extends Origin implements IThreadType {
         run(runnableAltFuture); // Atomic state checks must be completed later in the .run() method
     }
 
+    /**
+     * Create the executor and start its core threads now, rather than when the first task is run
+     * <p>
+     * This blocks while threads start. See {@link com.reactivecascade.Async#prestart(IThreadType...)} to do it in the background.
+     *
+     * @return the number of threads started
+     */
+    public int prestart() {
+        if (executorService instanceof LazyExecutorService) {
+            return ((LazyExecutorService) executorService).prestart();
+        }
+        if (executorService instanceof ThreadPoolExecutor) {
+            return ((ThreadPoolExecutor) executorService).prestartAllCoreThreads();
+        }
+
+        return 0;
+    }
+
     @Override // IThreadType
     public boolean isShutdown() {
         return executorService.isShutdown();
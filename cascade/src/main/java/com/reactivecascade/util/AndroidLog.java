@@ -0,0 +1,40 @@
+/*
+This file is part of Reactive Cascade which is released under The MIT License.
+See license.md , https://github.com/futurice/cascade and http://reactivecascade.com for details.
+This is open source for the common good. Please contribute improvements by pull request or contact paulirotta@gmail.com
+*/
+package com.reactivecascade.util;
+
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+import android.util.Log;
+
+import com.reactivecascade.i.ILog;
+
+/**
+ * The default {@link ILog}. Write synchronously to {@link android.util.Log} on the calling thread.
+ */
+public class AndroidLog implements ILog {
+    @Override // ILog
+    public void log(int priority,
+                    @NonNull String tag,
+                    @NonNull String message,
+                    @Nullable Throwable t) {
+        switch (priority) {
+            case Log.VERBOSE:
+                Log.v(tag, message, t);
+                break;
+            case Log.DEBUG:
+                Log.d(tag, message, t);
+                break;
+            case Log.INFO:
+                Log.i(tag, message, t);
+                break;
+            case Log.WARN:
+                Log.w(tag, message, t);
+                break;
+            default:
+                Log.e(tag, message, t);
+        }
+    }
+}
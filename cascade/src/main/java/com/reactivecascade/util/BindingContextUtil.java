@@ -12,21 +12,52 @@ import android.support.annotation.UiThread;
 import android.support.v4.app.Fragment;
 import android.support.v4.app.FragmentActivity;
 
+import com.reactivecascade.i.IAction;
 import com.reactivecascade.i.IActionOne;
+import com.reactivecascade.i.IAltFuture;
 import com.reactivecascade.i.IBindingContext;
 
+import java.util.Collections;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.CopyOnWriteArraySet;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicReference;
 
 /**
  * Default binding context implementations
- *
- * TODO WIP - this class is not yet complete and in-use
  */
 public class BindingContextUtil {
     private static final String TAG = BindingContextUtil.class.getSimpleName();
+    private static final List<Runnable> PAUSE_ACTIONS = new CopyOnWriteArrayList<>();
+
+    /**
+     * Add an action to run each time an {@link AsyncFragmentActivity} or {@link AsyncFragment} pauses.
+     * This is for example where unsaved state is written, since the process may be killed any time
+     * after a pause without running {@link com.reactivecascade.Async#addShutdownAction(Runnable) shutdown actions}.
+     * <p>
+     * Pause actions run on the UI thread in the order they were added. They should not block.
+     *
+     * @param action to run
+     */
+    public static void addPauseAction(@NonNull Runnable action) {
+        PAUSE_ACTIONS.add(action);
+    }
+
+    @UiThread
+    private static void runPauseActions() {
+        for (Runnable action : PAUSE_ACTIONS) {
+            try {
+                action.run();
+            } catch (Exception e) {
+                RCLog.e(TAG, "Problem in pause action " + action, e);
+            }
+        }
+    }
 
     /**
      * The default implementation of a state-change notification to start and stop data-driven reactive actions
@@ -36,7 +67,11 @@ public class BindingContextUtil {
     public static class DefaultBindingContext<T> implements IBindingContext<T> {
         private final CopyOnWriteArraySet<IActionOne<T>> onOpenActions = new CopyOnWriteArraySet<>();
         private final CopyOnWriteArraySet<IActionOne<T>> onCloseActions = new CopyOnWriteArraySet<>();
+        private final CopyOnWriteArraySet<IActionOne<T>> onPauseActions = new CopyOnWriteArraySet<>();
+        private final CopyOnWriteArraySet<IActionOne<T>> onResumeActions = new CopyOnWriteArraySet<>();
         private final AtomicReference<T> bindingContextAR = new AtomicReference<>(null);
+        private final AtomicBoolean paused = new AtomicBoolean(false);
+        private volatile boolean closed = false;
 
         /**
          *
@@ -55,6 +90,7 @@ public class BindingContextUtil {
         @Override
         public final void openBindingContext(T t) {
             if (bindingContextAR.compareAndSet(null, t)) {
+                closed = false;
                 doBindingContextStateChangeActions(onOpenActions, t);
             } else {
                 RCLog.d(this, "Can not openBindingContext: illegal transition from " + bindingContextAR.get() + " to " + t);
@@ -68,12 +104,50 @@ public class BindingContextUtil {
         @Override
         public final void closeBindingContext(T t) {
             if (bindingContextAR.compareAndSet(t, null)) {
+                paused.set(false);
+                closed = true;
                 doBindingContextStateChangeActions(onCloseActions, t);
             } else {
                 RCLog.d(this, "Can not closeBindingContext: illegal transition from " + bindingContextAR.get() + " to " + t);
             }
         }
 
+        @Override // IBindingContext
+        public boolean isPaused() {
+            return paused.get();
+        }
+
+        @Override // IBindingContext
+        public boolean isClosed() {
+            return closed;
+        }
+
+        @Override // IBindingContext
+        public final void pauseBindingContext(T t) {
+            if (bindingContextAR.get() == t && paused.compareAndSet(false, true)) {
+                doBindingContextStateChangeActions(onPauseActions, t);
+            } else {
+                RCLog.d(this, "Can not pauseBindingContext: context is " + bindingContextAR.get() + ", paused=" + paused.get());
+            }
+        }
+
+        @Override // IBindingContext
+        public final void resumeBindingContext(T t) {
+            if (paused.compareAndSet(true, false)) {
+                doBindingContextStateChangeActions(onResumeActions, t);
+            }
+        }
+
+        @Override // IBindingContext
+        public final void onPause(@NonNull IActionOne<T> action) {
+            onPauseActions.add(action);
+        }
+
+        @Override // IBindingContext
+        public final void onResume(@NonNull IActionOne<T> action) {
+            onResumeActions.add(action);
+        }
+
         /**
          *
          * @param action
@@ -100,6 +174,21 @@ public class BindingContextUtil {
             onCloseActions.add(action);
         }
 
+        @Override // IBindingContext
+        public final void removeAction(@NonNull IActionOne<T> action) {
+            onOpenActions.remove(action);
+            onCloseActions.remove(action);
+            onPauseActions.remove(action);
+            onResumeActions.remove(action);
+        }
+
+        /**
+         * @return the number of actions performed on state changes
+         */
+        public int getActionCount() {
+            return onOpenActions.size() + onCloseActions.size() + onPauseActions.size() + onResumeActions.size();
+        }
+
         private void doBindingContextStateChangeActions(Set<IActionOne<T>> actions, T t) {
             Exception caught = null;
 
@@ -118,21 +207,171 @@ public class BindingContextUtil {
         }
     }
 
+    /**
+     * A binding context which cancels the {@link IAltFuture}s started within it when it closes
+     * <p>
+     * Alt futures are tracked if they are created on a thread while that thread is in {@link #runTracked(IAction)},
+     * or while a tracked alt future is running, or if they are passed to {@link #track(IAltFuture)}. When the context
+     * closes, all tracked alt futures which are not done are {@link IAltFuture#cancel(String)}led. Those not yet
+     * started will not run. Those already running see {@link IAltFuture#isCancelled()} and their results are discarded.
+     *
+     * @param <T> the type of object which will control these state changes
+     */
+    public static class AltFutureBindingContext<T> extends DefaultBindingContext<T> {
+        private static final ThreadLocal<AltFutureBindingContext<?>> CURRENT = new ThreadLocal<>();
+        private static final AtomicInteger sActiveCount = new AtomicInteger(); // Skip the ThreadLocal lookup when no thread is tracking
+        private static final int MIN_PRUNE_SIZE = 32;
+
+        private final Set<IAltFuture<?, ?>> altFutures = Collections.newSetFromMap(new ConcurrentHashMap<IAltFuture<?, ?>, Boolean>());
+        private final AtomicInteger pruneSize = new AtomicInteger(MIN_PRUNE_SIZE);
+
+        public AltFutureBindingContext() {
+            onClose(t -> cancelAll("Binding context closed: " + t));
+        }
+
+        /**
+         * Track all alt futures created on the current thread while the action runs
+         *
+         * @param action which creates alt futures, for example by building and forking a chain
+         * @throws Exception from the action
+         */
+        public void runTracked(@NonNull IAction<?> action) throws Exception {
+            final AltFutureBindingContext<?> previous = enter(this);
+
+            try {
+                action.call();
+            } finally {
+                exit(previous);
+            }
+        }
+
+        /**
+         * Track an alt future. If this context is already closed, it is cancelled now.
+         *
+         * @param altFuture to cancel when this context closes
+         * @param <A>       the alt future type
+         * @return the alt future
+         */
+        @NonNull
+        public <A extends IAltFuture<?, ?>> A track(@NonNull A altFuture) {
+            if (isClosed()) {
+                altFuture.cancel("Binding context already closed");
+                return altFuture;
+            }
+            altFutures.add(altFuture);
+            if (altFutures.size() > pruneSize.get()) {
+                pruneDone();
+            }
+            if (isClosed()) {
+                altFuture.cancel("Binding context closed"); // Closed concurrently
+            }
+
+            return altFuture;
+        }
+
+        /**
+         * Stop tracking an alt future, for example because it is done
+         *
+         * @param altFuture previously tracked
+         */
+        public void untrack(@NonNull IAltFuture<?, ?> altFuture) {
+            altFutures.remove(altFuture);
+        }
+
+        /**
+         * @return the number of alt futures currently tracked. Some of these may be done but not yet pruned
+         */
+        public int getTrackedCount() {
+            return altFutures.size();
+        }
+
+        private void pruneDone() {
+            for (IAltFuture<?, ?> altFuture : altFutures) {
+                if (altFuture.isDone()) {
+                    altFutures.remove(altFuture);
+                }
+            }
+            pruneSize.set(Math.max(MIN_PRUNE_SIZE, 2 * altFutures.size()));
+        }
+
+        private void cancelAll(@NonNull String reason) {
+            int count = 0;
+
+            for (IAltFuture<?, ?> altFuture : altFutures) {
+                if (!altFuture.isDone() && altFuture.cancel(reason)) {
+                    count++;
+                }
+            }
+            altFutures.clear();
+            RCLog.d(this, "Cancelled " + count + " alt futures, reason=" + reason);
+        }
+
+        /**
+         * Called by each new alt future. If the current thread is tracking, the alt future is added to that context.
+         *
+         * @param altFuture just created
+         * @return the context now tracking the alt future, or <code>null</code>
+         */
+        @Nullable
+        public static AltFutureBindingContext<?> onAltFutureCreated(@NonNull IAltFuture<?, ?> altFuture) {
+            if (sActiveCount.get() == 0) {
+                return null;
+            }
+            final AltFutureBindingContext<?> bindingContext = CURRENT.get();
+            if (bindingContext != null) {
+                bindingContext.track(altFuture);
+            }
+
+            return bindingContext;
+        }
+
+        /**
+         * Make a context current on this thread, for example while a tracked alt future runs
+         *
+         * @param bindingContext to make current
+         * @return the previously current context, to pass to {@link #exit(AltFutureBindingContext)}
+         */
+        @Nullable
+        public static AltFutureBindingContext<?> enter(@NonNull AltFutureBindingContext<?> bindingContext) {
+            final AltFutureBindingContext<?> previous = CURRENT.get();
+            CURRENT.set(bindingContext);
+            sActiveCount.incrementAndGet();
+
+            return previous;
+        }
+
+        /**
+         * End {@link #enter(AltFutureBindingContext)}
+         *
+         * @param previous the value returned by {@link #enter(AltFutureBindingContext)}
+         */
+        public static void exit(@Nullable AltFutureBindingContext<?> previous) {
+            sActiveCount.decrementAndGet();
+            if (previous == null) {
+                CURRENT.remove();
+            } else {
+                CURRENT.set(previous);
+            }
+        }
+    }
+
     /**
      * A parent class for a {@link Fragment} that will provide a binding context to automatically
      * pause/resume/close reactive bindings
      */
     public static class AsyncFragment extends Fragment {
-        private IBindingContext<Fragment> startStopBindingContext = new DefaultBindingContext<>();
+        private AltFutureBindingContext<Fragment> startStopBindingContext = new AltFutureBindingContext<>();
         private IBindingContext<Fragment> pauseResumeBindingContext = new DefaultBindingContext<>();
 
         /**
+         * Reactive chains bound to this context suspend while the fragment is paused and detach when it stops.
+         * Alt futures tracked by this context are cancelled when it stops.
          *
-         * @return
+         * @return a new binding context each time the {@link Fragment} is stopped
          */
         @NonNull
         @UiThread
-        public final IBindingContext getStartStopBindingContext() {
+        public final AltFutureBindingContext<Fragment> getStartStopBindingContext() {
             return startStopBindingContext;
         }
 
@@ -146,6 +385,17 @@ public class BindingContextUtil {
             return pauseResumeBindingContext;
         }
 
+        /**
+         *
+         */
+        @Override
+        @UiThread
+        @CallSuper
+        public void onStart() {
+            startStopBindingContext.openBindingContext(this);
+            super.onStart();
+        }
+
         /**
          *
          */
@@ -153,6 +403,7 @@ public class BindingContextUtil {
         @UiThread
         @CallSuper
         public void onResume() {
+            startStopBindingContext.resumeBindingContext(this);
             pauseResumeBindingContext.openBindingContext(this);
             super.onResume();
         }
@@ -166,6 +417,8 @@ public class BindingContextUtil {
         public void onPause() {
             pauseResumeBindingContext.closeBindingContext(this);
             pauseResumeBindingContext = new DefaultBindingContext<>();
+            startStopBindingContext.pauseBindingContext(this);
+            runPauseActions();
 
             super.onPause();
         }
@@ -178,7 +431,7 @@ public class BindingContextUtil {
         @CallSuper
         public void onStop() {
             startStopBindingContext.closeBindingContext(this);
-            startStopBindingContext = new DefaultBindingContext<>();
+            startStopBindingContext = new AltFutureBindingContext<>();
 
             super.onStop();
         }
@@ -194,16 +447,18 @@ public class BindingContextUtil {
          *
          * You should create this type of binding in your {@link Fragment#onStart()} method
          */
-        private IBindingContext<FragmentActivity> startStopBindingContext = new DefaultBindingContext<>();
+        private AltFutureBindingContext<FragmentActivity> startStopBindingContext = new AltFutureBindingContext<>();
         private IBindingContext<FragmentActivity> pauseResumeBindingContext = new DefaultBindingContext<>();
 
         /**
+         * Reactive chains bound to this context suspend while the activity is paused and detach when it stops.
+         * Alt futures tracked by this context are cancelled when it stops.
          *
          * @return a new binding context each time the {@link FragmentActivity} is stopped
          */
         @NonNull
         @UiThread
-        public final IBindingContext<FragmentActivity> getStartStopBindingContext() {
+        public final AltFutureBindingContext<FragmentActivity> getStartStopBindingContext() {
             return startStopBindingContext;
         }
 
@@ -231,6 +486,8 @@ public class BindingContextUtil {
         public void onPause() {
             pauseResumeBindingContext.closeBindingContext(this);
             pauseResumeBindingContext = new DefaultBindingContext<>();
+            startStopBindingContext.pauseBindingContext(this);
+            runPauseActions();
 
             super.onPause();
         }
@@ -245,6 +502,7 @@ public class BindingContextUtil {
         @UiThread
         @CallSuper
         public void onResume() {
+            startStopBindingContext.resumeBindingContext(this);
             pauseResumeBindingContext.openBindingContext(this);
             super.onResume();
         }
@@ -273,7 +531,7 @@ public class BindingContextUtil {
         @CallSuper
         public void onStop() {
             startStopBindingContext.closeBindingContext(this);
-            startStopBindingContext = new DefaultBindingContext<>();
+            startStopBindingContext = new AltFutureBindingContext<>();
 
             super.onStop();
         }
@@ -0,0 +1,91 @@
+/*
+This file is part of Reactive Cascade which is released under The MIT License.
+See license.md , https://github.com/futurice/cascade and http://reactivecascade.com for details.
+This is open source for the common good. Please contribute improvements by pull request or contact paulirotta@gmail.com
+*/
+package com.reactivecascade.util;
+
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+
+import com.reactivecascade.i.IAction;
+import com.reactivecascade.i.ICancellationToken;
+
+/**
+ * Access to the {@link ICancellationToken} of the chain step running on the current thread
+ */
+public final class CancellationUtil {
+    /**
+     * The token used outside of a running chain step. It is never cancelled.
+     */
+    public static final ICancellationToken NONE = new ICancellationToken() {
+        @Override // ICancellationToken
+        public boolean isCancelled() {
+            return false;
+        }
+
+        @Override // ICancellationToken
+        public void throwIfCancelled() {
+        }
+
+        @Override // ICancellationToken
+        public boolean addOnCancel(@NonNull IAction<?> onCancel) {
+            return true;
+        }
+
+        @Override // ICancellationToken
+        public void removeOnCancel(@NonNull IAction<?> onCancel) {
+        }
+
+        @NonNull
+        @Override
+        public String toString() {
+            return "CancellationUtil.NONE";
+        }
+    };
+
+    private static final ThreadLocal<ICancellationToken> CURRENT = new ThreadLocal<>();
+
+    private CancellationUtil() {
+    }
+
+    /**
+     * Get the cancellation token of the {@link com.reactivecascade.functional.RunnableAltFuture} running on this thread
+     *
+     * @return the token, or {@link #NONE} if no chain step is running on this thread
+     */
+    @NonNull
+    public static ICancellationToken current() {
+        final ICancellationToken token = CURRENT.get();
+
+        return token != null ? token : NONE;
+    }
+
+    /**
+     * Set the token of the work starting on this thread. This is called for you when a chain step runs.
+     *
+     * @param token of the work starting
+     * @return the previous token, to pass to {@link #exit(ICancellationToken)} when the work ends
+     */
+    @Nullable
+    public static ICancellationToken enter(@NonNull ICancellationToken token) {
+        final ICancellationToken previous = CURRENT.get();
+
+        CURRENT.set(token);
+
+        return previous;
+    }
+
+    /**
+     * End {@link #enter(ICancellationToken)}
+     *
+     * @param previous the value returned by {@link #enter(ICancellationToken)}
+     */
+    public static void exit(@Nullable ICancellationToken previous) {
+        if (previous == null) {
+            CURRENT.remove();
+        } else {
+            CURRENT.set(previous);
+        }
+    }
+}
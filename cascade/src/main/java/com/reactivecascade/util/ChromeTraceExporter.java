@@ -0,0 +1,240 @@
+/*
+This file is part of Reactive Cascade which is released under The MIT License.
+See license.md , https://github.com/futurice/cascade and http://reactivecascade.com for details.
+This is open source for the common good. Please contribute improvements by pull request or contact paulirotta@gmail.com
+*/
+package com.reactivecascade.util;
+
+import android.support.annotation.NonNull;
+import android.support.annotation.WorkerThread;
+
+import com.reactivecascade.i.IThreadType;
+import com.reactivecascade.i.ITracer;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * An {@link ITracer} which records chain execution events and writes them as Chrome
+ * <code>trace_event</code> JSON. Open the file in <code>chrome://tracing</code> to see when each chain
+ * step was forked, queued, started and ended on each thread.
+ * <p>
+ * Events are kept in a {@link RingBuffer}. When it is full, new events are dropped until the next
+ * {@link #write(File)}. A start or end event whose partner was dropped, or falls in another write, is
+ * written as an instant event so that the begin and end slices in the file stay balanced.
+ * <p>
+ * Install with {@link com.reactivecascade.AsyncBuilder#setTracer(ITracer)}
+ */
+public class ChromeTraceExporter implements ITracer {
+    public static final int DEFAULT_CAPACITY = 64 * 1024;
+    private static final String[] EVENT_NAMES = {"fork", "enqueue", "start", "end"};
+
+    @NonNull
+    private final RingBuffer<Event> ringBuffer;
+    private final long startNanos = System.nanoTime();
+
+    public ChromeTraceExporter() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    /**
+     * Create a new tracer
+     *
+     * @param capacity the maximum number of events held until {@link #write(File)}
+     */
+    public ChromeTraceExporter(int capacity) {
+        ringBuffer = new RingBuffer<>(capacity);
+    }
+
+    @Override // ITracer
+    public void trace(int event,
+                      @NonNull Object source,
+                      @NonNull IThreadType threadType,
+                      long chainId) {
+        ringBuffer.offer(new Event(System.nanoTime(), event, TraceUtil.getName(source), threadType.getName(), Thread.currentThread(), chainId));
+    }
+
+    /**
+     * @return the total number of events dropped because the buffer was full
+     */
+    public long getDroppedCount() {
+        return ringBuffer.getDroppedCount();
+    }
+
+    /**
+     * Write all events recorded since the previous write to a new JSON file and clear them.
+     * Only one thread at a time may call this method.
+     *
+     * @param file to overwrite
+     * @throws IOException if the file can not be written
+     */
+    @WorkerThread
+    public void write(@NonNull File file) throws IOException {
+        final Writer writer = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(file), "UTF-8"));
+
+        try {
+            write(writer);
+        } finally {
+            writer.close();
+        }
+    }
+
+    /**
+     * Write all events recorded since the previous write as JSON and clear them.
+     * Only one thread at a time may call this method.
+     *
+     * @param writer the destination
+     * @throws IOException if the output can not be written
+     */
+    @WorkerThread
+    public void write(@NonNull Writer writer) throws IOException {
+        final Map<Long, String> threadNames = new HashMap<>();
+        final StringBuilder sb = new StringBuilder(256);
+        final List<Event> events = new ArrayList<>(ringBuffer.size());
+        boolean first = true;
+
+        Event e;
+        while ((e = ringBuffer.poll()) != null) {
+            events.add(e);
+        }
+        final boolean[] slice = findSlices(events);
+
+        writer.write("{\"traceEvents\":[\n");
+        for (int i = 0; i < events.size(); i++) {
+            final Event event = events.get(i);
+            final long tid = event.thread.getId();
+
+            if (!threadNames.containsKey(tid)) {
+                threadNames.put(tid, event.thread.getName());
+            }
+            sb.setLength(0);
+            if (!first) {
+                sb.append(",\n");
+            }
+            first = false;
+            sb.append("{\"name\":");
+            appendJsonString(sb, event.name);
+            sb.append(",\"cat\":");
+            appendJsonString(sb, event.threadTypeName);
+            if (slice[i]) {
+                sb.append(event.event == START ? ",\"ph\":\"B\"" : ",\"ph\":\"E\"");
+            } else {
+                sb.append(",\"ph\":\"i\",\"s\":\"t\"");
+            }
+            sb.append(",\"ts\":").append((event.nanos - startNanos) / 1000)
+                    .append(",\"pid\":0,\"tid\":").append(tid)
+                    .append(",\"args\":{\"event\":\"").append(EVENT_NAMES[event.event])
+                    .append("\",\"chain\":").append(event.chainId)
+                    .append("}}");
+            writer.write(sb.toString());
+        }
+        for (Map.Entry<Long, String> entry : threadNames.entrySet()) {
+            sb.setLength(0);
+            if (!first) {
+                sb.append(",\n");
+            }
+            first = false;
+            sb.append("{\"name\":\"thread_name\",\"ph\":\"M\",\"pid\":0,\"tid\":").append(entry.getKey())
+                    .append(",\"args\":{\"name\":");
+            appendJsonString(sb, entry.getValue());
+            sb.append("}}");
+            writer.write(sb.toString());
+        }
+        writer.write("\n]}\n");
+    }
+
+    /**
+     * Match each {@link #START} with the next {@link #END} of the same thread, allowing nesting
+     *
+     * @param events in the order they were recorded
+     * @return for each event, <code>true</code> if it is one end of a matched begin/end slice
+     */
+    @NonNull
+    private static boolean[] findSlices(@NonNull List<Event> events) {
+        final boolean[] slice = new boolean[events.size()];
+        final Map<Thread, ArrayDeque<Integer>> open = new HashMap<>();
+
+        for (int i = 0; i < events.size(); i++) {
+            final Event event = events.get(i);
+
+            if (event.event == START) {
+                ArrayDeque<Integer> starts = open.get(event.thread);
+                if (starts == null) {
+                    starts = new ArrayDeque<>();
+                    open.put(event.thread, starts);
+                }
+                starts.push(i);
+            } else if (event.event == END) {
+                final ArrayDeque<Integer> starts = open.get(event.thread);
+                if (starts != null && !starts.isEmpty()) {
+                    slice[starts.pop()] = true;
+                    slice[i] = true;
+                }
+            }
+        }
+
+        return slice;
+    }
+
+    private static void appendJsonString(@NonNull StringBuilder sb,
+                                         @NonNull String s) {
+        sb.append('"');
+        for (int i = 0; i < s.length(); i++) {
+            final char c = s.charAt(i);
+
+            switch (c) {
+                case '"':
+                    sb.append("\\\"");
+                    break;
+                case '\\':
+                    sb.append("\\\\");
+                    break;
+                case '\n':
+                    sb.append("\\n");
+                    break;
+                default:
+                    if (c < 0x20) {
+                        sb.append(String.format("\\u%04x", (int) c));
+                    } else {
+                        sb.append(c);
+                    }
+            }
+        }
+        sb.append('"');
+    }
+
+    private static final class Event {
+        final long nanos;
+        final int event;
+        @NonNull
+        final String name; // The name, not the source object, so that tracing does not delay garbage collection
+        @NonNull
+        final String threadTypeName;
+        @NonNull
+        final Thread thread;
+        final long chainId;
+
+        Event(long nanos,
+              int event,
+              @NonNull String name,
+              @NonNull String threadTypeName,
+              @NonNull Thread thread,
+              long chainId) {
+            this.nanos = nanos;
+            this.event = event;
+            this.name = name;
+            this.threadTypeName = threadTypeName;
+            this.thread = thread;
+            this.chainId = chainId;
+        }
+    }
+}
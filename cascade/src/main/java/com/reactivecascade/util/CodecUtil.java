@@ -0,0 +1,474 @@
+/*
+This file is part of Reactive Cascade which is released under The MIT License.
+See license.md , https://github.com/futurice/cascade and http://reactivecascade.com for details.
+This is open source for the common good. Please contribute improvements by pull request or contact paulirotta@gmail.com
+*/
+package com.reactivecascade.util;
+
+import android.support.annotation.NonNull;
+
+import com.reactivecascade.i.ICodec;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInput;
+import java.io.DataInputStream;
+import java.io.DataOutput;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.nio.charset.Charset;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * A registry of {@link ICodec}s for storing values in a compact binary form
+ * <p>
+ * Codecs are built in for <code>String, Integer, Long, Boolean, Float, Double</code> and arrays of
+ * <code>byte, String, int, long, boolean, float</code>. Integers are written as zigzag varints, so small values
+ * of either sign take one or two bytes. Floats are written as raw IEEE 754 bits.
+ * <p>
+ * Other classes may {@link #register(Class, ICodec)} a codec. Classes which implement {@link Serializable}
+ * and have no registered codec fall back to Java serialization. The codec found for each class is cached.
+ */
+public final class CodecUtil {
+    private static final Charset UTF8 = Charset.forName("UTF-8");
+    private static final ConcurrentHashMap<Class<?>, ICodec<?>> CODECS = new ConcurrentHashMap<>();
+
+    private static final ICodec<String> STRING_CODEC = new ICodec<String>() {
+        @Override // ICodec
+        public void encode(@NonNull String value, @NonNull DataOutput out) throws IOException {
+            writeString(value, out);
+        }
+
+        @NonNull
+        @Override // ICodec
+        public String decode(@NonNull DataInput in) throws IOException {
+            return readString(in);
+        }
+    };
+
+    private static final ICodec<Integer> INTEGER_CODEC = new ICodec<Integer>() {
+        @Override // ICodec
+        public void encode(@NonNull Integer value, @NonNull DataOutput out) throws IOException {
+            writeVarInt(value, out);
+        }
+
+        @NonNull
+        @Override // ICodec
+        public Integer decode(@NonNull DataInput in) throws IOException {
+            return readVarInt(in);
+        }
+    };
+
+    private static final ICodec<Long> LONG_CODEC = new ICodec<Long>() {
+        @Override // ICodec
+        public void encode(@NonNull Long value, @NonNull DataOutput out) throws IOException {
+            writeVarLong(value, out);
+        }
+
+        @NonNull
+        @Override // ICodec
+        public Long decode(@NonNull DataInput in) throws IOException {
+            return readVarLong(in);
+        }
+    };
+
+    private static final ICodec<Boolean> BOOLEAN_CODEC = new ICodec<Boolean>() {
+        @Override // ICodec
+        public void encode(@NonNull Boolean value, @NonNull DataOutput out) throws IOException {
+            out.writeBoolean(value);
+        }
+
+        @NonNull
+        @Override // ICodec
+        public Boolean decode(@NonNull DataInput in) throws IOException {
+            return in.readBoolean();
+        }
+    };
+
+    private static final ICodec<Float> FLOAT_CODEC = new ICodec<Float>() {
+        @Override // ICodec
+        public void encode(@NonNull Float value, @NonNull DataOutput out) throws IOException {
+            out.writeFloat(value);
+        }
+
+        @NonNull
+        @Override // ICodec
+        public Float decode(@NonNull DataInput in) throws IOException {
+            return in.readFloat();
+        }
+    };
+
+    private static final ICodec<Double> DOUBLE_CODEC = new ICodec<Double>() {
+        @Override // ICodec
+        public void encode(@NonNull Double value, @NonNull DataOutput out) throws IOException {
+            out.writeDouble(value);
+        }
+
+        @NonNull
+        @Override // ICodec
+        public Double decode(@NonNull DataInput in) throws IOException {
+            return in.readDouble();
+        }
+    };
+
+    private static final ICodec<String[]> STRING_ARRAY_CODEC = new ICodec<String[]>() {
+        @Override // ICodec
+        public void encode(@NonNull String[] value, @NonNull DataOutput out) throws IOException {
+            writeLength(value.length, out);
+            for (String s : value) {
+                writeString(s, out);
+            }
+        }
+
+        @NonNull
+        @Override // ICodec
+        public String[] decode(@NonNull DataInput in) throws IOException {
+            final String[] value = new String[readLength(in)];
+
+            for (int i = 0; i < value.length; i++) {
+                value[i] = readString(in);
+            }
+
+            return value;
+        }
+    };
+
+    private static final ICodec<int[]> INT_ARRAY_CODEC = new ICodec<int[]>() {
+        @Override // ICodec
+        public void encode(@NonNull int[] value, @NonNull DataOutput out) throws IOException {
+            writeLength(value.length, out);
+            for (int i : value) {
+                writeVarInt(i, out);
+            }
+        }
+
+        @NonNull
+        @Override // ICodec
+        public int[] decode(@NonNull DataInput in) throws IOException {
+            final int[] value = new int[readLength(in)];
+
+            for (int i = 0; i < value.length; i++) {
+                value[i] = readVarInt(in);
+            }
+
+            return value;
+        }
+    };
+
+    private static final ICodec<long[]> LONG_ARRAY_CODEC = new ICodec<long[]>() {
+        @Override // ICodec
+        public void encode(@NonNull long[] value, @NonNull DataOutput out) throws IOException {
+            writeLength(value.length, out);
+            for (long l : value) {
+                writeVarLong(l, out);
+            }
+        }
+
+        @NonNull
+        @Override // ICodec
+        public long[] decode(@NonNull DataInput in) throws IOException {
+            final long[] value = new long[readLength(in)];
+
+            for (int i = 0; i < value.length; i++) {
+                value[i] = readVarLong(in);
+            }
+
+            return value;
+        }
+    };
+
+    private static final ICodec<byte[]> BYTE_ARRAY_CODEC = new ICodec<byte[]>() {
+        @Override // ICodec
+        public void encode(@NonNull byte[] value, @NonNull DataOutput out) throws IOException {
+            writeLength(value.length, out);
+            out.write(value);
+        }
+
+        @NonNull
+        @Override // ICodec
+        public byte[] decode(@NonNull DataInput in) throws IOException {
+            final byte[] value = new byte[readLength(in)];
+
+            in.readFully(value);
+
+            return value;
+        }
+    };
+
+    private static final ICodec<boolean[]> BOOLEAN_ARRAY_CODEC = new ICodec<boolean[]>() {
+        @Override // ICodec
+        public void encode(@NonNull boolean[] value, @NonNull DataOutput out) throws IOException {
+            writeLength(value.length, out);
+            for (int i = 0; i < value.length; i += 8) {
+                int bits = 0;
+                for (int j = 0; j < 8 && i + j < value.length; j++) {
+                    if (value[i + j]) {
+                        bits |= 1 << j;
+                    }
+                }
+                out.writeByte(bits);
+            }
+        }
+
+        @NonNull
+        @Override // ICodec
+        public boolean[] decode(@NonNull DataInput in) throws IOException {
+            final boolean[] value = new boolean[readLength(in)];
+
+            for (int i = 0; i < value.length; i += 8) {
+                final int bits = in.readUnsignedByte();
+                for (int j = 0; j < 8 && i + j < value.length; j++) {
+                    value[i + j] = (bits & (1 << j)) != 0;
+                }
+            }
+
+            return value;
+        }
+    };
+
+    private static final ICodec<float[]> FLOAT_ARRAY_CODEC = new ICodec<float[]>() {
+        @Override // ICodec
+        public void encode(@NonNull float[] value, @NonNull DataOutput out) throws IOException {
+            writeLength(value.length, out);
+            for (float f : value) {
+                out.writeInt(Float.floatToRawIntBits(f));
+            }
+        }
+
+        @NonNull
+        @Override // ICodec
+        public float[] decode(@NonNull DataInput in) throws IOException {
+            final float[] value = new float[readLength(in)];
+
+            for (int i = 0; i < value.length; i++) {
+                value[i] = Float.intBitsToFloat(in.readInt());
+            }
+
+            return value;
+        }
+    };
+
+    private static final ICodec<Serializable> SERIALIZABLE_CODEC = new ICodec<Serializable>() {
+        @Override // ICodec
+        public void encode(@NonNull Serializable value, @NonNull DataOutput out) throws IOException {
+            final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            final ObjectOutputStream objectOutputStream = new ObjectOutputStream(bytes);
+
+            objectOutputStream.writeObject(value);
+            objectOutputStream.close();
+            writeLength(bytes.size(), out);
+            out.write(bytes.toByteArray());
+        }
+
+        @NonNull
+        @Override // ICodec
+        public Serializable decode(@NonNull DataInput in) throws IOException {
+            final byte[] bytes = new byte[readLength(in)];
+
+            in.readFully(bytes);
+            final ObjectInputStream objectInputStream = new ObjectInputStream(new ByteArrayInputStream(bytes));
+            try {
+                return (Serializable) objectInputStream.readObject();
+            } catch (ClassNotFoundException e) {
+                throw new IOException("Can not deserialize", e);
+            } finally {
+                objectInputStream.close();
+            }
+        }
+    };
+
+    static {
+        register(String.class, STRING_CODEC);
+        register(Integer.class, INTEGER_CODEC);
+        register(Long.class, LONG_CODEC);
+        register(Boolean.class, BOOLEAN_CODEC);
+        register(Float.class, FLOAT_CODEC);
+        register(Double.class, DOUBLE_CODEC);
+        register(byte[].class, BYTE_ARRAY_CODEC);
+        register(String[].class, STRING_ARRAY_CODEC);
+        register(int[].class, INT_ARRAY_CODEC);
+        register(long[].class, LONG_ARRAY_CODEC);
+        register(boolean[].class, BOOLEAN_ARRAY_CODEC);
+        register(float[].class, FLOAT_ARRAY_CODEC);
+    }
+
+    private CodecUtil() {
+    }
+
+    /**
+     * Set the codec for a class. This replaces any previous codec for exactly that class.
+     * <p>
+     * Register before values of this class are read or written, and use the same codec in every version
+     * of the application which reads the stored values.
+     *
+     * @param claz  the exact class of values
+     * @param codec to read and write values of this class
+     * @param <T>   value type
+     */
+    public static <T> void register(@NonNull Class<T> claz,
+                                    @NonNull ICodec<T> codec) {
+        CODECS.put(claz, codec);
+    }
+
+    /**
+     * Find the codec for a class
+     *
+     * @param claz the exact class of values
+     * @param <T>  value type
+     * @return the registered codec, or a Java serialization codec if the class is {@link Serializable}
+     * @throws UnsupportedOperationException if there is no codec for this class
+     */
+    @NonNull
+    @SuppressWarnings("unchecked")
+    public static <T> ICodec<T> getCodec(@NonNull Class<T> claz) {
+        ICodec<T> codec = (ICodec<T>) CODECS.get(claz);
+
+        if (codec == null) {
+            if (!Serializable.class.isAssignableFrom(claz)) {
+                throw new UnsupportedOperationException("No codec for " + claz + ". Register one with CodecUtil.register() or implement Serializable");
+            }
+            codec = (ICodec<T>) SERIALIZABLE_CODEC;
+            CODECS.putIfAbsent(claz, codec);
+        }
+
+        return codec;
+    }
+
+    /**
+     * @param value to encode
+     * @return the value encoded by the codec of its class
+     * @throws IOException if the value can not be encoded
+     */
+    @NonNull
+    @SuppressWarnings("unchecked")
+    public static byte[] encode(@NonNull Object value) throws IOException {
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        final DataOutputStream out = new DataOutputStream(bytes);
+
+        ((ICodec<Object>) getCodec(value.getClass())).encode(value, out);
+        out.flush();
+
+        return bytes.toByteArray();
+    }
+
+    /**
+     * @param claz  the class of the encoded value
+     * @param bytes from {@link #encode(Object)}
+     * @param <T>   value type
+     * @return the decoded value
+     * @throws IOException if the value can not be decoded
+     */
+    @NonNull
+    public static <T> T decode(@NonNull Class<T> claz,
+                               @NonNull byte[] bytes) throws IOException {
+        return getCodec(claz).decode(new DataInputStream(new ByteArrayInputStream(bytes)));
+    }
+
+    /**
+     * Write a signed value in 1 to 5 bytes. Values near zero are shortest.
+     *
+     * @param value to write
+     * @param out   destination
+     * @throws IOException if the value can not be written
+     */
+    public static void writeVarInt(int value,
+                                   @NonNull DataOutput out) throws IOException {
+        writeUnsignedVarInt((value << 1) ^ (value >> 31), out);
+    }
+
+    public static int readVarInt(@NonNull DataInput in) throws IOException {
+        final int zigzag = readUnsignedVarInt(in);
+
+        return (zigzag >>> 1) ^ -(zigzag & 1);
+    }
+
+    /**
+     * Write a signed value in 1 to 10 bytes. Values near zero are shortest.
+     *
+     * @param value to write
+     * @param out   destination
+     * @throws IOException if the value can not be written
+     */
+    public static void writeVarLong(long value,
+                                    @NonNull DataOutput out) throws IOException {
+        long zigzag = (value << 1) ^ (value >> 63);
+
+        while ((zigzag & ~0x7FL) != 0) {
+            out.writeByte((int) ((zigzag & 0x7F) | 0x80));
+            zigzag >>>= 7;
+        }
+        out.writeByte((int) zigzag);
+    }
+
+    public static long readVarLong(@NonNull DataInput in) throws IOException {
+        long zigzag = 0;
+
+        for (int shift = 0; shift < 64; shift += 7) {
+            final int b = in.readUnsignedByte();
+            zigzag |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return (zigzag >>> 1) ^ -(zigzag & 1);
+            }
+        }
+
+        throw new IOException("Malformed varint");
+    }
+
+    private static void writeUnsignedVarInt(int value,
+                                            @NonNull DataOutput out) throws IOException {
+        while ((value & ~0x7F) != 0) {
+            out.writeByte((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        out.writeByte(value);
+    }
+
+    private static int readUnsignedVarInt(@NonNull DataInput in) throws IOException {
+        int value = 0;
+
+        for (int shift = 0; shift < 32; shift += 7) {
+            final int b = in.readUnsignedByte();
+            value |= (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+
+        throw new IOException("Malformed varint");
+    }
+
+    private static void writeLength(int length,
+                                    @NonNull DataOutput out) throws IOException {
+        writeUnsignedVarInt(length, out);
+    }
+
+    private static int readLength(@NonNull DataInput in) throws IOException {
+        final int length = readUnsignedVarInt(in);
+
+        if (length < 0) {
+            throw new IOException("Malformed length " + length);
+        }
+
+        return length;
+    }
+
+    private static void writeString(@NonNull String value,
+                                    @NonNull DataOutput out) throws IOException {
+        final byte[] bytes = value.getBytes(UTF8);
+
+        writeLength(bytes.length, out);
+        out.write(bytes);
+    }
+
+    @NonNull
+    private static String readString(@NonNull DataInput in) throws IOException {
+        final byte[] bytes = new byte[readLength(in)];
+
+        in.readFully(bytes);
+
+        return new String(bytes, UTF8);
+    }
+}
@@ -51,7 +51,7 @@ public class DefaultThreadType extends AbstractThreadType {
 
     @Override // IThreadType
     public void run(@NonNull Runnable runnable) {
-        executorService.submit(runnable);
+        executorService.execute(runnable); // Not submit(), which allocates a FutureTask that nothing reads
     }
 
     @Override // IThreadType
@@ -0,0 +1,264 @@
+/*
+This file is part of Reactive Cascade which is released under The MIT License.
+See license.md , https://github.com/futurice/cascade and http://reactivecascade.com for details.
+This is open source for the common good. Please contribute improvements by pull request or contact paulirotta@gmail.com
+*/
+package com.reactivecascade.util;
+
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.concurrent.atomic.AtomicReferenceFieldUpdater;
+
+/**
+ * A lock-free set of the children of one node in a chain, such as the downchain alt futures or the reactive targets
+ * <p>
+ * Most nodes have exactly one child. That child is held directly in a single field. Only when a second
+ * child is added is the set promoted to an array, which is then replaced as a whole on each change.
+ * An empty set, or a set of one child, allocates nothing beyond this object.
+ * <p>
+ * Changes are atomic compare-and-set operations and may be made concurrently from any thread.
+ * Iteration is over a snapshot, so it is safe during concurrent changes and does not see them.
+ * Elements are compared with {@link Object#equals(Object)} as in a {@link java.util.Set}, and may not be arrays.
+ *
+ * @param <T> element type
+ */
+public final class FanOut<T> implements Iterable<T> {
+    private static final AtomicReferenceFieldUpdater<FanOut, Object> CHILDREN = AtomicReferenceFieldUpdater.newUpdater(FanOut.class, Object.class, "children");
+    private static final Iterator<Object> EMPTY_ITERATOR = new ArrayIterator<>(new Object[0]);
+
+    @Nullable
+    private volatile Object children; // null, a single T, or an Object[] of two or more T
+
+    /**
+     * Add a child if it is not already present
+     *
+     * @param child to add
+     * @return <code>true</code> if added, <code>false</code> if already present
+     */
+    public boolean add(@NonNull T child) {
+        for (; ; ) {
+            final Object current = children;
+            final Object updated;
+
+            if (current == null) {
+                updated = child;
+            } else if (current instanceof Object[]) {
+                final Object[] array = (Object[]) current;
+
+                if (indexOf(array, child) >= 0) {
+                    return false;
+                }
+                final Object[] larger = new Object[array.length + 1];
+                System.arraycopy(array, 0, larger, 0, array.length);
+                larger[array.length] = child;
+                updated = larger;
+            } else {
+                if (current.equals(child)) {
+                    return false;
+                }
+                updated = new Object[]{current, child};
+            }
+            if (CHILDREN.compareAndSet(this, current, updated)) {
+                return true;
+            }
+        }
+    }
+
+    /**
+     * Remove a child
+     *
+     * @param child to remove
+     * @return <code>true</code> if it was present
+     */
+    public boolean remove(@NonNull Object child) {
+        for (; ; ) {
+            final Object current = children;
+            final Object updated;
+
+            if (current == null) {
+                return false;
+            } else if (current instanceof Object[]) {
+                final Object[] array = (Object[]) current;
+                final int i = indexOf(array, child);
+
+                if (i < 0) {
+                    return false;
+                }
+                if (array.length == 2) {
+                    updated = array[1 - i]; // Demote back to a single child
+                } else {
+                    final Object[] smaller = new Object[array.length - 1];
+                    System.arraycopy(array, 0, smaller, 0, i);
+                    System.arraycopy(array, i + 1, smaller, i, smaller.length - i);
+                    updated = smaller;
+                }
+            } else {
+                if (!current.equals(child)) {
+                    return false;
+                }
+                updated = null;
+            }
+            if (CHILDREN.compareAndSet(this, current, updated)) {
+                return true;
+            }
+        }
+    }
+
+    /**
+     * @param child to find
+     * @return <code>true</code> if present
+     */
+    public boolean contains(@NonNull Object child) {
+        final Object current = children;
+
+        if (current instanceof Object[]) {
+            return indexOf((Object[]) current, child) >= 0;
+        }
+
+        return current != null && current.equals(child);
+    }
+
+    /**
+     * @return the number of children
+     */
+    public int size() {
+        final Object current = children;
+
+        if (current instanceof Object[]) {
+            return ((Object[]) current).length;
+        }
+
+        return current == null ? 0 : 1;
+    }
+
+    /**
+     * @return <code>true</code> if there are no children
+     */
+    public boolean isEmpty() {
+        return children == null;
+    }
+
+    /**
+     * Remove all children
+     */
+    public void clear() {
+        children = null;
+    }
+
+    /**
+     * Iterate over a snapshot of the children
+     *
+     * @return an iterator which does not support {@link Iterator#remove()}
+     */
+    @NonNull
+    @Override // Iterable
+    @SuppressWarnings("unchecked")
+    public Iterator<T> iterator() {
+        final Object current = children;
+
+        if (current == null) {
+            return (Iterator<T>) EMPTY_ITERATOR;
+        }
+        if (current instanceof Object[]) {
+            return new ArrayIterator<>((Object[]) current);
+        }
+
+        return new SingleIterator<>((T) current);
+    }
+
+    @NonNull
+    @Override // Object
+    public String toString() {
+        final Object current = children;
+
+        if (current instanceof Object[]) {
+            final StringBuilder sb = new StringBuilder("[");
+
+            for (Object child : (Object[]) current) {
+                if (sb.length() > 1) {
+                    sb.append(", ");
+                }
+                sb.append(child);
+            }
+
+            return sb.append(']').toString();
+        }
+
+        return current == null ? "[]" : "[" + current + "]";
+    }
+
+    private static int indexOf(@NonNull Object[] array,
+                               @NonNull Object child) {
+        for (int i = 0; i < array.length; i++) {
+            if (array[i].equals(child)) {
+                return i;
+            }
+        }
+
+        return -1;
+    }
+
+    private static final class SingleIterator<T> implements Iterator<T> {
+        @Nullable
+        private T next;
+
+        SingleIterator(@NonNull T next) {
+            this.next = next;
+        }
+
+        @Override // Iterator
+        public boolean hasNext() {
+            return next != null;
+        }
+
+        @Override // Iterator
+        public T next() {
+            final T t = next;
+
+            if (t == null) {
+                throw new NoSuchElementException();
+            }
+            next = null;
+
+            return t;
+        }
+
+        @Override // Iterator
+        public void remove() {
+            throw new UnsupportedOperationException();
+        }
+    }
+
+    private static final class ArrayIterator<T> implements Iterator<T> {
+        @NonNull
+        private final Object[] array;
+        private int i = 0;
+
+        ArrayIterator(@NonNull Object[] array) {
+            this.array = array;
+        }
+
+        @Override // Iterator
+        public boolean hasNext() {
+            return i < array.length;
+        }
+
+        @Override // Iterator
+        @SuppressWarnings("unchecked")
+        public T next() {
+            if (i >= array.length) {
+                throw new NoSuchElementException();
+            }
+
+            return (T) array[i++];
+        }
+
+        @Override // Iterator
+        public void remove() {
+            throw new UnsupportedOperationException();
+        }
+    }
+}
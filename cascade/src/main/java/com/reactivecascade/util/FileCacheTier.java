@@ -0,0 +1,311 @@
+/*
+This file is part of Reactive Cascade which is released under The MIT License.
+See license.md , https://github.com/futurice/cascade and http://reactivecascade.com for details.
+This is open source for the common good. Please contribute improvements by pull request or contact paulirotta@gmail.com
+*/
+package com.reactivecascade.util;
+
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+import android.support.annotation.WorkerThread;
+
+import com.reactivecascade.Async;
+import com.reactivecascade.i.IActionTwo;
+import com.reactivecascade.i.ICacheTier;
+import com.reactivecascade.i.ICodec;
+import com.reactivecascade.i.IThreadType;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * A size-bounded least-recently-used {@link ICacheTier} with one file per value in a directory
+ * <p>
+ * Each file is <code>[UTF key][value]</code> with the value encoded by {@link CodecUtil}. Files are named
+ * by a hash of the key. A file is written to a temporary name and then renamed, so a value is either
+ * complete or absent after a crash. The directory is indexed on first use, oldest file first.
+ * <p>
+ * By default this tier runs on {@link Async#FILE}.
+ *
+ * @param <V> value type
+ */
+public class FileCacheTier<V> implements ICacheTier<String, V> {
+    private static final String TAG = FileCacheTier.class.getSimpleName();
+    private static final String SUFFIX = ".cache";
+    private static final String TMP_SUFFIX = ".tmp";
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+    private static final char[] HEX = "0123456789abcdef".toCharArray();
+
+    @NonNull
+    private final File directory;
+    @NonNull
+    private final Class<V> valueClass;
+    @NonNull
+    private final IThreadType threadType;
+    private final long maxBytes;
+    @Nullable
+    private LinkedHashMap<String, Long> index; // Key to file length, in access order. Guarded by this
+    private long bytes = 0; // Guarded by this
+    private volatile long evictionCount = 0; // Written while holding this, read from any thread
+    @Nullable
+    private volatile IActionTwo<String, V> onEvict;
+
+    /**
+     * Create a tier which runs on {@link Async#FILE}
+     *
+     * @param directory  where the files are kept. It is used only by this tier
+     * @param valueClass the class of the values, used to find their {@link ICodec}
+     * @param maxBytes   the maximum total size of the files
+     */
+    public FileCacheTier(@NonNull File directory,
+                         @NonNull Class<V> valueClass,
+                         long maxBytes) {
+        this(directory, valueClass, maxBytes, Async.FILE);
+    }
+
+    /**
+     * Create a tier
+     *
+     * @param directory  where the files are kept. It is used only by this tier
+     * @param valueClass the class of the values, used to find their {@link ICodec}
+     * @param maxBytes   the maximum total size of the files
+     * @param threadType on which files are read and written
+     */
+    public FileCacheTier(@NonNull File directory,
+                         @NonNull Class<V> valueClass,
+                         long maxBytes,
+                         @NonNull IThreadType threadType) {
+        if (maxBytes < 1) {
+            throw new IllegalArgumentException("maxBytes must be at least 1: " + maxBytes);
+        }
+        this.directory = directory;
+        this.valueClass = valueClass;
+        this.maxBytes = maxBytes;
+        this.threadType = threadType;
+    }
+
+    @NonNull
+    @Override // INamed
+    public String getName() {
+        return TAG + "(" + directory.getName() + ")";
+    }
+
+    @NonNull
+    @Override // ICacheTier
+    public IThreadType getThreadType() {
+        return threadType;
+    }
+
+    @WorkerThread
+    @Nullable
+    @Override // ICacheTier
+    public synchronized V read(@NonNull String key) throws IOException {
+        if (getIndex().get(key) == null) { // Also marks the key as recently used
+            return null;
+        }
+
+        return readFile(key);
+    }
+
+    @Nullable
+    private V readFile(@NonNull String key) throws IOException {
+        final DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(fileOf(key))));
+        try {
+            if (!key.equals(in.readUTF())) {
+                return null; // Hash collision
+            }
+            return CodecUtil.getCodec(valueClass).decode(in);
+        } finally {
+            in.close();
+        }
+    }
+
+    @WorkerThread
+    @Override // ICacheTier
+    public void write(@NonNull String key,
+                      @NonNull V value) throws Exception {
+        final ArrayList<String> evicted = new ArrayList<>();
+        final ArrayList<V> evictedValues = new ArrayList<>();
+
+        synchronized (this) {
+            final LinkedHashMap<String, Long> index = getIndex();
+            final File file = fileOf(key);
+            final File tmp = new File(directory, file.getName() + TMP_SUFFIX);
+            final DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tmp)));
+
+            try {
+                out.writeUTF(key);
+                CodecUtil.getCodec(valueClass).encode(value, out);
+            } finally {
+                out.close();
+            }
+            if (!tmp.renameTo(file)) {
+                tmp.delete();
+                throw new IOException("Can not rename " + tmp + " to " + file);
+            }
+
+            final Long previous = index.put(key, file.length());
+            if (previous != null) {
+                bytes -= previous;
+            }
+            bytes += file.length();
+
+            final IActionTwo<String, V> listener = onEvict;
+            final Iterator<Map.Entry<String, Long>> iterator = index.entrySet().iterator();
+            while (bytes > maxBytes && iterator.hasNext()) {
+                final Map.Entry<String, Long> eldest = iterator.next();
+
+                if (eldest.getKey().equals(key)) {
+                    continue;
+                }
+                if (listener != null) { // Decode the evicted file only if someone takes the value
+                    final V evictedValue = readFile(eldest.getKey());
+                    if (evictedValue != null) {
+                        evicted.add(eldest.getKey());
+                        evictedValues.add(evictedValue);
+                    }
+                }
+                iterator.remove();
+                bytes -= eldest.getValue();
+                evictionCount++;
+                fileOf(eldest.getKey()).delete();
+            }
+        }
+
+        final IActionTwo<String, V> listener = onEvict;
+        if (listener != null) {
+            for (int i = 0; i < evicted.size(); i++) {
+                listener.call(evicted.get(i), evictedValues.get(i));
+            }
+        }
+    }
+
+    @WorkerThread
+    @Override // ICacheTier
+    public synchronized void remove(@NonNull String key) {
+        final Long length = getIndex().remove(key);
+
+        if (length != null) {
+            bytes -= length;
+            fileOf(key).delete();
+        }
+    }
+
+    @WorkerThread
+    @Override // ICacheTier
+    public synchronized void clear() {
+        final LinkedHashMap<String, Long> index = getIndex();
+
+        for (String key : index.keySet()) {
+            fileOf(key).delete();
+        }
+        index.clear();
+        bytes = 0;
+    }
+
+    @Override // ICacheTier
+    public void setOnEvictListener(@Nullable IActionTwo<String, V> onEvict) {
+        this.onEvict = onEvict;
+    }
+
+    @Override // ICacheTier
+    public long getEvictionCount() {
+        return evictionCount;
+    }
+
+    /**
+     * @return the total size of the cached files
+     */
+    @WorkerThread
+    public synchronized long getBytes() {
+        getIndex();
+
+        return bytes;
+    }
+
+    @NonNull
+    private LinkedHashMap<String, Long> getIndex() {
+        if (index != null) {
+            return index;
+        }
+
+        index = new LinkedHashMap<>(64, 0.75f, true);
+        if (!directory.isDirectory() && !directory.mkdirs()) {
+            RCLog.i(this, "Can not create cache directory " + directory);
+            return index;
+        }
+        final File[] files = directory.listFiles();
+        if (files == null) {
+            return index;
+        }
+        Arrays.sort(files, new Comparator<File>() {
+            @Override // Comparator
+            public int compare(File lhs, File rhs) {
+                final long l = lhs.lastModified();
+                final long r = rhs.lastModified();
+
+                return l < r ? -1 : (l == r ? 0 : 1);
+            }
+        });
+        for (File file : files) {
+            if (file.getName().endsWith(TMP_SUFFIX)) {
+                file.delete(); // Interrupted write
+            } else if (file.getName().endsWith(SUFFIX)) {
+                try {
+                    final DataInputStream in = new DataInputStream(new FileInputStream(file));
+                    try {
+                        index.put(in.readUTF(), file.length());
+                    } finally {
+                        in.close();
+                    }
+                    bytes += file.length();
+                } catch (IOException e) {
+                    RCLog.i(this, "Removing unreadable cache file " + file + ": " + e);
+                    file.delete();
+                }
+            }
+        }
+        RCLog.v(this, "Indexed " + index.size() + " cached files, " + bytes + " bytes");
+
+        return index;
+    }
+
+    @NonNull
+    private File fileOf(@NonNull String key) {
+        final byte[] digest;
+
+        try {
+            digest = MessageDigest.getInstance("SHA-1").digest(key.getBytes(UTF_8));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-1 is not available", e);
+        }
+        final char[] name = new char[digest.length * 2];
+        for (int i = 0; i < digest.length; i++) {
+            name[2 * i] = HEX[(digest[i] >> 4) & 0xF];
+            name[2 * i + 1] = HEX[digest[i] & 0xF];
+        }
+
+        return new File(directory, new String(name) + SUFFIX);
+    }
+
+    @NonNull
+    @Override // Object
+    public String toString() {
+        return getName();
+    }
+}
@@ -11,7 +11,9 @@ import android.support.annotation.IntDef;
 import android.support.annotation.NonNull;
 import android.support.annotation.WorkerThread;
 
+import com.reactivecascade.i.IAction;
 import com.reactivecascade.i.IAltFuture;
+import com.reactivecascade.i.ICancellationToken;
 
 import java.io.ByteArrayOutputStream;
 import java.io.FileInputStream;
@@ -20,6 +22,7 @@ import java.io.FileOutputStream;
 import java.io.IOException;
 import java.lang.annotation.Retention;
 import java.lang.annotation.RetentionPolicy;
+import java.util.concurrent.CancellationException;
 
 import static com.reactivecascade.Async.FILE;
 
@@ -67,23 +70,44 @@ public final class FileUtil extends Origin {
                 });
     }
 
+    /**
+     * Write a file
+     * <p>
+     * If this is called from a running chain step, cancelling that step closes the file and stops
+     * with a {@link CancellationException}. The file may then be partially written.
+     *
+     * @param fileName to write
+     * @param bytes    the file contents
+     */
     @WorkerThread
     public void write(@NonNull String fileName,
                       @NonNull byte[] bytes) {
+        final ICancellationToken cancellationToken = CancellationUtil.current();
         FileOutputStream fileOutputStream = null;
+        IAction<?> onCancel = null;
 
         try {
+            cancellationToken.throwIfCancelled();
             fileOutputStream = mContext.openFileOutput(fileName, mMode);
-            fileOutputStream.write(bytes);
+            onCancel = fileOutputStream::close;
+            cancellationToken.addOnCancel(onCancel);
+            for (int offset = 0; offset < bytes.length; offset += BUFFER_SIZE) {
+                cancellationToken.throwIfCancelled();
+                fileOutputStream.write(bytes, offset, Math.min(BUFFER_SIZE, bytes.length - offset));
+            }
         } catch (FileNotFoundException e) {
             final String s = "Can not locate FILE: " + fileName;
             RCLog.d(this, s);
             RCLog.throwRuntimeException(this, s, e);
         } catch (IOException e) {
+            cancellationToken.throwIfCancelled();
             final String s = "Can not write FILE: " + fileName;
             RCLog.d(this, s);
             RCLog.throwRuntimeException(this, s, e);
         } finally {
+            if (onCancel != null) {
+                cancellationToken.removeOnCancel(onCancel);
+            }
             if (fileOutputStream != null) {
                 try {
                     fileOutputStream.close();
@@ -109,18 +133,33 @@ public final class FileUtil extends Origin {
                 });
     }
 
+    /**
+     * Read a file
+     * <p>
+     * If this is called from a running chain step, cancelling that step closes the file and stops
+     * with a {@link CancellationException}
+     *
+     * @param fileName to read
+     * @return the file contents
+     */
     @NonNull
     @WorkerThread
     public byte[] read(@NonNull String fileName) {
+        final ICancellationToken cancellationToken = CancellationUtil.current();
         ByteArrayOutputStream bos = new ByteArrayOutputStream();
         FileInputStream fileInputStream = null;
+        IAction<?> onCancel = null;
 
         try {
+            cancellationToken.throwIfCancelled();
             fileInputStream = mContext.openFileInput(fileName);
+            onCancel = fileInputStream::close;
+            cancellationToken.addOnCancel(onCancel);
 
             final byte[] buffer = new byte[BUFFER_SIZE];
             int count;
             for (; ; ) {
+                cancellationToken.throwIfCancelled();
                 count = fileInputStream.read(buffer, 0, buffer.length);
                 if (count < 0) {
                     break;
@@ -130,8 +169,12 @@ public final class FileUtil extends Origin {
         } catch (FileNotFoundException e) {
             RCLog.throwRuntimeException(this, "Can not locate FILE: " + fileName, e);
         } catch (IOException e) {
+            cancellationToken.throwIfCancelled();
             RCLog.throwRuntimeException(this, "Can not read FILE: " + fileName, e);
         } finally {
+            if (onCancel != null) {
+                cancellationToken.removeOnCancel(onCancel);
+            }
             if (fileInputStream != null) {
                 try {
                     fileInputStream.close();
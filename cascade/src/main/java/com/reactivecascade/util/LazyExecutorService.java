@@ -0,0 +1,159 @@
+/*
+This file is part of Reactive Cascade which is released under The MIT License.
+See license.md , https://github.com/futurice/cascade and http://reactivecascade.com for details.
+This is open source for the common good. Please contribute improvements by pull request or contact paulirotta@gmail.com
+*/
+package com.reactivecascade.util;
+
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+
+import com.reactivecascade.i.IActionR;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.AbstractExecutorService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * An {@link ExecutorService} which creates its underlying executor the first time a task is submitted
+ * <p>
+ * {@link com.reactivecascade.AsyncBuilder} wraps each default thread pool in one of these, so an application
+ * which never reads from the network does not build the network pools. Call
+ * {@link #prestart()}, usually through {@link com.reactivecascade.Async#prestart(com.reactivecascade.i.IThreadType...)},
+ * to create the executor and start its core threads ahead of the first task.
+ */
+public class LazyExecutorService extends AbstractExecutorService {
+    @NonNull
+    private final String name;
+    @Nullable
+    private IActionR<ExecutorService> factory; // Cleared once used. Guarded by this
+    @Nullable
+    private volatile ExecutorService executorService;
+    private volatile boolean shutdown = false;
+
+    /**
+     * Create a lazy executor
+     *
+     * @param name    the descriptive debug name
+     * @param factory creates the underlying executor. It is called at most once.
+     */
+    public LazyExecutorService(@NonNull String name,
+                               @NonNull IActionR<ExecutorService> factory) {
+        this.name = name;
+        this.factory = factory;
+    }
+
+    /**
+     * @return <code>true</code> if the underlying executor has been created
+     */
+    public boolean isStarted() {
+        return executorService != null;
+    }
+
+    /**
+     * Create the underlying executor now and, if it is a {@link ThreadPoolExecutor}, start all its core threads
+     *
+     * @return the number of threads started
+     */
+    public int prestart() {
+        final ExecutorService e = get();
+
+        if (e instanceof ThreadPoolExecutor) {
+            return ((ThreadPoolExecutor) e).prestartAllCoreThreads();
+        }
+
+        return 0;
+    }
+
+    @NonNull
+    private ExecutorService get() {
+        ExecutorService e = executorService;
+
+        if (e == null) {
+            synchronized (this) {
+                e = executorService;
+                if (e == null) {
+                    if (shutdown) {
+                        throw new RejectedExecutionException(name + " is shut down");
+                    }
+                    final long t = System.nanoTime();
+                    try {
+                        //noinspection ConstantConditions
+                        e = factory.call();
+                    } catch (Exception ex) {
+                        throw new IllegalStateException("Can not create executor " + name, ex);
+                    }
+                    factory = null;
+                    executorService = e;
+                    RCLog.v(this, "Created executor " + name + " in " + (System.nanoTime() - t) / 1000 + "us");
+                }
+            }
+        }
+
+        return e;
+    }
+
+    @Override // Executor
+    public void execute(@NonNull Runnable command) {
+        get().execute(command);
+    }
+
+    @Override // ExecutorService
+    public void shutdown() {
+        synchronized (this) {
+            shutdown = true;
+        }
+        final ExecutorService e = executorService;
+        if (e != null) {
+            e.shutdown();
+        }
+    }
+
+    @NonNull
+    @Override // ExecutorService
+    public List<Runnable> shutdownNow() {
+        synchronized (this) {
+            shutdown = true;
+        }
+        final ExecutorService e = executorService;
+        if (e != null) {
+            return e.shutdownNow();
+        }
+
+        return Collections.emptyList();
+    }
+
+    @Override // ExecutorService
+    public boolean isShutdown() {
+        final ExecutorService e = executorService;
+
+        return e != null ? e.isShutdown() : shutdown;
+    }
+
+    @Override // ExecutorService
+    public boolean isTerminated() {
+        final ExecutorService e = executorService;
+
+        return e != null ? e.isTerminated() : shutdown;
+    }
+
+    @Override // ExecutorService
+    public boolean awaitTermination(long timeout,
+                                    @NonNull TimeUnit unit) throws InterruptedException {
+        final ExecutorService e = executorService;
+
+        return e != null ? e.awaitTermination(timeout, unit) : shutdown;
+    }
+
+    @NonNull
+    @Override // Object
+    public String toString() {
+        final ExecutorService e = executorService;
+
+        return "LazyExecutorService(" + name + ", " + (e != null ? e.toString() : "not started") + ")";
+    }
+}
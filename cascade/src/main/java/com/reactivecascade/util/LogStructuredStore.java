@@ -0,0 +1,410 @@
+/*
+This file is part of Reactive Cascade which is released under The MIT License.
+See license.md , https://github.com/futurice/cascade and http://reactivecascade.com for details.
+This is open source for the common good. Please contribute improvements by pull request or contact paulirotta@gmail.com
+*/
+package com.reactivecascade.util;
+
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+import android.support.annotation.VisibleForTesting;
+import android.support.annotation.WorkerThread;
+
+import com.reactivecascade.i.IActionOne;
+import com.reactivecascade.i.IPersistentStore;
+import com.reactivecascade.i.IThreadType;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.zip.CRC32;
+
+/**
+ * An {@link IPersistentStore} which appends each write to a log file
+ * <p>
+ * A write costs one small append and one <code>fsync</code> no matter how many keys are stored. All
+ * current values are held in memory, so reads do not touch the disk. When the log grows to more than
+ * twice the size of the live values it is compacted by writing the live values to a new file which then
+ * replaces the log.
+ * <p>
+ * Each record is <code>[int length][UTF key][int value class hash][value][int CRC32]</code>. Values are
+ * encoded by {@link CodecUtil}. When the log is opened,
+ * records are replayed in order. A torn or corrupt record, for example after power loss during a write,
+ * ends the replay and the log is truncated to the last good record. If a write fails, the log is
+ * truncated at once to the end of the last commit so that later writes are not appended after a torn record.
+ * <p>
+ * All operations run on a dedicated single-threaded {@link IThreadType} so that disk access does not wait
+ * behind other work on {@link com.reactivecascade.Async#FILE}
+ */
+public class LogStructuredStore implements IPersistentStore {
+    private static final String TAG = LogStructuredStore.class.getSimpleName();
+    public static final long MIN_COMPACT_BYTES = 64 * 1024;
+    private static final int MAX_RECORD_BYTES = 64 * 1024 * 1024;
+    private static final int RECORD_OVERHEAD_BYTES = 8; // length + CRC32
+
+    @NonNull
+    private final File file;
+    @NonNull
+    private final IThreadType threadType;
+    private final long minCompactBytes;
+    private final Map<String, byte[]> index = new HashMap<>(); // Key -> last record payload
+    private final CRC32 crc32 = new CRC32();
+    @Nullable
+    private FileOutputStream fileOutputStream; // null until opened
+    @Nullable
+    private DataOutputStream out;
+    private long fileBytes = 0;
+    private long committedBytes = 0; // The log is valid up to here
+    private long liveBytes = 0;
+    private long retryCompactBytes = 0; // After a failed compaction, wait until the log has grown before trying again
+
+    /**
+     * Create a store with a new dedicated thread, started when the store is first used
+     *
+     * @param file the log file, for example <code>new File(context.getFilesDir(), "values.kv")</code>. Only one store may use each file.
+     */
+    public LogStructuredStore(@NonNull File file) {
+        this(file, new DefaultThreadType(TAG + " " + file.getName(),
+                new LazyExecutorService(TAG + " " + file.getName(), Executors::newSingleThreadExecutor), null), MIN_COMPACT_BYTES);
+    }
+
+    /**
+     * Create a store
+     *
+     * @param file            the log file. Only one store may use each file.
+     * @param threadType      a single-threaded, in-order thread type used only by this store
+     * @param minCompactBytes the log is not compacted until it is at least this large
+     */
+    public LogStructuredStore(@NonNull File file,
+                              @NonNull IThreadType threadType,
+                              long minCompactBytes) {
+        this.file = file;
+        this.threadType = threadType;
+        this.minCompactBytes = minCompactBytes;
+    }
+
+    @NonNull
+    @Override // IPersistentStore
+    public IThreadType getThreadType() {
+        return threadType;
+    }
+
+    @NonNull
+    public File getFile() {
+        return file;
+    }
+
+    @WorkerThread
+    @Override // IPersistentStore
+    public void preload() throws IOException {
+        open();
+    }
+
+    @WorkerThread
+    @NonNull
+    @Override // IPersistentStore
+    @SuppressWarnings("unchecked")
+    public <T> T read(@NonNull String key,
+                      @NonNull T defaultValue) throws IOException {
+        open();
+        final byte[] payload = index.get(key);
+
+        if (payload == null) {
+            return defaultValue;
+        }
+        final DataInputStream in = new DataInputStream(new ByteArrayInputStream(payload));
+        final Class<T> claz = (Class<T>) defaultValue.getClass();
+        in.readUTF(); // Key
+
+        if (in.readInt() != claz.getName().hashCode()) {
+            RCLog.i(TAG, "Stored value of " + key + " is not " + claz + ". Using the default value");
+            return defaultValue;
+        }
+
+        return CodecUtil.getCodec(claz).decode(in);
+    }
+
+    @WorkerThread
+    @Override // IPersistentStore
+    public void write(@NonNull String key,
+                      @NonNull Object value) throws IOException {
+        open();
+        final byte[] payload = toPayload(key, value);
+
+        try {
+            append(payload);
+            commit();
+        } catch (IOException e) {
+            rollback();
+            throw e;
+        }
+        index(key, payload);
+        compactIfNeeded();
+    }
+
+    @WorkerThread
+    @Override // IPersistentStore
+    public void write(@NonNull Map<String, ?> values) throws IOException {
+        open();
+        final Map<String, byte[]> payloads = new HashMap<>(values.size() * 2);
+
+        for (Map.Entry<String, ?> entry : values.entrySet()) {
+            payloads.put(entry.getKey(), toPayload(entry.getKey(), entry.getValue())); // A value which can not be encoded fails the batch before anything is appended
+        }
+        try {
+            for (byte[] payload : payloads.values()) {
+                append(payload);
+            }
+            commit(); // One fsync for the batch
+        } catch (IOException e) {
+            rollback();
+            throw e;
+        }
+        for (Map.Entry<String, byte[]> entry : payloads.entrySet()) {
+            index(entry.getKey(), entry.getValue());
+        }
+        compactIfNeeded();
+    }
+
+    @NonNull
+    @SuppressWarnings("unchecked")
+    private static byte[] toPayload(@NonNull String key,
+                                    @NonNull Object value) throws IOException {
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream(key.length() + 16);
+        final DataOutputStream payloadOut = new DataOutputStream(bytes);
+        final Class<Object> claz = (Class<Object>) value.getClass();
+
+        payloadOut.writeUTF(key);
+        payloadOut.writeInt(claz.getName().hashCode());
+        CodecUtil.getCodec(claz).encode(value, payloadOut);
+        payloadOut.flush();
+
+        return bytes.toByteArray();
+    }
+
+    private void commit() throws IOException {
+        out.flush();
+        fileOutputStream.getFD().sync();
+        committedBytes = fileBytes;
+    }
+
+    /**
+     * After a failed append or commit, discard the buffered part of the record and cut any part already
+     * written off the end of the log. If that also fails the log stays closed, and the next operation
+     * replays and truncates it.
+     */
+    private void rollback() {
+        final FileOutputStream f = fileOutputStream;
+
+        out = null; // Dropped without flushing the partial record still in the buffer
+        fileOutputStream = null;
+        fileBytes = committedBytes;
+        try {
+            if (f != null) {
+                f.close();
+            }
+            final RandomAccessFile randomAccessFile = new RandomAccessFile(file, "rw");
+            try {
+                randomAccessFile.setLength(committedBytes);
+            } finally {
+                randomAccessFile.close();
+            }
+            openForAppend();
+        } catch (IOException e) {
+            RCLog.e(TAG, "Can not truncate " + file.getName() + " after a failed write. It will be replayed when next used", e);
+            fileOutputStream = null;
+            out = null;
+        }
+    }
+
+    private void index(@NonNull String key,
+                       @NonNull byte[] payload) {
+        final byte[] previous = index.put(key, payload);
+
+        if (previous != null) {
+            liveBytes -= previous.length + RECORD_OVERHEAD_BYTES;
+        }
+        liveBytes += payload.length + RECORD_OVERHEAD_BYTES;
+    }
+
+    /**
+     * Compact after a write has committed. A compaction failure does not fail the write, which is
+     * already durable. The log stays valid and is compacted again once it has doubled in size.
+     */
+    private void compactIfNeeded() {
+        if (fileBytes >= minCompactBytes && fileBytes >= retryCompactBytes && fileBytes > 2 * liveBytes) {
+            try {
+                compact();
+                retryCompactBytes = 0;
+            } catch (IOException e) {
+                retryCompactBytes = 2 * fileBytes;
+                RCLog.e(TAG, "Can not compact " + file.getName() + ". The write succeeded and the log remains valid", e);
+            }
+        }
+    }
+
+    @WorkerThread
+    @Override // IPersistentStore
+    public void setOnChangeListener(@Nullable IActionOne<String> onChangeListener) {
+        // This store is the only writer to its file, so there are no external changes to report
+    }
+
+    /**
+     * @return the number of bytes in the log file, including overwritten values not yet compacted away
+     */
+    @WorkerThread
+    public long getFileBytes() throws IOException {
+        open();
+        return fileBytes;
+    }
+
+    /**
+     * Rewrite the log to contain only the current value of each key
+     *
+     * @throws IOException if the new log can not be written. The previous log remains valid.
+     */
+    @WorkerThread
+    public void compact() throws IOException {
+        open();
+        final File tmp = new File(file.getPath() + ".tmp");
+        final FileOutputStream tmpFileOutputStream = new FileOutputStream(tmp);
+        final DataOutputStream tmpOut = new DataOutputStream(new BufferedOutputStream(tmpFileOutputStream));
+        long tmpBytes = 0;
+
+        try {
+            for (byte[] payload : index.values()) {
+                tmpBytes += writeRecord(tmpOut, payload);
+            }
+            tmpOut.flush();
+            tmpFileOutputStream.getFD().sync();
+        } finally {
+            tmpOut.close();
+        }
+        close();
+        if (!tmp.renameTo(file)) {
+            throw new IOException("Can not replace " + file + " with compacted " + tmp);
+        }
+        RCLog.v(TAG, "Compacted " + file.getName() + " from " + fileBytes + " to " + tmpBytes + " bytes");
+        fileBytes = tmpBytes;
+        committedBytes = tmpBytes;
+        openForAppend();
+    }
+
+    /**
+     * Close the log file. It is opened again on the next read or write.
+     */
+    @WorkerThread
+    public void close() throws IOException {
+        if (out != null) {
+            try {
+                out.close();
+            } finally {
+                out = null;
+                fileOutputStream = null;
+            }
+        }
+    }
+
+    @WorkerThread
+    private void open() throws IOException {
+        if (out != null) {
+            return;
+        }
+        index.clear();
+        liveBytes = 0;
+        fileBytes = replay();
+        committedBytes = fileBytes;
+        if (file.exists() && file.length() > fileBytes) {
+            RCLog.i(TAG, "Truncating " + file.getName() + " from " + file.length() + " to last good record at " + fileBytes + " bytes");
+            final RandomAccessFile randomAccessFile = new RandomAccessFile(file, "rw");
+            try {
+                randomAccessFile.setLength(fileBytes);
+            } finally {
+                randomAccessFile.close();
+            }
+        }
+        openForAppend();
+    }
+
+    private void openForAppend() throws IOException {
+        fileOutputStream = new FileOutputStream(file, true);
+        out = new DataOutputStream(new BufferedOutputStream(openOutputStream(fileOutputStream)));
+    }
+
+    /**
+     * @param fileOutputStream the log file, opened for append
+     * @return the stream to which records are written. Tests override this to inject write failures.
+     */
+    @VisibleForTesting
+    @NonNull
+    OutputStream openOutputStream(@NonNull FileOutputStream fileOutputStream) {
+        return fileOutputStream;
+    }
+
+    /**
+     * Load the index from the log
+     *
+     * @return the length of the valid part of the log
+     */
+    @WorkerThread
+    private long replay() throws IOException {
+        if (!file.exists()) {
+            return 0;
+        }
+        final DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)));
+        long position = 0;
+
+        try {
+            while (true) {
+                final int length = in.readInt();
+                if (length <= 0 || length > MAX_RECORD_BYTES) {
+                    break;
+                }
+                final byte[] payload = new byte[length];
+                in.readFully(payload);
+                final int crc = in.readInt();
+                crc32.reset();
+                crc32.update(payload, 0, length);
+                if ((int) crc32.getValue() != crc) {
+                    break;
+                }
+                index(new DataInputStream(new ByteArrayInputStream(payload)).readUTF(), payload);
+                position += length + RECORD_OVERHEAD_BYTES;
+            }
+        } catch (EOFException e) {
+            // Normal end of log, or a torn final record
+        } finally {
+            in.close();
+        }
+
+        return position;
+    }
+
+    private void append(@NonNull byte[] payload) throws IOException {
+        fileBytes += writeRecord(out, payload);
+    }
+
+    private int writeRecord(@NonNull DataOutputStream dataOutputStream,
+                            @NonNull byte[] payload) throws IOException {
+        crc32.reset();
+        crc32.update(payload, 0, payload.length);
+        dataOutputStream.writeInt(payload.length);
+        dataOutputStream.write(payload);
+        dataOutputStream.writeInt((int) crc32.getValue());
+
+        return payload.length + RECORD_OVERHEAD_BYTES;
+    }
+}
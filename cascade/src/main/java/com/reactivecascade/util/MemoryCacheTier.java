@@ -0,0 +1,169 @@
+/*
+This file is part of Reactive Cascade which is released under The MIT License.
+See license.md , https://github.com/futurice/cascade and http://reactivecascade.com for details.
+This is open source for the common good. Please contribute improvements by pull request or contact paulirotta@gmail.com
+*/
+package com.reactivecascade.util;
+
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+
+import com.reactivecascade.i.IActionOneR;
+import com.reactivecascade.i.IActionTwo;
+import com.reactivecascade.i.ICacheTier;
+import com.reactivecascade.i.IThreadType;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * A size-bounded least-recently-used {@link ICacheTier} in memory
+ * <p>
+ * The size of each value is given by a function, for example the byte count of a bitmap, or is 1 so
+ * that the bound is a number of entries. This tier is thread safe and may be used from any thread.
+ *
+ * @param <K> key type
+ * @param <V> value type
+ */
+public class MemoryCacheTier<K, V> implements ICacheTier<K, V> {
+    @NonNull
+    private final String name;
+    private final long maxSize;
+    @Nullable
+    private final IActionOneR<V, Integer> sizeOf;
+    @NonNull
+    private final LinkedHashMap<K, V> values = new LinkedHashMap<>(16, 0.75f, true); // Access order for LRU. Guarded by this
+    private long size = 0; // Guarded by this
+    private long evictionCount = 0; // Guarded by this
+    @Nullable
+    private volatile IActionTwo<K, V> onEvict;
+
+    /**
+     * Create a tier bounded by the number of entries
+     *
+     * @param name       the descriptive debug name
+     * @param maxEntries the maximum number of values
+     */
+    public MemoryCacheTier(@NonNull String name,
+                           int maxEntries) {
+        this(name, maxEntries, null);
+    }
+
+    /**
+     * Create a tier bounded by the total size of the values
+     *
+     * @param name    the descriptive debug name
+     * @param maxSize the maximum total size
+     * @param sizeOf  the size of one value, or <code>null</code> to count each value as 1
+     */
+    public MemoryCacheTier(@NonNull String name,
+                           long maxSize,
+                           @Nullable IActionOneR<V, Integer> sizeOf) {
+        if (maxSize < 1) {
+            throw new IllegalArgumentException("maxSize must be at least 1: " + maxSize);
+        }
+        this.name = name;
+        this.maxSize = maxSize;
+        this.sizeOf = sizeOf;
+    }
+
+    @NonNull
+    @Override // INamed
+    public String getName() {
+        return name;
+    }
+
+    @Nullable
+    @Override // ICacheTier
+    public IThreadType getThreadType() {
+        return null;
+    }
+
+    @Nullable
+    @Override // ICacheTier
+    public synchronized V read(@NonNull K key) {
+        return values.get(key);
+    }
+
+    @Override // ICacheTier
+    public void write(@NonNull K key,
+                      @NonNull V value) throws Exception {
+        final long valueSize = sizeOf(value);
+        ArrayList<Map.Entry<K, V>> evicted = null;
+
+        synchronized (this) {
+            final V previous = values.put(key, value);
+
+            if (previous != null) {
+                size -= sizeOf(previous);
+            }
+            size += valueSize;
+            final Iterator<Map.Entry<K, V>> iterator = values.entrySet().iterator();
+            while (size > maxSize && iterator.hasNext()) {
+                final Map.Entry<K, V> eldest = iterator.next();
+
+                if (eldest.getKey().equals(key)) {
+                    continue; // A single value larger than the tier is kept until the next write
+                }
+                iterator.remove();
+                size -= sizeOf(eldest.getValue());
+                evictionCount++;
+                if (evicted == null) {
+                    evicted = new ArrayList<>();
+                }
+                evicted.add(eldest);
+            }
+        }
+
+        final IActionTwo<K, V> listener = onEvict;
+        if (evicted != null && listener != null) {
+            for (Map.Entry<K, V> entry : evicted) {
+                listener.call(entry.getKey(), entry.getValue());
+            }
+        }
+    }
+
+    @Override // ICacheTier
+    public synchronized void remove(@NonNull K key) throws Exception {
+        final V previous = values.remove(key);
+
+        if (previous != null) {
+            size -= sizeOf(previous);
+        }
+    }
+
+    @Override // ICacheTier
+    public synchronized void clear() {
+        values.clear();
+        size = 0;
+    }
+
+    @Override // ICacheTier
+    public void setOnEvictListener(@Nullable IActionTwo<K, V> onEvict) {
+        this.onEvict = onEvict;
+    }
+
+    @Override // ICacheTier
+    public synchronized long getEvictionCount() {
+        return evictionCount;
+    }
+
+    /**
+     * @return the total size of the values, as given by the size function
+     */
+    public synchronized long getSize() {
+        return size;
+    }
+
+    private long sizeOf(@NonNull V value) throws Exception {
+        return sizeOf == null ? 1 : sizeOf.call(value);
+    }
+
+    @NonNull
+    @Override // Object
+    public String toString() {
+        return "MemoryCacheTier(" + name + ", size=" + getSize() + "/" + maxSize + ")";
+    }
+}
@@ -0,0 +1,578 @@
+/*
+This file is part of Reactive Cascade which is released under The MIT License.
+See license.md , https://github.com/futurice/cascade and http://reactivecascade.com for details.
+This is open source for the common good. Please contribute improvements by pull request or contact paulirotta@gmail.com
+*/
+package com.reactivecascade.util;
+
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+import android.support.annotation.WorkerThread;
+
+import com.reactivecascade.i.IAltFuture;
+import com.reactivecascade.i.ICodec;
+import com.reactivecascade.i.IMirror;
+import com.reactivecascade.i.INamed;
+import com.reactivecascade.i.IPersistentStore;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * A key-value map which keeps {@link IMirror} replicas up to date by sending only what changed
+ * <p>
+ * Each {@link #put(Object, Object)} and {@link #delete(Object)} is given the next sequence number. The
+ * change log keeps only the latest change of each key, indexed by sequence number. A mirror which has
+ * applied changes up to sequence <code>n</code> receives only the changes after <code>n</code>, in
+ * batches, on its {@link IMirror#getWriteThreadType()}. The work of a sync is in proportion to the
+ * number of changed keys, not the number of keys.
+ * <p>
+ * Changes made in quick succession are coalesced into one sync for each mirror. A deleted key is
+ * remembered until all subscribed mirrors have applied the delete. A mirror which is further behind
+ * than that, for example one which was unsubscribed for a while, is cleared and copied in full.
+ * <p>
+ * A service kept only in memory starts its sequence numbers from the current time, so a durable mirror is
+ * copied in full the first time it syncs with a new instance of the service. A service created with an
+ * {@link IPersistentStore} keeps its change log and sequence number there. Each key's latest change is
+ * stored in a numbered slot, and coalesced changes are written in one commit. Mirrors are sent only
+ * changes which are already stored, so after a restart a durable mirror receives only the changes it missed.
+ * <p>
+ * This replaces the icebox <code>rest.MirrorService</code>, which pushed every change to every mirror
+ * and copied the whole index when a mirror subscribed.
+ *
+ * @param <K> key type
+ * @param <V> value type. Values are shared with the mirrors and must not be changed after they are stored.
+ */
+public class MirrorService<K, V> extends Origin implements INamed {
+    /**
+     * The default maximum number of changes written to a mirror in one {@link IMirror#write(Map, java.util.List, long)}
+     */
+    public static final int DEFAULT_BATCH_SIZE = 256;
+    private static final long LOAD_TIMEOUT_SECONDS = 10;
+    private static final byte[] EMPTY_SLOT = new byte[0];
+
+    @NonNull
+    private final String name;
+    private final int batchSize;
+    @NonNull
+    private final HashMap<K, Change<K, V>> latest = new HashMap<>(); // Guarded by this
+    @NonNull
+    private final TreeMap<Long, Change<K, V>> log = new TreeMap<>(); // Latest change of each key, by sequence. Guarded by this
+    private long sequence; // Guarded by this
+    private long prunedThrough; // Deletes at or before this sequence are forgotten. Guarded by this
+    @NonNull
+    private final FanOut<Link<K, V>> links = new FanOut<>();
+    @Nullable
+    private final IPersistentStore store;
+    @Nullable
+    private final ICodec<K> keyCodec;
+    @Nullable
+    private final ICodec<V> valueCodec;
+    @NonNull
+    private final HashMap<K, Integer> slots = new HashMap<>(); // Store slot of each key in the log. Guarded by this
+    @NonNull
+    private final ArrayList<Integer> freeSlots = new ArrayList<>(); // Guarded by this
+    @NonNull
+    private final LinkedHashMap<K, Change<K, V>> unstored = new LinkedHashMap<>(); // Changes not yet written to the store. Guarded by this
+    private long storedThrough; // Mirrors are synced only this far. Guarded by this
+    @NonNull
+    private final AtomicBoolean storeScheduled = new AtomicBoolean();
+
+    /**
+     * Create a service with the default batch size
+     *
+     * @param name the descriptive debug name
+     */
+    public MirrorService(@NonNull String name) {
+        this(name, DEFAULT_BATCH_SIZE);
+    }
+
+    /**
+     * Create a service
+     *
+     * @param name      the descriptive debug name
+     * @param batchSize the maximum number of changes written to a mirror at one time
+     */
+    public MirrorService(@NonNull String name,
+                         int batchSize) {
+        this(name, batchSize, null, (ICodec<K>) null, null);
+    }
+
+    /**
+     * Create a service which keeps its change log in a store, and load the log now
+     * <p>
+     * This waits for the store thread to read the log, so call it from a worker thread.
+     *
+     * @param name       the descriptive debug name. It is also the prefix of the keys in the store, so it must be unique within the store.
+     * @param batchSize  the maximum number of changes written to a mirror at one time
+     * @param store      where the change log is kept
+     * @param keyClass   the class of the keys, used to find their {@link ICodec}
+     * @param valueClass the class of the values, used to find their {@link ICodec}
+     */
+    public MirrorService(@NonNull String name,
+                         int batchSize,
+                         @NonNull IPersistentStore store,
+                         @NonNull Class<K> keyClass,
+                         @NonNull Class<V> valueClass) {
+        this(name, batchSize, store, CodecUtil.getCodec(keyClass), CodecUtil.getCodec(valueClass));
+    }
+
+    private MirrorService(@NonNull String name,
+                          int batchSize,
+                          @Nullable IPersistentStore store,
+                          @Nullable ICodec<K> keyCodec,
+                          @Nullable ICodec<V> valueCodec) {
+        if (batchSize < 1) {
+            throw new IllegalArgumentException("batchSize must be at least 1: " + batchSize);
+        }
+        this.name = name;
+        this.batchSize = batchSize;
+        this.store = store;
+        this.keyCodec = keyCodec;
+        this.valueCodec = valueCodec;
+        this.sequence = System.currentTimeMillis() * 1000; // Later than any sequence of an earlier instance, so their mirrors are copied in full
+        this.prunedThrough = sequence;
+        this.storedThrough = sequence;
+        if (store != null) {
+            try {
+                new AltFutureFuture<>(store.getThreadType().then(() -> load(store)))
+                        .get(LOAD_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+            } catch (Exception e) {
+                RCLog.e(this, "Can not load the change log, mirrors will be copied in full", e);
+            }
+        }
+    }
+
+    @NonNull
+    @Override // INamed
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * @param key of the value
+     * @return the current value, or <code>null</code> if there is none
+     */
+    @Nullable
+    public synchronized V get(@NonNull K key) {
+        final Change<K, V> change = latest.get(key);
+
+        return change == null ? null : change.value;
+    }
+
+    /**
+     * Add or replace a value. Subscribed mirrors are synced soon after.
+     *
+     * @param key   of the value
+     * @param value to store
+     * @return the sequence number of this change
+     */
+    public long put(@NonNull K key,
+                    @NonNull V value) {
+        final long s = record(key, value);
+
+        changed();
+
+        return s;
+    }
+
+    /**
+     * Remove a value. Subscribed mirrors are synced soon after.
+     *
+     * @param key of the value
+     * @return the sequence number of this change
+     */
+    public long delete(@NonNull K key) {
+        final long s = record(key, null);
+
+        changed();
+
+        return s;
+    }
+
+    /**
+     * @return the sequence number of the latest change. Sequence numbers continue from the store, or else start from the creation time of this service.
+     */
+    public synchronized long getSequence() {
+        return sequence;
+    }
+
+    /**
+     * @return the number of keys with a value
+     */
+    public synchronized int size() {
+        int size = 0;
+
+        for (Change<K, V> change : latest.values()) {
+            if (change.value != null) {
+                size++;
+            }
+        }
+
+        return size;
+    }
+
+    /**
+     * Keep a mirror up to date. It is synced now and after each change.
+     *
+     * @param mirror to keep up to date
+     */
+    public void subscribe(@NonNull IMirror<K, V> mirror) {
+        final Link<K, V> link = new Link<>(mirror);
+
+        if (links.add(link)) {
+            scheduleSync(link);
+        }
+    }
+
+    /**
+     * Stop sending changes to a mirror. A sync which is in progress continues.
+     *
+     * @param mirror to stop updating
+     */
+    public void unsubscribe(@NonNull IMirror<K, V> mirror) {
+        links.remove(new Link<>(mirror));
+    }
+
+    /**
+     * Send the changes a mirror does not yet have. The mirror does not need to be subscribed.
+     *
+     * @param mirror to update
+     * @return the number of changes sent, when the sync is complete
+     */
+    @NonNull
+    public IAltFuture<?, Integer> sync(@NonNull IMirror<K, V> mirror) {
+        return mirror.getWriteThreadType().then(() -> doSync(findLink(mirror)));
+    }
+
+    @NonNull
+    private Link<K, V> findLink(@NonNull IMirror<K, V> mirror) {
+        for (Link<K, V> link : links) {
+            if (link.mirror == mirror) {
+                return link;
+            }
+        }
+
+        return new Link<>(mirror);
+    }
+
+    private synchronized long record(@NonNull K key,
+                                     @Nullable V value) {
+        final Change<K, V> change = new Change<>(key, value, ++sequence);
+        final Change<K, V> previous = latest.put(key, change);
+
+        if (previous != null) {
+            log.remove(previous.sequence);
+        }
+        log.put(change.sequence, change);
+        if (store == null) {
+            storedThrough = change.sequence;
+        } else {
+            unstored.remove(key); // Keep the order of changes
+            unstored.put(key, change);
+        }
+
+        return change.sequence;
+    }
+
+    private void changed() {
+        if (store == null) {
+            syncSubscribers();
+        } else if (storeScheduled.compareAndSet(false, true)) {
+            store.getThreadType().execute(() -> {
+                storeScheduled.set(false); // Changes after this point schedule another write
+                try {
+                    storeChanges(store);
+                } catch (Exception e) {
+                    RCLog.e(this, "Can not store the change log, will retry after the next change", e);
+                }
+                syncSubscribers();
+            });
+        }
+    }
+
+    /**
+     * Write all changes not yet stored in one commit. Only then are they sent to mirrors.
+     */
+    @WorkerThread
+    private void storeChanges(@NonNull IPersistentStore store) throws Exception {
+        final HashMap<String, Object> values = new HashMap<>();
+        final ArrayList<Change<K, V>> changes;
+        final long s;
+
+        synchronized (this) {
+            if (unstored.isEmpty()) {
+                return;
+            }
+            changes = new ArrayList<>(unstored.values());
+            unstored.clear();
+            s = sequence;
+            for (Change<K, V> change : changes) {
+                if (latest.get(change.key) == change) { // Not a delete which was pruned meanwhile
+                    values.put(name + "." + slotOf(change.key), encode(change));
+                }
+            }
+            values.put(name + ".slots", slots.size() + freeSlots.size());
+            values.put(name + ".prunedThrough", prunedThrough);
+            values.put(name + ".sequence", s);
+        }
+        try {
+            store.write(values);
+        } catch (Exception e) {
+            synchronized (this) {
+                for (Change<K, V> change : changes) {
+                    if (!unstored.containsKey(change.key)) {
+                        unstored.put(change.key, change);
+                    }
+                }
+            }
+            throw e;
+        }
+        synchronized (this) {
+            storedThrough = Math.max(storedThrough, s);
+        }
+    }
+
+    private int slotOf(@NonNull K key) {
+        Integer slot = slots.get(key);
+
+        if (slot == null) {
+            slot = freeSlots.isEmpty() ? slots.size() : freeSlots.remove(freeSlots.size() - 1);
+            slots.put(key, slot);
+        }
+
+        return slot;
+    }
+
+    /**
+     * @return <code>[varlong sequence][boolean has value][key][value]</code>
+     */
+    @NonNull
+    @SuppressWarnings("ConstantConditions")
+    private byte[] encode(@NonNull Change<K, V> change) throws IOException {
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        final DataOutputStream out = new DataOutputStream(bytes);
+
+        CodecUtil.writeVarLong(change.sequence, out);
+        out.writeBoolean(change.value != null);
+        keyCodec.encode(change.key, out);
+        if (change.value != null) {
+            valueCodec.encode(change.value, out);
+        }
+        out.flush();
+
+        return bytes.toByteArray();
+    }
+
+    @WorkerThread
+    @SuppressWarnings("ConstantConditions")
+    private void load(@NonNull IPersistentStore store) throws Exception {
+        final long storedSequence = store.read(name + ".sequence", 0L);
+
+        if (storedSequence == 0) {
+            return; // New store, keep the sequence from the current time
+        }
+        final long storedPrunedThrough = store.read(name + ".prunedThrough", 0L);
+        final int slotCount = store.read(name + ".slots", 0);
+
+        synchronized (this) {
+            for (int slot = 0; slot < slotCount; slot++) {
+                final byte[] bytes = store.read(name + "." + slot, EMPTY_SLOT);
+
+                if (bytes.length == 0) {
+                    freeSlots.add(slot);
+                    continue;
+                }
+                final DataInputStream in = new DataInputStream(new ByteArrayInputStream(bytes));
+                final long s = CodecUtil.readVarLong(in);
+                final boolean hasValue = in.readBoolean();
+                final K key = keyCodec.decode(in);
+                final Change<K, V> change = new Change<>(key, hasValue ? valueCodec.decode(in) : null, s);
+
+                if (change.value == null && s <= storedPrunedThrough) {
+                    freeSlots.add(slot); // A delete all mirrors had applied
+                    continue;
+                }
+                latest.put(key, change);
+                log.put(s, change);
+                slots.put(key, slot);
+            }
+            sequence = storedSequence;
+            prunedThrough = storedPrunedThrough;
+            storedThrough = storedSequence;
+        }
+        RCLog.v(this, "Loaded " + latest.size() + " changes through sequence " + storedSequence);
+    }
+
+    private void syncSubscribers() {
+        for (Link<K, V> link : links) {
+            scheduleSync(link);
+        }
+    }
+
+    private void scheduleSync(@NonNull Link<K, V> link) {
+        if (link.scheduled.compareAndSet(false, true)) {
+            link.mirror.getWriteThreadType().execute(() -> {
+                link.scheduled.set(false); // Changes after this point schedule another sync
+                try {
+                    doSync(link);
+                } catch (Exception e) {
+                    RCLog.e(this, "Can not sync " + link.mirror.getName() + ", will retry after the next change", e);
+                }
+            });
+        }
+    }
+
+    @WorkerThread
+    private int doSync(@NonNull Link<K, V> link) throws Exception {
+        final IMirror<K, V> mirror = link.mirror;
+        int count = 0;
+
+        synchronized (link) {
+            long from = mirror.getSequence();
+            final boolean full;
+
+            synchronized (this) {
+                full = from < prunedThrough || from > sequence;
+            }
+            if (full) {
+                RCLog.i(this, mirror.getName() + " is at sequence " + from + " which is too far behind or unknown, copying all values");
+                mirror.clear();
+                from = 0;
+            }
+
+            final LinkedHashMap<K, V> puts = new LinkedHashMap<>();
+            final ArrayList<K> deletes = new ArrayList<>();
+            while (true) {
+                long to = from;
+
+                synchronized (this) {
+                    final Iterator<Change<K, V>> iterator = log.tailMap(from, false).values().iterator();
+
+                    while (puts.size() + deletes.size() < batchSize && iterator.hasNext()) {
+                        final Change<K, V> change = iterator.next();
+
+                        if (change.sequence > storedThrough) {
+                            break; // Not yet in the store
+                        }
+                        if (change.value != null) {
+                            puts.put(change.key, change.value);
+                        } else {
+                            deletes.add(change.key); // Also during a full copy, the key may have been sent in an earlier batch
+                        }
+                        to = change.sequence;
+                    }
+                }
+                if (to == from) {
+                    break;
+                }
+                mirror.write(puts, deletes, to);
+                count += puts.size() + deletes.size();
+                link.synced = to;
+                from = to;
+                puts.clear();
+                deletes.clear();
+            }
+            link.synced = from;
+        }
+        pruneDeletes();
+        RCLog.v(this, "Synced " + count + " changes to " + mirror.getName());
+
+        return count;
+    }
+
+    /**
+     * Forget deletes which all subscribed mirrors have applied
+     */
+    private void pruneDeletes() {
+        long min = Long.MAX_VALUE;
+
+        for (Link<K, V> link : links) {
+            min = Math.min(min, link.synced);
+        }
+        if (min == Long.MAX_VALUE) {
+            return;
+        }
+
+        synchronized (this) {
+            if (min <= prunedThrough) {
+                return;
+            }
+            final Iterator<Change<K, V>> iterator = log.headMap(min, true).values().iterator();
+            while (iterator.hasNext()) {
+                final Change<K, V> change = iterator.next();
+
+                if (change.value == null) {
+                    iterator.remove();
+                    latest.remove(change.key);
+                    final Integer slot = slots.remove(change.key);
+                    if (slot != null) {
+                        freeSlots.add(slot); // Reused by a later new key, which overwrites the stored delete
+                    }
+                }
+            }
+            prunedThrough = min;
+        }
+    }
+
+    @NonNull
+    @Override // Object
+    public String toString() {
+        return "MirrorService(" + name + ", sequence=" + getSequence() + ")";
+    }
+
+    /**
+     * The latest change of one key. A <code>null</code> value is a delete.
+     */
+    private static final class Change<K, V> {
+        @NonNull
+        final K key;
+        @Nullable
+        final V value;
+        final long sequence;
+
+        Change(@NonNull K key,
+               @Nullable V value,
+               long sequence) {
+            this.key = key;
+            this.value = value;
+            this.sequence = sequence;
+        }
+    }
+
+    /**
+     * A subscribed mirror and how far it has been synced
+     */
+    private static final class Link<K, V> {
+        @NonNull
+        final IMirror<K, V> mirror;
+        @NonNull
+        final AtomicBoolean scheduled = new AtomicBoolean();
+        volatile long synced = 0;
+
+        Link(@NonNull IMirror<K, V> mirror) {
+            this.mirror = mirror;
+        }
+
+        @Override // Object
+        public boolean equals(Object o) {
+            return o instanceof Link && ((Link<?, ?>) o).mirror == mirror;
+        }
+
+        @Override // Object
+        public int hashCode() {
+            return System.identityHashCode(mirror);
+        }
+    }
+}
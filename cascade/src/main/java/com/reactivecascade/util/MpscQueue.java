@@ -0,0 +1,80 @@
+/*
+This file is part of Reactive Cascade which is released under The MIT License.
+See license.md , https://github.com/futurice/cascade and http://reactivecascade.com for details.
+This is open source for the common good. Please contribute improvements by pull request or contact paulirotta@gmail.com
+*/
+package com.reactivecascade.util;
+
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * An unbounded lock-free queue for many producer threads and one consumer thread
+ * <p>
+ * Unlike {@link RingBuffer}, {@link #offer(Object)} never refuses an item. Each offer is one atomic
+ * swap and one node allocation, with no retry loop under contention.
+ * <p>
+ * Only one thread at a time may call {@link #poll()}. Any thread may call {@link #offer(Object)}.
+ * Items offered by one thread are polled in the order they were offered.
+ *
+ * @param <T> item type
+ */
+public class MpscQueue<T> {
+    private final AtomicReference<Node<T>> tail; // Last node linked by a producer
+    private Node<T> head; // Consumed marker node, read and written only by the consumer
+
+    public MpscQueue() {
+        head = new Node<>(null);
+        tail = new AtomicReference<>(head);
+    }
+
+    /**
+     * Add an item. This is safe to call concurrently from any number of threads.
+     *
+     * @param item to add
+     */
+    public void offer(@NonNull T item) {
+        final Node<T> node = new Node<>(item);
+
+        tail.getAndSet(node).lazySet(node); // The previous tail becomes visible to the consumer when linked
+    }
+
+    /**
+     * Remove the oldest item. Only one thread at a time may call this method.
+     *
+     * @return the item, or <code>null</code> if the queue is empty or a producer has not yet linked its item
+     */
+    @Nullable
+    public T poll() {
+        final Node<T> next = head.get();
+
+        if (next == null) {
+            return null;
+        }
+        final T item = next.item;
+        next.item = null;
+        head = next;
+
+        return item;
+    }
+
+    /**
+     * Check if there is nothing to poll. Like {@link #poll()}, only the consumer thread may call this method.
+     *
+     * @return <code>true</code> if no producer has offered an item which is not yet polled
+     */
+    public boolean isEmpty() {
+        return tail.get() == head;
+    }
+
+    private static final class Node<T> extends AtomicReference<Node<T>> { // The value is the next node
+        @Nullable
+        T item;
+
+        Node(@Nullable T item) {
+            this.item = item;
+        }
+    }
+}
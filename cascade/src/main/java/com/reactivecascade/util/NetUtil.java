@@ -22,11 +22,13 @@ import android.telephony.TelephonyManager;
 import com.reactivecascade.functional.RunnableAltFuture;
 import com.reactivecascade.functional.SettableAltFuture;
 import com.reactivecascade.i.IAltFuture;
+import com.reactivecascade.i.ICancellationToken;
 import com.reactivecascade.i.IGettable;
 import com.reactivecascade.i.IThreadType;
 
 import java.io.IOException;
 import java.util.Collection;
+import java.util.concurrent.CancellationException;
 
 import okhttp3.Call;
 import okhttp3.OkHttpClient;
@@ -465,15 +467,32 @@ public final class NetUtil extends Origin {
      * <p>
      * We are explicitly using our own threading model for debuggability and concurrency management
      * reasons rather than delegating that to the library
+     * <p>
+     * If this is called from a running chain step, cancelling that step aborts the call. The abort
+     * remains registered until the step completes so that reading the response body is also aborted.
      *
      * @param call
      * @return
      * @throws IOException
+     * @throws CancellationException if the chain step was cancelled during the call
      */
     @NonNull
     @WorkerThread
     private Response execute(@NonNull Call call) throws IOException {
-        final Response response = call.execute();
+        final ICancellationToken cancellationToken = CancellationUtil.current();
+        final Response response;
+
+        if (!cancellationToken.addOnCancel(call::cancel)) {
+            throw new CancellationException("Cancelled before " + call.request());
+        }
+        try {
+            response = call.execute();
+        } catch (IOException e) {
+            if (cancellationToken.isCancelled()) {
+                throw new CancellationException("Cancelled during " + call.request() + ": " + e);
+            }
+            throw e;
+        }
 
         if (response.isRedirect()) {
             final String location = response.headers().get("Location");
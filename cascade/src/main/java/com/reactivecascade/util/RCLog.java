@@ -7,16 +7,20 @@ package com.reactivecascade.util;
 
 import android.support.annotation.CheckResult;
 import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
 import android.util.Log;
 
 import com.reactivecascade.Async;
 import com.reactivecascade.BuildConfig;
 import com.reactivecascade.functional.ImmutableValue;
 import com.reactivecascade.i.CallOrigin;
+import com.reactivecascade.i.IAction;
 import com.reactivecascade.i.IActionOne;
 import com.reactivecascade.i.IActionOneR;
+import com.reactivecascade.i.IActionR;
 import com.reactivecascade.i.IActionTwo;
 import com.reactivecascade.i.IAsyncOrigin;
+import com.reactivecascade.i.ILog;
 import com.reactivecascade.i.INamed;
 import com.reactivecascade.i.IThreadType;
 import com.reactivecascade.i.NotCallOrigin;
@@ -25,10 +29,14 @@ import java.lang.annotation.Annotation;
 import java.lang.reflect.Method;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.concurrent.CancellationException;
-import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * Cascade logging utilities
@@ -41,14 +49,26 @@ import java.util.concurrent.TimeoutException;
  * increased by logging with these routines. They provide a clickable link in the log back to the origin
  * point in your code where the object triggering the logged event was created and the point at which this
  * method were called.
+ * <p>
+ * Log lines below {@link Async#LOG_LEVEL} are discarded. In hot paths prefer the overloads which accept
+ * an {@link IActionR} message so that the message string is only built if it will be displayed.
  */
 public class RCLog {
     /**
      * A null object indicating the origin is not available
      */
     public static final ImmutableValue<String> DEFAULT_ORIGIN = new ImmutableValue<>("No Origin provided in production builds");
-    private static final ConcurrentHashMap<String, Class> sClassNameMap = new ConcurrentHashMap<>(); // "classname" -> Class. Used by DEBUG builds to more quickly trace mOrigin of a log message back into your code
-    private static final ConcurrentHashMap<String, Method> sMethodNameMap = new ConcurrentHashMap<>(); // "classname-methodname" -> Method. Used by DEBUG builds to more quickly trace mOrigin of a log message back into your code
+    private static final ILog ANDROID_LOG = new AndroidLog();
+    private static final int ORIGIN_CACHE_SIZE = 256; // Maximum number of call sites, classes and methods remembered by each cache
+    private static final int ORIGIN_KEY_DEPTH = 8; // Number of stack frames which identify a call site
+    private static final int ORIGIN_SKIP_FRAMES = 2; // captureOrigin() and the method which called it
+    private static final BoundedCache<String, Class> sClassNameMap = new BoundedCache<>(ORIGIN_CACHE_SIZE); // "classname" -> Class. Used by DEBUG builds to more quickly trace mOrigin of a log message back into your code
+    private static final BoundedCache<String, Method> sMethodNameMap = new BoundedCache<>(ORIGIN_CACHE_SIZE); // "classname-methodname" -> Method. Used by DEBUG builds to more quickly trace mOrigin of a log message back into your code
+    private static final BoundedCache<String, Boolean> sLibraryClassMap = new BoundedCache<>(ORIGIN_CACHE_SIZE); // "classname" -> true if frames of this class are skipped when identifying a call site
+    private static final BoundedCache<CallSiteKey, String> sOriginCache = new BoundedCache<>(ORIGIN_CACHE_SIZE); // call site -> resolved origin. Objects created at the same point in your code share one resolution
+    private static final ConcurrentLinkedQueue<PendingOrigin> sPendingOrigins = new ConcurrentLinkedQueue<>(); // Captured but not yet resolved on WORKER
+    private static final AtomicBoolean sResolvingOrigins = new AtomicBoolean(false);
+    private static final AtomicInteger sOriginSampleCount = new AtomicInteger();
 
     @NonNull
     private static String tagWithAspectAndThreadName(@NonNull String message) {
@@ -68,6 +88,8 @@ public class RCLog {
     /**
      * Log an error. During debugOrigin builds, this will fail-fast end the current context
      * <p>
+     * Errors are the only log lines which also reach the {@link ILog} in production builds
+     * <p>
      * If you do not want fail fast during debugOrigin build, use the normal {@link android.util.Log} routines
      *
      * @param tag     a log line to aid with filtering such as the mOrigin from which the object throwing
@@ -80,6 +102,8 @@ public class RCLog {
                          @NonNull String message) {
         if (BuildConfig.DEBUG) {
             e(tag, message, new Exception("(Exception created to generate a stack trace)"));
+        } else {
+            write(Log.ERROR, getTag(tag), message, null);
         }
     }
 
@@ -89,6 +113,8 @@ public class RCLog {
      * This makes debugging more straightforward as you only see the original source
      * of the error without any cascading side effect errors.
      * <p>
+     * In production builds the error is passed to the {@link ILog} without origin and without fail fast.
+     * <p>
      * It is strongly recommended that you do NOT <code>interrupt()</code> ongoing operations. Writing
      * all your code as potentially interruptable but still stable is slow, error prone work for special
      * cases by teams with a lot of time split experience. However, if you do interrupt, this will not
@@ -111,15 +137,17 @@ public class RCLog {
             } else {
                 log(tag, message, (ta, m) -> {
                     if (Async.SHOW_ERROR_STACK_TRACES) {
-                        Log.e(ta, m, t);
+                        write(Log.ERROR, ta, m, t);
                     } else {
-                        Log.d(ta, m + " : " + t);
+                        write(Log.DEBUG, ta, m + " : " + t, null);
                     }
                     if (Async.FAIL_FAST && !((t instanceof InterruptedException) || (t instanceof CancellationException))) {
                         Async.exitWithErrorCode(getTag(ta), m, t);
                     }
                 });
             }
+        } else {
+            write(Log.ERROR, getTag(tag), message, t); // Without origin or fail fast, so a field log such as RingBufferLog still sees errors
         }
     }
 
@@ -133,12 +161,12 @@ public class RCLog {
             origin.then(o -> {
                 if (Async.SHOW_ERROR_STACK_TRACES) {
                     try {
-                        Log.e(getTag(tag), tagWithAspectAndThreadName(message), t);
+                        write(Log.ERROR, getTag(tag), tagWithAspectAndThreadName(message), t);
                     } catch (Exception e) {
                         Log.e("Async", "Problem with logging: " + tag + " : " + message, e);
                     }
                 } else {
-                    log(tag, combineOriginStringsRemoveDuplicates(o, ccOrigin, message + " " + t), Log::e);
+                    log(tag, combineOriginStringsRemoveDuplicates(o, ccOrigin, message + " " + t), Log.ERROR);
                 }
                 if (Async.FAIL_FAST && !((t instanceof InterruptedException) || (t instanceof CancellationException))) {
                     Async.exitWithErrorCode(getTag(tag), message, t);
@@ -157,15 +185,32 @@ public class RCLog {
      */
     public static void v(@NonNull Object tag,
                          @NonNull String message) {
-        if (BuildConfig.DEBUG) {
+        if (isLoggable(Log.VERBOSE)) {
             if (tag instanceof IAsyncOrigin) {
                 v(tag, ((IAsyncOrigin) tag).getOrigin(), message);
             } else {
-                log(tag, message, Log::v);
+                log(tag, message, Log.VERBOSE);
             }
         }
     }
 
+    /**
+     * Log a verbose message including the thread name. The message is only created if this log level
+     * is enabled. A lambda which captures variables is still allocated on each call, so on hot paths
+     * test {@link #isLoggable(int)} first and use the <code>String</code> form.
+     *
+     * @param tag     a log line to aid with filtering such as the mOrigin from which the object throwing
+     *                the exception was created. This may be a {@link String}, {@link INamed},
+     *                {@link ImmutableValue<String>} or other {@link Object} used to categorize this log line
+     * @param message called to create the message only if it will be displayed
+     */
+    public static void v(@NonNull Object tag,
+                         @NonNull IActionR<String> message) {
+        if (isLoggable(Log.VERBOSE)) {
+            v(tag, callMessage(message));
+        }
+    }
+
     private static void v(@NonNull Object tag,
                           @NonNull ImmutableValue<String> origin,
                           @NonNull String message) {
@@ -175,7 +220,7 @@ public class RCLog {
                 ccOrigin -> {
                     origin.then(
                             o -> {
-                                log(tag, combineOriginStringsRemoveDuplicates(o, ccOrigin, message), Log::v);
+                                log(tag, combineOriginStringsRemoveDuplicates(o, ccOrigin, message), Log.VERBOSE);
                             });
                 });
     }
@@ -190,15 +235,32 @@ public class RCLog {
      */
     public static void d(@NonNull Object tag,
                          @NonNull String message) {
-        if (BuildConfig.DEBUG) {
+        if (isLoggable(Log.DEBUG)) {
             if (tag instanceof IAsyncOrigin) {
                 d(tag, ((IAsyncOrigin) tag).getOrigin(), message);
             } else {
-                log(tag, message, Log::d);
+                log(tag, message, Log.DEBUG);
             }
         }
     }
 
+    /**
+     * Log a debugOrigin message including the thread name. The message is only created if this log level
+     * is enabled. A lambda which captures variables is still allocated on each call, so on hot paths
+     * test {@link #isLoggable(int)} first and use the <code>String</code> form.
+     *
+     * @param tag     a log line to aid with filtering such as the mOrigin from which the object throwing
+     *                the exception was created. This may be a {@link String}, {@link INamed},
+     *                {@link ImmutableValue<String>} or other {@link Object} used to categorize this log line
+     * @param message called to create the message only if it will be displayed
+     */
+    public static void d(@NonNull Object tag,
+                         @NonNull IActionR<String> message) {
+        if (isLoggable(Log.DEBUG)) {
+            d(tag, callMessage(message));
+        }
+    }
+
     private static void d(@NonNull Object tag,
                           @NonNull ImmutableValue<String> origin,
                           @NonNull String message) {
@@ -207,7 +269,7 @@ public class RCLog {
         debugOriginThen(
                 ccOrigin -> {
                     origin.then(o -> {
-                        log(tag, combineOriginStringsRemoveDuplicates(o, ccOrigin, message), Log::d);
+                        log(tag, combineOriginStringsRemoveDuplicates(o, ccOrigin, message), Log.DEBUG);
                     });
                 });
     }
@@ -222,15 +284,32 @@ public class RCLog {
      */
     public static void i(@NonNull Object tag,
                          @NonNull String message) {
-        if (BuildConfig.DEBUG) {
+        if (isLoggable(Log.INFO)) {
             if (tag instanceof IAsyncOrigin) {
                 i(tag, ((IAsyncOrigin) tag).getOrigin(), message);
             } else {
-                log(tag, message, Log::i);
+                log(tag, message, Log.INFO);
             }
         }
     }
 
+    /**
+     * Log a information message including the thread name. The message is only created if this log level
+     * is enabled. A lambda which captures variables is still allocated on each call, so on hot paths
+     * test {@link #isLoggable(int)} first and use the <code>String</code> form.
+     *
+     * @param tag     a log line to aid with filtering such as the mOrigin from which the object throwing
+     *                the exception was created. This may be a {@link String}, {@link INamed},
+     *                {@link ImmutableValue<String>} or other {@link Object} used to categorize this log line
+     * @param message called to create the message only if it will be displayed
+     */
+    public static void i(@NonNull Object tag,
+                         @NonNull IActionR<String> message) {
+        if (isLoggable(Log.INFO)) {
+            i(tag, callMessage(message));
+        }
+    }
+
     private static void i(@NonNull Object tag,
                           @NonNull ImmutableValue<String> origin,
                           @NonNull String message) {
@@ -240,11 +319,52 @@ public class RCLog {
                 ccOrigin -> {
                     origin.then(
                             o -> {
-                                log(tag, combineOriginStringsRemoveDuplicates(o, ccOrigin, message), Log::i);
+                                log(tag, combineOriginStringsRemoveDuplicates(o, ccOrigin, message), Log.INFO);
                             });
                 });
     }
 
+    /**
+     * Check if log lines of the given priority will be displayed. This is a single branch, so wrap
+     * any expensive preparation of log output in this test.
+     *
+     * @param level a {@link Log} priority such as {@link Log#VERBOSE}
+     * @return <code>true</code> if this is a {@link BuildConfig#DEBUG} build and the level is at or above {@link Async#LOG_LEVEL}
+     */
+    public static boolean isLoggable(int level) {
+        return BuildConfig.DEBUG && level >= Async.LOG_LEVEL;
+    }
+
+    @NonNull
+    private static String callMessage(@NonNull IActionR<String> message) {
+        try {
+            return message.call();
+        } catch (Exception e) {
+            return "Problem creating log message: " + e;
+        }
+    }
+
+    private static void log(@NonNull Object tag,
+                            @NonNull String message,
+                            int priority) {
+        log(tag, message, (ta, m) -> write(priority, ta, m, null));
+    }
+
+    /**
+     * Send one line to the {@link ILog} set by {@link com.reactivecascade.AsyncBuilder#setLog(ILog)}
+     */
+    private static void write(int priority,
+                              @NonNull String tag,
+                              @NonNull String message,
+                              @Nullable Throwable t) {
+        ILog log = Async.LOG;
+
+        if (log == null) {
+            log = ANDROID_LOG; // During bootstrapping of Async
+        }
+        log.log(priority, tag, message, t);
+    }
+
     @SuppressWarnings("unchecked")
     private static void log(@NonNull Object tag,
                             @NonNull String message,
@@ -420,6 +540,10 @@ public class RCLog {
      * This information is frequently displayed along with the full stack trace at the point the error
      * manifests itself. First look at what when wrong at that point, subscribe work backwards to how you
      * created the mess. Yes, it is always your fault. Or my fault. Nah.
+     * <p>
+     * Objects created at the same call site share one cached origin. Use {@link com.reactivecascade.AsyncBuilder#setOriginSampleRate(int)}
+     * to capture only some origins and {@link com.reactivecascade.AsyncBuilder#setLazyOrigin(boolean)} to resolve
+     * origins only when they are displayed.
      *
      * @return a string holder that will be populated in the background on a WORKER thread (only in <code>{@link BuildConfig#DEBUG}=true</code> builds)
      */
@@ -430,24 +554,117 @@ public class RCLog {
             return DEFAULT_ORIGIN;
         }
 
-        StackTraceElement[] traceElementsArray = Thread.currentThread().getStackTrace();
-        ImmutableValue<String> immutableValue = new ImmutableValue<>();
+        if (Async.ORIGIN_SAMPLE_RATE > 1 && (sOriginSampleCount.getAndIncrement() & Integer.MAX_VALUE) % Async.ORIGIN_SAMPLE_RATE != 0) {
+            return DEFAULT_ORIGIN;
+        }
 
-        if (Async.WORKER != null) {
-            Async.WORKER.run(() -> {
-                List<StackTraceLine> o = origin(traceElementsArray);
-                AssertUtil.assertTrue(o.size() > 0);
-                StackTraceLine line = o.get(0);
-                String s = prettyFormat(line.stackTraceElement);
-                immutableValue.set(s);
-            });
-        } else {
+        return captureOrigin();
+    }
+
+    /**
+     * Capture the current call stack without sampling. Depending on {@link Async#LAZY_ORIGIN} the
+     * origin is resolved soon in the background or later when it is first needed.
+     * <p>
+     * Only the native stack walk of <code>new Throwable()</code> happens on the calling thread. The
+     * {@link StackTraceElement}s are created where the origin is resolved.
+     *
+     * @return the origin
+     */
+    @NonNull
+    private static ImmutableValue<String> captureOrigin() {
+        final Throwable throwable = new Throwable(); // Cheaper than getStackTrace() if we never need the StackTraceElement[]
+
+        if (Async.LAZY_ORIGIN) {
+            return new LazyOrigin(throwable);
+        }
+
+        final PendingOrigin pendingOrigin = new PendingOrigin(throwable);
+        if (Async.WORKER == null) {
             // During bootstrapping of the ThreadTypes
-            List<StackTraceLine> list = origin(traceElementsArray);
-            immutableValue.set(prettyFormat(list.get(0).stackTraceElement));
+            pendingOrigin.resolve();
+        } else {
+            sPendingOrigins.add(pendingOrigin);
+            if (sResolvingOrigins.compareAndSet(false, true)) {
+                Async.WORKER.run(RCLog::resolvePendingOrigins);
+            }
         }
 
-        return immutableValue;
+        return pendingOrigin;
+    }
+
+    /**
+     * Resolve all captured origins in one {@link Async#WORKER} task
+     */
+    private static void resolvePendingOrigins() {
+        boolean resolving = true;
+
+        try {
+            do {
+                PendingOrigin pendingOrigin;
+
+                while ((pendingOrigin = sPendingOrigins.poll()) != null) {
+                    pendingOrigin.resolve();
+                }
+                sResolvingOrigins.set(false);
+                resolving = false;
+            } while (!sPendingOrigins.isEmpty() && (resolving = sResolvingOrigins.compareAndSet(false, true)));
+        } finally {
+            if (resolving) {
+                sResolvingOrigins.set(false); // Let the next capture start a new task
+            }
+        }
+    }
+
+    /**
+     * Get an origin for display without waiting for {@link Async#WORKER}. A lazy origin, or one still
+     * queued to be resolved in the background, is resolved now on the calling thread.
+     *
+     * @param origin the origin of an object, for example from {@link IAsyncOrigin#getOrigin()}
+     * @return the origin, or <code>null</code> if none was captured, for example because of {@link com.reactivecascade.AsyncBuilder#setOriginSampleRate(int)}
+     */
+    @Nullable
+    public static String getOriginNow(@NonNull ImmutableValue<String> origin) {
+        if (origin == DEFAULT_ORIGIN) {
+            return null;
+        }
+        if (origin instanceof PendingOrigin) {
+            ((PendingOrigin) origin).resolve(); // Usually already done. WORKER may be the pool which is blocked
+        }
+        if (origin.isSet() || origin instanceof LazyOrigin) {
+            return origin.get();
+        }
+
+        return null;
+    }
+
+    /**
+     * Resolve the origin of a call stack, once per call site
+     */
+    @NonNull
+    private static String lookupOrigin(@NonNull StackTraceElement[] traceElementsArray) {
+        final CallSiteKey key = new CallSiteKey(traceElementsArray);
+        String s;
+
+        synchronized (sOriginCache) {
+            s = sOriginCache.get(key);
+        }
+        if (s == null) {
+            s = resolveOrigin(traceElementsArray);
+            synchronized (sOriginCache) {
+                sOriginCache.put(key, s);
+            }
+        }
+
+        return s;
+    }
+
+    @NonNull
+    private static String resolveOrigin(@NonNull StackTraceElement[] traceElementsArray) {
+        final List<StackTraceLine> list = origin(traceElementsArray);
+
+        AssertUtil.assertTrue(list.size() > 0);
+
+        return prettyFormat(list.get(0).stackTraceElement);
     }
 
     /**
@@ -460,7 +677,7 @@ public class RCLog {
     private static void debugOriginThen(@NonNull IActionOne<String> action) {
         try {
             if (Async.TRACE_ASYNC_ORIGIN && Async.WORKER != null) {
-                originAsync().then(action);
+                captureOrigin().then(action);
             } else {
                 action.call("");
             }
@@ -473,7 +690,7 @@ public class RCLog {
     private static List<StackTraceLine> origin(@NonNull StackTraceElement[] traceElementsArray) {
         final List<StackTraceElement> allStackTraceElements = new ArrayList<>(traceElementsArray.length);
 
-        allStackTraceElements.addAll(Arrays.asList(traceElementsArray).subList(3, traceElementsArray.length));
+        allStackTraceElements.addAll(Arrays.asList(traceElementsArray).subList(Math.min(ORIGIN_SKIP_FRAMES, traceElementsArray.length), traceElementsArray.length));
 
         // Remove uninteresting stack trace elements in least-interesting-removed-first order, but step back to the previous state if everything is removed by one of these filters
         List<StackTraceLine> previousList = findClassAndMethod(allStackTraceElements);
@@ -577,7 +794,9 @@ public class RCLog {
         List<StackTraceLine> filteredList = new ArrayList<>(list.size());
 
         for (final StackTraceLine line : list) {
-            if (packageFilter.call(line.claz.getPackage().getName())) {
+            final Package p = line.claz.getPackage(); // null for the default package
+
+            if (packageFilter.call(p != null ? p.getName() : "")) {
                 filteredList.add(line);
             }
         }
@@ -605,23 +824,34 @@ public class RCLog {
         StackTraceLine(@NonNull StackTraceElement stackTraceElement) throws ClassNotFoundException {
             this.stackTraceElement = stackTraceElement;
             final String className = stackTraceElement.getClassName();
-            Class<?> c = sClassNameMap.get(className);
+            Class<?> c;
 
+            synchronized (sClassNameMap) {
+                c = sClassNameMap.get(className);
+            }
             if (c == null) {
                 c = Class.forName(className);
-                sClassNameMap.putIfAbsent(className, c);
+                synchronized (sClassNameMap) {
+                    sClassNameMap.put(className, c);
+                }
             }
             this.claz = c;
             final String methodName = stackTraceElement.getMethodName();
             final String key = className + methodName;
 
-            Method meth = sMethodNameMap.get(key);
+            Method meth;
+
+            synchronized (sMethodNameMap) {
+                meth = sMethodNameMap.get(key);
+            }
             if (meth == null) {
                 final Method[] methods = claz.getMethods();
 
                 for (final Method m : methods) {
                     if (m.getName().equals(methodName)) {
-                        sMethodNameMap.putIfAbsent(key, m);
+                        synchronized (sMethodNameMap) {
+                            sMethodNameMap.put(key, m);
+                        }
                         meth = m;
                         break;
                     }
@@ -630,4 +860,151 @@ public class RCLog {
             this.isAnnotated = meth != null && meth.isAnnotationPresent(CallOrigin.class);
         }
     }
+
+    /**
+     * An origin which holds only the raw call stack until the first time it is needed. This is
+     * used when {@link Async#LAZY_ORIGIN} to avoid the cost of resolving origins which are never displayed.
+     */
+    private static final class LazyOrigin extends ImmutableValue<String> {
+        LazyOrigin(@NonNull Throwable throwable) {
+            super(() -> lookupOrigin(throwable.getStackTrace()));
+        }
+
+        @NonNull
+        @Override // ImmutableValue
+        public ImmutableValue<String> then(@NonNull IActionOne<String> action) {
+            super.then(action);
+            if (!isSet()) {
+                get();
+            }
+
+            return this;
+        }
+
+        @NonNull
+        @Override // ImmutableValue
+        public ImmutableValue<String> then(@NonNull IAction<String> action) {
+            super.then(action);
+            if (!isSet()) {
+                get();
+            }
+
+            return this;
+        }
+    }
+
+    /**
+     * An origin waiting in the queue to be resolved on {@link Async#WORKER}
+     */
+    private static final class PendingOrigin extends ImmutableValue<String> {
+        @Nullable
+        private Throwable throwable; // Cleared once resolved. Guarded by this
+
+        PendingOrigin(@NonNull Throwable throwable) {
+            this.throwable = throwable;
+        }
+
+        /**
+         * Resolve the origin unless this has already been done, here or by {@link #getOriginNow(ImmutableValue)}
+         */
+        synchronized void resolve() {
+            if (throwable == null) {
+                return;
+            }
+            String s;
+            try {
+                s = lookupOrigin(throwable.getStackTrace());
+            } catch (Exception e) {
+                // For example a stack with no frames which can be introspected. Log directly, an origin would be captured again
+                Log.e(Async.class.getSimpleName(), "Can not resolve origin", e);
+                s = DEFAULT_ORIGIN.get();
+            }
+            throwable = null;
+            set(s); // Also when it failed, so actions waiting for the origin run
+        }
+    }
+
+    /**
+     * The stack frames at the point an object is created, starting with the first frame outside the
+     * library. Objects created from the same line of code by the same path share one origin.
+     */
+    private static final class CallSiteKey {
+        final StackTraceElement[] frames;
+        final int hashCode;
+
+        CallSiteKey(@NonNull StackTraceElement[] traceElementsArray) {
+            int start = Math.min(ORIGIN_SKIP_FRAMES, traceElementsArray.length);
+
+            while (start < traceElementsArray.length && isLibraryClass(traceElementsArray[start].getClassName())) {
+                start++;
+            }
+            if (start == traceElementsArray.length) {
+                start = Math.min(ORIGIN_SKIP_FRAMES, traceElementsArray.length); // Created inside the library itself
+            }
+            frames = Arrays.copyOfRange(traceElementsArray, start, Math.min(start + ORIGIN_KEY_DEPTH, traceElementsArray.length));
+            hashCode = Arrays.hashCode(frames);
+        }
+
+        /**
+         * Frames of these classes are the same for every call site, for example the constructors
+         * of an alt future, so they do not identify where the object was created
+         */
+        private static boolean isLibraryClass(@NonNull String className) {
+            if (!className.startsWith("com.reactivecascade.")) {
+                return false;
+            }
+            final int i = className.indexOf('$');
+            final String outerClassName = i < 0 ? className : className.substring(0, i); // Inner classes and lambdas
+
+            Boolean library;
+            synchronized (sLibraryClassMap) {
+                library = sLibraryClassMap.get(outerClassName);
+            }
+            if (library == null) {
+                try {
+                    final Class<?> c = Class.forName(outerClassName);
+                    library = c == RCLog.class
+                            || c == Async.class
+                            || AbstractThreadType.class.isAssignableFrom(c)
+                            || c.isAnnotationPresent(NotCallOrigin.class);
+                } catch (ClassNotFoundException e) {
+                    library = false;
+                }
+                synchronized (sLibraryClassMap) {
+                    sLibraryClassMap.put(outerClassName, library);
+                }
+            }
+
+            return library;
+        }
+
+        @Override // Object
+        public int hashCode() {
+            return hashCode;
+        }
+
+        @Override // Object
+        public boolean equals(Object o) {
+            return o instanceof CallSiteKey
+                    && hashCode == ((CallSiteKey) o).hashCode
+                    && Arrays.equals(frames, ((CallSiteKey) o).frames);
+        }
+    }
+
+    /**
+     * A least-recently-used map with a maximum size. Callers must synchronize on the map.
+     */
+    private static final class BoundedCache<K, V> extends LinkedHashMap<K, V> {
+        private final int maxSize;
+
+        BoundedCache(int maxSize) {
+            super(16, 0.75f, true);
+            this.maxSize = maxSize;
+        }
+
+        @Override // LinkedHashMap
+        protected boolean removeEldestEntry(@NonNull Map.Entry<K, V> eldest) {
+            return size() > maxSize;
+        }
+    }
 }
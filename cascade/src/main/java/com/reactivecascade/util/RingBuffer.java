@@ -0,0 +1,143 @@
+/*
+This file is part of Reactive Cascade which is released under The MIT License.
+See license.md , https://github.com/futurice/cascade and http://reactivecascade.com for details.
+This is open source for the common good. Please contribute improvements by pull request or contact paulirotta@gmail.com
+*/
+package com.reactivecascade.util;
+
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * A bounded lock-free queue for many producer threads and one consumer thread
+ * <p>
+ * {@link #offer(Object)} never blocks. If the buffer is full the item is refused and counted, see
+ * {@link #getDroppedCount()}. This makes it suitable for hot paths such as logging where losing an item
+ * is better than slowing the producer.
+ * <p>
+ * Only one thread at a time may call {@link #poll()}. Any thread may call {@link #offer(Object)}.
+ *
+ * @param <T> item type
+ */
+public class RingBuffer<T> {
+    private final int mask;
+    private final AtomicReferenceArray<T> buffer;
+    private final AtomicLongArray sequences; // Per slot: == position when free for the producer at that position, == position + 1 when published for the consumer
+    private final AtomicLong tail = new AtomicLong(); // Next position to claim by a producer
+    private final AtomicLong dropped = new AtomicLong();
+    private volatile long head = 0; // Next position to read by the single consumer
+
+    /**
+     * Create a new ring buffer
+     *
+     * @param capacity the maximum number of items. This is rounded up to the next power of two
+     */
+    public RingBuffer(int capacity) {
+        if (capacity < 1 || capacity > 1 << 30) {
+            throw new IllegalArgumentException("Capacity must be between 1 and 2^30: " + capacity);
+        }
+        int size = Integer.highestOneBit(capacity);
+        if (size < capacity) {
+            size <<= 1;
+        }
+        this.mask = size - 1;
+        this.buffer = new AtomicReferenceArray<>(size);
+        this.sequences = new AtomicLongArray(size);
+        for (int i = 0; i < size; i++) {
+            sequences.set(i, i);
+        }
+    }
+
+    /**
+     * Add an item if there is space. This is safe to call concurrently from any number of threads.
+     *
+     * @param item to add
+     * @return <code>false</code> if the buffer is full and the item was dropped
+     */
+    public boolean offer(@NonNull T item) {
+        while (true) {
+            final long position = tail.get();
+            final int index = (int) position & mask;
+            final long sequence = sequences.get(index);
+
+            if (sequence == position) {
+                if (tail.compareAndSet(position, position + 1)) {
+                    buffer.set(index, item);
+                    sequences.set(index, position + 1);
+                    return true;
+                }
+            } else if (sequence < position) {
+                dropped.incrementAndGet();
+                return false;
+            }
+            // Another producer claimed this position first- try again
+        }
+    }
+
+    /**
+     * Remove the oldest item. Only one thread at a time may call this method.
+     *
+     * @return the item, or <code>null</code> if the buffer is empty
+     */
+    @Nullable
+    public T poll() {
+        final long position = head;
+        final int index = (int) position & mask;
+
+        if (sequences.get(index) != position + 1) {
+            return null; // Empty, or a producer has claimed but not yet published this slot
+        }
+        final T item = buffer.get(index);
+        buffer.lazySet(index, null);
+        sequences.lazySet(index, position + mask + 1);
+        head = position + 1;
+
+        return item;
+    }
+
+    /**
+     * Check if {@link #poll()} will return an item. Only the consumer thread may call this method.
+     * <p>
+     * This differs from <code>!isEmpty()</code> while a producer has claimed the next slot but not yet
+     * published its item. That producer will publish soon without further help from the consumer.
+     *
+     * @return <code>true</code> if the next item is published
+     */
+    public boolean canPoll() {
+        final long position = head;
+
+        return sequences.get((int) position & mask) == position + 1;
+    }
+
+    /**
+     * @return <code>true</code> if there is nothing to {@link #poll()} at this moment
+     */
+    public boolean isEmpty() {
+        return tail.get() == head;
+    }
+
+    /**
+     * @return the approximate number of items currently in the buffer
+     */
+    public int size() {
+        return (int) Math.max(0, tail.get() - head);
+    }
+
+    /**
+     * @return the maximum number of items which the buffer can hold
+     */
+    public int capacity() {
+        return mask + 1;
+    }
+
+    /**
+     * @return the total number of items refused by {@link #offer(Object)} because the buffer was full
+     */
+    public long getDroppedCount() {
+        return dropped.get();
+    }
+}
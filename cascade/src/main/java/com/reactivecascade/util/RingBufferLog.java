@@ -0,0 +1,302 @@
+/*
+This file is part of Reactive Cascade which is released under The MIT License.
+See license.md , https://github.com/futurice/cascade and http://reactivecascade.com for details.
+This is open source for the common good. Please contribute improvements by pull request or contact paulirotta@gmail.com
+*/
+package com.reactivecascade.util;
+
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+import android.support.annotation.WorkerThread;
+import android.util.Log;
+
+import com.reactivecascade.i.ILog;
+import com.reactivecascade.i.IThreadType;
+
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.Locale;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * An {@link ILog} which keeps logging off the calling thread. Log lines are placed in a lock-free
+ * {@link RingBuffer} and written to a rotating text file by a single background drain task. The task
+ * runs on a thread of this log, started with the first log line, or on a given {@link IThreadType}.
+ * <p>
+ * In production builds only errors reach the log, so the file of a release build collects the errors
+ * seen in the field. Debug builds also write lines down to {@link com.reactivecascade.AsyncBuilder#setLogLevel(int)}.
+ * <p>
+ * If log lines arrive faster than they can be written, new lines are dropped rather than blocking
+ * the caller. The number of dropped lines is noted in the file and available from {@link #getDroppedCount()}.
+ * <p>
+ * Install with {@link com.reactivecascade.AsyncBuilder#setLog(ILog)}
+ * <code><pre>
+ *     new AsyncBuilder(context)
+ *             .setLog(new RingBufferLog(context.getFilesDir(), "app"))
+ *             .build();
+ * </pre></code>
+ */
+public class RingBufferLog implements ILog {
+    private static final String TAG = RingBufferLog.class.getSimpleName();
+    private static final String PRIORITY_CHARS = "??VDIWEA";
+    public static final int DEFAULT_CAPACITY = 1024;
+    public static final long DEFAULT_MAX_FILE_BYTES = 512 * 1024;
+    public static final int DEFAULT_MAX_FILES = 3;
+
+    @NonNull
+    private final RingBuffer<Entry> ringBuffer;
+    @NonNull
+    private final IThreadType threadType;
+    @NonNull
+    private final File directory;
+    @NonNull
+    private final String name;
+    private final long maxFileBytes;
+    private final int maxFiles;
+    private final AtomicBoolean drainScheduled = new AtomicBoolean(false);
+    private final Runnable drainRunnable = this::drain;
+    private final SimpleDateFormat dateFormat = new SimpleDateFormat("MM-dd HH:mm:ss.SSS", Locale.US); // Only used from the drain task
+    private long droppedCountWritten = 0; // Only used from the drain task
+
+    /**
+     * Create a log with default capacity and file rotation, written by a thread of its own
+     *
+     * @param directory where log files are written, for example {@link android.content.Context#getFilesDir()}
+     * @param name      the base name of the log files
+     */
+    public RingBufferLog(@NonNull File directory,
+                         @NonNull String name) {
+        this(directory, name, new DefaultThreadType(TAG + " " + name,
+                new LazyExecutorService(TAG + " " + name, Executors::newSingleThreadExecutor), null));
+    }
+
+    /**
+     * Create a log with default capacity and file rotation
+     *
+     * @param directory  where log files are written, for example {@link android.content.Context#getFilesDir()}
+     * @param name       the base name of the log files
+     * @param threadType where the log files are written. This must already exist, so when the log is given
+     *                   to {@link com.reactivecascade.AsyncBuilder#setLog(ILog)} it can not be one of the
+     *                   {@link com.reactivecascade.Async} thread types.
+     */
+    public RingBufferLog(@NonNull File directory,
+                         @NonNull String name,
+                         @NonNull IThreadType threadType) {
+        this(directory, name, threadType, DEFAULT_CAPACITY, DEFAULT_MAX_FILE_BYTES, DEFAULT_MAX_FILES);
+    }
+
+    /**
+     * Create a log
+     *
+     * @param directory    where log files are written, for example {@link android.content.Context#getFilesDir()}
+     * @param name         the base name of the log files. The current file is <code>name.log</code>, older files are <code>name.1.log</code> and so on
+     * @param threadType   where the log files are written, a thread type which exists before {@link com.reactivecascade.Async}
+     * @param capacity     the number of log lines which can wait to be written before new lines are dropped
+     * @param maxFileBytes the size at which the current file is rotated
+     * @param maxFiles     the number of files kept including the current file
+     */
+    public RingBufferLog(@NonNull File directory,
+                         @NonNull String name,
+                         @NonNull IThreadType threadType,
+                         int capacity,
+                         long maxFileBytes,
+                         int maxFiles) {
+        this.directory = directory;
+        this.name = name;
+        this.threadType = threadType;
+        this.ringBuffer = new RingBuffer<>(capacity);
+        this.maxFileBytes = maxFileBytes;
+        this.maxFiles = Math.max(1, maxFiles);
+    }
+
+    @Override // ILog
+    public void log(int priority,
+                    @NonNull String tag,
+                    @NonNull String message,
+                    @Nullable Throwable t) {
+        if (ringBuffer.offer(new Entry(System.currentTimeMillis(), priority, tag, message, t))) {
+            scheduleDrain();
+        }
+    }
+
+    /**
+     * @return the total number of log lines dropped because the buffer was full
+     */
+    public long getDroppedCount() {
+        return ringBuffer.getDroppedCount();
+    }
+
+    /**
+     * @return the file currently being written
+     */
+    @NonNull
+    public File getFile() {
+        return getFile(0);
+    }
+
+    /**
+     * Request that all pending log lines be written. This does not wait for the write to complete.
+     */
+    public void flush() {
+        scheduleDrain();
+    }
+
+    private void scheduleDrain() {
+        if (drainScheduled.compareAndSet(false, true)) {
+            threadType.run(drainRunnable);
+        }
+    }
+
+    /**
+     * Write until no published line remains. A line which a producer has claimed but not yet published
+     * is left for the drain which that producer schedules after it publishes, so this never spins.
+     */
+    @WorkerThread
+    private void drain() {
+        boolean draining = true;
+
+        try {
+            do {
+                if (ringBuffer.canPoll() || ringBuffer.getDroppedCount() != droppedCountWritten) {
+                    write();
+                }
+                drainScheduled.set(false);
+                draining = false;
+            }
+            while (ringBuffer.canPoll() && (draining = drainScheduled.compareAndSet(false, true)));
+        } catch (RuntimeException e) {
+            Log.e(TAG, "Can not write log file " + name, e); // Not RCLog, which would log back into this
+        } finally {
+            if (draining) {
+                drainScheduled.set(false); // The next log line schedules a new drain
+            }
+        }
+    }
+
+    @WorkerThread
+    private void write() {
+        OutputStream out = null;
+
+        try {
+            File file = getFile();
+            if (file.length() >= maxFileBytes) {
+                rotate();
+            }
+            long bytes = file.length();
+            out = open(file);
+
+            Entry entry;
+            while ((entry = ringBuffer.poll()) != null) {
+                if (bytes >= maxFileBytes) {
+                    out.close();
+                    rotate();
+                    out = open(file);
+                    bytes = 0;
+                }
+                bytes += write(out, entry);
+            }
+            final long droppedCount = ringBuffer.getDroppedCount();
+            if (droppedCount != droppedCountWritten) {
+                write(out, new Entry(System.currentTimeMillis(), Log.WARN, TAG, (droppedCount - droppedCountWritten) + " log lines dropped, buffer full", null));
+                droppedCountWritten = droppedCount;
+            }
+        } catch (IOException e) {
+            Log.e(TAG, "Can not write log file " + name, e);
+        } finally {
+            if (out != null) {
+                try {
+                    out.close();
+                } catch (IOException e) {
+                    Log.e(TAG, "Can not close log file " + name, e);
+                }
+            }
+        }
+    }
+
+    @NonNull
+    private OutputStream open(@NonNull File file) throws IOException {
+        return new BufferedOutputStream(new FileOutputStream(file, true));
+    }
+
+    /**
+     * @return the number of bytes written, which may be more than the number of characters
+     */
+    private int write(@NonNull OutputStream out,
+                      @NonNull Entry entry) throws IOException {
+        final StringBuilder sb = new StringBuilder(entry.message.length() + entry.tag.length() + 24);
+
+        sb.append(dateFormat.format(new Date(entry.timeMillis)))
+                .append(' ')
+                .append(entry.priority >= 0 && entry.priority < PRIORITY_CHARS.length() ? PRIORITY_CHARS.charAt(entry.priority) : '?')
+                .append('/')
+                .append(entry.tag)
+                .append(": ")
+                .append(entry.message)
+                .append('\n');
+        if (entry.t != null) {
+            final StringWriter stringWriter = new StringWriter();
+            entry.t.printStackTrace(new PrintWriter(stringWriter));
+            sb.append(stringWriter.toString());
+        }
+        final byte[] bytes = sb.toString().getBytes("UTF-8");
+        out.write(bytes);
+
+        return bytes.length;
+    }
+
+    @WorkerThread
+    private void rotate() {
+        final File oldest = getFile(maxFiles - 1);
+
+        if (oldest.exists() && !oldest.delete()) {
+            Log.e(TAG, "Can not delete old log file " + oldest);
+        }
+        for (int i = maxFiles - 2; i >= 0; i--) {
+            final File file = getFile(i);
+
+            if (file.exists() && !file.renameTo(getFile(i + 1))) {
+                Log.e(TAG, "Can not rotate log file " + file);
+            }
+        }
+    }
+
+    @NonNull
+    private File getFile(int generation) {
+        if (generation == 0) {
+            return new File(directory, name + ".log");
+        }
+
+        return new File(directory, name + "." + generation + ".log");
+    }
+
+    private static final class Entry {
+        final long timeMillis;
+        final int priority;
+        @NonNull
+        final String tag;
+        @NonNull
+        final String message;
+        @Nullable
+        final Throwable t;
+
+        Entry(long timeMillis,
+              int priority,
+              @NonNull String tag,
+              @NonNull String message,
+              @Nullable Throwable t) {
+            this.timeMillis = timeMillis;
+            this.priority = priority;
+            this.tag = tag;
+            this.message = message;
+            this.t = t;
+        }
+    }
+}
@@ -0,0 +1,247 @@
+/*
+This file is part of Reactive Cascade which is released under The MIT License.
+See license.md , https://github.com/futurice/cascade and http://reactivecascade.com for details.
+This is open source for the common good. Please contribute improvements by pull request or contact paulirotta@gmail.com
+*/
+package com.reactivecascade.util;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.preference.PreferenceManager;
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+import android.support.annotation.WorkerThread;
+import android.util.Base64;
+
+import com.reactivecascade.i.IActionOne;
+import com.reactivecascade.i.IPersistentStore;
+import com.reactivecascade.i.IThreadType;
+
+import java.io.IOException;
+import java.util.Map;
+import java.util.concurrent.Executors;
+
+/**
+ * An {@link IPersistentStore} using the default {@link SharedPreferences} of the application
+ * <p>
+ * This is the default store of {@link com.reactivecascade.reactive.PersistentValue}. Each write
+ * commits and rewrites the entire preferences file, so for values which change often consider
+ * {@link LogStructuredStore}
+ * <p>
+ * Native preference types are stored as such. Arrays and other types are stored as a string of
+ * {@link CodecUtil} bytes in Base64. Arrays in the text format of earlier versions can still be read.
+ */
+public class SharedPreferencesStore implements IPersistentStore {
+    // The SharedPreferences type is not thread safe, so all operations are done from this thread. Note also that we want an uncluttered queue so we can read and write things as quickly as possible.
+    private static final String CODEC_PREFIX = "codec:";
+    private static final IThreadType persistentValueThreadType = new DefaultThreadType("PersistentValueThreadType",
+            new LazyExecutorService("PersistentValueExecutorService", Executors::newSingleThreadExecutor), null); // The thread starts with the first read or write
+
+    @NonNull
+    private final Context context; // Once changes from an Editor are committed, they are guaranteed to be written even if the parent Context starts to go down
+    @Nullable
+    private SharedPreferences.OnSharedPreferenceChangeListener sharedPreferencesListener; // Strong reference, SharedPreferences only holds listeners weakly
+
+    public SharedPreferencesStore(@NonNull Context context) {
+        this.context = AssertUtil.assertNotNull(context, "Context can not be null");
+    }
+
+    @NonNull
+    @Override // IPersistentStore
+    public IThreadType getThreadType() {
+        return persistentValueThreadType;
+    }
+
+    @NonNull
+    private SharedPreferences getSharedPreferences() {
+        return AssertUtil.assertNotNull(PreferenceManager.getDefaultSharedPreferences(context), "Shared preferences can not be null");
+    }
+
+    @WorkerThread
+    @Override // IPersistentStore
+    public void preload() {
+        getSharedPreferences().getAll(); // Waits until the preferences file has been loaded
+    }
+
+    @WorkerThread
+    @NonNull
+    @Override // IPersistentStore
+    @SuppressWarnings("unchecked")
+    public <T> T read(@NonNull String key,
+                      @NonNull T defaultValue) throws IOException {
+        final SharedPreferences sharedPreferences = getSharedPreferences();
+        final Class<T> claz = (Class<T>) defaultValue.getClass();
+
+        if (claz == String.class) {
+            return (T) sharedPreferences.getString(key, (String) defaultValue);
+        } else if (claz == Integer.class) {
+            return (T) Integer.valueOf(sharedPreferences.getInt(key, (Integer) defaultValue));
+        } else if (claz == Long.class) {
+            return (T) Long.valueOf(sharedPreferences.getLong(key, (Long) defaultValue));
+        } else if (claz == Boolean.class) {
+            return (T) Boolean.valueOf(sharedPreferences.getBoolean(key, (Boolean) defaultValue));
+        } else if (claz == Float.class) {
+            return (T) Float.valueOf(sharedPreferences.getFloat(key, (Float) defaultValue));
+        }
+
+        final String value = sharedPreferences.getString(key, null);
+        if (value == null) {
+            return defaultValue;
+        }
+        if (value.startsWith(CODEC_PREFIX)) {
+            return CodecUtil.decode(claz, Base64.decode(value.substring(CODEC_PREFIX.length()), Base64.NO_WRAP));
+        }
+
+        // Text format written by earlier versions
+        if (claz == String[].class) {
+            return (T) toStringArray(value);
+        } else if (claz == int[].class) {
+            return (T) toIntegerArray(value);
+        } else if (claz == long[].class) {
+            return (T) toLongArray(value);
+        } else if (claz == boolean[].class) {
+            return (T) toBooleanArray(value);
+        } else if (claz == float[].class) {
+            return (T) toFloatArray(value);
+        }
+
+        throw new IOException("Can not read " + key + ", unknown format for " + claz);
+    }
+
+    @WorkerThread
+    @Override // IPersistentStore
+    public void write(@NonNull String key,
+                      @NonNull Object value) throws IOException {
+        final SharedPreferences.Editor editor = getSharedPreferences().edit();
+
+        put(editor, key, value);
+        commit(editor);
+    }
+
+    @WorkerThread
+    @Override // IPersistentStore
+    public void write(@NonNull Map<String, ?> values) throws IOException {
+        final SharedPreferences.Editor editor = getSharedPreferences().edit();
+
+        for (Map.Entry<String, ?> entry : values.entrySet()) {
+            put(editor, entry.getKey(), entry.getValue());
+        }
+        commit(editor);
+    }
+
+    private static void put(@NonNull SharedPreferences.Editor editor,
+                            @NonNull String key,
+                            @NonNull Object value) throws IOException {
+        if (value instanceof String) {
+            editor.putString(key, (String) value);
+        } else if (value instanceof Integer) {
+            editor.putInt(key, (Integer) value);
+        } else if (value instanceof Boolean) {
+            editor.putBoolean(key, (Boolean) value);
+        } else if (value instanceof Float) {
+            editor.putFloat(key, (Float) value);
+        } else if (value instanceof Long) {
+            editor.putLong(key, (Long) value);
+        } else {
+            editor.putString(key, CODEC_PREFIX + Base64.encodeToString(CodecUtil.encode(value), Base64.NO_WRAP));
+        }
+    }
+
+    private static void commit(@NonNull SharedPreferences.Editor editor) {
+        if (!editor.commit()) {
+            throw new RuntimeException("Failed to commit PersistentValue. Probably some other thread besides " + persistentValueThreadType.getName() + " is concurrently updating SharedPreferences for this Context");
+        }
+    }
+
+    @WorkerThread
+    @Override // IPersistentStore
+    public void setOnChangeListener(@Nullable IActionOne<String> onChangeListener) {
+        final SharedPreferences sharedPreferences = getSharedPreferences();
+
+        if (sharedPreferencesListener != null) {
+            sharedPreferences.unregisterOnSharedPreferenceChangeListener(sharedPreferencesListener);
+            sharedPreferencesListener = null;
+        }
+        if (onChangeListener != null) {
+            // SharedPreferences notifies on the main thread. Hop to our thread before the listener reads the new value.
+            sharedPreferencesListener = (sp, key) -> {
+                if (key != null) {
+                    persistentValueThreadType.execute(() -> onChangeListener.call(key));
+                }
+            };
+            sharedPreferences.registerOnSharedPreferenceChangeListener(sharedPreferencesListener);
+        }
+    }
+
+    private static long[] toLongArray(@NonNull String value) {
+        if (value.trim().length() == 0) {
+            return new long[0];
+        }
+
+        String[] vals = value.split("\n");
+        long[] longs = new long[vals.length];
+        int i = 0;
+
+        for (String v : vals) {
+            longs[i++] = Long.parseLong(v);
+        }
+
+        return longs;
+    }
+
+    private static String[] toStringArray(@NonNull String value) {
+        if (value.trim().length() == 0) {
+            return new String[0];
+        }
+
+        return value.split(","); // Earlier versions joined String[] with ","
+    }
+
+    private static int[] toIntegerArray(@NonNull String value) {
+        if (value.trim().length() == 0) {
+            return new int[0];
+        }
+
+        String[] vals = value.split("\n");
+        int[] ints = new int[vals.length];
+        int i = 0;
+
+        for (String v : vals) {
+            ints[i++] = Integer.parseInt(v);
+        }
+
+        return ints;
+    }
+
+    private static boolean[] toBooleanArray(@NonNull String value) {
+        if (value.trim().length() == 0) {
+            return new boolean[0];
+        }
+
+        String[] vals = value.split("\n"); // Earlier versions joined boolean[] with "\n"
+        boolean[] bools = new boolean[vals.length];
+        int i = 0;
+
+        for (String v : vals) {
+            bools[i++] = Boolean.parseBoolean(v);
+        }
+
+        return bools;
+    }
+
+    private static float[] toFloatArray(@NonNull String value) {
+        if (value.trim().length() == 0) {
+            return new float[0];
+        }
+
+        String[] vals = value.split(",");
+        float[] floats = new float[vals.length];
+        int i = 0;
+
+        for (final String v : vals) {
+            floats[i++] = Float.parseFloat(v);
+        }
+
+        return floats;
+    }
+}
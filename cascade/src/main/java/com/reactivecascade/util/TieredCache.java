@@ -0,0 +1,364 @@
+/*
+This file is part of Reactive Cascade which is released under The MIT License.
+See license.md , https://github.com/futurice/cascade and http://reactivecascade.com for details.
+This is open source for the common good. Please contribute improvements by pull request or contact paulirotta@gmail.com
+*/
+package com.reactivecascade.util;
+
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+
+import com.reactivecascade.Async;
+import com.reactivecascade.functional.ImmutableValue;
+import com.reactivecascade.functional.SettableAltFuture;
+import com.reactivecascade.i.IAction;
+import com.reactivecascade.i.IActionOneR;
+import com.reactivecascade.i.IActionTwo;
+import com.reactivecascade.i.IAltFuture;
+import com.reactivecascade.i.ICacheTier;
+import com.reactivecascade.i.INamed;
+import com.reactivecascade.i.IThreadType;
+
+import java.util.ArrayList;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A cache with several tiers in front of a slow origin, for example memory, then disk, then the network
+ * <p>
+ * {@link #get(Object)} does not block. Each tier is read on its own {@link ICacheTier#getThreadType()}, in order.
+ * A value found in a tier is promoted by writing it to all faster tiers. A value loaded from the origin is
+ * written to all tiers.
+ * <p>
+ * The tiers are inclusive: a slower tier already holds what a faster tier holds, unless it has evicted the
+ * value itself. An evicted value is therefore not written to the next tier, which would write each value to
+ * a slow tier twice. A value leaves the cache when it is evicted from the slowest tier.
+ * <p>
+ * Concurrent requests for a key which is being looked up share one lookup. Hits, misses and evictions
+ * are counted for each tier.
+ * <code><pre>
+ *     TieredCache&lt;String, byte[]&gt; images = new TieredCache.Builder&lt;String, byte[]&gt;("images", url -&gt; netUtil.getAsync(url).map(response -&gt; response.body().bytes()))
+ *             .addTier(new MemoryCacheTier&lt;&gt;("images", 4 * 1024 * 1024, bytes -&gt; bytes.length))
+ *             .addTier(new FileCacheTier&lt;&gt;(new File(context.getCacheDir(), "images"), byte[].class, 50 * 1024 * 1024))
+ *             .build();
+ * </pre></code>
+ *
+ * @param <K> key type
+ * @param <V> value type
+ */
+public class TieredCache<K, V> extends Origin implements INamed {
+    @NonNull
+    private final String name;
+    @NonNull
+    private final ICacheTier<K, V>[] tiers;
+    @NonNull
+    private final IActionOneR<K, IAltFuture<?, V>> origin;
+    @NonNull
+    private final IThreadType threadType;
+    @NonNull
+    private final ConcurrentHashMap<K, SettableAltFuture<V>> lookups = new ConcurrentHashMap<>();
+    @NonNull
+    private final AtomicLongArray hits;
+    @NonNull
+    private final AtomicLongArray misses;
+    @NonNull
+    private final AtomicLong originLoads = new AtomicLong();
+
+    @SuppressWarnings("unchecked")
+    private TieredCache(@NonNull Builder<K, V> builder) {
+        this.name = builder.name;
+        this.origin = builder.origin;
+        this.threadType = builder.threadType != null ? builder.threadType : Async.WORKER;
+        this.tiers = builder.tiers.toArray(new ICacheTier[builder.tiers.size()]);
+        this.hits = new AtomicLongArray(tiers.length);
+        this.misses = new AtomicLongArray(tiers.length);
+    }
+
+    @NonNull
+    @Override // INamed
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * Get a value from the fastest tier which has it, or else from the origin
+     *
+     * @param key of the value
+     * @return the value when it is available, on the thread type of this cache. If the origin fails, this is cancelled with the origin's error.
+     */
+    @NonNull
+    public IAltFuture<?, V> get(@NonNull K key) {
+        final SettableAltFuture<V> result = new SettableAltFuture<>(threadType);
+        final SettableAltFuture<V> previous = lookups.putIfAbsent(key, result);
+
+        if (previous != null) {
+            return previous;
+        }
+        lookup(key, 0, result);
+
+        return result;
+    }
+
+    /**
+     * Store a value in all tiers, for example after the origin was updated
+     *
+     * @param key   of the value
+     * @param value to store
+     */
+    public void put(@NonNull K key,
+                    @NonNull V value) {
+        writeTiers(tiers.length, key, value);
+    }
+
+    /**
+     * Remove a value from all tiers. This is not an eviction.
+     *
+     * @param key of the value
+     */
+    public void remove(@NonNull K key) {
+        for (ICacheTier<K, V> tier : tiers) {
+            onTier(tier, () -> tier.remove(key));
+        }
+    }
+
+    /**
+     * Remove all values from all tiers. These are not evictions.
+     */
+    public void clear() {
+        for (ICacheTier<K, V> tier : tiers) {
+            onTier(tier, tier::clear);
+        }
+    }
+
+    /**
+     * Set the action to call when a value is evicted from the slowest tier and so leaves the cache
+     *
+     * @param onEvict called with the key and value, or <code>null</code> to stop notification
+     */
+    public void setOnEvictListener(@Nullable IActionTwo<K, V> onEvict) {
+        if (tiers.length > 0) {
+            tiers[tiers.length - 1].setOnEvictListener(onEvict);
+        }
+    }
+
+    /**
+     * @param tier index, 0 is the fastest
+     * @return the number of reads which found a value in this tier
+     */
+    public long getHitCount(int tier) {
+        return hits.get(tier);
+    }
+
+    /**
+     * @param tier index, 0 is the fastest
+     * @return the number of reads which did not find a value in this tier
+     */
+    public long getMissCount(int tier) {
+        return misses.get(tier);
+    }
+
+    /**
+     * @param tier index, 0 is the fastest
+     * @return the number of values evicted from this tier
+     */
+    public long getEvictionCount(int tier) {
+        return tiers[tier].getEvictionCount();
+    }
+
+    /**
+     * @return the number of values requested from the origin because no tier had them
+     */
+    public long getOriginLoadCount() {
+        return originLoads.get();
+    }
+
+    private void lookup(@NonNull K key,
+                        int tier,
+                        @NonNull SettableAltFuture<V> result) {
+        if (tier == tiers.length) {
+            loadFromOrigin(key, result);
+            return;
+        }
+
+        onTier(tiers[tier], () -> {
+            V value = null;
+
+            try {
+                value = tiers[tier].read(key);
+            } catch (Exception e) {
+                RCLog.e(this, "Can not read " + key + " from " + tiers[tier].getName() + ", continuing as a miss", e);
+            }
+            if (value == null) {
+                misses.incrementAndGet(tier);
+                lookup(key, tier + 1, result);
+            } else {
+                hits.incrementAndGet(tier);
+                writeTiers(tier, key, value); // Promote
+                complete(key, value, result);
+            }
+        });
+    }
+
+    private void loadFromOrigin(@NonNull K key,
+                                @NonNull SettableAltFuture<V> result) {
+        originLoads.incrementAndGet();
+        try {
+            final IAltFuture<?, V> altFuture = origin.call(key);
+
+            altFuture.then(value -> {
+                writeTiers(tiers.length, key, value);
+                complete(key, value, result);
+            });
+            altFuture.onError(e -> fail(key, e, result));
+            altFuture.onCancelled(reason -> fail(key, new CancellationException(reason), result));
+            if (!altFuture.isForked()) {
+                altFuture.fork();
+            }
+        } catch (Exception e) {
+            fail(key, e, result);
+        }
+    }
+
+    private void complete(@NonNull K key,
+                          @NonNull V value,
+                          @NonNull SettableAltFuture<V> result) {
+        lookups.remove(key, result);
+        result.set(value);
+    }
+
+    private void fail(@NonNull K key,
+                      @NonNull Exception e,
+                      @NonNull SettableAltFuture<V> result) {
+        RCLog.e(this, "Can not load " + key + " from origin", e);
+        lookups.remove(key, result);
+        result.cancel(new IAltFuture.StateError() {
+            private final ImmutableValue<String> mOrigin = RCLog.originAsync();
+
+            @NonNull
+            @Override // StateError
+            public Exception getException() {
+                return e;
+            }
+
+            @NonNull
+            @Override // IAsyncOrigin
+            public ImmutableValue<String> getOrigin() {
+                return mOrigin;
+            }
+
+            @NonNull
+            @Override // Object
+            public String toString() {
+                return "ERROR: " + name + " can not load " + key + " from origin: " + e;
+            }
+        });
+    }
+
+    /**
+     * Write a value to the tiers faster than <code>toTier</code>
+     */
+    private void writeTiers(int toTier,
+                            @NonNull K key,
+                            @NonNull V value) {
+        for (int i = 0; i < toTier; i++) {
+            final ICacheTier<K, V> tier = tiers[i];
+
+            onTier(tier, () -> tier.write(key, value));
+        }
+    }
+
+    private void onTier(@NonNull ICacheTier<K, V> tier,
+                        @NonNull IAction<?> action) {
+        final IThreadType tierThreadType = tier.getThreadType();
+
+        if (tierThreadType != null) {
+            tierThreadType.execute(action);
+            return;
+        }
+        try {
+            action.call();
+        } catch (Exception e) {
+            RCLog.e(this, "Problem in cache tier " + tier.getName(), e);
+        }
+    }
+
+    @NonNull
+    @Override // Object
+    public String toString() {
+        final StringBuilder sb = new StringBuilder("TieredCache(").append(name);
+
+        for (int i = 0; i < tiers.length; i++) {
+            sb.append(", ").append(tiers[i].getName())
+                    .append(" hits=").append(hits.get(i))
+                    .append(" misses=").append(misses.get(i))
+                    .append(" evictions=").append(tiers[i].getEvictionCount());
+        }
+
+        return sb.append(", origin loads=").append(originLoads.get()).append(')').toString();
+    }
+
+    /**
+     * Define the tiers of a {@link TieredCache}
+     *
+     * @param <K> key type
+     * @param <V> value type
+     */
+    public static final class Builder<K, V> {
+        @NonNull
+        private final String name;
+        @NonNull
+        private final IActionOneR<K, IAltFuture<?, V>> origin;
+        @NonNull
+        private final ArrayList<ICacheTier<K, V>> tiers = new ArrayList<>();
+        @Nullable
+        private IThreadType threadType;
+
+        /**
+         * Start defining a cache
+         *
+         * @param name   the descriptive debug name
+         * @param origin loads a value which is in no tier, for example from the network
+         */
+        public Builder(@NonNull String name,
+                       @NonNull IActionOneR<K, IAltFuture<?, V>> origin) {
+            this.name = name;
+            this.origin = origin;
+        }
+
+        /**
+         * Add the next tier. Add the fastest tier first.
+         *
+         * @param tier to add
+         * @return this builder
+         */
+        @NonNull
+        public Builder<K, V> addTier(@NonNull ICacheTier<K, V> tier) {
+            tiers.add(tier);
+
+            return this;
+        }
+
+        /**
+         * Set the thread type on which the values returned by {@link TieredCache#get(Object)} continue
+         *
+         * @param threadType the thread type. The default is {@link Async#WORKER}
+         * @return this builder
+         */
+        @NonNull
+        public Builder<K, V> setThreadType(@NonNull IThreadType threadType) {
+            this.threadType = threadType;
+
+            return this;
+        }
+
+        /**
+         * @return the cache. The builder should not be used after this.
+         */
+        @NonNull
+        public TieredCache<K, V> build() {
+            return new TieredCache<>(this);
+        }
+    }
+}
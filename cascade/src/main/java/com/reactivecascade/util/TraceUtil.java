@@ -0,0 +1,68 @@
+/*
+This file is part of Reactive Cascade which is released under The MIT License.
+See license.md , https://github.com/futurice/cascade and http://reactivecascade.com for details.
+This is open source for the common good. Please contribute improvements by pull request or contact paulirotta@gmail.com
+*/
+package com.reactivecascade.util;
+
+import android.support.annotation.NonNull;
+
+import com.reactivecascade.Async;
+import com.reactivecascade.i.INamed;
+import com.reactivecascade.i.IThreadType;
+import com.reactivecascade.i.ITracer;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Helpers for chain execution tracing with {@link ITracer}
+ */
+public final class TraceUtil {
+    private static final AtomicLong sNextChainId = new AtomicLong();
+
+    private TraceUtil() {
+    }
+
+    /**
+     * @return a new chain id if {@link Async#TRACER} is set, otherwise 0
+     */
+    public static long newChainId() {
+        if (Async.TRACER == null) {
+            return 0;
+        }
+
+        return sNextChainId.incrementAndGet();
+    }
+
+    /**
+     * Pass an event to {@link Async#TRACER}, if set
+     *
+     * @param event      {@link ITracer#FORK}, {@link ITracer#ENQUEUE}, {@link ITracer#START} or {@link ITracer#END}
+     * @param source     the object this event is about
+     * @param threadType where the source executes
+     * @param chainId    shared by all links in one chain
+     */
+    public static void trace(int event,
+                             @NonNull Object source,
+                             @NonNull IThreadType threadType,
+                             long chainId) {
+        final ITracer tracer = Async.TRACER;
+
+        if (tracer != null) {
+            tracer.trace(event, source, threadType, chainId);
+        }
+    }
+
+    /**
+     * @param source an object to display in the trace
+     * @return the {@link INamed#getName()} or the class name
+     */
+    @NonNull
+    public static String getName(@NonNull Object source) {
+        if (source instanceof INamed) {
+            return ((INamed) source).getName();
+        }
+
+        return source.getClass().getSimpleName();
+    }
+}
@@ -0,0 +1,169 @@
+/*
+This file is part of Reactive Cascade which is released under The MIT License.
+See license.md , https://github.com/futurice/cascade and http://reactivecascade.com for details.
+This is open source for the common good. Please contribute improvements by pull request or contact paulirotta@gmail.com
+*/
+package com.reactivecascade.util;
+
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+
+import com.reactivecascade.i.IActionTwo;
+import com.reactivecascade.i.IAsyncOrigin;
+
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Find tasks which run longer than a threshold on {@link WatchedThreadPoolExecutor}s
+ * <p>
+ * A task which blocks a thread pool, for example waiting on a lock or a slow network, delays every task
+ * queued behind it. Each such task is reported once with the origin of the task if it is an
+ * {@link IAsyncOrigin}, otherwise with the stack of the blocked thread, which shows where it is waiting.
+ * <p>
+ * A pool watched with <code>compensate</code> also gets one extra thread for each blocked task until
+ * that task returns, so queued tasks keep running.
+ * <code><pre>
+ *     new AsyncBuilder(context)
+ *             .setWatchdog(2000, true)
+ *             .build();
+ * </pre></code>
+ */
+public class Watchdog {
+    private final long thresholdNanos;
+    private final long periodMillis;
+    @NonNull
+    private final CopyOnWriteArrayList<Watched> watched = new CopyOnWriteArrayList<>();
+    @NonNull
+    private volatile IActionTwo<Thread, Runnable> onBlocked = this::report;
+    @Nullable
+    private ScheduledExecutorService timer; // Created by the first watch(). Guarded by this
+
+    /**
+     * Create a watchdog. It starts its thread when the first pool is watched.
+     *
+     * @param thresholdMillis how long a task may run before it is reported
+     * @param periodMillis    how often to check. A task is reported between <code>thresholdMillis</code> and
+     *                        <code>thresholdMillis + periodMillis</code> after it starts.
+     */
+    public Watchdog(long thresholdMillis,
+                    long periodMillis) {
+        if (thresholdMillis <= 0 || periodMillis <= 0) {
+            throw new IllegalArgumentException("Watchdog threshold and period must be positive: thresholdMillis=" + thresholdMillis + ", periodMillis=" + periodMillis);
+        }
+        this.thresholdNanos = TimeUnit.MILLISECONDS.toNanos(thresholdMillis);
+        this.periodMillis = periodMillis;
+    }
+
+    /**
+     * Replace the default report, which logs, with another action. For example, a test may fail.
+     *
+     * @param onBlocked called on the watchdog thread with the blocked thread and its task
+     * @return this watchdog
+     */
+    @NonNull
+    public Watchdog setOnBlockedListener(@NonNull IActionTwo<Thread, Runnable> onBlocked) {
+        this.onBlocked = onBlocked;
+
+        return this;
+    }
+
+    /**
+     * Start watching a pool
+     *
+     * @param name       the descriptive debug name of the pool
+     * @param executor   the pool
+     * @param compensate <code>true</code> to add a thread while a task is blocked. Do not use this with a pool
+     *                   which must run one task at a time.
+     */
+    public synchronized void watch(@NonNull String name,
+                                   @NonNull WatchedThreadPoolExecutor executor,
+                                   boolean compensate) {
+        watched.add(new Watched(name, executor, compensate));
+        if (timer == null) {
+            timer = Executors.newSingleThreadScheduledExecutor(runnable -> {
+                final Thread thread = new Thread(runnable, "Watchdog");
+                thread.setDaemon(true);
+
+                return thread;
+            });
+            timer.scheduleWithFixedDelay(this::check, periodMillis, periodMillis, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * Stop the watchdog thread. Compensating threads still end when their blocked tasks return.
+     */
+    public synchronized void stop() {
+        if (timer != null) {
+            timer.shutdownNow();
+            timer = null;
+        }
+        watched.clear();
+    }
+
+    private void check() {
+        for (Watched w : watched) {
+            if (w.executor.isShutdown()) {
+                watched.remove(w);
+                continue;
+            }
+            try {
+                w.executor.findBlocked(thresholdNanos, w.compensate, onBlocked);
+            } catch (Exception e) {
+                RCLog.e(this, "Problem checking " + w.name + " for blocked tasks", e);
+            }
+        }
+    }
+
+    private void report(@NonNull Thread thread,
+                        @NonNull Runnable task) {
+        final StringBuilder sb = new StringBuilder();
+
+        sb.append("Task has run more than ")
+                .append(TimeUnit.NANOSECONDS.toMillis(thresholdNanos))
+                .append("ms on ")
+                .append(thread.getName())
+                .append(": ")
+                .append(task);
+        final String origin = getOrigin(task);
+        if (origin != null) {
+            sb.append("\nOrigin: ").append(origin);
+        } else {
+            for (StackTraceElement element : thread.getStackTrace()) {
+                sb.append("\n    at ").append(element);
+            }
+        }
+        RCLog.i(this, sb.toString());
+    }
+
+    /**
+     * The origin of a task, resolved now on the calling thread if needed. A {@link com.reactivecascade.i.IAltFuture}
+     * is queued as the task itself, so its origin is the point in your code where the chain step was created.
+     *
+     * @param task the task as queued to the pool
+     * @return the origin, or <code>null</code> if the task is not an {@link IAsyncOrigin} or none was captured
+     */
+    @Nullable
+    static String getOrigin(@NonNull Runnable task) {
+        return task instanceof IAsyncOrigin ? RCLog.getOriginNow(((IAsyncOrigin) task).getOrigin()) : null;
+    }
+
+    private static final class Watched {
+        @NonNull
+        final String name;
+        @NonNull
+        final WatchedThreadPoolExecutor executor;
+        final boolean compensate;
+
+        Watched(@NonNull String name,
+                @NonNull WatchedThreadPoolExecutor executor,
+                boolean compensate) {
+            this.name = name;
+            this.executor = executor;
+            this.compensate = compensate;
+        }
+    }
+}
@@ -0,0 +1,164 @@
+/*
+This file is part of Reactive Cascade which is released under The MIT License.
+See license.md , https://github.com/futurice/cascade and http://reactivecascade.com for details.
+This is open source for the common good. Please contribute improvements by pull request or contact paulirotta@gmail.com
+*/
+package com.reactivecascade.util;
+
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+
+import com.reactivecascade.i.IActionTwo;
+
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A {@link ThreadPoolExecutor} which records when each thread started its current task, so that a {@link Watchdog}
+ * can find tasks which run too long
+ * <p>
+ * The record of each thread is created once and reused for every task, so running a task does not allocate.
+ * <p>
+ * A blocked task may be compensated: the pool grows by one thread until that task returns, in the same
+ * way as {@link java.util.concurrent.ForkJoinPool.ManagedBlocker}. This keeps the number of threads doing
+ * work at the size of the pool. Compensate only pools which may run tasks concurrently.
+ */
+public class WatchedThreadPoolExecutor extends ThreadPoolExecutor {
+    @NonNull
+    private final ConcurrentHashMap<Thread, Running> running = new ConcurrentHashMap<>();
+    private int compensating = 0; // Guarded by this
+
+    /**
+     * Create a pool. See {@link ThreadPoolExecutor#ThreadPoolExecutor(int, int, long, TimeUnit, BlockingQueue, ThreadFactory)}.
+     */
+    public WatchedThreadPoolExecutor(int corePoolSize,
+                                     int maximumPoolSize,
+                                     long keepAliveTime,
+                                     @NonNull TimeUnit unit,
+                                     @NonNull BlockingQueue<Runnable> workQueue,
+                                     @NonNull ThreadFactory threadFactory) {
+        super(corePoolSize, maximumPoolSize, keepAliveTime, unit, workQueue, threadFactory);
+    }
+
+    @Override // ThreadPoolExecutor
+    protected void beforeExecute(@NonNull Thread t,
+                                 @NonNull Runnable r) {
+        Running record = running.get(t);
+
+        if (record == null) {
+            record = new Running();
+            running.put(t, record);
+        }
+        record.generation++; // Only this thread writes. Changes before the task, so a reader can tell when it read a mix of two tasks
+        record.task = r;
+        record.startNanos = System.nanoTime();
+        super.beforeExecute(t, r);
+    }
+
+    @Override // ThreadPoolExecutor
+    protected void afterExecute(@NonNull Runnable r,
+                                @Nullable Throwable t) {
+        super.afterExecute(r, t);
+        final Running record = running.get(Thread.currentThread());
+
+        if (record != null) {
+            record.startNanos = 0;
+            record.task = null;
+            if (record.compensated) {
+                endCompensation(record);
+            }
+        }
+    }
+
+    /**
+     * @return the number of extra threads currently allowed because tasks are blocked
+     */
+    public synchronized int getCompensatingCount() {
+        return compensating;
+    }
+
+    /**
+     * Find tasks which have run longer than a threshold. Each task is found once, even if the thread which runs it
+     * finishes and starts another task while it is being checked.
+     *
+     * @param thresholdNanos how long a task may run
+     * @param compensate     <code>true</code> to add a thread to the pool until each found task returns
+     * @param onBlocked      called with the thread and task of each task found, on the calling thread
+     * @return the number of tasks found
+     * @throws Exception from <code>onBlocked</code>
+     */
+    int findBlocked(long thresholdNanos,
+                    boolean compensate,
+                    @NonNull IActionTwo<Thread, Runnable> onBlocked) throws Exception {
+        final long now = System.nanoTime();
+        final Iterator<Map.Entry<Thread, Running>> iterator = running.entrySet().iterator();
+        int found = 0;
+
+        while (iterator.hasNext()) {
+            final Map.Entry<Thread, Running> entry = iterator.next();
+            final Thread thread = entry.getKey();
+            final Running record = entry.getValue();
+
+            if (!thread.isAlive()) {
+                iterator.remove();
+                continue;
+            }
+            final long generation = record.generation;
+            final Runnable task = record.task;
+            final long start = record.startNanos;
+            if (record.generation != generation || start == 0 || task == null || now - start < thresholdNanos) {
+                continue; // Not running, not yet over the threshold, or the thread moved to another task while it was read
+            }
+            final long reported = record.reportedGeneration.get();
+            if (reported == generation || !record.reportedGeneration.compareAndSet(reported, generation)) {
+                continue;
+            }
+            found++;
+            if (compensate) {
+                startCompensation(record);
+                if (record.generation != generation || record.startNanos == 0) {
+                    // The task returned while the pool was growing, and may not have seen the flag
+                    endCompensation(record);
+                }
+            }
+            onBlocked.call(thread, task);
+        }
+
+        return found;
+    }
+
+    private synchronized void startCompensation(@NonNull Running record) {
+        record.compensated = true;
+        compensating++;
+        setMaximumPoolSize(getMaximumPoolSize() + 1);
+        setCorePoolSize(getCorePoolSize() + 1); // Starts a thread now if tasks are queued
+    }
+
+    private synchronized void endCompensation(@NonNull Running record) {
+        if (!record.compensated) {
+            return; // Already ended by the other of the task thread and the watchdog
+        }
+        record.compensated = false;
+        compensating--;
+        setCorePoolSize(getCorePoolSize() - 1);
+        setMaximumPoolSize(getMaximumPoolSize() - 1); // The extra thread ends when it is next idle
+    }
+
+    /**
+     * What one thread of the pool is running. Written by that thread, read by the watchdog.
+     */
+    private static final class Running {
+        final AtomicLong reportedGeneration = new AtomicLong(); // The last task found blocked
+        volatile long generation; // Counts the tasks started on this thread
+        @Nullable
+        volatile Runnable task;
+        volatile long startNanos;
+        volatile boolean compensated;
+    }
+}
@@ -0,0 +1,109 @@
+/*
+This file is part of Reactive Cascade which is released under The MIT License.
+See license.md , https://github.com/futurice/cascade and http://reactivecascade.com for details.
+This is open source for the common good. Please contribute improvements by pull request or contact paulirotta@gmail.com
+*/
+package com.reactivecascade;
+
+import android.test.mock.MockContext;
+
+import com.reactivecascade.functional.ImmutableValue;
+import com.reactivecascade.i.IThreadType;
+import com.reactivecascade.util.AbstractThreadType;
+import com.reactivecascade.util.LazyExecutorService;
+import com.reactivecascade.util.RCLog;
+import com.reactivecascade.util.TypedThread;
+
+import org.junit.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static junit.framework.Assert.assertFalse;
+import static junit.framework.TestCase.assertTrue;
+
+/**
+ * Startup cost of the default {@link Async#WORKER} thread type, measured through the same
+ * {@link AsyncBuilder} calls which {@link AsyncBuilder#build()} uses to create it
+ */
+public class AsyncBuilderStartupTest {
+    private static final int RUNS = 20;
+
+    private static final class Startup {
+        final IThreadType threadType;
+        final LazyExecutorService executorService;
+        final long buildNanos;
+
+        Startup() {
+            final AsyncBuilder asyncBuilder = new AsyncBuilder(new MockContext());
+            final long t = System.nanoTime();
+
+            threadType = asyncBuilder.getWorkerThreadType();
+            final ExecutorService e = asyncBuilder.getWorkerExecutorService(new ImmutableValue<>());
+            assertTrue(e instanceof LazyExecutorService);
+            executorService = (LazyExecutorService) e;
+            buildNanos = System.nanoTime() - t;
+        }
+
+        /**
+         * @return nanoseconds from fork until the first chain has run on a worker thread
+         */
+        long timeToFirstChain() throws Exception {
+            final CountDownLatch done = new CountDownLatch(1);
+            final AtomicBoolean onWorkerThread = new AtomicBoolean();
+            final long t = System.nanoTime();
+
+            threadType.then(() -> {
+                onWorkerThread.set(Thread.currentThread() instanceof TypedThread);
+                done.countDown();
+                return t;
+            });
+            assertTrue(done.await(5, TimeUnit.SECONDS));
+            final long elapsed = System.nanoTime() - t;
+            assertTrue(onWorkerThread.get());
+
+            return elapsed;
+        }
+    }
+
+    @Test
+    public void testWorkerPoolStartsWithFirstChain() throws Exception {
+        long buildNanos = 0;
+        long firstChainNanos = 0;
+
+        for (int i = 0; i < RUNS; i++) {
+            final Startup startup = new Startup();
+            try {
+                assertFalse(startup.executorService.isStarted());
+                buildNanos += startup.buildNanos;
+                firstChainNanos += startup.timeToFirstChain();
+                assertTrue(startup.executorService.isStarted());
+            } finally {
+                startup.executorService.shutdownNow();
+            }
+        }
+        RCLog.i(this, "Lazy WORKER: create " + buildNanos / RUNS / 1000 + "us, first chain " + firstChainNanos / RUNS / 1000 + "us");
+    }
+
+    @Test
+    public void testPrestartMovesThreadStartOutOfFirstChain() throws Exception {
+        long prestartNanos = 0;
+        long firstChainNanos = 0;
+
+        for (int i = 0; i < RUNS; i++) {
+            final Startup startup = new Startup();
+            try {
+                final long t = System.nanoTime();
+                assertTrue(((AbstractThreadType) startup.threadType).prestart() > 0);
+                prestartNanos += System.nanoTime() - t;
+                assertTrue(startup.executorService.isStarted());
+                firstChainNanos += startup.timeToFirstChain();
+            } finally {
+                startup.executorService.shutdownNow();
+            }
+        }
+        RCLog.i(this, "Prestarted WORKER: prestart " + prestartNanos / RUNS / 1000 + "us, first chain " + firstChainNanos / RUNS / 1000 + "us");
+    }
+}
@@ -6,6 +6,7 @@ This is open source for the common good. Please contribute improvements by pull
 package com.reactivecascade;
 
 import android.content.Context;
+import android.util.Log;
 
 import com.reactivecascade.functional.ImmutableValue;
 import com.reactivecascade.i.IThreadType;
@@ -126,6 +127,36 @@ public class AsyncBuilderTest {
         assertFalse(asyncBuilder.isShowErrorStackTraces());
     }
 
+    @Test
+    public void testGetLogLevel() throws Exception {
+        asyncBuilder.build();
+        assertEquals(Log.VERBOSE, asyncBuilder.getLogLevel());
+    }
+
+    @Test
+    public void testSetLogLevel() throws Exception {
+        asyncBuilder
+                .setLogLevel(Log.INFO)
+                .build();
+        assertEquals(Log.INFO, asyncBuilder.getLogLevel());
+    }
+
+    @Test
+    public void testSetOriginSampleRate() throws Exception {
+        asyncBuilder
+                .setOriginSampleRate(10)
+                .build();
+        assertEquals(10, asyncBuilder.getOriginSampleRate());
+    }
+
+    @Test
+    public void testSetLazyOrigin() throws Exception {
+        asyncBuilder
+                .setLazyOrigin(true)
+                .build();
+        assertTrue(asyncBuilder.isLazyOrigin());
+    }
+
     @Test
     public void testGetWorkerThreadType() throws Exception {
         asyncBuilder
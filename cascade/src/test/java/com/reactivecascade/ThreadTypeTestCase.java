@@ -0,0 +1,78 @@
+/*
+This file is part of Reactive Cascade which is released under The MIT License.
+See license.md , https://github.com/futurice/cascade and http://reactivecascade.com for details.
+This is open source for the common good. Please contribute improvements by pull request or contact paulirotta@gmail.com
+*/
+package com.reactivecascade;
+
+import android.support.annotation.NonNull;
+
+import com.reactivecascade.i.IThreadType;
+import com.reactivecascade.util.DefaultThreadType;
+
+import org.junit.After;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static junit.framework.TestCase.assertTrue;
+
+/**
+ * A unit test harness for tests which run on their own thread types instead of the {@link Async} defaults
+ * <p>
+ * Each thread type gets a new executor, which is shut down after the test.
+ */
+public abstract class ThreadTypeTestCase {
+    private final List<ExecutorService> executorServices = new ArrayList<>();
+
+    /**
+     * @param name the descriptive debug name
+     * @return a thread type which runs one task at a time, in order
+     */
+    @NonNull
+    protected DefaultThreadType newThreadType(@NonNull String name) {
+        return newThreadType(name, Executors.newSingleThreadExecutor());
+    }
+
+    /**
+     * @param name            the descriptive debug name
+     * @param executorService shut down after the test
+     * @return a thread type which runs on the executor
+     */
+    @NonNull
+    protected DefaultThreadType newThreadType(@NonNull String name,
+                                              @NonNull ExecutorService executorService) {
+        executorServices.add(executorService);
+
+        return new DefaultThreadType(name, executorService, null);
+    }
+
+    /**
+     * Wait until a single threaded thread type has run all work queued before this call. Each link
+     * of a chain queues the next, so wait one round per link.
+     *
+     * @param threadType a thread type which runs one task at a time, in order
+     * @param rounds     the number of times to wait behind the queue
+     */
+    protected static void awaitQueued(@NonNull IThreadType threadType,
+                                      int rounds) throws InterruptedException {
+        for (int i = 0; i < rounds; i++) {
+            final CountDownLatch latch = new CountDownLatch(1);
+
+            threadType.execute(latch::countDown);
+            assertTrue(latch.await(5, TimeUnit.SECONDS));
+        }
+    }
+
+    @After
+    public void shutdownThreadTypes() {
+        for (ExecutorService executorService : executorServices) {
+            executorService.shutdownNow();
+        }
+        executorServices.clear();
+    }
+}
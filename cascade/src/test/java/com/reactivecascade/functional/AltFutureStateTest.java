@@ -0,0 +1,70 @@
+/*
+This file is part of Reactive Cascade which is released under The MIT License.
+See license.md , https://github.com/futurice/cascade and http://reactivecascade.com for details.
+This is open source for the common good. Please contribute improvements by pull request or contact paulirotta@gmail.com
+*/
+package com.reactivecascade.functional;
+
+import com.reactivecascade.ThreadTypeTestCase;
+import com.reactivecascade.i.IThreadType;
+
+import org.junit.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static junit.framework.Assert.assertEquals;
+import static junit.framework.TestCase.assertTrue;
+
+public class AltFutureStateTest extends ThreadTypeTestCase {
+    private final IThreadType threadType = newThreadType("AltFutureStateTest");
+
+    @Test
+    public void testSetThenGet() throws Exception {
+        SettableAltFuture<String> altFuture = new SettableAltFuture<>(threadType);
+
+        altFuture.set("value");
+
+        assertTrue(altFuture.isDone());
+        assertEquals("value", altFuture.get());
+    }
+
+    @Test
+    public void testConcurrentSetAndCancelChangeStateOnce() throws Exception {
+        final AtomicInteger changes = new AtomicInteger();
+
+        for (int i = 0; i < 200; i++) {
+            final SettableAltFuture<Integer> altFuture = new SettableAltFuture<>(threadType);
+            final CountDownLatch start = new CountDownLatch(1);
+            final CountDownLatch done = new CountDownLatch(2);
+
+            changes.set(0);
+            new Thread(() -> {
+                try {
+                    start.await();
+                    altFuture.set(1);
+                    changes.incrementAndGet();
+                } catch (Exception e) {
+                    // Lost the race to cancel
+                }
+                done.countDown();
+            }).start();
+            new Thread(() -> {
+                try {
+                    start.await();
+                    if (altFuture.cancel("test")) {
+                        changes.incrementAndGet();
+                    }
+                } catch (Exception e) {
+                    // Not expected
+                }
+                done.countDown();
+            }).start();
+            start.countDown();
+            done.await();
+
+            assertEquals(1, changes.get());
+            assertTrue(altFuture.isDone());
+        }
+    }
+}
@@ -0,0 +1,163 @@
+/*
+This file is part of Reactive Cascade which is released under The MIT License.
+See license.md , https://github.com/futurice/cascade and http://reactivecascade.com for details.
+This is open source for the common good. Please contribute improvements by pull request or contact paulirotta@gmail.com
+*/
+package com.reactivecascade.functional;
+
+import android.content.ComponentCallbacks2;
+
+import com.reactivecascade.ThreadTypeTestCase;
+import com.reactivecascade.i.IAltFuture;
+import com.reactivecascade.i.ICancellationToken;
+import com.reactivecascade.i.IThreadType;
+import com.reactivecascade.util.CancellationUtil;
+
+import org.junit.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static junit.framework.Assert.assertEquals;
+import static junit.framework.Assert.assertSame;
+import static junit.framework.TestCase.assertFalse;
+import static junit.framework.TestCase.assertTrue;
+
+public class MemoizerTest extends ThreadTypeTestCase {
+    private final IThreadType threadType = newThreadType("MemoizerTest");
+
+    @Test
+    public void testConcurrentGetComputesOnce() throws Exception {
+        final Memoizer<String, Integer> memoizer = new Memoizer<>("test", 10, Memoizer.NO_EXPIRY);
+        final AtomicInteger computations = new AtomicInteger();
+        final CountDownLatch computing = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+        final int threads = 4;
+        final CountDownLatch done = new CountDownLatch(threads);
+        final AtomicInteger sum = new AtomicInteger();
+
+        for (int i = 0; i < threads; i++) {
+            new Thread(() -> {
+                try {
+                    sum.addAndGet(memoizer.get("key", () -> {
+                        computations.incrementAndGet();
+                        computing.countDown();
+                        release.await();
+                        return 7;
+                    }));
+                } catch (Exception e) {
+                    // Fails the sum below
+                }
+                done.countDown();
+            }).start();
+        }
+        assertTrue(computing.await(5, TimeUnit.SECONDS));
+        Thread.sleep(50); // Let the other threads start waiting
+        release.countDown();
+
+        assertTrue(done.await(5, TimeUnit.SECONDS));
+        assertEquals(1, computations.get());
+        assertEquals(threads * 7, sum.get());
+    }
+
+    @Test
+    public void testLruTtlAndTrim() throws Exception {
+        final Memoizer<Integer, Integer> memoizer = new Memoizer<>("test", 2, 50);
+        final AtomicInteger computations = new AtomicInteger();
+
+        for (int i = 0; i < 3; i++) {
+            final int key = i;
+            memoizer.get(key, () -> computations.incrementAndGet() + key);
+        }
+        assertEquals(2, memoizer.size());
+        memoizer.get(2, computations::incrementAndGet);
+        assertEquals(3, computations.get());
+
+        Thread.sleep(100);
+        memoizer.get(2, computations::incrementAndGet);
+        assertEquals(4, computations.get());
+
+        memoizer.onTrimMemory(ComponentCallbacks2.TRIM_MEMORY_MODERATE);
+        assertEquals(0, memoizer.size());
+    }
+
+    @Test
+    public void testNonBlockingGetIsCompletedByComputingThread() throws Exception {
+        final Memoizer<String, Integer> memoizer = new Memoizer<>("test", 10, Memoizer.NO_EXPIRY);
+        final CountDownLatch computing = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+        final AtomicReference<Thread> deliveredOn = new AtomicReference<>();
+        final CountDownLatch delivered = new CountDownLatch(2);
+        final Thread computingThread = new Thread(() -> memoizer.get("key", () -> {
+            computing.countDown();
+            release.await();
+            return 7;
+        }, value -> delivered.countDown(), e -> {
+        }));
+
+        computingThread.start();
+        assertTrue(computing.await(5, TimeUnit.SECONDS));
+        memoizer.get("key", () -> 8, value -> {
+            deliveredOn.set(Thread.currentThread());
+            assertEquals(7, (int) value);
+            delivered.countDown();
+        }, e -> {
+        }); // Returns at once
+        assertEquals(2, delivered.getCount());
+        release.countDown();
+
+        assertTrue(delivered.await(5, TimeUnit.SECONDS));
+        assertEquals(computingThread, deliveredOn.get());
+    }
+
+    @Test
+    public void testChainDoesNotBlockThreadWhileAnotherComputes() throws Exception {
+        final Memoizer<String, Integer> memoizer = new Memoizer<>("test", 10, Memoizer.NO_EXPIRY);
+        final CountDownLatch computing = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+        final CountDownLatch threadFree = new CountDownLatch(1);
+
+        new Thread(() -> {
+            try {
+                memoizer.get("key", () -> {
+                    computing.countDown();
+                    release.await();
+                    return 7;
+                });
+            } catch (Exception e) {
+                // The chain below does not complete
+            }
+        }).start();
+        assertTrue(computing.await(5, TimeUnit.SECONDS));
+        final IAltFuture<String, Integer> chain = new SettableAltFuture<>(threadType, "key")
+                .memoize(in -> in, memoizer, in -> 8);
+        threadType.execute(threadFree::countDown); // Queued after the memoize link on the single thread
+
+        assertTrue(threadFree.await(5, TimeUnit.SECONDS));
+        assertFalse(chain.isDone());
+        release.countDown();
+        for (int i = 0; i < 500 && !chain.isDone(); i++) {
+            Thread.sleep(10);
+        }
+        assertEquals(7, (int) chain.get());
+    }
+
+    @Test
+    public void testMemoizedStepIsTheCurrentCancellationToken() throws Exception {
+        final Memoizer<String, Integer> memoizer = new Memoizer<>("test", 10, Memoizer.NO_EXPIRY);
+        final AtomicReference<ICancellationToken> token = new AtomicReference<>();
+        final IAltFuture<String, Integer> chain = new SettableAltFuture<>(threadType, "key")
+                .memoize(in -> in, memoizer, in -> {
+                    token.set(CancellationUtil.current());
+                    return 7;
+                });
+
+        for (int i = 0; i < 500 && !chain.isDone(); i++) {
+            Thread.sleep(10);
+        }
+        assertEquals(7, (int) chain.get());
+        assertSame(chain, token.get());
+    }
+}
@@ -0,0 +1,112 @@
+/*
+This file is part of Reactive Cascade which is released under The MIT License.
+See license.md , https://github.com/futurice/cascade and http://reactivecascade.com for details.
+This is open source for the common good. Please contribute improvements by pull request or contact paulirotta@gmail.com
+*/
+package com.reactivecascade.functional;
+
+import com.reactivecascade.ThreadTypeTestCase;
+import com.reactivecascade.i.IActionOne;
+import com.reactivecascade.i.IThreadType;
+
+import org.junit.Test;
+
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static junit.framework.Assert.assertEquals;
+import static junit.framework.TestCase.assertTrue;
+
+public class PipelineTest extends ThreadTypeTestCase {
+    private final IThreadType first = newThreadType("PipelineTestFirst");
+    private final IThreadType second = newThreadType("PipelineTestSecond", Executors.newFixedThreadPool(2));
+
+    @Test
+    public void testRunManyTimes() throws Exception {
+        final Pipeline<String, Integer> pipeline = new Pipeline.Builder<String, String>("length")
+                .map(first, String::trim)
+                .map(second, String::length)
+                .map(second, length -> length * 10)
+                .build();
+        final int runs = 100;
+        final CountDownLatch done = new CountDownLatch(runs);
+        final ConcurrentLinkedQueue<Integer> results = new ConcurrentLinkedQueue<>();
+
+        for (int i = 0; i < runs; i++) {
+            pipeline.run(" " + i + " ", result -> {
+                results.add(result);
+                done.countDown();
+            }, null);
+        }
+
+        assertTrue(done.await(5, TimeUnit.SECONDS));
+        int sum = 0;
+        for (int result : results) {
+            sum += result;
+        }
+        assertEquals(10 * (10 * 1 + 90 * 2), sum);
+    }
+
+    @Test
+    public void testErrorStopsRun() throws Exception {
+        final Pipeline<String, Integer> pipeline = new Pipeline.Builder<String, String>("parse")
+                .map(first, Integer::parseInt)
+                .map(second, i -> i + 1)
+                .build();
+        final CountDownLatch done = new CountDownLatch(1);
+        final AtomicReference<Exception> error = new AtomicReference<>();
+
+        pipeline.run("x", result -> done.countDown(), e -> {
+            error.set(e);
+            done.countDown();
+        });
+
+        assertTrue(done.await(5, TimeUnit.SECONDS));
+        assertTrue(error.get() instanceof NumberFormatException);
+    }
+
+    /**
+     * A run with a pooled context allocates only the node of the executor's queue, not a
+     * {@link java.util.concurrent.FutureTask}
+     */
+    @Test
+    public void testRunDoesNotWrap() throws Exception {
+        final ThreadMXBean threadMXBean = ManagementFactory.getThreadMXBean();
+        if (!(threadMXBean instanceof com.sun.management.ThreadMXBean)) {
+            return; // Allocation can not be measured on this VM
+        }
+        final com.sun.management.ThreadMXBean allocationMXBean = (com.sun.management.ThreadMXBean) threadMXBean;
+        final long threadId = Thread.currentThread().getId();
+        final Pipeline<Integer, Integer> pipeline = new Pipeline.Builder<Integer, Integer>("identity")
+                .map(first, i -> i)
+                .map(second, i -> i)
+                .build();
+        final Integer in = 1000; // Not from the Integer cache, but boxed once
+        final AtomicInteger done = new AtomicInteger();
+        final IActionOne<Integer> onResult = result -> done.incrementAndGet();
+        final int n = 10000;
+
+        for (int i = 1; i <= n; i++) {
+            pipeline.run(in, onResult, null); // Warm up
+            while (done.get() != i) {
+                // Spin without allocating until the run has returned its context to the pool
+            }
+        }
+        final long before = allocationMXBean.getThreadAllocatedBytes(threadId);
+        for (int i = n + 1; i <= 2 * n; i++) {
+            pipeline.run(in, onResult, null);
+            while (done.get() != i) {
+                // Spin
+            }
+        }
+        final long perRun = (allocationMXBean.getThreadAllocatedBytes(threadId) - before) / n;
+
+        assertTrue("Allocated " + perRun + " bytes per run", perRun < 48);
+    }
+}
@@ -0,0 +1,185 @@
+/*
+This file is part of Reactive Cascade which is released under The MIT License.
+See license.md , https://github.com/futurice/cascade and http://reactivecascade.com for details.
+This is open source for the common good. Please contribute improvements by pull request or contact paulirotta@gmail.com
+*/
+package com.reactivecascade.reactive;
+
+import android.content.Context;
+import android.test.mock.MockContext;
+
+import com.reactivecascade.util.AltFutureFuture;
+import com.reactivecascade.util.DefaultThreadType;
+import com.reactivecascade.util.LogStructuredStore;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.Serializable;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static junit.framework.Assert.assertEquals;
+import static junit.framework.Assert.assertNotNull;
+import static junit.framework.Assert.assertSame;
+import static junit.framework.TestCase.assertTrue;
+
+public class PersistentValueTest {
+    private static final AtomicInteger sNameCount = new AtomicInteger(); // Values live for the whole process, so each test uses new names
+    private final Context context = new MockContext();
+    private final ExecutorService storeExecutorService = Executors.newSingleThreadExecutor();
+    private final ExecutorService executorService = Executors.newSingleThreadExecutor();
+    private final DefaultThreadType threadType = new DefaultThreadType("PersistentValueTest", executorService, null);
+    private File file;
+    private LogStructuredStore store;
+
+    @Before
+    public void setUp() throws Exception {
+        file = File.createTempFile("PersistentValueTest", ".kv");
+        store = new LogStructuredStore(file, new DefaultThreadType("PersistentValueTestStore", storeExecutorService, null), Long.MAX_VALUE);
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        storeExecutorService.shutdownNow();
+        executorService.shutdownNow();
+        assertTrue(file.delete());
+    }
+
+    private static String newName() {
+        return "value" + sNameCount.incrementAndGet();
+    }
+
+    private PersistentValue<String> newValue(String name,
+                                             @PersistentValue.PersistPolicy int persistPolicy) {
+        return PersistentValue.getPersistentValue(name, "default", threadType, null, null, context, store)
+                .setPersistPolicy(persistPolicy, 50);
+    }
+
+    /**
+     * Read on the store thread, after all writes queued before this
+     */
+    private String stored(PersistentValue<String> value) throws Exception {
+        final String key = context.getClass().getPackage().getName() + value.getName();
+
+        return new AltFutureFuture<>(store.getThreadType().then(() -> store.read(key, "default")))
+                .get(5, TimeUnit.SECONDS);
+    }
+
+    @Test
+    public void testImmediateDoesNotWriteOtherPolicies() throws Exception {
+        final PersistentValue<String> immediate = newValue(newName(), PersistentValue.PERSIST_IMMEDIATE);
+        final PersistentValue<String> onFlush = newValue(newName(), PersistentValue.PERSIST_ON_FLUSH);
+        final PersistentValue<String> debounced = newValue(newName(), PersistentValue.PERSIST_DEBOUNCED)
+                .setPersistPolicy(PersistentValue.PERSIST_DEBOUNCED, 60000);
+
+        onFlush.set("onFlush");
+        debounced.set("debounced");
+        immediate.set("immediate");
+        assertEquals("immediate", stored(immediate));
+        assertEquals("default", stored(onFlush));
+        assertEquals("default", stored(debounced));
+
+        assertTrue(PersistentValue.flush(5000));
+        assertEquals("onFlush", stored(onFlush));
+        assertEquals("debounced", stored(debounced));
+    }
+
+    private void write(String name,
+                       String value) throws Exception {
+        final String key = context.getClass().getPackage().getName() + name;
+
+        new AltFutureFuture<>(store.getThreadType().then(() -> store.write(Collections.singletonMap(key, value))))
+                .get(5, TimeUnit.SECONDS);
+    }
+
+    @Test
+    public void testBlockingGetWaitsForAsyncLoad() throws Exception {
+        final String name = newName();
+        final CountDownLatch storeBusy = new CountDownLatch(1);
+
+        write(name, "stored");
+        store.getThreadType().execute(() -> {
+            storeBusy.countDown();
+            Thread.sleep(200); // The async load is queued behind this
+        });
+        assertTrue(storeBusy.await(5, TimeUnit.SECONDS));
+        final PersistentValue<String> async = PersistentValue.getPersistentValueAsync(name, "default", threadType, null, null, context, store);
+        final PersistentValue<String> blocking = PersistentValue.getPersistentValue(name, "default", threadType, null, null, context, store);
+
+        assertSame(async, blocking);
+        assertEquals("stored", blocking.safeGet());
+    }
+
+    @Test
+    public void testPreloadDeclaredValues() throws Exception {
+        final String name1 = newName();
+        final String name2 = newName();
+        final Map<String, Object> defaultValues = new HashMap<>();
+
+        write(name1, "stored");
+        defaultValues.put(name1, "default");
+        defaultValues.put(name2, "default");
+        new AltFutureFuture<>(PersistentValue.preload(store, threadType, context, defaultValues))
+                .get(5, TimeUnit.SECONDS);
+
+        assertEquals("stored", PersistentValue.getPersistentValueAsync(name1, "default", threadType, null, null, context, store).safeGet());
+        assertEquals("default", PersistentValue.getPersistentValueAsync(name2, "default", threadType, null, null, context, store).safeGet());
+    }
+
+    @Test
+    public void testDebouncedPersistsWhenValueStopsChanging() throws Exception {
+        final PersistentValue<String> debounced = newValue(newName(), PersistentValue.PERSIST_DEBOUNCED);
+
+        debounced.set("first");
+        debounced.set("last");
+        final long t = System.currentTimeMillis();
+        while (!"last".equals(stored(debounced)) && System.currentTimeMillis() - t < 5000) {
+            Thread.sleep(10);
+        }
+        assertEquals("last", stored(debounced));
+    }
+
+    /**
+     * Serializable, but a value holding a non-serializable object can not be encoded
+     */
+    private static final class Holder implements Serializable {
+        final Object held;
+
+        Holder(Object held) {
+            this.held = held;
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testValueWithoutCodecFailsWhenCreated() throws Exception {
+        PersistentValue.getPersistentValue(newName(), new Object(), threadType, null, null, context, store);
+    }
+
+    @Test
+    public void testUnencodableValueDoesNotFailLaterFlushes() throws Exception {
+        final AtomicReference<Exception> error = new AtomicReference<>();
+        final PersistentValue<Holder> unencodable = PersistentValue.getPersistentValue(newName(), new Holder(null), threadType, null, error::set, context, store)
+                .setPersistPolicy(PersistentValue.PERSIST_ON_FLUSH, 0);
+        final PersistentValue<String> onFlush = newValue(newName(), PersistentValue.PERSIST_ON_FLUSH);
+
+        unencodable.set(new Holder(new Object()));
+        onFlush.set("first");
+        assertTrue(PersistentValue.flush(5000));
+        assertEquals("first", stored(onFlush));
+        assertNotNull(error.get());
+
+        onFlush.set("second");
+        assertTrue(PersistentValue.flush(5000));
+        assertEquals("second", stored(onFlush));
+    }
+}
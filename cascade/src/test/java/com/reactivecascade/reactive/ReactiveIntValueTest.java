@@ -0,0 +1,165 @@
+/*
+This file is part of Reactive Cascade which is released under The MIT License.
+See license.md , https://github.com/futurice/cascade and http://reactivecascade.com for details.
+This is open source for the common good. Please contribute improvements by pull request or contact paulirotta@gmail.com
+*/
+package com.reactivecascade.reactive;
+
+import com.reactivecascade.i.IActionOneInt;
+import com.reactivecascade.i.IThreadType;
+import com.reactivecascade.util.DefaultThreadType;
+
+import org.junit.After;
+import org.junit.Test;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static junit.framework.Assert.assertEquals;
+import static junit.framework.Assert.assertSame;
+import static junit.framework.TestCase.assertTrue;
+
+public class ReactiveIntValueTest {
+    private final ExecutorService executorService = Executors.newSingleThreadExecutor();
+    private final IThreadType threadType = new DefaultThreadType("ReactiveIntValueTest", executorService, null);
+
+    @After
+    public void tearDown() {
+        executorService.shutdownNow();
+    }
+
+    @Test
+    public void testArithmetic() throws Exception {
+        ReactiveIntValue value = new ReactiveIntValue("test", 5, threadType, null);
+
+        assertEquals(6, value.incrementAndGet());
+        assertEquals(4, value.addAndGet(-2));
+        assertEquals(3, value.decrementAndGet());
+        assertTrue(value.compareAndSet(3, 1000));
+        assertEquals(1000, value.get());
+    }
+
+    @Test
+    public void testSubscriberReceivesLatestValue() throws Exception {
+        final ReactiveIntValue value = new ReactiveIntValue("test", 0, threadType, null);
+        final AtomicInteger received = new AtomicInteger(-1);
+        final CountDownLatch done = new CountDownLatch(1);
+
+        value.subscribe(i -> {
+            received.set(i);
+            if (i == 1000) {
+                done.countDown();
+            }
+        });
+        for (int i = 0; i < 1000; i++) {
+            value.incrementAndGet();
+        }
+        assertTrue(done.await(5, TimeUnit.SECONDS));
+        assertEquals(1000, received.get());
+    }
+
+    @Test
+    public void testUnsubscribe() throws Exception {
+        final ReactiveIntValue value = new ReactiveIntValue("test", 0, threadType, null);
+        final IActionOneInt action = i -> {
+        };
+
+        value.subscribe(action);
+        assertTrue(value.unsubscribe(action));
+        assertTrue(!value.unsubscribe(action));
+    }
+
+    @Test
+    public void testAsReactiveSource() throws Exception {
+        final ReactiveIntValue value = new ReactiveIntValue("test", 0, threadType, null);
+        final CountDownLatch done = new CountDownLatch(1);
+
+        assertSame(value.asReactiveSource(), value.asReactiveSource());
+        value.asReactiveSource()
+                .subscribeMap(i -> i * 2)
+                .subscribe(i -> {
+                    if (i == 6) {
+                        done.countDown();
+                    }
+                });
+        value.set(3);
+        assertTrue(done.await(5, TimeUnit.SECONDS));
+    }
+
+    /**
+     * Each update which queues the subscriber allocates only the node of the executor's queue, not a
+     * {@link java.util.concurrent.FutureTask}
+     */
+    @Test
+    public void testQueueingSubscriberDoesNotWrap() throws Exception {
+        final ThreadMXBean threadMXBean = ManagementFactory.getThreadMXBean();
+        if (!(threadMXBean instanceof com.sun.management.ThreadMXBean)) {
+            return; // Allocation can not be measured on this VM
+        }
+        final com.sun.management.ThreadMXBean allocationMXBean = (com.sun.management.ThreadMXBean) threadMXBean;
+        final long threadId = Thread.currentThread().getId();
+        final ReactiveIntValue value = new ReactiveIntValue("test", 0, threadType, null);
+        final AtomicInteger received = new AtomicInteger(-1);
+        final int n = 10000;
+
+        value.subscribe(received::set);
+        for (int i = 1; i <= n; i++) {
+            value.set(i); // Warm up
+            while (received.get() != i) {
+                // Spin without allocating until the subscriber is no longer queued
+            }
+        }
+        final long before = allocationMXBean.getThreadAllocatedBytes(threadId);
+        for (int i = n + 1; i <= 2 * n; i++) {
+            value.set(i);
+            while (received.get() != i) {
+                // Spin
+            }
+        }
+        final long perUpdate = (allocationMXBean.getThreadAllocatedBytes(threadId) - before) / n;
+
+        assertTrue("Allocated " + perUpdate + " bytes per update", perUpdate < 48);
+    }
+
+    /**
+     * Updates while a subscriber is already queued do not allocate. This is the reason to use primitive values
+     * instead of {@link ReactiveInteger}
+     */
+    @Test
+    public void testUpdatesDoNotAllocate() throws Exception {
+        final ThreadMXBean threadMXBean = ManagementFactory.getThreadMXBean();
+        if (!(threadMXBean instanceof com.sun.management.ThreadMXBean)) {
+            return; // Allocation can not be measured on this VM
+        }
+        final com.sun.management.ThreadMXBean allocationMXBean = (com.sun.management.ThreadMXBean) threadMXBean;
+        final long threadId = Thread.currentThread().getId();
+        final CountDownLatch blockSubscriberThread = new CountDownLatch(1);
+        final ReactiveIntValue value = new ReactiveIntValue("test", 0, threadType, null);
+
+        threadType.run(() -> {
+            try {
+                blockSubscriberThread.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        value.subscribe(i -> {
+        });
+        for (int i = 0; i < 10000; i++) {
+            value.incrementAndGet(); // Warm up
+        }
+        final long before = allocationMXBean.getThreadAllocatedBytes(threadId);
+        for (int i = 0; i < 100000; i++) {
+            value.incrementAndGet();
+        }
+        final long allocated = allocationMXBean.getThreadAllocatedBytes(threadId) - before;
+        blockSubscriberThread.countDown();
+
+        assertTrue("Allocated " + allocated + " bytes", allocated < 4096);
+    }
+}
@@ -0,0 +1,142 @@
+/*
+This file is part of Reactive Cascade which is released under The MIT License.
+See license.md , https://github.com/futurice/cascade and http://reactivecascade.com for details.
+This is open source for the common good. Please contribute improvements by pull request or contact paulirotta@gmail.com
+*/
+package com.reactivecascade.reactive;
+
+import com.reactivecascade.ThreadTypeTestCase;
+import com.reactivecascade.i.IThreadType;
+
+import org.junit.Test;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static junit.framework.Assert.assertEquals;
+import static junit.framework.Assert.assertSame;
+import static junit.framework.TestCase.assertTrue;
+
+public class ReactiveStateMachineTest extends ThreadTypeTestCase {
+    private static final int STOPPED = 0;
+    private static final int PLAYING = 1;
+    private static final int PAUSED = 2;
+    private static final int PLAY = 0;
+    private static final int PAUSE = 1;
+    private static final int STOP = 2;
+
+    private final IThreadType threadType = newThreadType("ReactiveStateMachineTest", Executors.newFixedThreadPool(4));
+
+    private ReactiveStateMachine.Builder player(StringBuilder log) {
+        return new ReactiveStateMachine.Builder("player", 3, 3)
+                .transition(STOPPED, PLAY, PLAYING)
+                .transition(PLAYING, PAUSE, PAUSED)
+                .transition(PAUSED, PLAY, PLAYING)
+                .transition(PLAYING, STOP, STOPPED)
+                .transition(PAUSED, STOP, STOPPED)
+                .onEnter(PLAYING, from -> log.append("+P").append(from))
+                .onExit(PLAYING, to -> log.append("-P").append(to))
+                .setThreadType(threadType);
+    }
+
+    @Test
+    public void testTransitionsAndActions() throws Exception {
+        final StringBuilder log = new StringBuilder();
+        final CountDownLatch stopped = new CountDownLatch(1);
+        final ReactiveStateMachine machine = player(log)
+                .onEnter(STOPPED, from -> stopped.countDown())
+                .build();
+
+        machine.send(PAUSE); // Ignored in STOPPED
+        machine.send(PLAY);
+        machine.send(PLAY); // Ignored in PLAYING
+        machine.send(PAUSE);
+        machine.send(PLAY);
+        machine.send(STOP);
+        assertTrue(stopped.await(5, TimeUnit.SECONDS));
+        assertEquals("+P0-P2+P2-P0", log.toString());
+        assertEquals(STOPPED, machine.getState());
+    }
+
+    @Test
+    public void testEventsAreProcessedInOrderOnAThreadPool() throws Exception {
+        final int[] transitions = new int[1];
+        final CountDownLatch stopped = new CountDownLatch(1);
+        final ReactiveStateMachine machine = player(new StringBuilder())
+                .onEnter(PAUSED, from -> transitions[0]++)
+                .onEnter(STOPPED, from -> stopped.countDown())
+                .build();
+
+        for (int i = 0; i < 10000; i++) {
+            machine.send(PLAY);
+            machine.send(PAUSE);
+        }
+        machine.send(STOP);
+        assertTrue(stopped.await(5, TimeUnit.SECONDS));
+        assertEquals(10000, transitions[0]);
+    }
+
+    @Test
+    public void testAsReactiveSource() throws Exception {
+        final ReactiveStateMachine machine = player(new StringBuilder()).build();
+        final CountDownLatch paused = new CountDownLatch(1);
+
+        assertSame(machine.asReactiveSource(), machine.asReactiveSource());
+        machine.asReactiveSource()
+                .subscribeMap(state -> state == PAUSED ? "paused" : "not paused")
+                .subscribe(s -> {
+                    if ("paused".equals(s)) {
+                        paused.countDown();
+                    }
+                });
+        machine.send(PLAY);
+        machine.send(PAUSE);
+        assertTrue(paused.await(5, TimeUnit.SECONDS));
+    }
+
+    /**
+     * An event sent to an idle machine allocates only the node of the executor's queue, not a
+     * {@link java.util.concurrent.FutureTask}
+     */
+    @Test
+    public void testSendDoesNotWrap() throws Exception {
+        final ThreadMXBean threadMXBean = ManagementFactory.getThreadMXBean();
+        if (!(threadMXBean instanceof com.sun.management.ThreadMXBean)) {
+            return; // Allocation can not be measured on this VM
+        }
+        final com.sun.management.ThreadMXBean allocationMXBean = (com.sun.management.ThreadMXBean) threadMXBean;
+        final long threadId = Thread.currentThread().getId();
+        final ReactiveStateMachine machine = player(new StringBuilder()).build();
+        final int n = 10000;
+
+        for (int i = 0; i < n; i++) {
+            sendAndWait(machine, PLAY, PLAYING); // Warm up
+            sendAndWait(machine, PAUSE, PAUSED);
+        }
+        final long before = allocationMXBean.getThreadAllocatedBytes(threadId);
+        for (int i = 0; i < n; i++) {
+            sendAndWait(machine, PLAY, PLAYING);
+            sendAndWait(machine, PAUSE, PAUSED);
+        }
+        final long perSend = (allocationMXBean.getThreadAllocatedBytes(threadId) - before) / (2 * n);
+
+        assertTrue("Allocated " + perSend + " bytes per send", perSend < 48);
+    }
+
+    private static void sendAndWait(ReactiveStateMachine machine,
+                                    int event,
+                                    int state) {
+        machine.send(event);
+        while (machine.getState() != state) {
+            // Spin without allocating until the machine is idle again
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testUnknownEvent() throws Exception {
+        player(new StringBuilder()).build().send(3);
+    }
+}
@@ -0,0 +1,88 @@
+/*
+This file is part of Reactive Cascade which is released under The MIT License.
+See license.md , https://github.com/futurice/cascade and http://reactivecascade.com for details.
+This is open source for the common good. Please contribute improvements by pull request or contact paulirotta@gmail.com
+*/
+package com.reactivecascade.reactive;
+
+import com.reactivecascade.ThreadTypeTestCase;
+import com.reactivecascade.i.IThreadType;
+
+import org.junit.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static junit.framework.Assert.assertEquals;
+import static junit.framework.TestCase.assertTrue;
+
+public class ReactiveValueTest extends ThreadTypeTestCase {
+    private final IThreadType threadType = newThreadType("ReactiveValueTest");
+
+    @Test
+    public void testTransactionFiresSharedTargetOnce() throws Exception {
+        final ReactiveValue<Integer> a = new ReactiveValue<>("a", threadType, null, null);
+        final ReactiveValue<Integer> b = new ReactiveValue<>("b", threadType, null, null);
+        final AtomicInteger sumCount = new AtomicInteger();
+        final AtomicInteger sum = new AtomicInteger();
+        final CountDownLatch fired = new CountDownLatch(1);
+        final Subscription<Integer, Integer> sumSubscription = new Subscription<>("sum", null, threadType, i -> {
+            sumCount.incrementAndGet();
+            sum.set(a.get() + b.get());
+            fired.countDown();
+            return sum.get();
+        }, null);
+
+        a.subscribe(sumSubscription);
+        b.subscribe(sumSubscription);
+        ReactiveValue.transaction(() -> {
+            a.set(1);
+            b.set(2);
+            assertEquals(Integer.valueOf(1), a.get());
+        });
+        assertTrue(fired.await(5, TimeUnit.SECONDS));
+        final CountDownLatch idle = new CountDownLatch(1);
+        threadType.execute(idle::countDown); // A second fire would already be queued
+        assertTrue(idle.await(5, TimeUnit.SECONDS));
+
+        assertEquals(1, sumCount.get());
+        assertEquals(3, sum.get());
+    }
+
+    @Test
+    public void testTransactionFiresOnThreadTypeOfValue() throws Exception {
+        final AtomicReference<Thread> firedOn = new AtomicReference<>();
+        final CountDownLatch fired = new CountDownLatch(1);
+        final ReactiveValue<Integer> value = new ReactiveValue<>("value", threadType, i -> {
+            firedOn.set(Thread.currentThread());
+            fired.countDown();
+            return i;
+        }, null);
+
+        ReactiveValue.transaction(() -> value.set(1));
+
+        assertTrue(fired.await(5, TimeUnit.SECONDS));
+        assertTrue(firedOn.get() != Thread.currentThread());
+    }
+
+    @Test
+    public void testFailedTransactionIsDiscarded() throws Exception {
+        final ReactiveValue<String> value = new ReactiveValue<>("value", threadType, null, null);
+
+        value.set("before");
+        try {
+            ReactiveValue.transaction(() -> {
+                value.set("during");
+                throw new IllegalStateException("Rollback");
+            });
+        } catch (IllegalStateException e) {
+            // Expected
+        }
+
+        assertEquals("before", value.get());
+        value.set("after");
+        assertEquals("after", value.get());
+    }
+}
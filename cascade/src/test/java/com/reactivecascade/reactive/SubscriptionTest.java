@@ -0,0 +1,229 @@
+/*
+This file is part of Reactive Cascade which is released under The MIT License.
+See license.md , https://github.com/futurice/cascade and http://reactivecascade.com for details.
+This is open source for the common good. Please contribute improvements by pull request or contact paulirotta@gmail.com
+*/
+package com.reactivecascade.reactive;
+
+import android.util.Log;
+
+import com.reactivecascade.ThreadTypeTestCase;
+import com.reactivecascade.i.IThreadType;
+import com.reactivecascade.util.BindingContextUtil;
+import com.reactivecascade.util.RCLog;
+
+import org.junit.Test;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static junit.framework.Assert.assertEquals;
+import static junit.framework.TestCase.assertTrue;
+
+public class SubscriptionTest extends ThreadTypeTestCase {
+    private final IThreadType threadType = newThreadType("SubscriptionTest");
+
+    @Test
+    public void testFireEveryValueInOrder() throws Exception {
+        final int count = 10000;
+        final List<Integer> received = new ArrayList<>();
+        final CountDownLatch done = new CountDownLatch(1);
+        final Subscription<Integer, Integer> subscription = new Subscription<Integer, Integer>("test", null, threadType, i -> i, null)
+                .setFireEveryValue(64);
+
+        subscription.subscribe(i -> {
+            received.add(i);
+            if (i == count - 1) {
+                done.countDown();
+            }
+        });
+        for (int i = 0; i < count; i++) {
+            subscription.fire(i);
+        }
+
+        assertTrue(done.await(5, TimeUnit.SECONDS));
+        assertEquals(count, received.size());
+        for (int i = 0; i < count; i++) {
+            assertEquals(Integer.valueOf(i), received.get(i));
+        }
+    }
+
+    @Test
+    public void testEndFireEveryValueFiresLatestQueued() throws Exception {
+        final List<Integer> received = new ArrayList<>();
+        final CountDownLatch release = new CountDownLatch(1);
+        final CountDownLatch done = new CountDownLatch(1);
+        final Subscription<Integer, Integer> subscription = new Subscription<Integer, Integer>("test", null, threadType, i -> i, null)
+                .setFireEveryValue(64);
+
+        subscription.subscribe(i -> {
+            received.add(i);
+            if (i == 3) {
+                done.countDown();
+            }
+        });
+        threadType.execute(release::await);
+        for (int i = 1; i <= 3; i++) {
+            subscription.fire(i); // Queued behind the blocked thread
+        }
+        subscription.setFireEveryValue(0);
+        release.countDown();
+
+        assertTrue(done.await(5, TimeUnit.SECONDS));
+        assertEquals(1, received.size()); // 1 and 2 would have been received before 3
+        assertEquals(Integer.valueOf(3), received.get(0));
+    }
+
+    /**
+     * A fire to a subscription which is already queued only replaces the pending value. With verbose
+     * logging disabled the guarded log line costs one branch, so this allocates nothing, the same as
+     * if the log line were removed. With logging enabled the cost is logged for comparison.
+     */
+    @Test
+    public void testFireWithLoggingDisabledDoesNotAllocate() throws Exception {
+        final ThreadMXBean threadMXBean = ManagementFactory.getThreadMXBean();
+        if (!(threadMXBean instanceof com.sun.management.ThreadMXBean)) {
+            return; // Allocation can not be measured on this VM
+        }
+        final com.sun.management.ThreadMXBean allocationMXBean = (com.sun.management.ThreadMXBean) threadMXBean;
+        final long threadId = Thread.currentThread().getId();
+        final Subscription<Integer, Integer> subscription = new Subscription<>("test", null, threadType, i -> i, null);
+        final Integer value = 1; // Cached, so boxing does not allocate
+        final CountDownLatch release = new CountDownLatch(1);
+        final int n = 100000;
+
+        threadType.execute(release::await);
+        try {
+            for (int i = 0; i < n; i++) {
+                subscription.fire(value); // Warm up. The first fire queues, the rest replace the pending value
+            }
+            final long before = allocationMXBean.getThreadAllocatedBytes(threadId);
+            for (int i = 0; i < n; i++) {
+                subscription.fire(value);
+            }
+            final long perFire = (allocationMXBean.getThreadAllocatedBytes(threadId) - before) / n;
+
+            if (RCLog.isLoggable(Log.VERBOSE)) {
+                RCLog.i(this, "Verbose logging enabled: " + perFire + " bytes per queued fire");
+            } else {
+                assertTrue("Allocated " + perFire + " bytes per fire", perFire < 8);
+            }
+        } finally {
+            release.countDown();
+        }
+    }
+
+    @Test
+    public void testThrottleFirst() throws Exception {
+        final List<Integer> received = new CopyOnWriteArrayList<>(); // Filled on the thread type
+        final Subscription<Integer, Integer> subscription = new RateLimitedSubscription<>("test", null, threadType, RateLimitedSubscription.THROTTLE_FIRST, 10000, null);
+
+        subscription.subscribe(received::add);
+        for (int i = 0; i < 100; i++) {
+            subscription.fire(i);
+        }
+        awaitQueued(threadType, 3); // Fire, then the subscriber, then any value which was wrongly let through
+
+        assertEquals(1, received.size());
+        assertEquals(Integer.valueOf(0), received.get(0));
+    }
+
+    @Test
+    public void testDebounce() throws Exception {
+        final List<Integer> received = new CopyOnWriteArrayList<>(); // Filled on the thread type
+        final CountDownLatch done = new CountDownLatch(1);
+        final Subscription<Integer, Integer> subscription = new Subscription<>("test", null, threadType, i -> i, null);
+
+        subscription.debounce(50)
+                .subscribe(i -> {
+                    received.add(i);
+                    if (i == 9) {
+                        done.countDown(); // Any value fired before the last is already in the list
+                    }
+                });
+        for (int i = 0; i < 10; i++) {
+            subscription.fire(i);
+        }
+
+        assertTrue(done.await(5, TimeUnit.SECONDS));
+        assertEquals(1, received.size());
+        assertEquals(Integer.valueOf(9), received.get(0));
+    }
+
+    @Test
+    public void testDistinctUntilChanged() throws Exception {
+        final List<String> received = new ArrayList<>();
+        final CountDownLatch done = new CountDownLatch(1);
+        final Subscription<Integer, Integer> subscription = new Subscription<Integer, Integer>("test", null, threadType, i -> i, null)
+                .setFireEveryValue(64);
+
+        subscription.subscribeMap(i -> i < 0 ? "negative" : "positive")
+                .distinctUntilChanged()
+                .subscribe(s -> {
+                    received.add(s);
+                    if (received.size() == 3) {
+                        done.countDown();
+                    }
+                });
+        for (int i : new int[]{1, 2, 3, -1, -2, 4, 5}) {
+            subscription.fire(i);
+        }
+
+        assertTrue(done.await(5, TimeUnit.SECONDS));
+        awaitQueued(threadType, 4);
+        assertEquals(3, received.size());
+        assertEquals("negative", received.get(1));
+    }
+
+    @Test
+    public void testBindingContext() throws Exception {
+        final List<Integer> received = new ArrayList<>();
+        final BindingContextUtil.DefaultBindingContext<String> bindingContext = new BindingContextUtil.DefaultBindingContext<>();
+        final Subscription<Integer, Integer> subscription = new Subscription<>("test", null, threadType, i -> i, null);
+
+        subscription.subscribe(bindingContext, received::add);
+        subscription.fire(1);
+        awaitQueued(threadType, 2);
+        assertEquals(0, received.size()); // Not yet open
+
+        bindingContext.openBindingContext("screen");
+        awaitQueued(threadType, 2);
+        assertEquals(Integer.valueOf(1), received.get(received.size() - 1));
+
+        bindingContext.pauseBindingContext("screen");
+        subscription.fire(2);
+        awaitQueued(threadType, 2);
+        assertEquals(1, received.size());
+
+        bindingContext.resumeBindingContext("screen");
+        awaitQueued(threadType, 2);
+        assertEquals(2, received.size());
+        assertEquals(Integer.valueOf(2), received.get(1));
+
+        bindingContext.closeBindingContext("screen");
+        subscription.fire(3);
+        awaitQueued(threadType, 2);
+        assertEquals(2, received.size());
+        assertTrue(subscription.reactiveTargets.isEmpty());
+        assertEquals(0, bindingContext.getActionCount());
+    }
+
+    @Test
+    public void testBindToClosedContextDetaches() throws Exception {
+        final BindingContextUtil.DefaultBindingContext<String> bindingContext = new BindingContextUtil.DefaultBindingContext<>();
+        final Subscription<Integer, Integer> subscription = new Subscription<>("test", null, threadType, i -> i, null);
+
+        bindingContext.openBindingContext("screen");
+        bindingContext.closeBindingContext("screen");
+        subscription.subscribe(bindingContext, i -> {
+        });
+
+        assertTrue(subscription.reactiveTargets.isEmpty());
+        assertEquals(0, bindingContext.getActionCount());
+    }
+}
@@ -0,0 +1,83 @@
+/*
+This file is part of Reactive Cascade which is released under The MIT License.
+See license.md , https://github.com/futurice/cascade and http://reactivecascade.com for details.
+This is open source for the common good. Please contribute improvements by pull request or contact paulirotta@gmail.com
+*/
+package com.reactivecascade.util;
+
+import com.reactivecascade.ThreadTypeTestCase;
+import com.reactivecascade.functional.RunnableAltFuture;
+import com.reactivecascade.functional.SettableAltFuture;
+import com.reactivecascade.i.IAltFuture;
+import com.reactivecascade.i.IThreadType;
+
+import org.junit.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static junit.framework.Assert.assertEquals;
+import static junit.framework.Assert.assertFalse;
+import static junit.framework.TestCase.assertTrue;
+
+public class BindingContextUtilTest extends ThreadTypeTestCase {
+    private final IThreadType threadType = newThreadType("BindingContextUtilTest");
+
+    @Test
+    public void testCloseCancelsTrackedAltFutures() throws Exception {
+        final BindingContextUtil.AltFutureBindingContext<String> bindingContext = new BindingContextUtil.AltFutureBindingContext<>();
+        final AtomicReference<SettableAltFuture<String>> tracked = new AtomicReference<>();
+        final SettableAltFuture<String> untracked = new SettableAltFuture<>(threadType);
+
+        bindingContext.openBindingContext("screen");
+        bindingContext.runTracked(() -> tracked.set(new SettableAltFuture<>(threadType)));
+        assertEquals(1, bindingContext.getTrackedCount());
+        bindingContext.closeBindingContext("screen");
+
+        assertTrue(tracked.get().isCancelled());
+        assertFalse(untracked.isCancelled());
+    }
+
+    @Test
+    public void testCloseSignalsRunningAltFuture() throws Exception {
+        final BindingContextUtil.AltFutureBindingContext<String> bindingContext = new BindingContextUtil.AltFutureBindingContext<>();
+        final CountDownLatch started = new CountDownLatch(1);
+        final CountDownLatch closed = new CountDownLatch(1);
+        final AtomicBoolean ran = new AtomicBoolean(false);
+        final AtomicReference<IAltFuture<?, ?>> running = new AtomicReference<>();
+        final AtomicReference<RunnableAltFuture<?, ?>> next = new AtomicReference<>();
+
+        bindingContext.openBindingContext("screen");
+        bindingContext.runTracked(() -> {
+            running.set(threadType.then(() -> {
+                started.countDown();
+                closed.await();
+            }));
+            next.set(new RunnableAltFuture<Object, Object>(threadType, () -> ran.set(true)));
+        });
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+        bindingContext.closeBindingContext("screen");
+        closed.countDown();
+        next.get().run(); // As if the thread type started it after close
+        awaitQueued(threadType, 1); // After the running task
+
+        assertTrue(running.get().isCancelled());
+        assertTrue(next.get().isCancelled());
+        assertFalse(ran.get());
+    }
+
+    @Test
+    public void testReopenedContextTracksAgain() throws Exception {
+        final BindingContextUtil.AltFutureBindingContext<String> bindingContext = new BindingContextUtil.AltFutureBindingContext<>();
+
+        bindingContext.openBindingContext("screen");
+        bindingContext.closeBindingContext("screen");
+        assertTrue(bindingContext.track(new SettableAltFuture<>(threadType)).isCancelled());
+
+        bindingContext.openBindingContext("screen");
+        assertFalse(bindingContext.track(new SettableAltFuture<>(threadType)).isCancelled());
+        assertEquals(1, bindingContext.getTrackedCount());
+    }
+}
@@ -0,0 +1,54 @@
+/*
+This file is part of Reactive Cascade which is released under The MIT License.
+See license.md , https://github.com/futurice/cascade and http://reactivecascade.com for details.
+This is open source for the common good. Please contribute improvements by pull request or contact paulirotta@gmail.com
+*/
+package com.reactivecascade.util;
+
+import com.reactivecascade.ThreadTypeTestCase;
+import com.reactivecascade.i.IAltFuture;
+import com.reactivecascade.i.ICancellationToken;
+import com.reactivecascade.i.IThreadType;
+
+import org.junit.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static junit.framework.Assert.assertFalse;
+import static junit.framework.Assert.assertSame;
+import static junit.framework.TestCase.assertTrue;
+
+public class CancellationUtilTest extends ThreadTypeTestCase {
+    private final IThreadType threadType = newThreadType("CancellationUtilTest");
+
+    @Test
+    public void testNoneOutsideChainStep() {
+        assertSame(CancellationUtil.NONE, CancellationUtil.current());
+        assertFalse(CancellationUtil.current().isCancelled());
+    }
+
+    @Test
+    public void testCancelReachesRunningStep() throws Exception {
+        final CountDownLatch started = new CountDownLatch(1);
+        final CountDownLatch stopped = new CountDownLatch(1);
+        final AtomicBoolean aborted = new AtomicBoolean(false);
+
+        final IAltFuture<?, ?> altFuture = threadType.then(() -> {
+            final ICancellationToken token = CancellationUtil.current();
+
+            token.addOnCancel(() -> aborted.set(true));
+            started.countDown();
+            while (!token.isCancelled()) {
+                Thread.yield();
+            }
+            stopped.countDown();
+        });
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+        assertTrue(altFuture.cancel("test"));
+
+        assertTrue(stopped.await(5, TimeUnit.SECONDS));
+        assertTrue(aborted.get());
+    }
+}
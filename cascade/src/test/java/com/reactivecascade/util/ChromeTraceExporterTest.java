@@ -0,0 +1,89 @@
+/*
+This file is part of Reactive Cascade which is released under The MIT License.
+See license.md , https://github.com/futurice/cascade and http://reactivecascade.com for details.
+This is open source for the common good. Please contribute improvements by pull request or contact paulirotta@gmail.com
+*/
+package com.reactivecascade.util;
+
+import com.reactivecascade.i.ITracer;
+
+import org.junit.After;
+import org.junit.Test;
+
+import java.io.StringWriter;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import static junit.framework.Assert.assertEquals;
+import static junit.framework.TestCase.assertTrue;
+
+public class ChromeTraceExporterTest {
+    private final ExecutorService executorService = Executors.newSingleThreadExecutor();
+    private final DefaultThreadType threadType = new DefaultThreadType("ChromeTraceExporterTest", executorService, null);
+
+    @After
+    public void tearDown() {
+        executorService.shutdownNow();
+    }
+
+    private static int count(String s, String pattern) {
+        int n = 0;
+        for (int i = s.indexOf(pattern); i >= 0; i = s.indexOf(pattern, i + 1)) {
+            n++;
+        }
+
+        return n;
+    }
+
+    private String write(ChromeTraceExporter exporter) throws Exception {
+        final StringWriter writer = new StringWriter();
+        exporter.write(writer);
+
+        return writer.toString();
+    }
+
+    @Test
+    public void testSlicesAndInstants() throws Exception {
+        final ChromeTraceExporter exporter = new ChromeTraceExporter();
+
+        exporter.trace(ITracer.FORK, "step", threadType, 1);
+        exporter.trace(ITracer.ENQUEUE, "step", threadType, 1);
+        exporter.trace(ITracer.START, "step", threadType, 1);
+        exporter.trace(ITracer.START, "nested", threadType, 1);
+        exporter.trace(ITracer.END, "nested", threadType, 1);
+        exporter.trace(ITracer.END, "step", threadType, 1);
+        final String json = write(exporter);
+
+        assertTrue(json.startsWith("{\"traceEvents\":["));
+        assertEquals(2, count(json, "\"ph\":\"B\""));
+        assertEquals(2, count(json, "\"ph\":\"E\""));
+        assertEquals(2, count(json, "\"ph\":\"i\""));
+        assertEquals(1, count(json, "\"ph\":\"M\""));
+        assertEquals(0, count(write(exporter), "\"ph\":\"B\"")); // Cleared by the previous write
+    }
+
+    @Test
+    public void testUnmatchedEventsAreInstants() throws Exception {
+        final ChromeTraceExporter exporter = new ChromeTraceExporter(4);
+
+        exporter.trace(ITracer.END, "endOfEarlierWrite", threadType, 1);
+        exporter.trace(ITracer.START, "a", threadType, 1);
+        exporter.trace(ITracer.END, "a", threadType, 1);
+        exporter.trace(ITracer.START, "b", threadType, 1);
+        exporter.trace(ITracer.END, "b", threadType, 1); // Dropped, buffer full
+        final String json = write(exporter);
+
+        assertEquals(1, exporter.getDroppedCount());
+        assertEquals(1, count(json, "\"ph\":\"B\""));
+        assertEquals(1, count(json, "\"ph\":\"E\""));
+        assertEquals(2, count(json, "\"ph\":\"i\""));
+    }
+
+    @Test
+    public void testTraceUtilWithoutTracer() throws Exception {
+        assertEquals(0, TraceUtil.newChainId());
+        TraceUtil.trace(ITracer.FORK, this, threadType, 0); // No tracer set, nothing happens
+        assertEquals("ChromeTraceExporterTest", TraceUtil.getName(threadType));
+        assertEquals("String", TraceUtil.getName("x"));
+    }
+}
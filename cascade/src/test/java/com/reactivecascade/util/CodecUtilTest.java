@@ -0,0 +1,104 @@
+/*
+This file is part of Reactive Cascade which is released under The MIT License.
+See license.md , https://github.com/futurice/cascade and http://reactivecascade.com for details.
+This is open source for the common good. Please contribute improvements by pull request or contact paulirotta@gmail.com
+*/
+package com.reactivecascade.util;
+
+import android.support.annotation.NonNull;
+
+import com.reactivecascade.i.ICodec;
+
+import org.junit.Test;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+
+import static junit.framework.Assert.assertEquals;
+import static junit.framework.TestCase.assertTrue;
+import static org.junit.Assert.assertArrayEquals;
+
+public class CodecUtilTest {
+    @Test
+    public void testPrimitiveRoundTrip() throws Exception {
+        assertEquals("héllo", CodecUtil.decode(String.class, CodecUtil.encode("héllo")));
+        assertEquals(Integer.valueOf(Integer.MIN_VALUE), CodecUtil.decode(Integer.class, CodecUtil.encode(Integer.MIN_VALUE)));
+        assertEquals(Long.valueOf(Long.MAX_VALUE), CodecUtil.decode(Long.class, CodecUtil.encode(Long.MAX_VALUE)));
+        assertEquals(Boolean.TRUE, CodecUtil.decode(Boolean.class, CodecUtil.encode(true)));
+        assertEquals(Float.valueOf(1.5f), CodecUtil.decode(Float.class, CodecUtil.encode(1.5f)));
+    }
+
+    @Test
+    public void testArrayRoundTrip() throws Exception {
+        final long[] longs = {0, -1, 1, Long.MIN_VALUE, Long.MAX_VALUE, 300};
+        final int[] ints = {0, -1, 1, Integer.MIN_VALUE, Integer.MAX_VALUE, -300};
+        final boolean[] bools = {true, false, true, true, false, false, false, false, true};
+        final float[] floats = {0f, -1.25f, Float.NaN, Float.MAX_VALUE};
+        final String[] strings = {"a,b", "", "c\nd"};
+        final byte[] bytes = {0, -1, 1, Byte.MIN_VALUE, Byte.MAX_VALUE};
+
+        assertArrayEquals(longs, CodecUtil.decode(long[].class, CodecUtil.encode(longs)));
+        assertArrayEquals(ints, CodecUtil.decode(int[].class, CodecUtil.encode(ints)));
+        assertTrue(Arrays.equals(bools, CodecUtil.decode(boolean[].class, CodecUtil.encode(bools))));
+        assertTrue(Arrays.equals(floats, CodecUtil.decode(float[].class, CodecUtil.encode(floats))));
+        assertArrayEquals(strings, CodecUtil.decode(String[].class, CodecUtil.encode(strings)));
+        assertArrayEquals(bytes, CodecUtil.decode(byte[].class, CodecUtil.encode(bytes)));
+    }
+
+    @Test
+    public void testSmallValuesAreCompact() throws Exception {
+        final long[] longs = new long[10000];
+
+        for (int i = 0; i < longs.length; i++) {
+            longs[i] = (i % 100) - 50;
+        }
+        assertEquals(2 + longs.length, CodecUtil.encode(longs).length);
+        assertEquals(1, CodecUtil.encode(-1).length);
+    }
+
+    @Test
+    public void testSerializableFallback() throws Exception {
+        final ArrayList<String> list = new ArrayList<>(Arrays.asList("x", "y"));
+
+        assertEquals(list, CodecUtil.decode(ArrayList.class, CodecUtil.encode(list)));
+    }
+
+    @Test
+    public void testRegisteredCodec() throws Exception {
+        CodecUtil.register(Point.class, new ICodec<Point>() {
+            @Override // ICodec
+            public void encode(@NonNull Point value, @NonNull DataOutput out) throws IOException {
+                CodecUtil.writeVarInt(value.x, out);
+                CodecUtil.writeVarInt(value.y, out);
+            }
+
+            @NonNull
+            @Override // ICodec
+            public Point decode(@NonNull DataInput in) throws IOException {
+                return new Point(CodecUtil.readVarInt(in), CodecUtil.readVarInt(in));
+            }
+        });
+        final Point point = CodecUtil.decode(Point.class, CodecUtil.encode(new Point(3, -4)));
+
+        assertEquals(3, point.x);
+        assertEquals(-4, point.y);
+    }
+
+    @Test(expected = UnsupportedOperationException.class)
+    public void testUnsupportedClass() throws Exception {
+        CodecUtil.encode(new Object());
+    }
+
+    private static final class Point {
+        final int x;
+        final int y;
+
+        Point(int x, int y) {
+            this.x = x;
+            this.y = y;
+        }
+    }
+}
@@ -0,0 +1,69 @@
+/*
+This file is part of Reactive Cascade which is released under The MIT License.
+See license.md , https://github.com/futurice/cascade and http://reactivecascade.com for details.
+This is open source for the common good. Please contribute improvements by pull request or contact paulirotta@gmail.com
+*/
+package com.reactivecascade.util;
+
+import org.junit.Test;
+
+import java.util.Iterator;
+import java.util.concurrent.CountDownLatch;
+
+import static junit.framework.Assert.assertEquals;
+import static junit.framework.Assert.assertFalse;
+import static junit.framework.TestCase.assertTrue;
+
+public class FanOutTest {
+    @Test
+    public void testPromoteAndDemote() throws Exception {
+        FanOut<String> fanOut = new FanOut<>();
+
+        assertTrue(fanOut.isEmpty());
+        assertTrue(fanOut.add("a"));
+        assertFalse(fanOut.add("a"));
+        assertEquals(1, fanOut.size());
+        assertTrue(fanOut.add("b"));
+        assertTrue(fanOut.add("c"));
+        assertEquals(3, fanOut.size());
+        assertTrue(fanOut.remove("b"));
+        assertFalse(fanOut.contains("b"));
+        assertTrue(fanOut.remove("a"));
+        assertEquals(1, fanOut.size());
+        assertTrue(fanOut.contains("c"));
+        assertTrue(fanOut.remove("c"));
+        assertTrue(fanOut.isEmpty());
+    }
+
+    @Test
+    public void testIterationIsSnapshot() throws Exception {
+        FanOut<String> fanOut = new FanOut<>();
+
+        fanOut.add("a");
+        Iterator<String> iterator = fanOut.iterator();
+        fanOut.add("b");
+        assertEquals("a", iterator.next());
+        assertFalse(iterator.hasNext());
+    }
+
+    @Test
+    public void testConcurrentAdd() throws Exception {
+        final int threads = 4;
+        final int perThread = 500;
+        final FanOut<Integer> fanOut = new FanOut<>();
+        final CountDownLatch done = new CountDownLatch(threads);
+
+        for (int t = 0; t < threads; t++) {
+            final int base = t * perThread;
+            new Thread(() -> {
+                for (int i = 0; i < perThread; i++) {
+                    fanOut.add(base + i);
+                }
+                done.countDown();
+            }).start();
+        }
+        done.await();
+
+        assertEquals(threads * perThread, fanOut.size());
+    }
+}
@@ -0,0 +1,65 @@
+/*
+This file is part of Reactive Cascade which is released under The MIT License.
+See license.md , https://github.com/futurice/cascade and http://reactivecascade.com for details.
+This is open source for the common good. Please contribute improvements by pull request or contact paulirotta@gmail.com
+*/
+package com.reactivecascade.util;
+
+import org.junit.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static junit.framework.Assert.assertEquals;
+import static junit.framework.TestCase.assertTrue;
+
+public class LazyExecutorServiceTest {
+    private final AtomicInteger created = new AtomicInteger();
+
+    private LazyExecutorService newExecutor(int threads) {
+        return new LazyExecutorService("test", () -> {
+            created.incrementAndGet();
+            return new ThreadPoolExecutor(threads, threads, 1000, TimeUnit.MILLISECONDS, new LinkedBlockingQueue<>());
+        });
+    }
+
+    @Test
+    public void testCreatedOnFirstTask() throws Exception {
+        final LazyExecutorService executor = newExecutor(1);
+        final CountDownLatch ran = new CountDownLatch(2);
+
+        assertEquals(0, created.get());
+        assertTrue(!executor.isStarted());
+        executor.execute(ran::countDown);
+        executor.submit(ran::countDown);
+        assertTrue(ran.await(5, TimeUnit.SECONDS));
+        assertEquals(1, created.get());
+        executor.shutdown();
+        assertTrue(executor.awaitTermination(5, TimeUnit.SECONDS));
+    }
+
+    @Test
+    public void testPrestartStartsCoreThreads() throws Exception {
+        final LazyExecutorService executor = newExecutor(3);
+
+        assertEquals(3, executor.prestart());
+        assertEquals(0, executor.prestart());
+        assertEquals(1, created.get());
+        executor.shutdown();
+    }
+
+    @Test(expected = RejectedExecutionException.class)
+    public void testShutdownBeforeStartIsNotCreated() throws Exception {
+        final LazyExecutorService executor = newExecutor(1);
+
+        executor.shutdown();
+        assertTrue(executor.isTerminated());
+        assertEquals(0, created.get());
+        executor.execute(() -> {
+        });
+    }
+}
@@ -0,0 +1,208 @@
+/*
+This file is part of Reactive Cascade which is released under The MIT License.
+See license.md , https://github.com/futurice/cascade and http://reactivecascade.com for details.
+This is open source for the common good. Please contribute improvements by pull request or contact paulirotta@gmail.com
+*/
+package com.reactivecascade.util;
+
+import com.reactivecascade.ThreadTypeTestCase;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.util.HashMap;
+import java.util.Map;
+
+import static junit.framework.Assert.assertEquals;
+import static junit.framework.Assert.fail;
+import static junit.framework.TestCase.assertTrue;
+import static org.junit.Assert.assertArrayEquals;
+
+public class LogStructuredStoreTest extends ThreadTypeTestCase {
+    private final DefaultThreadType threadType = newThreadType("LogStructuredStoreTest");
+    private File file;
+
+    @Before
+    public void setUp() throws Exception {
+        file = File.createTempFile("LogStructuredStoreTest", ".kv");
+        assertTrue(file.delete());
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        shutdownThreadTypes(); // Before the files are deleted
+        file.delete();
+        new File(file.getPath() + ".tmp").delete();
+    }
+
+    private LogStructuredStore newStore(long minCompactBytes) {
+        return new LogStructuredStore(file, threadType, minCompactBytes);
+    }
+
+    @Test
+    public void testReadDefault() throws Exception {
+        LogStructuredStore store = newStore(LogStructuredStore.MIN_COMPACT_BYTES);
+
+        assertEquals("default", store.read("a", "default"));
+        assertEquals(Integer.valueOf(7), store.read("b", 7));
+    }
+
+    @Test
+    public void testWriteReopenRead() throws Exception {
+        LogStructuredStore store = newStore(LogStructuredStore.MIN_COMPACT_BYTES);
+
+        store.write("s", "hello");
+        store.write("i", 42);
+        store.write("i", 43);
+        store.write("l", new long[]{1, -2, Long.MAX_VALUE});
+        store.write("ss", new String[]{"a,b", "c\nd"});
+        store.close();
+
+        store = newStore(LogStructuredStore.MIN_COMPACT_BYTES);
+        assertEquals("hello", store.read("s", ""));
+        assertEquals(Integer.valueOf(43), store.read("i", 0));
+        assertArrayEquals(new long[]{1, -2, Long.MAX_VALUE}, store.read("l", new long[0]));
+        assertArrayEquals(new String[]{"a,b", "c\nd"}, store.read("ss", new String[0]));
+    }
+
+    @Test
+    public void testBatchWrite() throws Exception {
+        LogStructuredStore store = newStore(LogStructuredStore.MIN_COMPACT_BYTES);
+        Map<String, Object> batch = new HashMap<>();
+
+        batch.put("a", 1);
+        batch.put("b", "two");
+        batch.put("c", new int[]{3, 3, 3});
+        store.write(batch);
+        store.close();
+
+        store = newStore(LogStructuredStore.MIN_COMPACT_BYTES);
+        assertEquals(Integer.valueOf(1), store.read("a", 0));
+        assertEquals("two", store.read("b", ""));
+        assertArrayEquals(new int[]{3, 3, 3}, store.read("c", new int[0]));
+    }
+
+    @Test
+    public void testTornRecordIsTruncated() throws Exception {
+        LogStructuredStore store = newStore(LogStructuredStore.MIN_COMPACT_BYTES);
+
+        store.write("a", 1);
+        store.write("b", 2);
+        store.close();
+        final long goodLength = file.length();
+        final FileOutputStream fileOutputStream = new FileOutputStream(file, true);
+        fileOutputStream.write(new byte[]{0, 0, 0, 20, 1, 2, 3});
+        fileOutputStream.close();
+
+        store = newStore(LogStructuredStore.MIN_COMPACT_BYTES);
+        assertEquals(Integer.valueOf(2), store.read("b", 0));
+        assertEquals(goodLength, file.length());
+        store.write("c", 3);
+        store.close();
+
+        store = newStore(LogStructuredStore.MIN_COMPACT_BYTES);
+        assertEquals(Integer.valueOf(3), store.read("c", 0));
+    }
+
+    @Test
+    public void testCorruptRecordEndsReplay() throws Exception {
+        LogStructuredStore store = newStore(LogStructuredStore.MIN_COMPACT_BYTES);
+
+        store.write("a", 1);
+        final long firstLength = file.length();
+        store.write("b", 2);
+        store.close();
+        final RandomAccessFile randomAccessFile = new RandomAccessFile(file, "rw");
+        randomAccessFile.seek(file.length() - 5);
+        randomAccessFile.write(99);
+        randomAccessFile.close();
+
+        store = newStore(LogStructuredStore.MIN_COMPACT_BYTES);
+        assertEquals(Integer.valueOf(1), store.read("a", 0));
+        assertEquals(Integer.valueOf(0), store.read("b", 0));
+        assertEquals(firstLength, file.length());
+    }
+
+    @Test
+    public void testCompaction() throws Exception {
+        LogStructuredStore store = newStore(1024);
+
+        for (int i = 0; i < 1000; i++) {
+            store.write("counter", i);
+            store.write("name", "n" + i);
+        }
+        assertTrue(store.getFileBytes() < 2048);
+        store.close();
+
+        store = newStore(1024);
+        assertEquals(Integer.valueOf(999), store.read("counter", 0));
+        assertEquals("n999", store.read("name", ""));
+    }
+
+    @Test
+    public void testFailedCompactionDoesNotFailWrite() throws Exception {
+        final int[] compactions = {0};
+        LogStructuredStore store = new LogStructuredStore(file, threadType, 1024) {
+            @Override
+            public void compact() throws IOException {
+                compactions[0]++;
+                throw new IOException("Injected failure");
+            }
+        };
+
+        for (int i = 0; i < 1000; i++) {
+            store.write("counter", i);
+        }
+        assertTrue(compactions[0] > 0);
+        assertTrue(compactions[0] < 10); // Not retried on every write
+        store.close();
+
+        store = newStore(LogStructuredStore.MIN_COMPACT_BYTES);
+        assertEquals(Integer.valueOf(999), store.read("counter", 0));
+    }
+
+    @Test
+    public void testFailedWriteDoesNotHideLaterWrites() throws Exception {
+        final boolean[] failNextWrite = {false};
+        LogStructuredStore store = new LogStructuredStore(file, threadType, LogStructuredStore.MIN_COMPACT_BYTES) {
+            @Override
+            OutputStream openOutputStream(FileOutputStream fileOutputStream) {
+                return new FilterOutputStream(fileOutputStream) {
+                    @Override
+                    public void write(byte[] b, int off, int len) throws IOException {
+                        if (failNextWrite[0]) {
+                            failNextWrite[0] = false;
+                            out.write(b, off, len / 2); // A torn record reaches the file
+                            throw new IOException("Injected failure");
+                        }
+                        out.write(b, off, len);
+                    }
+                };
+            }
+        };
+
+        store.write("a", 1);
+        failNextWrite[0] = true;
+        try {
+            store.write("b", 2);
+            fail("The injected failure should be thrown");
+        } catch (IOException e) {
+            // Expected
+        }
+        store.write("c", 3);
+        store.write("b", 4);
+        store.close();
+
+        store = newStore(LogStructuredStore.MIN_COMPACT_BYTES);
+        assertEquals(Integer.valueOf(1), store.read("a", 0));
+        assertEquals(Integer.valueOf(3), store.read("c", 0));
+        assertEquals(Integer.valueOf(4), store.read("b", 0));
+    }
+}
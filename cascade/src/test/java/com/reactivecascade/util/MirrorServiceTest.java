@@ -0,0 +1,171 @@
+/*
+This file is part of Reactive Cascade which is released under The MIT License.
+See license.md , https://github.com/futurice/cascade and http://reactivecascade.com for details.
+This is open source for the common good. Please contribute improvements by pull request or contact paulirotta@gmail.com
+*/
+package com.reactivecascade.util;
+
+import android.support.annotation.NonNull;
+
+import com.reactivecascade.ThreadTypeTestCase;
+import com.reactivecascade.i.IMirror;
+import com.reactivecascade.i.IThreadType;
+
+import org.junit.Test;
+
+import java.io.File;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static junit.framework.Assert.assertEquals;
+import static junit.framework.TestCase.assertTrue;
+
+public class MirrorServiceTest extends ThreadTypeTestCase {
+    private final IThreadType threadType = newThreadType("MirrorServiceTest");
+    private final IThreadType storeThreadType = newThreadType("MirrorServiceTestStore");
+
+    private final class MapMirror implements IMirror<String, Integer> {
+        final HashMap<String, Integer> values = new HashMap<>();
+        long sequence = 0;
+        int changesWritten = 0;
+        int clears = 0;
+
+        @NonNull
+        @Override // INamed
+        public String getName() {
+            return "MapMirror";
+        }
+
+        @NonNull
+        @Override // IMirror
+        public IThreadType getWriteThreadType() {
+            return threadType;
+        }
+
+        @Override // IMirror
+        public long getSequence() {
+            return sequence;
+        }
+
+        @Override // IMirror
+        public void write(@NonNull Map<String, Integer> puts,
+                          @NonNull List<String> deletes,
+                          long sequence) {
+            values.putAll(puts);
+            for (String key : deletes) {
+                values.remove(key);
+            }
+            changesWritten += puts.size() + deletes.size();
+            this.sequence = sequence;
+        }
+
+        @Override // IMirror
+        public void clear() {
+            values.clear();
+            sequence = 0;
+            clears++;
+        }
+    }
+
+    private void drain() throws Exception {
+        drain(threadType);
+    }
+
+    private void drain(IThreadType threadType) throws Exception {
+        final CountDownLatch drained = new CountDownLatch(1);
+
+        threadType.execute(drained::countDown);
+        assertTrue(drained.await(5, TimeUnit.SECONDS));
+    }
+
+    @Test
+    public void testDeltaSync() throws Exception {
+        final MirrorService<String, Integer> service = new MirrorService<>("test", 100);
+        final MapMirror mirror = new MapMirror();
+
+        for (int i = 0; i < 1000; i++) {
+            service.put("k" + i, i);
+        }
+        service.subscribe(mirror);
+        drain();
+        assertEquals(1000, mirror.values.size());
+        assertEquals(1, mirror.clears);
+        assertEquals(service.getSequence(), mirror.sequence);
+
+        mirror.changesWritten = 0;
+        service.put("k1", -1);
+        service.put("k1", -2);
+        service.delete("k2");
+        drain();
+        assertTrue("Only changed keys are sent: " + mirror.changesWritten, mirror.changesWritten <= 3);
+        assertEquals(Integer.valueOf(-2), mirror.values.get("k1"));
+        assertEquals(999, mirror.values.size());
+        assertEquals(service.getSequence(), mirror.sequence);
+    }
+
+    @Test
+    public void testMirrorBehindPrunedDeletesIsCopiedInFull() throws Exception {
+        final MirrorService<String, Integer> service = new MirrorService<>("test");
+        final MapMirror subscribed = new MapMirror();
+        final MapMirror away = new MapMirror();
+
+        service.put("a", 1);
+        service.put("b", 2);
+        service.subscribe(subscribed);
+        service.subscribe(away);
+        drain();
+        service.unsubscribe(away);
+        service.delete("a");
+        drain();
+
+        service.subscribe(away);
+        drain();
+        assertEquals(2, away.clears);
+        assertEquals(1, away.values.size());
+        assertEquals(Integer.valueOf(2), away.values.get("b"));
+        assertEquals(1, service.size());
+    }
+
+    @Test
+    public void testRestartContinuesFromStore() throws Exception {
+        final File file = File.createTempFile("MirrorServiceTest", ".kv");
+        final LogStructuredStore store = new LogStructuredStore(file, storeThreadType, Long.MAX_VALUE);
+        final MirrorService<String, Integer> service = new MirrorService<>("test", 100, store, String.class, Integer.class);
+        final MapMirror mirror = new MapMirror();
+
+        try {
+            for (int i = 0; i < 100; i++) {
+                service.put("k" + i, i);
+            }
+            service.subscribe(mirror);
+            service.delete("k1");
+            drain(storeThreadType); // Stored, then synced
+            drain();
+            assertEquals(99, mirror.values.size());
+            assertEquals(service.getSequence(), mirror.sequence);
+            final int clears = mirror.clears;
+            storeThreadType.execute(store::close);
+
+            final LogStructuredStore reopened = new LogStructuredStore(file, storeThreadType, Long.MAX_VALUE);
+            final MirrorService<String, Integer> restarted = new MirrorService<>("test", 100, reopened, String.class, Integer.class);
+            assertEquals(service.getSequence(), restarted.getSequence());
+            assertEquals(99, restarted.size());
+            assertEquals(Integer.valueOf(5), restarted.get("k5"));
+
+            mirror.changesWritten = 0;
+            restarted.subscribe(mirror);
+            restarted.put("k2", -2);
+            drain(storeThreadType);
+            drain();
+            assertEquals(clears, mirror.clears); // Not copied in full again
+            assertEquals(1, mirror.changesWritten);
+            assertEquals(Integer.valueOf(-2), mirror.values.get("k2"));
+            assertEquals(restarted.getSequence(), mirror.sequence);
+        } finally {
+            assertTrue(file.delete());
+        }
+    }
+}
@@ -0,0 +1,59 @@
+/*
+This file is part of Reactive Cascade which is released under The MIT License.
+See license.md , https://github.com/futurice/cascade and http://reactivecascade.com for details.
+This is open source for the common good. Please contribute improvements by pull request or contact paulirotta@gmail.com
+*/
+package com.reactivecascade.util;
+
+import org.junit.Test;
+
+import java.util.concurrent.CountDownLatch;
+
+import static junit.framework.Assert.assertEquals;
+import static junit.framework.Assert.assertNull;
+import static junit.framework.TestCase.assertTrue;
+
+public class MpscQueueTest {
+    @Test
+    public void testOfferPollFifo() throws Exception {
+        MpscQueue<Integer> queue = new MpscQueue<>();
+
+        assertTrue(queue.isEmpty());
+        for (int i = 0; i < 10; i++) {
+            queue.offer(i);
+        }
+        for (int i = 0; i < 10; i++) {
+            assertEquals(Integer.valueOf(i), queue.poll());
+        }
+        assertNull(queue.poll());
+        assertTrue(queue.isEmpty());
+    }
+
+    @Test
+    public void testConcurrentProducersKeepOrder() throws Exception {
+        final int producers = 4;
+        final int perProducer = 10000;
+        final MpscQueue<int[]> queue = new MpscQueue<>();
+        final CountDownLatch done = new CountDownLatch(producers);
+
+        for (int p = 0; p < producers; p++) {
+            final int producer = p;
+            new Thread(() -> {
+                for (int i = 0; i < perProducer; i++) {
+                    queue.offer(new int[]{producer, i});
+                }
+                done.countDown();
+            }).start();
+        }
+        final int[] next = new int[producers];
+        int received = 0;
+        while (done.getCount() > 0 || !queue.isEmpty()) {
+            final int[] item = queue.poll();
+            if (item != null) {
+                assertEquals(next[item[0]]++, item[1]);
+                received++;
+            }
+        }
+        assertEquals(producers * perProducer, received);
+    }
+}
@@ -0,0 +1,115 @@
+/*
+This file is part of Reactive Cascade which is released under The MIT License.
+See license.md , https://github.com/futurice/cascade and http://reactivecascade.com for details.
+This is open source for the common good. Please contribute improvements by pull request or contact paulirotta@gmail.com
+*/
+package com.reactivecascade.util;
+
+import android.util.Log;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.InputStream;
+import java.io.PrintWriter;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static junit.framework.Assert.assertEquals;
+import static junit.framework.TestCase.assertTrue;
+
+public class RingBufferLogTest {
+    private final ExecutorService executorService = Executors.newSingleThreadExecutor();
+    private final DefaultThreadType threadType = new DefaultThreadType("RingBufferLogTest", executorService, null);
+    private File directory;
+
+    @Before
+    public void setUp() throws Exception {
+        directory = File.createTempFile("RingBufferLogTest", "");
+        assertTrue(directory.delete() && directory.mkdir());
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        executorService.shutdownNow();
+        final File[] files = directory.listFiles();
+        if (files != null) {
+            for (File file : files) {
+                assertTrue(file.delete());
+            }
+        }
+        assertTrue(directory.delete());
+    }
+
+    private void awaitWrites() throws Exception {
+        final CountDownLatch latch = new CountDownLatch(1);
+
+        threadType.execute(latch::countDown); // The single FILE-like thread has finished all earlier drains
+        assertTrue(latch.await(5, TimeUnit.SECONDS));
+    }
+
+    private String read(File file) throws Exception {
+        final byte[] bytes = new byte[(int) file.length()];
+        final InputStream in = new FileInputStream(file);
+        try {
+            assertEquals(bytes.length, in.read(bytes));
+        } finally {
+            in.close();
+        }
+
+        return new String(bytes, "UTF-8");
+    }
+
+    @Test
+    public void testLinesAreWrittenInOrder() throws Exception {
+        final RingBufferLog log = new RingBufferLog(directory, "test", threadType);
+
+        for (int i = 0; i < 100; i++) {
+            log.log(Log.INFO, "Tag", "line " + i, null);
+        }
+        awaitWrites();
+        final String s = read(log.getFile());
+        assertTrue(s.contains("I/Tag: line 0\n"));
+        assertTrue(s.indexOf("line 98\n") < s.indexOf("line 99\n"));
+        assertEquals(0, log.getDroppedCount());
+    }
+
+    @Test
+    public void testRotationCountsBytes() throws Exception {
+        final long maxFileBytes = 1000;
+        final RingBufferLog log = new RingBufferLog(directory, "test", threadType, 1024, maxFileBytes, 2);
+        final String wide = "äöå€"; // 9 bytes in UTF-8, 4 chars
+
+        for (int i = 0; i < 100; i++) {
+            log.log(Log.INFO, "Tag", wide + wide + wide, null);
+        }
+        awaitWrites();
+        final File current = log.getFile();
+        final File previous = new File(directory, "test.1.log");
+        assertTrue(previous.exists());
+        final int lineBytes = read(current).split("\n")[0].getBytes("UTF-8").length + 1;
+        assertTrue(previous.length() < maxFileBytes + lineBytes);
+        assertTrue(current.length() < maxFileBytes + lineBytes);
+    }
+
+    @Test
+    public void testFailedDrainDoesNotStopLogging() throws Exception {
+        final RingBufferLog log = new RingBufferLog(directory, "test", threadType);
+
+        log.log(Log.ERROR, "Tag", "unprintable", new Exception() {
+            @Override
+            public void printStackTrace(PrintWriter s) {
+                throw new IllegalStateException("Can not print");
+            }
+        });
+        awaitWrites();
+        log.log(Log.INFO, "Tag", "after", null);
+        awaitWrites();
+        assertTrue(read(log.getFile()).contains("I/Tag: after\n"));
+    }
+}
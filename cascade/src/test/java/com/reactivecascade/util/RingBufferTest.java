@@ -0,0 +1,78 @@
+/*
+This file is part of Reactive Cascade which is released under The MIT License.
+See license.md , https://github.com/futurice/cascade and http://reactivecascade.com for details.
+This is open source for the common good. Please contribute improvements by pull request or contact paulirotta@gmail.com
+*/
+package com.reactivecascade.util;
+
+import org.junit.Test;
+
+import java.util.concurrent.CountDownLatch;
+
+import static junit.framework.Assert.assertEquals;
+import static junit.framework.Assert.assertFalse;
+import static junit.framework.Assert.assertNull;
+import static junit.framework.TestCase.assertTrue;
+
+public class RingBufferTest {
+    @Test
+    public void testCapacityRoundedToPowerOfTwo() throws Exception {
+        assertEquals(8, new RingBuffer<String>(5).capacity());
+        assertEquals(1, new RingBuffer<String>(1).capacity());
+    }
+
+    @Test
+    public void testOfferPollFifo() throws Exception {
+        RingBuffer<Integer> ringBuffer = new RingBuffer<>(4);
+
+        assertTrue(ringBuffer.isEmpty());
+        for (int i = 0; i < 10; i++) {
+            assertTrue(ringBuffer.offer(i));
+            assertTrue(ringBuffer.offer(i + 100));
+            assertEquals(Integer.valueOf(i), ringBuffer.poll());
+            assertEquals(Integer.valueOf(i + 100), ringBuffer.poll());
+        }
+        assertNull(ringBuffer.poll());
+    }
+
+    @Test
+    public void testFullDropsAndCounts() throws Exception {
+        RingBuffer<Integer> ringBuffer = new RingBuffer<>(2);
+
+        assertTrue(ringBuffer.offer(1));
+        assertTrue(ringBuffer.offer(2));
+        assertFalse(ringBuffer.offer(3));
+        assertFalse(ringBuffer.offer(4));
+        assertEquals(2, ringBuffer.getDroppedCount());
+        assertEquals(2, ringBuffer.size());
+        assertEquals(Integer.valueOf(1), ringBuffer.poll());
+        assertTrue(ringBuffer.offer(5));
+        assertEquals(Integer.valueOf(2), ringBuffer.poll());
+        assertEquals(Integer.valueOf(5), ringBuffer.poll());
+        assertTrue(ringBuffer.isEmpty());
+    }
+
+    @Test
+    public void testConcurrentProducers() throws Exception {
+        final int producers = 4;
+        final int perProducer = 10000;
+        final RingBuffer<Integer> ringBuffer = new RingBuffer<>(64);
+        final CountDownLatch done = new CountDownLatch(producers);
+
+        for (int p = 0; p < producers; p++) {
+            new Thread(() -> {
+                for (int i = 0; i < perProducer; i++) {
+                    ringBuffer.offer(i);
+                }
+                done.countDown();
+            }).start();
+        }
+        long received = 0;
+        while (done.getCount() > 0 || !ringBuffer.isEmpty()) {
+            if (ringBuffer.poll() != null) {
+                received++;
+            }
+        }
+        assertEquals(producers * perProducer, received + ringBuffer.getDroppedCount());
+    }
+}
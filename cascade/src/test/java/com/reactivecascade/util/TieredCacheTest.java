@@ -0,0 +1,151 @@
+/*
+This file is part of Reactive Cascade which is released under The MIT License.
+See license.md , https://github.com/futurice/cascade and http://reactivecascade.com for details.
+This is open source for the common good. Please contribute improvements by pull request or contact paulirotta@gmail.com
+*/
+package com.reactivecascade.util;
+
+import com.reactivecascade.ThreadTypeTestCase;
+import com.reactivecascade.functional.SettableAltFuture;
+import com.reactivecascade.i.IAltFuture;
+import com.reactivecascade.i.IThreadType;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static junit.framework.Assert.assertEquals;
+import static junit.framework.TestCase.assertTrue;
+
+public class TieredCacheTest extends ThreadTypeTestCase {
+    private final IThreadType threadType = newThreadType("TieredCacheTest");
+    private File directory;
+    private MemoryCacheTier<String, String> memory;
+    private FileCacheTier<String> disk;
+    private TieredCache<String, String> cache;
+    private final AtomicInteger originCalls = new AtomicInteger();
+    private final AtomicInteger diskWrites = new AtomicInteger();
+
+    @Before
+    public void setUp() throws Exception {
+        directory = File.createTempFile("TieredCacheTest", "");
+        assertTrue(directory.delete());
+        memory = new MemoryCacheTier<>("memory", 2);
+        disk = new FileCacheTier<String>(directory, String.class, 1024 * 1024, threadType) {
+            @Override
+            public void write(String key, String value) throws Exception {
+                diskWrites.incrementAndGet();
+                super.write(key, value);
+            }
+        };
+        cache = new TieredCache.Builder<String, String>("test", key -> {
+            originCalls.incrementAndGet();
+            return new SettableAltFuture<>(threadType, "value-" + key);
+        })
+                .addTier(memory)
+                .addTier(disk)
+                .setThreadType(threadType)
+                .build();
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        shutdownThreadTypes(); // The file tier may still be writing
+        final File[] files = directory.listFiles();
+
+        if (files != null) {
+            for (File file : files) {
+                file.delete();
+            }
+        }
+        directory.delete();
+    }
+
+    private static <T> T await(IAltFuture<?, T> altFuture) throws InterruptedException {
+        for (int i = 0; i < 500 && !altFuture.isDone(); i++) {
+            Thread.sleep(10);
+        }
+
+        return altFuture.get();
+    }
+
+    private void drain() throws Exception {
+        final CountDownLatch drained = new CountDownLatch(1);
+
+        threadType.execute(drained::countDown);
+        assertTrue(drained.await(5, TimeUnit.SECONDS));
+    }
+
+    @Test
+    public void testOriginThenMemoryHit() throws Exception {
+        assertEquals("value-a", await(cache.get("a")));
+        drain();
+        assertEquals("value-a", await(cache.get("a")));
+        assertEquals(1, originCalls.get());
+        assertEquals(1, cache.getOriginLoadCount());
+        assertEquals(1, cache.getHitCount(0));
+        assertEquals("value-a", disk.read("a"));
+    }
+
+    @Test
+    public void testEvictionIsNotDemotedAndHitPromotes() throws Exception {
+        for (String key : new String[]{"a", "b", "c"}) {
+            await(cache.get(key));
+            drain();
+        }
+        assertEquals(1, cache.getEvictionCount(0));
+        assertEquals(null, memory.read("a"));
+        assertEquals(3, diskWrites.get()); // Each origin load only, the eviction from memory is not written again
+
+        assertEquals("value-a", await(cache.get("a")));
+        drain();
+        assertEquals(3, originCalls.get());
+        assertEquals(1, cache.getHitCount(1));
+        assertEquals("value-a", memory.read("a"));
+        assertEquals(3, diskWrites.get());
+    }
+
+    @Test
+    public void testEvictionFromSlowestTierLeavesCache() throws Exception {
+        final MemoryCacheTier<String, String> slowest = new MemoryCacheTier<>("slowest", 1);
+        final TieredCache<String, String> small = new TieredCache.Builder<String, String>("small", key -> new SettableAltFuture<>(threadType, "value-" + key))
+                .addTier(slowest)
+                .setThreadType(threadType)
+                .build();
+        final AtomicReference<String> evicted = new AtomicReference<>();
+
+        await(small.get("a"));
+        small.setOnEvictListener((key, value) -> evicted.set(key + "=" + value));
+        await(small.get("b"));
+        drain();
+
+        assertEquals(1, small.getEvictionCount(0));
+        assertEquals("a=value-a", evicted.get());
+    }
+
+    @Test
+    public void testChainAddedBeforeLoadContinues() throws Exception {
+        final SettableAltFuture<String> origin = new SettableAltFuture<>(threadType);
+        final TieredCache<String, String> slow = new TieredCache.Builder<String, String>("slow", key -> origin)
+                .addTier(new MemoryCacheTier<>("memory", 2))
+                .setThreadType(threadType)
+                .build();
+        final CountDownLatch continued = new CountDownLatch(1);
+
+        slow.get("a").then(value -> {
+            if ("loaded".equals(value)) {
+                continued.countDown();
+            }
+        });
+        drain();
+        origin.set("loaded");
+
+        assertTrue(continued.await(5, TimeUnit.SECONDS));
+    }
+}
@@ -0,0 +1,122 @@
+/*
+This file is part of Reactive Cascade which is released under The MIT License.
+See license.md , https://github.com/futurice/cascade and http://reactivecascade.com for details.
+This is open source for the common good. Please contribute improvements by pull request or contact paulirotta@gmail.com
+*/
+package com.reactivecascade.util;
+
+import com.reactivecascade.i.IAltFuture;
+
+import org.junit.After;
+import org.junit.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static junit.framework.Assert.assertEquals;
+import static junit.framework.Assert.assertNotNull;
+import static junit.framework.Assert.assertSame;
+import static junit.framework.TestCase.assertTrue;
+
+public class WatchdogTest {
+    private final AtomicInteger reported = new AtomicInteger();
+    private volatile Runnable reportedTask;
+    private final Watchdog watchdog = new Watchdog(50, 10)
+            .setOnBlockedListener((thread, task) -> {
+                reportedTask = task;
+                reported.incrementAndGet();
+            });
+    private final WatchedThreadPoolExecutor executor = new WatchedThreadPoolExecutor(1, 1, 100, TimeUnit.MILLISECONDS,
+            new LinkedBlockingQueue<>(), Executors.defaultThreadFactory());
+
+    @After
+    public void tearDown() {
+        watchdog.stop();
+        executor.shutdownNow();
+    }
+
+    @Test
+    public void testBlockedTaskIsReportedAndCompensated() throws Exception {
+        final CountDownLatch release = new CountDownLatch(1);
+        final CountDownLatch queuedRan = new CountDownLatch(1);
+
+        watchdog.watch("test", executor, true);
+        executor.execute(() -> {
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        executor.execute(queuedRan::countDown);
+        assertTrue(queuedRan.await(5, TimeUnit.SECONDS)); // Only possible on a compensating thread
+        assertEquals(1, reported.get());
+        assertEquals(1, executor.getCompensatingCount());
+        assertEquals(2, executor.getMaximumPoolSize());
+
+        release.countDown();
+        final long t = System.currentTimeMillis();
+        while (executor.getCompensatingCount() > 0 && System.currentTimeMillis() - t < 5000) {
+            Thread.sleep(5);
+        }
+        assertEquals(0, executor.getCompensatingCount());
+        assertEquals(1, executor.getMaximumPoolSize());
+        assertEquals(1, reported.get());
+    }
+
+    @Test
+    public void testShortTasksAreNotReported() throws Exception {
+        final CountDownLatch done = new CountDownLatch(100);
+
+        watchdog.watch("test", executor, false);
+        for (int i = 0; i < 100; i++) {
+            executor.execute(done::countDown);
+        }
+        assertTrue(done.await(5, TimeUnit.SECONDS));
+        Thread.sleep(100);
+        assertEquals(0, reported.get());
+        assertEquals(0, executor.getCompensatingCount());
+    }
+
+    @Test
+    public void testBlockedChainIsReportedWithItsOrigin() throws Exception {
+        final DefaultThreadType threadType = new DefaultThreadType("WatchdogTest", executor, null);
+        final CountDownLatch release = new CountDownLatch(1);
+
+        watchdog.watch("test", executor, false);
+        final IAltFuture<?, Boolean> blocked = threadType.then(() -> release.await(5, TimeUnit.SECONDS));
+        final long t = System.currentTimeMillis();
+        while (reported.get() == 0 && System.currentTimeMillis() - t < 5000) {
+            Thread.sleep(5);
+        }
+        release.countDown();
+
+        assertEquals(1, reported.get());
+        assertSame(blocked, reportedTask); // Queued as itself, not wrapped
+        final String origin = Watchdog.getOrigin(reportedTask);
+        assertNotNull(origin);
+        assertTrue(origin, origin.contains("WatchdogTest"));
+    }
+
+    @Test
+    public void testEachSlowTaskOnOneThreadIsReportedOnce() throws Exception {
+        final CountDownLatch done = new CountDownLatch(3);
+
+        watchdog.watch("test", executor, false);
+        for (int i = 0; i < 3; i++) {
+            executor.execute(() -> {
+                try {
+                    Thread.sleep(150);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                done.countDown();
+            });
+        }
+        assertTrue(done.await(5, TimeUnit.SECONDS));
+        assertEquals(3, reported.get());
+    }
+}